@@ -1,16 +1,30 @@
 package gr2116.RESTservice.restapi;
 
+import gr2116.core.Amenity;
 import gr2116.core.Hotel;
 import gr2116.core.HotelRoom;
+import gr2116.core.HotelRoomFilter;
+import gr2116.core.HotelRoomType;
 import gr2116.core.Person;
+import gr2116.core.Reservation;
+import gr2116.persistence.HotelJournal;
 import gr2116.persistence.HotelPersistence;
+import jakarta.ws.rs.DefaultValue;
 import jakarta.ws.rs.GET;
+import jakarta.ws.rs.POST;
 import jakarta.ws.rs.Path;
 import jakarta.ws.rs.PathParam;
 import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.QueryParam;
 import jakarta.ws.rs.core.Context;
 import jakarta.ws.rs.core.MediaType;
-import java.util.Collection;
+import jakarta.ws.rs.core.Response;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -29,6 +43,22 @@ public class HotelService {
   @Context
   private HotelPersistence hotelPersistence;
 
+  /**
+   * Helper method that records a change to the hotel in its journal, in the
+   * background so that the response does not wait for the disk.
+   *
+   * @param entry records the change
+   */
+  private void autoSaveHotel(HotelJournal.Entry entry) {
+    if (hotelPersistence != null) {
+      try {
+        hotelPersistence.getSaver().save(entry);
+      } catch (IllegalStateException | IllegalArgumentException e) {
+        System.err.println("Couldn't auto-save Hotel: " + e);
+      }
+    }
+  }
+
   /**
    * The root resource, i.e. /hotel
    *
@@ -53,15 +83,7 @@ public class HotelService {
    */
   @Path("/person/{username}")
   public PersonResource getPersonResource(@PathParam("username") String username) {
-    Collection<Person> matches = hotel.getPersons(p -> p.getUsername().equals(username));
-    Person person;
-    if (matches.size() > 1) {
-      throw new IllegalStateException("Multiple matches for person " + username);
-    } else if (matches.size() == 0) {
-      person = null;
-    } else {
-      person = matches.iterator().next();
-    }
+    Person person = hotel.getPerson(username);
 
     LOG.debug("Sub-resource person for person with username: " + username + ", " + person);
     PersonResource personResource = new PersonResource(username, person, hotel);
@@ -82,17 +104,8 @@ public class HotelService {
    */
   @Path("/rooms/{roomNumber}")
   public RoomResource getRoomResource(@PathParam("roomNumber") String roomNumber) {
-    HotelRoom room;
-    Integer number = Integer.parseInt(roomNumber);
-    Collection<HotelRoom> matches = hotel.getRooms(p -> p.getNumber() == number);
-    
-    if (matches.size() > 1) {
-      throw new IllegalStateException("Multiple matches for room number" + roomNumber);
-    } else if (matches.size() == 0) {
-      room = null;
-    } else {
-      room = matches.iterator().next();
-    }
+    int number = Integer.parseInt(roomNumber);
+    HotelRoom room = hotel.getRoom(number);
 
     LOG.debug("Sub-resource room for room number " + number + ": " + room);
 
@@ -100,5 +113,122 @@ public class HotelService {
     roomResource.setHotelPersistence(hotelPersistence);
     return roomResource;
   }
-}
 
+  /**
+   * Makes a reservation on every given room for the person with the given username,
+   * as one booking. Either every room is reserved and the person is charged once,
+   * or nothing is reserved.
+   *
+   * @param username the username of the person making the reservations
+   * @param roomNumbers the numbers of the rooms to book, given as repeated room parameters
+   * @param startDate the start date of the reservations, e.g. 2021-11-20
+   * @param endDate the end date of the reservations
+   *
+   * @return 200 with the reservations that were made, ordered by room number, or 400 if
+   *         they are not valid, e.g. because one of the rooms is not available
+   */
+  @POST
+  @Path("/reservations")
+  public Response makeGroupReservation(@QueryParam("username") String username,
+      @QueryParam("room") List<Integer> roomNumbers,
+      @QueryParam("startDate") String startDate, @QueryParam("endDate") String endDate) {
+    LOG.debug("makeGroupReservation({}, {}, {}, {})", username, roomNumbers, startDate, endDate);
+    if (startDate == null || endDate == null) {
+      return Response.status(Response.Status.BAD_REQUEST)
+          .entity("Both a start date and an end date are required.").build();
+    }
+    Person person = hotel.getPerson(username);
+    if (person == null) {
+      return Response.status(Response.Status.BAD_REQUEST)
+          .entity("The username does not match an existing user.").build();
+    }
+    final List<Reservation> reservations;
+    try {
+      reservations = hotel.makeGroupReservation(person, roomNumbers,
+          LocalDate.parse(startDate), LocalDate.parse(endDate));
+    } catch (IllegalArgumentException | IllegalStateException | DateTimeParseException e) {
+      return Response.status(Response.Status.BAD_REQUEST).entity(e.getMessage()).build();
+    }
+    autoSaveHotel((journal) -> journal.addReservations(person, reservations));
+    return Response.ok(reservations).build();
+  }
+
+  /**
+   * Finds the earliest stays of the given length on the rooms matching the given room type,
+   * floor and amenities, e.g. /hotel/windows?nights=5&amp;roomType=Suite. Each room gives at
+   * most its earliest stay.
+   *
+   * @param nights the number of nights to stay
+   * @param fromDate the earliest date a stay may start, today if not given
+   * @param untilDate the latest date a stay may end, a year after fromDate if not given
+   * @param limit the maximum number of stays to return, 1 if not given
+   * @param roomType the room type to search, or any type if not given
+   * @param floor the floor to search, or any floor if not given
+   * @param amenities the amenities the rooms must include, given as repeated amenity parameters
+   *
+   * @return 200 with the earliest stays, ordered by start date, or 400 if the search
+   *         is not valid
+   */
+  @GET
+  @Path("/windows")
+  public Response findAvailableWindows(@QueryParam("nights") int nights,
+      @QueryParam("from") String fromDate, @QueryParam("until") String untilDate,
+      @QueryParam("limit") @DefaultValue("1") int limit,
+      @QueryParam("roomType") HotelRoomType roomType, @QueryParam("floor") Integer floor,
+      @QueryParam("amenity") List<Amenity> amenities) {
+    LOG.debug("findAvailableWindows({}, {}, {}, {}, {}, {}, {})",
+        nights, fromDate, untilDate, limit, roomType, floor, amenities);
+    HashMap<Amenity, Boolean> required = new HashMap<>();
+    amenities.forEach((amenity) -> required.put(amenity, true));
+    HotelRoomFilter filter = new HotelRoomFilter(null, null, roomType, floor, required);
+    try {
+      LocalDate from = fromDate == null ? LocalDate.now() : LocalDate.parse(fromDate);
+      LocalDate until = untilDate == null ? from.plusYears(1) : LocalDate.parse(untilDate);
+      return Response.ok(hotel.findAvailableWindows(filter, nights, from, until, limit)).build();
+    } catch (IllegalArgumentException | DateTimeParseException e) {
+      return Response.status(Response.Status.BAD_REQUEST).entity(e.getMessage()).build();
+    }
+  }
+
+  /**
+   * Returns the share of room-nights that are occupied, for the nights from startDate
+   * up to, but not including, endDate, grouped by room type or by floor,
+   * e.g. /hotel/occupancy?startDate=2021-11-01&amp;endDate=2021-12-01&amp;by=floor.
+   *
+   * @param startDate the first night
+   * @param endDate the day after the last night
+   * @param groupBy either roomType or floor, roomType if not given
+   *
+   * @return 200 with the occupancy rate of each room type or floor, between 0 and 1,
+   *         or 400 if the period or grouping is not valid
+   */
+  @GET
+  @Path("/occupancy")
+  public Response getOccupancy(@QueryParam("startDate") String startDate,
+      @QueryParam("endDate") String endDate,
+      @QueryParam("by") @DefaultValue("roomType") String groupBy) {
+    LOG.debug("getOccupancy({}, {}, {})", startDate, endDate, groupBy);
+    if (startDate == null || endDate == null) {
+      return Response.status(Response.Status.BAD_REQUEST)
+          .entity("Both a start date and an end date are required.").build();
+    }
+    try {
+      LocalDate start = LocalDate.parse(startDate);
+      LocalDate end = LocalDate.parse(endDate);
+      Map<String, Double> rates = new LinkedHashMap<>();
+      if ("roomType".equals(groupBy)) {
+        hotel.getOccupancyByRoomType(start, end)
+            .forEach((roomType, rate) -> rates.put(roomType.name(), rate));
+      } else if ("floor".equals(groupBy)) {
+        hotel.getOccupancyByFloor(start, end)
+            .forEach((floor, rate) -> rates.put(floor.toString(), rate));
+      } else {
+        return Response.status(Response.Status.BAD_REQUEST)
+            .entity("Occupancy can only be grouped by roomType or floor.").build();
+      }
+      return Response.ok(rates).build();
+    } catch (IllegalArgumentException | DateTimeParseException e) {
+      return Response.status(Response.Status.BAD_REQUEST).entity(e.getMessage()).build();
+    }
+  }
+}
@@ -2,6 +2,7 @@ package gr2116.RESTservice.restapi;
 
 import gr2116.core.Hotel;
 import gr2116.core.Person;
+import gr2116.persistence.HotelJournal;
 import gr2116.persistence.HotelPersistence;
 import jakarta.ws.rs.Consumes;
 import jakarta.ws.rs.DELETE;
@@ -10,7 +11,6 @@ import jakarta.ws.rs.PUT;
 import jakarta.ws.rs.Produces;
 import jakarta.ws.rs.core.Context;
 import jakarta.ws.rs.core.MediaType;
-import java.io.IOException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -52,13 +52,16 @@ public class PersonResource {
   }
   
   /**
-   * Helper method that saves the hotel.
+   * Helper method that records a change to the hotel in its journal, in the
+   * background so that the response does not wait for the disk.
+   *
+   * @param entry records the change
    */
-  private void autoSaveHotel() {
+  private void autoSaveHotel(HotelJournal.Entry entry) {
     if (hotelPersistence != null) {
       try {
-        hotelPersistence.saveHotel(this.hotel);
-      } catch (IllegalStateException | IOException e) {
+        hotelPersistence.getSaver().save(entry);
+      } catch (IllegalStateException | IllegalArgumentException e) {
         System.err.println("Couldn't auto-save Hotel: " + e);
       }
     }
@@ -88,7 +91,7 @@ public class PersonResource {
   public boolean addPerson(Person person) {
     LOG.debug("addPerson({})", person);
     Person oldPerson = hotel.addPerson(person);
-    autoSaveHotel();
+    autoSaveHotel((journal) -> journal.addPerson(person));
     return oldPerson == null;
   }
 
@@ -104,7 +107,7 @@ public class PersonResource {
       throw new IllegalArgumentException("Person is null, cannot delete.");
     }
     hotel.removePerson(person);
-    autoSaveHotel();
+    autoSaveHotel((journal) -> journal.removePerson(person));
     return true;
   }
 }
\ No newline at end of file
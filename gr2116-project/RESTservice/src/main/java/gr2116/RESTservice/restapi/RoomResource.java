@@ -2,15 +2,25 @@ package gr2116.RESTservice.restapi;
 
 import gr2116.core.Hotel;
 import gr2116.core.HotelRoom;
+import gr2116.core.Person;
+import gr2116.core.Reservation;
+import gr2116.core.ReservationConflictException;
+import gr2116.persistence.HotelJournal;
 import gr2116.persistence.HotelPersistence;
 import jakarta.ws.rs.Consumes;
 import jakarta.ws.rs.DELETE;
 import jakarta.ws.rs.GET;
+import jakarta.ws.rs.POST;
 import jakarta.ws.rs.PUT;
+import jakarta.ws.rs.Path;
 import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.QueryParam;
 import jakarta.ws.rs.core.Context;
 import jakarta.ws.rs.core.MediaType;
-import java.io.IOException;
+import jakarta.ws.rs.core.Response;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.List;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -48,14 +58,16 @@ public class RoomResource {
   }
 
   /**
-   * Helper method that saves the hotel.
+   * Helper method that records a change to the hotel in its journal, in the
+   * background so that the response does not wait for the disk.
+   *
+   * @param entry records the change
    */
-  private void autoSaveHotel() {
+  private void autoSaveHotel(HotelJournal.Entry entry) {
     if (hotelPersistence != null) {
       try {
-        hotelPersistence.saveHotel(this.hotel);
-        System.out.println("Saved!");
-      } catch (IllegalStateException | IOException e) {
+        hotelPersistence.getSaver().save(entry);
+      } catch (IllegalStateException | IllegalArgumentException e) {
         System.err.println("Couldn't auto-save Hotel: " + e);
       }
     }
@@ -86,10 +98,58 @@ public class RoomResource {
   public boolean addHotelRoom(HotelRoom room) {
     LOG.debug("addHotelRoom({})", room);
     HotelRoom oldRoom = this.hotel.addRoom(room);
-    autoSaveHotel();
+    autoSaveHotel((journal) -> journal.addRoom(room));
     return oldRoom == null;
   }
 
+  /**
+   * Makes a reservation on this room for the person with the given username, if the
+   * room still has the version the client saw. A client with an out of date view
+   * of the room gets a 409 Conflict response instead of the reservation.
+   *
+   * @param username the username of the person making the reservation
+   * @param startDate the start date of the reservation, e.g. 2021-11-20
+   * @param endDate the end date of the reservation
+   * @param version the version of the room the client saw, or null if the client does
+   *                not care whether the room has been booked since
+   *
+   * @return 200 with true if the reservation was made, 409 if the room has been
+   *         booked in the meantime, or 400 if the reservation is not valid
+   */
+  @POST
+  @Path("reservation")
+  @Produces(MediaType.APPLICATION_JSON)
+  public Response makeReservation(@QueryParam("username") String username,
+      @QueryParam("startDate") String startDate, @QueryParam("endDate") String endDate,
+      @QueryParam("version") Long version) {
+    LOG.debug("makeReservation({}, {}, {}, {}, {})", room, username, startDate, endDate, version);
+    if (room == null) {
+      return Response.status(Response.Status.NOT_FOUND).build();
+    }
+    if (startDate == null || endDate == null) {
+      return Response.status(Response.Status.BAD_REQUEST)
+          .entity("Both a start date and an end date are required.").build();
+    }
+    Person person = hotel.getPerson(username);
+    if (person == null) {
+      return Response.status(Response.Status.BAD_REQUEST)
+          .entity("The username does not match an existing user.").build();
+    }
+    try {
+      hotel.makeReservation(person, room.getNumber(),
+          LocalDate.parse(startDate), LocalDate.parse(endDate),
+          version == null ? Hotel.ANY_VERSION : version);
+    } catch (ReservationConflictException e) {
+      return Response.status(Response.Status.CONFLICT).entity(e.getMessage()).build();
+    } catch (IllegalArgumentException | IllegalStateException | DateTimeParseException e) {
+      return Response.status(Response.Status.BAD_REQUEST).entity(e.getMessage()).build();
+    }
+    Reservation reservation =
+        new Reservation(room, LocalDate.parse(startDate), LocalDate.parse(endDate));
+    autoSaveHotel((journal) -> journal.addReservations(person, List.of(reservation)));
+    return Response.ok(true).build();
+  }
+
   /**
    * Deletes the requested room.
    *
@@ -101,7 +161,7 @@ public class RoomResource {
       throw new IllegalStateException("This room does not exist.");
     }
     hotel.removeRoom(room);
-    autoSaveHotel();
+    autoSaveHotel((journal) -> journal.removeRoom(room));
     return true;
   }
 }
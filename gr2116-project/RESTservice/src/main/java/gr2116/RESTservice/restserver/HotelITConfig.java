@@ -4,6 +4,7 @@ import gr2116.RESTservice.restapi.HotelService;
 import gr2116.core.Hotel;
 import gr2116.persistence.HotelPersistence;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import org.glassfish.hk2.utilities.binding.AbstractBinder;
 import org.glassfish.jersey.jackson.JacksonFeature;
 import org.glassfish.jersey.server.ResourceConfig;
@@ -24,13 +25,18 @@ public class HotelITConfig extends ResourceConfig {
   * Initialize this HotelConfig.
   *
   * @param hotel hotel instance to serve
+  *
+  * @throws IllegalArgumentException if hotel is null
   */
   public HotelITConfig(Hotel hotel) {
     setHotel(hotel);
     hotelPersistence = new HotelPersistence("testIt");
+    // Saves the hotel in the background as changes are recorded in its journal
+    hotelPersistence.startCheckpointing(hotel);
     register(HotelService.class);
     register(HotelModuleObjectMapperProvider.class);
     register(JacksonFeature.class);
+    register(new HotelPersistenceCloser(hotelPersistence));
     register(new AbstractBinder() {
       @Override
       protected void configure() {
@@ -67,20 +73,22 @@ public class HotelITConfig extends ResourceConfig {
   }
 
   /**
-   * It first tries to load an already saved hotel. If this fails, hotelPersistence will
-   * return a default (random) empty hotel initiated with 30 or so rooms.
-   * Note: Exception will never happen, because hotelPersistence.loadHotel() catches IOException 
-   * and then returns randomly generated hotel.
+   * It first tries to load an already saved hotel, or else the previous save. If there is
+   * no saved hotel, hotelPersistence will return a default (random) empty hotel initiated
+   * with 30 or so rooms. If a saved hotel exists but cannot be read, an exception is
+   * thrown, so that the service does not start, and the saved hotel is not replaced by
+   * a generated one.
    *
    * @return the hotel returned from HotelPersistence
+   *
+   * @throws UncheckedIOException if a saved hotel exists but cannot be read
    */
   public static Hotel createHotel() {
     HotelPersistence hotelPersistence = new HotelPersistence("testIt");
     try {
       return hotelPersistence.loadHotel();
     } catch (IOException e) {
-      System.err.println("Hotel was not correctly loaded in hotelPersistence.");
-      return null;
+      throw new UncheckedIOException("Hotel was not correctly loaded in hotelPersistence.", e);
     }
   }
 }
@@ -0,0 +1,40 @@
+package gr2116.RESTservice.restserver;
+
+import gr2116.persistence.HotelPersistence;
+import java.io.IOException;
+import org.glassfish.jersey.server.spi.Container;
+import org.glassfish.jersey.server.spi.ContainerLifecycleListener;
+
+/**
+ * Closes the HotelPersistence of the rest service when the service is shut down,
+ * so that the changes waiting to be saved are written, and its threads are stopped.
+ */
+public class HotelPersistenceCloser implements ContainerLifecycleListener {
+  private final HotelPersistence hotelPersistence;
+
+  /**
+   * Initializes this HotelPersistenceCloser.
+   *
+   * @param hotelPersistence the HotelPersistence to close on shutdown
+   */
+  public HotelPersistenceCloser(HotelPersistence hotelPersistence) {
+    this.hotelPersistence = hotelPersistence;
+  }
+
+  @Override
+  public void onStartup(Container container) {
+  }
+
+  @Override
+  public void onReload(Container container) {
+  }
+
+  @Override
+  public void onShutdown(Container container) {
+    try {
+      hotelPersistence.close();
+    } catch (IOException e) {
+      System.err.println("Couldn't save Hotel on shutdown: " + e);
+    }
+  }
+}
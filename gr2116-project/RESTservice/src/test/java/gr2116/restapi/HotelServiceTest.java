@@ -1,9 +1,12 @@
 package gr2116.restapi;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import gr2116.RESTservice.restapi.HotelService;
 import gr2116.RESTservice.restserver.HotelITConfig;
@@ -13,13 +16,16 @@ import gr2116.core.Hotel;
 import gr2116.core.HotelRoom;
 import gr2116.core.HotelRoomType;
 import gr2116.core.Person;
+import gr2116.core.Reservation;
 import jakarta.ws.rs.client.Entity;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
 
 import java.io.File;
 import java.nio.file.Paths;
+import java.time.LocalDate;
 import java.util.Collection;
+import java.util.Iterator;
 
 import org.glassfish.jersey.logging.LoggingFeature;
 import org.glassfish.jersey.server.ResourceConfig;
@@ -193,6 +199,244 @@ public class HotelServiceTest extends JerseyTest {
     }
   }
 
+  @Test
+  public void testMakeReservation() {
+    Person person = new Person("janed");
+    person.addBalance(100000);
+    try {
+      Response putResponse =
+          target(HotelService.HOTEL_SERVICE_PATH + "/person/janed")
+          .request()
+          .put(Entity.json(mapper.writeValueAsString(person)));
+      assertEquals(200, putResponse.getStatus());
+      Response hotelResponse = target(HotelService.HOTEL_SERVICE_PATH)
+          .request(MediaType.APPLICATION_JSON + ";" + MediaType.CHARSET_PARAMETER + "=UTF-8")
+          .get();
+      Hotel hotel = mapper.readValue(hotelResponse.readEntity(String.class), Hotel.class);
+      HotelRoom room = hotel.getRooms().iterator().next();
+      long version = room.getVersion();
+      LocalDate start = LocalDate.now().plusYears(5);
+      String path = HotelService.HOTEL_SERVICE_PATH + "/rooms/" + room.getNumber() + "/reservation";
+
+      Response response = target(path)
+          .queryParam("username", "janed")
+          .queryParam("startDate", start.toString())
+          .queryParam("endDate", start.plusDays(2).toString())
+          .queryParam("version", version)
+          .request()
+          .post(Entity.json(""));
+      assertEquals(200, response.getStatus());
+      // The version is now out of date, even though the room is free at these dates
+      response = target(path)
+          .queryParam("username", "janed")
+          .queryParam("startDate", start.plusDays(5).toString())
+          .queryParam("endDate", start.plusDays(6).toString())
+          .queryParam("version", version)
+          .request()
+          .post(Entity.json(""));
+      assertEquals(409, response.getStatus());
+      response = target(path)
+          .queryParam("username", "nobody")
+          .queryParam("startDate", start.plusDays(5).toString())
+          .queryParam("endDate", start.plusDays(6).toString())
+          .queryParam("version", version + 1)
+          .request()
+          .post(Entity.json(""));
+      assertEquals(400, response.getStatus());
+
+      Response personResponse =
+          target(HotelService.HOTEL_SERVICE_PATH + "/person/janed")
+          .request(MediaType.APPLICATION_JSON + ";" + MediaType.CHARSET_PARAMETER + "=UTF-8")
+          .get();
+      Person readPerson = mapper.readValue(personResponse.readEntity(String.class), Person.class);
+      assertEquals(1, readPerson.getReservations().size());
+      target(HotelService.HOTEL_SERVICE_PATH + "/person/janed").request().delete();
+    } catch (JsonProcessingException e) {
+      fail(e.getMessage());
+    }
+  }
+
+  /**
+   * Clients that send no version can book a room that has been booked before.
+   */
+  @Test
+  public void testMakeReservationWithoutVersion() {
+    Person person = new Person("noversion");
+    person.addBalance(100000);
+    try {
+      Response putResponse =
+          target(HotelService.HOTEL_SERVICE_PATH + "/person/noversion")
+          .request()
+          .put(Entity.json(mapper.writeValueAsString(person)));
+      assertEquals(200, putResponse.getStatus());
+      Response hotelResponse = target(HotelService.HOTEL_SERVICE_PATH)
+          .request(MediaType.APPLICATION_JSON + ";" + MediaType.CHARSET_PARAMETER + "=UTF-8")
+          .get();
+      Hotel hotel = mapper.readValue(hotelResponse.readEntity(String.class), Hotel.class);
+      HotelRoom room = hotel.getRooms().iterator().next();
+      LocalDate start = LocalDate.now().plusYears(7);
+      String path = HotelService.HOTEL_SERVICE_PATH + "/rooms/" + room.getNumber() + "/reservation";
+
+      for (int i = 0; i < 2; i++) {
+        Response response = target(path)
+            .queryParam("username", "noversion")
+            .queryParam("startDate", start.plusDays(5 * i).toString())
+            .queryParam("endDate", start.plusDays(5 * i + 2).toString())
+            .request()
+            .post(Entity.json(""));
+        assertEquals(200, response.getStatus());
+      }
+
+      Response personResponse =
+          target(HotelService.HOTEL_SERVICE_PATH + "/person/noversion")
+          .request(MediaType.APPLICATION_JSON + ";" + MediaType.CHARSET_PARAMETER + "=UTF-8")
+          .get();
+      Person readPerson = mapper.readValue(personResponse.readEntity(String.class), Person.class);
+      assertEquals(2, readPerson.getReservations().size());
+      target(HotelService.HOTEL_SERVICE_PATH + "/person/noversion").request().delete();
+    } catch (JsonProcessingException e) {
+      fail(e.getMessage());
+    }
+  }
+
+  @Test
+  public void testMakeGroupReservation() {
+    Person person = new Person("groupd");
+    person.addBalance(100000);
+    try {
+      Response putResponse =
+          target(HotelService.HOTEL_SERVICE_PATH + "/person/groupd")
+          .request()
+          .put(Entity.json(mapper.writeValueAsString(person)));
+      assertEquals(200, putResponse.getStatus());
+      Response hotelResponse = target(HotelService.HOTEL_SERVICE_PATH)
+          .request(MediaType.APPLICATION_JSON + ";" + MediaType.CHARSET_PARAMETER + "=UTF-8")
+          .get();
+      Hotel hotel = mapper.readValue(hotelResponse.readEntity(String.class), Hotel.class);
+      Iterator<HotelRoom> rooms = hotel.getRooms().iterator();
+      int first = rooms.next().getNumber();
+      int second = rooms.next().getNumber();
+      LocalDate start = LocalDate.now().plusYears(6);
+      String path = HotelService.HOTEL_SERVICE_PATH + "/reservations";
+
+      Response response = target(path)
+          .queryParam("username", "groupd")
+          .queryParam("room", first, second)
+          .queryParam("startDate", start.toString())
+          .queryParam("endDate", start.plusDays(2).toString())
+          .request()
+          .post(Entity.json(""));
+      assertEquals(200, response.getStatus());
+      Reservation[] made =
+          mapper.readValue(response.readEntity(String.class), Reservation[].class);
+      assertEquals(2, made.length);
+      assertEquals(Math.min(first, second), made[0].getRoomNumber());
+      assertEquals(start, made[0].getStartDate());
+      // The first room is taken now, so the group cannot be booked again
+      response = target(path)
+          .queryParam("username", "groupd")
+          .queryParam("room", second, first)
+          .queryParam("startDate", start.plusDays(1).toString())
+          .queryParam("endDate", start.plusDays(3).toString())
+          .request()
+          .post(Entity.json(""));
+      assertEquals(400, response.getStatus());
+      response = target(path)
+          .queryParam("username", "nobody")
+          .queryParam("room", first)
+          .queryParam("startDate", start.plusDays(5).toString())
+          .queryParam("endDate", start.plusDays(6).toString())
+          .request()
+          .post(Entity.json(""));
+      assertEquals(400, response.getStatus());
+
+      Response personResponse =
+          target(HotelService.HOTEL_SERVICE_PATH + "/person/groupd")
+          .request(MediaType.APPLICATION_JSON + ";" + MediaType.CHARSET_PARAMETER + "=UTF-8")
+          .get();
+      Person readPerson = mapper.readValue(personResponse.readEntity(String.class), Person.class);
+      assertEquals(2, readPerson.getReservations().size());
+      target(HotelService.HOTEL_SERVICE_PATH + "/person/groupd").request().delete();
+    } catch (JsonProcessingException e) {
+      fail(e.getMessage());
+    }
+  }
+
+  @Test
+  public void testFindAvailableWindows() {
+    try {
+      Response response = target(HotelService.HOTEL_SERVICE_PATH + "/windows")
+          .queryParam("nights", 3)
+          .queryParam("limit", 2)
+          .queryParam("roomType", HotelRoomType.Suite)
+          .request(MediaType.APPLICATION_JSON + ";" + MediaType.CHARSET_PARAMETER + "=UTF-8")
+          .get();
+      assertEquals(200, response.getStatus());
+      JsonNode windows = mapper.readTree(response.readEntity(String.class));
+      assertTrue(windows.size() <= 2);
+      for (JsonNode window : windows) {
+        LocalDate startDate = LocalDate.parse(window.get("startDate").asText());
+        LocalDate endDate = LocalDate.parse(window.get("endDate").asText());
+        assertEquals(startDate.plusDays(3), endDate);
+        assertFalse(startDate.isBefore(LocalDate.now()));
+        Response roomResponse = target(HotelService.HOTEL_SERVICE_PATH + "/rooms/"
+            + window.get("room").asInt())
+            .request(MediaType.APPLICATION_JSON + ";" + MediaType.CHARSET_PARAMETER + "=UTF-8")
+            .get();
+        HotelRoom room = mapper.readValue(roomResponse.readEntity(String.class), HotelRoom.class);
+        assertEquals(HotelRoomType.Suite, room.getRoomType());
+        assertTrue(room.isAvailable(startDate, endDate));
+      }
+
+      response = target(HotelService.HOTEL_SERVICE_PATH + "/windows")
+          .queryParam("nights", 0)
+          .request()
+          .get();
+      assertEquals(400, response.getStatus());
+    } catch (JsonProcessingException e) {
+      fail(e.getMessage());
+    }
+  }
+
+  @Test
+  public void testGetOccupancy() {
+    try {
+      LocalDate start = LocalDate.now();
+      Response response = target(HotelService.HOTEL_SERVICE_PATH + "/occupancy")
+          .queryParam("startDate", start.toString())
+          .queryParam("endDate", start.plusDays(30).toString())
+          .request(MediaType.APPLICATION_JSON + ";" + MediaType.CHARSET_PARAMETER + "=UTF-8")
+          .get();
+      assertEquals(200, response.getStatus());
+      JsonNode byRoomType = mapper.readTree(response.readEntity(String.class));
+      assertTrue(byRoomType.size() > 0);
+      byRoomType.fieldNames().forEachRemaining((name) -> HotelRoomType.valueOf(name));
+      for (JsonNode rate : byRoomType) {
+        assertTrue(rate.asDouble() >= 0 && rate.asDouble() <= 1);
+      }
+
+      response = target(HotelService.HOTEL_SERVICE_PATH + "/occupancy")
+          .queryParam("startDate", start.toString())
+          .queryParam("endDate", start.plusDays(30).toString())
+          .queryParam("by", "floor")
+          .request(MediaType.APPLICATION_JSON + ";" + MediaType.CHARSET_PARAMETER + "=UTF-8")
+          .get();
+      assertEquals(200, response.getStatus());
+      JsonNode byFloor = mapper.readTree(response.readEntity(String.class));
+      byFloor.fieldNames().forEachRemaining((name) -> Integer.parseInt(name));
+
+      response = target(HotelService.HOTEL_SERVICE_PATH + "/occupancy")
+          .queryParam("startDate", start.toString())
+          .queryParam("endDate", start.plusDays(30).toString())
+          .queryParam("by", "amenity")
+          .request()
+          .get();
+      assertEquals(400, response.getStatus());
+    } catch (JsonProcessingException e) {
+      fail(e.getMessage());
+    }
+  }
+
   @AfterAll
   public static void cleanup() {
     File file = Paths.get(System.getProperty("user.home"), "HotelSys", "testItHotel.json").toFile();
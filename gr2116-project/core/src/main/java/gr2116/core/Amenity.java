@@ -87,6 +87,30 @@ public enum Amenity {
     return description;
   }
 
+  /**
+   * Returns the bit representing this amenity in an amenity mask.
+   *
+   * @return the bit of this amenity
+   */
+  public int mask() {
+    return 1 << ordinal();
+  }
+
+  /**
+   * Returns the amenity mask with the bits of the given amenities set.
+   *
+   * @param amenities the amenities
+   *
+   * @return the amenity mask
+   */
+  public static int maskOf(final Iterable<Amenity> amenities) {
+    int mask = 0;
+    for (Amenity amenity : amenities) {
+      mask |= amenity.mask();
+    }
+    return mask;
+  }
+
   @Override
   public String toString() {
     return getName();
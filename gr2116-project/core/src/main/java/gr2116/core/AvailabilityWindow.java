@@ -0,0 +1,124 @@
+package gr2116.core;
+
+import java.time.LocalDate;
+
+/**
+ * AvailabilityWindow class. A stay on a room that is free from
+ * the start date up to and including the end date, as found by
+ * {@link Hotel#findAvailableWindows(java.util.function.Predicate, int, LocalDate, LocalDate, int)}.
+ * Windows are ordered by start date, then by room number.
+ */
+public final class AvailabilityWindow implements Comparable<AvailabilityWindow> {
+  /**
+   * The number of the free room.
+   */
+  private final int roomNumber;
+  /**
+   * The first day of the stay.
+   */
+  private final LocalDate startDate;
+  /**
+   * The last day of the stay.
+   */
+  private final LocalDate endDate;
+
+  /**
+   * Constructs a window on the room with the given number.
+   *
+   * @param roomNumber the room number
+   * @param startDate the start date of the stay
+   * @param endDate the end date of the stay
+   *
+   * @throws IllegalArgumentException if startDate or endDate is null
+   * @throws IllegalArgumentException if startDate is not before endDate
+   */
+  public AvailabilityWindow(final int roomNumber,
+                            final LocalDate startDate,
+                            final LocalDate endDate) {
+    if (startDate == null || endDate == null) {
+      throw new IllegalArgumentException("Startdate or endDate cannot be null.");
+    }
+    if (!startDate.isBefore(endDate)) {
+      throw new IllegalArgumentException("startDate must be before endDate.");
+    }
+    this.roomNumber = roomNumber;
+    this.startDate = startDate;
+    this.endDate = endDate;
+  }
+
+  /**
+   * Returns the number of the free room.
+   *
+   * @return room number
+   */
+  public int getRoomNumber() {
+    return roomNumber;
+  }
+
+  /**
+   * Returns the start date of the stay.
+   *
+   * @return start date
+   */
+  public LocalDate getStartDate() {
+    return startDate;
+  }
+
+  /**
+   * Returns the end date of the stay.
+   *
+   * @return end date
+   */
+  public LocalDate getEndDate() {
+    return endDate;
+  }
+
+  @Override
+  public int compareTo(final AvailabilityWindow other) {
+    int byDate = startDate.compareTo(other.startDate);
+    if (byDate != 0) {
+      return byDate;
+    }
+    return Integer.compare(roomNumber, other.roomNumber);
+  }
+
+  @Override
+  public String toString() {
+    return roomNumber + ": " + startDate + " - " + endDate;
+  }
+
+  /**
+   * Custom implementation of .equals method.
+   *
+   * @param o object to test against
+   *
+   * @return true if o and this are the same, false otherwise
+   */
+  @Override
+  public boolean equals(Object o) {
+    if (o == this) {
+      return true;
+    }
+    if (o == null || o.getClass() != this.getClass()) {
+      return false;
+    }
+    AvailabilityWindow window = (AvailabilityWindow) o;
+    return roomNumber == window.roomNumber
+        && startDate.equals(window.startDate)
+        && endDate.equals(window.endDate);
+  }
+
+  /**
+   * Custom implementation of hashCode method.
+   *
+   * @return the hashCode for this AvailabilityWindow
+   */
+  @Override
+  public int hashCode() {
+    int hash = 7;
+    hash = hash * 31 + roomNumber;
+    hash = hash * 31 + startDate.hashCode();
+    hash = hash * 31 + endDate.hashCode();
+    return hash;
+  }
+}
@@ -2,21 +2,98 @@ package gr2116.core;
 
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.function.Predicate;
 
 /**
- * Hotel Class.
+ * Hotel Class. A hotel may be shared between threads, e.g. by the REST service.
+ * Adding and removing rooms and persons is guarded by a read-write lock, and
+ * reservations are made under a lock striped by room number, so bookings on
+ * different rooms proceed in parallel while a room can never be double-booked.
+ * Callers that looked at a room earlier can instead book it optimistically,
+ * against the version of the room's calendar they saw, which is committed
+ * with a compare-and-set and fails if the room has been booked since.
  */
 public class Hotel implements Iterable<HotelRoom> {
+  /**
+   * The number of locks the room numbers are striped over.
+   */
+  private static final int ROOM_LOCK_STRIPES = 64;
+
+  /**
+   * Passed as the expected room version when any version will do, see
+   * {@link #makeReservation(Person, int, LocalDate, LocalDate, long)}.
+   */
+  public static final long ANY_VERSION = -1;
+
+  /**
+   * Guards the room and person collections and the room indexes.
+   */
+  private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+  /**
+   * Locks held while making a reservation, striped by room number.
+   */
+  private final Lock[] roomLocks = new Lock[ROOM_LOCK_STRIPES];
+
   /**
    * The hotel's collection of rooms.
    */
   private final Map<String, HotelRoom> rooms = new LinkedHashMap<>();
 
+  /**
+   * The hotel's rooms, indexed by room number.
+   */
+  private final RoomIndex roomsByNumber = new RoomIndex();
+
+  /**
+   * The hotel's rooms, indexed by room type, floor and amenity.
+   */
+  private final RoomQueryIndex roomQueryIndex = new RoomQueryIndex();
+
+  /**
+   * The hotel's occupied room-nights, by room type and by floor.
+   */
+  private final OccupancyIndex occupancyIndex = new OccupancyIndex();
+
+  /**
+   * The seasonal rates and weekend uplift of the hotel's rooms.
+   */
+  private final RateCalendar rateCalendar = new RateCalendar();
+
+  /**
+   * Keeps the amenity index up to date when the amenities of a room change,
+   * and the occupancy index up to date when a room is booked.
+   */
+  private final HotelRoomListener roomListener = new HotelRoomListener() {
+    @Override
+    public void onAmenitiesChanged(final HotelRoom room) {
+      lock.writeLock().lock();
+      try {
+        roomQueryIndex.updateAmenities(room);
+      } finally {
+        lock.writeLock().unlock();
+      }
+    }
+
+    @Override
+    public void onReservationAdded(final HotelRoom room, final Reservation reservation) {
+      occupancyIndex.addReservation(room, reservation);
+    }
+  };
+
   /**
    * The hotel's collection of Persons.
    */
@@ -26,7 +103,9 @@ public class Hotel implements Iterable<HotelRoom> {
    * Constructs an empty hotel.
    */
   public Hotel() {
-
+    for (int i = 0; i < roomLocks.length; i++) {
+      roomLocks[i] = new ReentrantLock();
+    }
   }
 
   /**
@@ -35,7 +114,8 @@ public class Hotel implements Iterable<HotelRoom> {
    * @param rooms a collection of rooms.
    */
   public Hotel(final Collection<HotelRoom> rooms) {
-    rooms.forEach((room) -> this.rooms.put(String.valueOf(room.getNumber()), room));
+    this();
+    rooms.forEach(this::putRoom);
   }
 
   /**
@@ -62,16 +142,91 @@ public class Hotel implements Iterable<HotelRoom> {
     if (room == null) {
       throw new IllegalArgumentException("Room cannot be null");
     }
+    lock.writeLock().lock();
+    try {
+      return putRoom(room);
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Puts the given room in the hotel and its indexes, replacing any room
+   * with the same number. The caller must hold the write lock,
+   * unless the hotel is being constructed. Reservations are committed under
+   * the read lock, so the room is not booked through the hotel while it is indexed.
+   *
+   * @param room the HotelRoom to put
+   *
+   * @return The room that was replaced or null if no such room already existed
+   */
+  private HotelRoom putRoom(final HotelRoom room) {
+    HotelRoom oldRoom = roomsByNumber.put(room.getNumber(), room);
+    if (oldRoom != null) {
+      unindexRoom(oldRoom);
+    }
+    room.addListener(roomListener);
+    room.setRateCalendar(rateCalendar);
+    roomQueryIndex.add(room);
+    occupancyIndex.add(room);
     return rooms.put(String.valueOf(room.getNumber()), room);
   }
 
+  /**
+   * Removes the given room from the secondary indexes and stops listening to it.
+   * The caller must hold the write lock, like for {@link #putRoom(HotelRoom)}.
+   *
+   * @param room the HotelRoom to remove
+   */
+  private void unindexRoom(final HotelRoom room) {
+    roomQueryIndex.remove(room);
+    occupancyIndex.remove(room);
+    room.setRateCalendar(null);
+    room.removeListener(roomListener);
+  }
+
   /**
    * Removes the given room from the hotel.
    *
    * @param room the HotelRoom to remove
    */
   public final void removeRoom(final HotelRoom room) {
-    rooms.remove(String.valueOf(room.getNumber()));
+    lock.writeLock().lock();
+    try {
+      rooms.remove(String.valueOf(room.getNumber()));
+      HotelRoom removed = roomsByNumber.remove(room.getNumber());
+      if (removed != null) {
+        unindexRoom(removed);
+      }
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Returns the rate calendar used to price the hotel's rooms.
+   * Changes to it apply to every room in the hotel at once.
+   *
+   * @return the rate calendar
+   */
+  public final RateCalendar getRateCalendar() {
+    return rateCalendar;
+  }
+
+  /**
+   * Returns the room with the given room number.
+   *
+   * @param number the room number
+   *
+   * @return the room, or null if the hotel has no room with the given number
+   */
+  public final HotelRoom getRoom(final int number) {
+    lock.readLock().lock();
+    try {
+      return roomsByNumber.get(number);
+    } finally {
+      lock.readLock().unlock();
+    }
   }
 
   /**
@@ -87,7 +242,12 @@ public class Hotel implements Iterable<HotelRoom> {
     if (person == null) {
       throw new IllegalArgumentException("Person cant be null.");
     }
-    return persons.put(person.getUsername(), person);
+    lock.writeLock().lock();
+    try {
+      return persons.put(person.getUsername(), person);
+    } finally {
+      lock.writeLock().unlock();
+    }
   }
 
   /**
@@ -96,12 +256,19 @@ public class Hotel implements Iterable<HotelRoom> {
    * @param person person to be removed from the hotel.
    */
   public final void removePerson(final Person person) {
-    persons.remove(person.getUsername());
+    lock.writeLock().lock();
+    try {
+      persons.remove(person.getUsername());
+    } finally {
+      lock.writeLock().unlock();
+    }
   }
 
   /**
    * Returns the rooms of the hotel that matches the given predicate.
-   * Used in search.
+   * Used in search. If the predicate is a {@link HotelRoomFilter}, it is compiled once
+   * for the search, and if it filters on room type, floor or amenities, only the rooms
+   * in the smallest matching index postings are tested instead of every room in the hotel.
    *
    * @param predicate the given predicate.
    *
@@ -109,6 +276,19 @@ public class Hotel implements Iterable<HotelRoom> {
    */
   public final Collection<HotelRoom> getRooms(
       final Predicate<HotelRoom> predicate) {
+    if (predicate instanceof HotelRoomFilter filter) {
+      Predicate<HotelRoom> compiled = filter.compile();
+      lock.readLock().lock();
+      try {
+        Collection<HotelRoom> candidates = roomQueryIndex.candidates(filter);
+        if (candidates == null) {
+          candidates = rooms.values();
+        }
+        return candidates.stream().filter(compiled).toList();
+      } finally {
+        lock.readLock().unlock();
+      }
+    }
     return getRooms().stream().filter(predicate).toList();
   }
 
@@ -118,7 +298,12 @@ public class Hotel implements Iterable<HotelRoom> {
    * @return a collection of rooms.
    */
   public final Collection<HotelRoom> getRooms() {
-    return new ArrayList<>(rooms.values());
+    lock.readLock().lock();
+    try {
+      return new ArrayList<>(rooms.values());
+    } finally {
+      lock.readLock().unlock();
+    }
   }
 
   /**
@@ -127,13 +312,185 @@ public class Hotel implements Iterable<HotelRoom> {
    * @return new collection of the persons
    */
   public final Collection<Person> getPersons() {
-    return new ArrayList<>(persons.values());
+    lock.readLock().lock();
+    try {
+      return new ArrayList<>(persons.values());
+    } finally {
+      lock.readLock().unlock();
+    }
   }
 
   public final Collection<Person> getPersons(Predicate<Person> pred) {
     return getPersons().stream().filter(pred).toList();
   }
+
+  /**
+   * Returns the person with the given username.
+   *
+   * @param username the username
+   *
+   * @return the person, or null if no user has the given username
+   */
+  public final Person getPerson(final String username) {
+    lock.readLock().lock();
+    try {
+      return persons.get(username);
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Returns whether the given person is a user at the hotel,
+   * i.e. whether the hotel has a user with the person's username.
+   *
+   * @param person the person to check
+   *
+   * @return true if the person is a user, false otherwise
+   */
+  public final boolean hasPerson(final Person person) {
+    if (person == null) {
+      return false;
+    }
+    lock.readLock().lock();
+    try {
+      return persons.containsKey(person.getUsername());
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
   
+  /**
+   * Returns the share of room-nights that are occupied for each room type with rooms,
+   * over the nights from startDate up to, but not including, endDate.
+   * A reservation occupies the nights it is paid for, i.e. not its end date.
+   *
+   * @param startDate the first night
+   * @param endDate the day after the last night
+   *
+   * @return the occupancy rate of each room type, between 0 and 1
+   *
+   * @throws IllegalArgumentException if startDate or endDate is null.
+   * @throws IllegalArgumentException if startDate is chronologically after endDate
+   */
+  public final Map<HotelRoomType, Double> getOccupancyByRoomType(final LocalDate startDate,
+                                                                 final LocalDate endDate) {
+    checkPeriod(startDate, endDate);
+    return occupancyIndex.getRatesByRoomType(startDate, endDate);
+  }
+
+  /**
+   * Returns the share of room-nights that are occupied for each floor with rooms,
+   * over the nights from startDate up to, but not including, endDate.
+   *
+   * @param startDate the first night
+   * @param endDate the day after the last night
+   *
+   * @return the occupancy rate of each floor, between 0 and 1, ordered by floor
+   *
+   * @throws IllegalArgumentException if startDate or endDate is null.
+   * @throws IllegalArgumentException if startDate is chronologically after endDate
+   */
+  public final Map<Integer, Double> getOccupancyByFloor(final LocalDate startDate,
+                                                        final LocalDate endDate) {
+    checkPeriod(startDate, endDate);
+    return occupancyIndex.getRatesByFloor(startDate, endDate);
+  }
+
+  /**
+   * Returns the number of occupied room-nights over the nights from startDate
+   * up to, but not including, endDate.
+   *
+   * @param roomType the room type to count, or null to count every room
+   * @param startDate the first night
+   * @param endDate the day after the last night
+   *
+   * @return the number of occupied room-nights
+   *
+   * @throws IllegalArgumentException if startDate or endDate is null.
+   * @throws IllegalArgumentException if startDate is chronologically after endDate
+   */
+  public final long getOccupiedNights(final HotelRoomType roomType,
+                                      final LocalDate startDate,
+                                      final LocalDate endDate) {
+    checkPeriod(startDate, endDate);
+    return occupancyIndex.getOccupiedNights(roomType, startDate, endDate);
+  }
+
+  /**
+   * Validates a period to report on.
+   *
+   * @param startDate the start of the period
+   * @param endDate the end of the period
+   *
+   * @throws IllegalArgumentException if startDate or endDate is null.
+   * @throws IllegalArgumentException if startDate is chronologically after endDate
+   */
+  private static void checkPeriod(final LocalDate startDate, final LocalDate endDate) {
+    if (startDate == null || endDate == null) {
+      throw new IllegalArgumentException("Startdate or endDate cannot be null.");
+    }
+    if (startDate.isAfter(endDate)) {
+      throw new IllegalArgumentException(
+        "The startDate cannot be after the endDate.");
+    }
+  }
+
+  /**
+   * Finds the earliest stays of the given number of nights on the rooms matching the given
+   * predicate, e.g. when a Suite is first free for five nights. Each room's reservations are
+   * scanned once, and each room contributes at most its earliest stay. Once {@code limit}
+   * stays have been found, later rooms are only searched up to the latest of them.
+   * The predicate should only test the rooms themselves, e.g. a {@link HotelRoomFilter}
+   * without dates, since the dates are what is searched for.
+   *
+   * @param predicate the rooms to search.
+   * @param nights the number of nights to stay.
+   * @param fromDate the earliest date a stay may start.
+   * @param untilDate the latest date a stay may end.
+   * @param limit the maximum number of stays to return.
+   *
+   * @return the earliest stays, ordered by start date and then by room number
+   *
+   * @throws IllegalArgumentException if predicate, fromDate or untilDate is null.
+   * @throws IllegalArgumentException if nights or limit is not positive.
+   */
+  public final List<AvailabilityWindow> findAvailableWindows(
+      final Predicate<HotelRoom> predicate,
+      final int nights,
+      final LocalDate fromDate,
+      final LocalDate untilDate,
+      final int limit) {
+    if (predicate == null || fromDate == null || untilDate == null) {
+      throw new IllegalArgumentException("Predicate, fromDate or untilDate cannot be null.");
+    }
+    if (nights < 1 || limit < 1) {
+      throw new IllegalArgumentException("Nights and limit must be positive.");
+    }
+    // The latest of the earliest stays found so far is at the head
+    PriorityQueue<AvailabilityWindow> earliest =
+        new PriorityQueue<>(Comparator.reverseOrder());
+    LocalDate lastDate = untilDate;
+    for (HotelRoom room : getRooms(predicate)) {
+      AvailabilityWindow window = room.findAvailableWindow(fromDate, nights, lastDate);
+      if (window == null) {
+        continue;
+      }
+      if (earliest.size() < limit) {
+        earliest.add(window);
+      } else if (window.compareTo(earliest.peek()) < 0) {
+        earliest.poll();
+        earliest.add(window);
+      }
+      if (earliest.size() == limit) {
+        lastDate = earliest.peek().getEndDate();
+      }
+    }
+    List<AvailabilityWindow> windows = new ArrayList<>(earliest);
+    Collections.sort(windows);
+    return windows;
+  }
+
   /**
    * <p>
    * Makes a reservation on the room with the specified {@code hotelRoomNumber}, starting from 
@@ -144,10 +501,15 @@ public class Hotel implements Iterable<HotelRoom> {
    * <p>
    * If everything is valid, the method creates a new Reservation object with
    * a (pseudorandom) id, the room with the given {@code hotelRoomNumber} and start/endDate.
-   * It then adds the reservation in the hotelroom
-   * with {@code hotelRoomNumber} collection of reservations,
+   * It debits the price of the booking from the person in one step with checking the
+   * balance, then adds the reservation in the hotelroom
+   * with {@code hotelRoomNumber} collection of reservations, refunding the person if
+   * the room was booked in the meantime,
    * and then it adds the reservation in this Person objects reservation collection.
-   * Finally it subtracs the price of the booking.
+   * </p>
+   * <p>
+   * The booking is made under a lock striped by room number, so bookings of the same
+   * room wait for each other instead of retrying.
    * </p>
    *
    * @param person - the person to make the reservation
@@ -156,8 +518,8 @@ public class Hotel implements Iterable<HotelRoom> {
    * @param endDate - {@code LocalDate} of when the reservation should end.
    *
    * @throws IllegalArgumentException if person, startDate or endDate is null.
-   * @throws IllegalStateException if the start date is before today.
    * @throws IllegalArgumentException if startDate is chronologically after endDate
+   * @throws IllegalStateException if the start date is before today.
    * @throws IllegalArgumentException if the hotel room number is not a room in the hotel.
    * @throws IllegalArgumentException if the Person is not a user at the Hotel.
    * @throws IllegalStateException  if the {@code Person} does not have enough balance
@@ -169,40 +531,275 @@ public class Hotel implements Iterable<HotelRoom> {
                                     final int hotelRoomNumber,
                                     final LocalDate startDate,
                                     final LocalDate endDate) {
+    checkReservation(person, startDate, endDate);
+    HotelRoom hotelRoom = getRoom(hotelRoomNumber);
+    if (hotelRoom == null) {
+      throw new IllegalArgumentException(
+        "The specified room number is not the number of a room in the hotel.");
+    }
+    long price = hotelRoom.getPriceCents(startDate, endDate);
+    Lock roomLock = roomLock(hotelRoomNumber);
+    roomLock.lock();
+    try {
+      book(person, hotelRoom, startDate, endDate, price, ANY_VERSION);
+    } finally {
+      roomLock.unlock();
+    }
+  }
+
+  /**
+   * Makes a reservation like {@link #makeReservation(Person, int, LocalDate, LocalDate)},
+   * but only if the room still has the given version, i.e. if it has not been
+   * booked since the caller looked at it. The booking is made without taking the
+   * room's lock, and is committed with a compare-and-set on the version.
+   *
+   * @param person - the person to make the reservation
+   * @param hotelRoomNumber - the room number of the room that the Person object wants to book.
+   * @param startDate - {@code LocalDate} of when the reservation should start.
+   * @param endDate - {@code LocalDate} of when the reservation should end.
+   * @param expectedVersion - the version of the room the caller saw, or {@link #ANY_VERSION}
+   *                          to book the room whatever its version.
+   *
+   * @throws ReservationConflictException if the room has a different version.
+   * @throws IllegalArgumentException if person, startDate or endDate is null.
+   * @throws IllegalArgumentException if startDate is chronologically after endDate
+   * @throws IllegalStateException if the start date is before today.
+   * @throws IllegalArgumentException if the hotel room number is not a room in the hotel.
+   * @throws IllegalArgumentException if the Person is not a user at the Hotel.
+   * @throws IllegalStateException  if the {@code Person} does not have enough balance
+   *                                to pay for the reservation.
+   * @throws IllegalStateException  if hotelRoom is unavailable, e.g already booked, in
+   *                                some period between startDate and endDate. 
+   */
+  public final void makeReservation(final Person person,
+                                    final int hotelRoomNumber,
+                                    final LocalDate startDate,
+                                    final LocalDate endDate,
+                                    final long expectedVersion) {
+    checkReservation(person, startDate, endDate);
+    HotelRoom hotelRoom = getRoom(hotelRoomNumber);
+    if (hotelRoom == null) {
+      throw new IllegalArgumentException(
+        "The specified room number is not the number of a room in the hotel.");
+    }
+    book(person, hotelRoom, startDate, endDate,
+        hotelRoom.getPriceCents(startDate, endDate), expectedVersion);
+  }
+
+  /**
+   * Books the given room for the given person, committing the reservation with
+   * a compare-and-set on the room's version and retrying if someone else booked
+   * the room in the meantime. Under the room's lock, that only happens when an
+   * optimistic or group booking of the same room commits first.
+   *
+   * @param person the person to make the reservation
+   * @param hotelRoom the room to book
+   * @param startDate when the reservation should start
+   * @param endDate when the reservation should end
+   * @param price the price of the stay in cents
+   * @param expectedVersion the version of the room the caller saw, or ANY_VERSION
+   *
+   * @throws ReservationConflictException if the room has a different version.
+   * @throws IllegalArgumentException if the room number or dates cannot be reserved.
+   * @throws IllegalStateException if the person cannot afford the reservation.
+   * @throws IllegalStateException if the room is unavailable.
+   */
+  private void book(final Person person,
+                    final HotelRoom hotelRoom,
+                    final LocalDate startDate,
+                    final LocalDate endDate,
+                    final long price,
+                    final long expectedVersion) {
+    // Made before the person is charged, as it throws if the stay cannot be packed
+    Reservation reservation = new Reservation(hotelRoom, startDate, endDate);
+    while (true) {
+      long version = hotelRoom.getVersion();
+      if (expectedVersion != ANY_VERSION && version != expectedVersion) {
+        throw new ReservationConflictException(
+          "The room has been booked since version " + expectedVersion + ".");
+      }
+      if (!hotelRoom.isAvailable(startDate, endDate)) {
+        throw new IllegalStateException(
+          "The room is not available at this time.");
+      }
+      if (!person.tryDebit(price)) {
+        throw new IllegalStateException(
+          "The person cannot afford this reservation.");
+      }
+      boolean added = false;
+      // Rooms are indexed under the write lock, so the occupancy index counts
+      // the reservation either when the room is indexed or when it is added
+      lock.readLock().lock();
+      try {
+        added = hotelRoom.tryAddReservation(reservation, version);
+      } finally {
+        lock.readLock().unlock();
+        if (!added) {
+          // Refund the person, the room was booked by someone else in the meantime
+          person.addBalanceCents(price);
+        }
+      }
+      if (added) {
+        person.addReservation(reservation);
+        return;
+      }
+    }
+  }
+
+  /**
+   * Returns the lock guarding reservations on the room with the given number.
+   *
+   * @param hotelRoomNumber the room number
+   *
+   * @return the lock of the room's stripe
+   */
+  private Lock roomLock(final int hotelRoomNumber) {
+    return roomLocks[Math.floorMod(hotelRoomNumber, ROOM_LOCK_STRIPES)];
+  }
+
+  /**
+   * <p>
+   * Makes a reservation on every room with one of the given {@code roomNumbers}, starting
+   * from {@code startDate} and ending on {@code endDate}, as one booking: either every
+   * room is reserved and the person is charged the total price once, or nothing
+   * is reserved and the person is not charged.
+   * </p>
+   * <p>
+   * The rooms are validated together, then claimed one by one in ascending room number,
+   * so that two overlapping group bookings always contend for the same room first
+   * instead of each holding a room the other needs. If any room has been booked since
+   * it was validated, every claim is released and the booking is retried.
+   * </p>
+   *
+   * @param person - the person to make the reservations
+   * @param roomNumbers - the room numbers of the rooms to book.
+   * @param startDate - {@code LocalDate} of when the reservations should start.
+   * @param endDate - {@code LocalDate} of when the reservations should end.
+   *
+   * @return the reservations that were made, ordered by room number.
+   *
+   * @throws IllegalArgumentException if person, roomNumbers, startDate or endDate is null.
+   * @throws IllegalArgumentException if roomNumbers is empty, or contains null or
+   *                                  the same room number twice.
+   * @throws IllegalArgumentException if startDate is chronologically after endDate
+   * @throws IllegalStateException if the start date is before today.
+   * @throws IllegalArgumentException if a room number is not a room in the hotel.
+   * @throws IllegalArgumentException if the Person is not a user at the Hotel.
+   * @throws IllegalStateException  if the {@code Person} does not have enough balance
+   *                                to pay for all the reservations.
+   * @throws IllegalStateException  if any of the rooms is unavailable in
+   *                                some period between startDate and endDate.
+   */
+  public final List<Reservation> makeGroupReservation(final Person person,
+                                                      final Collection<Integer> roomNumbers,
+                                                      final LocalDate startDate,
+                                                      final LocalDate endDate) {
+    if (roomNumbers == null || roomNumbers.isEmpty()) {
+      throw new IllegalArgumentException("At least one room number must be given.");
+    }
+    checkReservation(person, startDate, endDate);
+    int[] numbers = new int[roomNumbers.size()];
+    int count = 0;
+    for (Integer number : roomNumbers) {
+      if (number == null) {
+        throw new IllegalArgumentException("Room numbers cannot be null.");
+      }
+      numbers[count++] = number;
+    }
+    Arrays.sort(numbers);
+
+    HotelRoom[] group = new HotelRoom[numbers.length];
+    Reservation[] reservations = new Reservation[numbers.length];
+    long price = 0;
+    for (int i = 0; i < numbers.length; i++) {
+      if (i > 0 && numbers[i] == numbers[i - 1]) {
+        throw new IllegalArgumentException(
+          "Room " + numbers[i] + " is given more than once.");
+      }
+      group[i] = getRoom(numbers[i]);
+      if (group[i] == null) {
+        throw new IllegalArgumentException(
+          "Room " + numbers[i] + " is not a room in the hotel.");
+      }
+      price = Math.addExact(price, group[i].getPriceCents(startDate, endDate));
+      reservations[i] = new Reservation(group[i], startDate, endDate);
+    }
+
+    long[] versions = new long[group.length];
+    while (true) {
+      for (int i = 0; i < group.length; i++) {
+        versions[i] = group[i].getVersion();
+        if (!group[i].isAvailable(startDate, endDate)) {
+          throw new IllegalStateException(
+            "Room " + numbers[i] + " is not available at this time.");
+        }
+      }
+      int claimed = 0;
+      while (claimed < group.length && group[claimed].tryClaim(versions[claimed])) {
+        claimed++;
+      }
+      boolean committed = false;
+      try {
+        if (claimed == group.length) {
+          if (!person.tryDebit(price)) {
+            throw new IllegalStateException(
+              "The person cannot afford these reservations.");
+          }
+          lock.readLock().lock();
+          try {
+            for (int i = 0; i < group.length; i++) {
+              group[i].commitClaimed(reservations[i]);
+            }
+          } finally {
+            lock.readLock().unlock();
+          }
+          committed = true;
+        }
+      } finally {
+        if (!committed) {
+          for (int i = 0; i < claimed; i++) {
+            group[i].releaseClaim();
+          }
+        }
+      }
+      if (committed) {
+        for (Reservation reservation : reservations) {
+          person.addReservation(reservation);
+        }
+        return List.of(reservations);
+      }
+      Thread.onSpinWait();
+    }
+  }
+
+  /**
+   * Validates the parts of a reservation that do not depend on the room.
+   *
+   * @param person the person to make the reservation
+   * @param startDate when the reservation should start
+   * @param endDate when the reservation should end
+   *
+   * @throws IllegalArgumentException if person, startDate or endDate is null.
+   * @throws IllegalArgumentException if the Person is not a user at the Hotel.
+   * @throws IllegalArgumentException if startDate is chronologically after endDate
+   * @throws IllegalStateException if the start date is before today.
+   */
+  private void checkReservation(final Person person,
+                                final LocalDate startDate,
+                                final LocalDate endDate) {
     if (person == null || startDate == null || endDate == null) {
       throw new IllegalArgumentException();
     }
-    if (!getPersons().contains(person)) {
+    if (!hasPerson(person)) {
       throw new IllegalArgumentException("Person is not a user.");
     }
-    if (startDate.isBefore(LocalDate.now())) {
-      throw new IllegalStateException("Cant make a reservation backwards in time.");
-    }
     if (startDate.isAfter(endDate)) {
       throw new IllegalArgumentException(
         "The startDate cannot be after the endDate.");
     }
-    Collection<HotelRoom> roomMatches = getRooms((r) -> r.getNumber() == hotelRoomNumber);
-    if (roomMatches.size() == 0) {
-      throw new IllegalArgumentException(
-        "The specified room number is not the number of a room in the hotel.");
-    }
-
-    HotelRoom hotelRoom = roomMatches.iterator().next();
-    double price = hotelRoom.getPrice(startDate, endDate);
-    if (price > person.getBalance()) {
-      throw new IllegalStateException(
-        "The person cannot afford this reservation.");
-    }
-    if (!hotelRoom.isAvailable(startDate, endDate)) {
-      throw new IllegalStateException(
-        "The room is not available at this time.");
+    if (startDate.isBefore(LocalDate.now())) {
+      throw new IllegalStateException("Cant make a reservation backwards in time.");
     }
-
-    Reservation reservation = new Reservation(hotelRoom, startDate, endDate);
-    hotelRoom.addReservation(reservation);
-    person.addReservation(reservation);
-    person.subtractBalance(price);
   }
 
   @Override
@@ -0,0 +1,257 @@
+package gr2116.core;
+
+import java.time.YearMonth;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * HotelReport class. Revenue and booking figures for a whole hotel,
+ * as computed by {@link HotelReporter#createReport(Hotel, int)}.
+ * Revenue is counted at the rooms' current prices, as quoted by
+ * {@link HotelRoom#getPriceCents(java.time.LocalDate, java.time.LocalDate)},
+ * and a night belongs to the month it starts in.
+ */
+public final class HotelReport {
+  /**
+   * The revenue in cents, by room type.
+   */
+  private final Map<HotelRoomType, Long> revenueByRoomType;
+  /**
+   * The revenue in cents, by floor.
+   */
+  private final Map<Integer, Long> revenueByFloor;
+  /**
+   * The revenue in cents, by month.
+   */
+  private final Map<YearMonth, Long> revenueByMonth;
+  /**
+   * The total revenue in cents.
+   */
+  private final long totalRevenueCents;
+  /**
+   * The number of reservations.
+   */
+  private final long reservationCount;
+  /**
+   * The number of booked nights.
+   */
+  private final long nightCount;
+  /**
+   * The guests who have spent the most, most first.
+   */
+  private final List<GuestSpend> topGuests;
+
+  /**
+   * Constructs a report from the given figures.
+   *
+   * @param revenueByRoomType the revenue in cents, by room type
+   * @param revenueByFloor the revenue in cents, by floor
+   * @param revenueByMonth the revenue in cents, by month
+   * @param totalRevenueCents the total revenue in cents
+   * @param reservationCount the number of reservations
+   * @param nightCount the number of booked nights
+   * @param topGuests the guests who have spent the most, most first
+   */
+  HotelReport(final Map<HotelRoomType, Long> revenueByRoomType,
+              final Map<Integer, Long> revenueByFloor,
+              final Map<YearMonth, Long> revenueByMonth,
+              final long totalRevenueCents,
+              final long reservationCount,
+              final long nightCount,
+              final List<GuestSpend> topGuests) {
+    this.revenueByRoomType = Collections.unmodifiableMap(new EnumMap<>(revenueByRoomType));
+    this.revenueByFloor = Collections.unmodifiableMap(new TreeMap<>(revenueByFloor));
+    this.revenueByMonth = Collections.unmodifiableMap(new TreeMap<>(revenueByMonth));
+    this.totalRevenueCents = totalRevenueCents;
+    this.reservationCount = reservationCount;
+    this.nightCount = nightCount;
+    this.topGuests = List.copyOf(topGuests);
+  }
+
+  /**
+   * Returns the revenue in cents of each room type that has rooms.
+   *
+   * @return revenue in cents, by room type
+   */
+  public Map<HotelRoomType, Long> getRevenueByRoomType() {
+    return revenueByRoomType;
+  }
+
+  /**
+   * Returns the revenue in cents of each floor that has rooms, ordered by floor.
+   *
+   * @return revenue in cents, by floor
+   */
+  public Map<Integer, Long> getRevenueByFloor() {
+    return revenueByFloor;
+  }
+
+  /**
+   * Returns the revenue in cents of each month that has booked nights, ordered by month.
+   *
+   * @return revenue in cents, by month
+   */
+  public Map<YearMonth, Long> getRevenueByMonth() {
+    return revenueByMonth;
+  }
+
+  /**
+   * Returns the total revenue.
+   *
+   * @return revenue
+   */
+  public double getTotalRevenue() {
+    return Money.toAmount(totalRevenueCents);
+  }
+
+  /**
+   * Returns the total revenue in cents.
+   *
+   * @return revenue in cents
+   */
+  public long getTotalRevenueCents() {
+    return totalRevenueCents;
+  }
+
+  /**
+   * Returns the number of reservations.
+   *
+   * @return reservation count
+   */
+  public long getReservationCount() {
+    return reservationCount;
+  }
+
+  /**
+   * Returns the number of booked nights.
+   *
+   * @return night count
+   */
+  public long getNightCount() {
+    return nightCount;
+  }
+
+  /**
+   * Returns the average number of nights per reservation, or 0 if there are none.
+   *
+   * @return average length of stay
+   */
+  public double getAverageLengthOfStay() {
+    return reservationCount == 0 ? 0 : (double) nightCount / reservationCount;
+  }
+
+  /**
+   * Returns the guests who have spent the most, most first.
+   * Guests who have spent the same are ordered by username.
+   *
+   * @return top guests
+   */
+  public List<GuestSpend> getTopGuests() {
+    return topGuests;
+  }
+
+  /**
+   * GuestSpend class. How much a guest has spent on reservations.
+   */
+  public static final class GuestSpend implements Comparable<GuestSpend> {
+    /**
+     * The guest's username.
+     */
+    private final String username;
+    /**
+     * The amount spent, in cents.
+     */
+    private final long spentCents;
+
+    /**
+     * Constructs the spend of the guest with the given username.
+     *
+     * @param username the guest's username
+     * @param spentCents the amount spent, in cents
+     */
+    public GuestSpend(final String username, final long spentCents) {
+      this.username = username;
+      this.spentCents = spentCents;
+    }
+
+    /**
+     * Returns the guest's username.
+     *
+     * @return username
+     */
+    public String getUsername() {
+      return username;
+    }
+
+    /**
+     * Returns the amount spent.
+     *
+     * @return amount
+     */
+    public double getSpent() {
+      return Money.toAmount(spentCents);
+    }
+
+    /**
+     * Returns the amount spent in cents.
+     *
+     * @return amount in cents
+     */
+    public long getSpentCents() {
+      return spentCents;
+    }
+
+    /**
+     * Orders guests who have spent more first, then by username.
+     *
+     * @param other the spend to compare to
+     *
+     * @return the comparison
+     */
+    @Override
+    public int compareTo(final GuestSpend other) {
+      int bySpend = Long.compare(other.spentCents, spentCents);
+      if (bySpend != 0) {
+        return bySpend;
+      }
+      return username.compareTo(other.username);
+    }
+
+    @Override
+    public String toString() {
+      return username + ": " + getSpent();
+    }
+
+    /**
+     * Custom implementation of .equals method.
+     *
+     * @param o object to test against
+     *
+     * @return true if o and this are the same, false otherwise
+     */
+    @Override
+    public boolean equals(Object o) {
+      if (o == this) {
+        return true;
+      }
+      if (o == null || o.getClass() != this.getClass()) {
+        return false;
+      }
+      GuestSpend spend = (GuestSpend) o;
+      return spentCents == spend.spentCents && username.equals(spend.username);
+    }
+
+    /**
+     * Custom implementation of hashCode method.
+     *
+     * @return the hashCode for this GuestSpend
+     */
+    @Override
+    public int hashCode() {
+      return 31 * username.hashCode() + Long.hashCode(spentCents);
+    }
+  }
+}
@@ -0,0 +1,437 @@
+package gr2116.core;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Utility class for reporting on a whole hotel.
+ * The rooms and the persons are split between the threads of a fork-join pool.
+ * Each task sums its share into arrays of cents, which are merged as the tasks
+ * are joined, so no state is shared between threads while reservations are walked.
+ */
+public final class HotelReporter {
+  /**
+   * The most rooms a task walks without splitting.
+   */
+  static final int ROOMS_PER_TASK = 256;
+  /**
+   * The most persons a task walks without splitting.
+   */
+  static final int PERSONS_PER_TASK = 256;
+
+  /**
+   * The number of floors, as a floor is the first digit of the room number.
+   */
+  private static final int FLOORS = 10;
+
+  private HotelReporter() {
+  }
+
+  /**
+   * Creates a report of the given hotel on the common fork-join pool.
+   *
+   * @param hotel the hotel
+   * @param topGuests the number of top guests to report
+   *
+   * @return the report
+   *
+   * @throws IllegalArgumentException if hotel is null or topGuests is negative
+   */
+  public static HotelReport createReport(final Hotel hotel, final int topGuests) {
+    return createReport(hotel, topGuests, ForkJoinPool.commonPool());
+  }
+
+  /**
+   * Creates a report of the given hotel on the given fork-join pool.
+   * Reservations made while the report is created may or may not be counted.
+   *
+   * @param hotel the hotel
+   * @param topGuests the number of top guests to report
+   * @param pool the pool to run on
+   *
+   * @return the report
+   *
+   * @throws IllegalArgumentException if hotel or pool is null or topGuests is negative
+   */
+  public static HotelReport createReport(final Hotel hotel, final int topGuests,
+                                         final ForkJoinPool pool) {
+    if (hotel == null || pool == null) {
+      throw new IllegalArgumentException("Hotel and pool cannot be null.");
+    }
+    if (topGuests < 0) {
+      throw new IllegalArgumentException("The number of top guests cannot be negative.");
+    }
+    HotelRoom[] rooms = hotel.getRooms().toArray(new HotelRoom[0]);
+    Person[] persons = hotel.getPersons().toArray(new Person[0]);
+    Prices prices = new Prices(rooms);
+
+    ForkJoinTask<GuestTotals> guestTask =
+        pool.submit(new GuestTask(persons, 0, persons.length, prices, topGuests));
+    RoomTotals roomTotals = pool.invoke(new RoomTask(rooms, 0, rooms.length));
+    GuestTotals guestTotals = guestTask.join();
+    return roomTotals.toReport(guestTotals.toList());
+  }
+
+  /**
+   * The prices of the rooms, by room number.
+   */
+  private static final class Prices {
+    /**
+     * The room numbers, in ascending order.
+     */
+    private final int[] numbers;
+    /**
+     * The room with the number at the same index.
+     */
+    private final HotelRoom[] rooms;
+
+    /**
+     * Constructs the prices of the given rooms.
+     *
+     * @param rooms the rooms
+     */
+    Prices(final HotelRoom[] rooms) {
+      this.rooms = rooms.clone();
+      Arrays.sort(this.rooms, Comparator.comparingInt(HotelRoom::getNumber));
+      numbers = new int[this.rooms.length];
+      for (int i = 0; i < this.rooms.length; i++) {
+        numbers[i] = this.rooms[i].getNumber();
+      }
+    }
+
+    /**
+     * Returns the price in cents of the given reservation.
+     *
+     * @param reservation the reservation
+     *
+     * @return price in cents, or 0 if the hotel has no room with its number
+     */
+    long get(final Reservation reservation) {
+      int index = Arrays.binarySearch(numbers, reservation.getRoomNumber());
+      if (index < 0) {
+        return 0;
+      }
+      return rooms[index].getPriceCents(reservation.getStartDate(), reservation.getEndDate());
+    }
+  }
+
+  /**
+   * Revenue and bookings summed over some of the rooms.
+   */
+  private static final class RoomTotals {
+    /**
+     * The number of rooms, by room type ordinal.
+     */
+    private final int[] roomsByRoomType = new int[HotelRoomType.values().length];
+    /**
+     * The number of rooms, by floor.
+     */
+    private final int[] roomsByFloor = new int[FLOORS];
+    /**
+     * The revenue in cents, by room type ordinal.
+     */
+    private final long[] byRoomType = new long[HotelRoomType.values().length];
+    /**
+     * The revenue in cents, by floor.
+     */
+    private final long[] byFloor = new long[FLOORS];
+    /**
+     * The month of the first element of byMonth, as months since year zero.
+     */
+    private int firstMonth;
+    /**
+     * The revenue in cents, by month.
+     */
+    private long[] byMonth = new long[0];
+    private long total;
+    private long reservations;
+    private long nights;
+
+    /**
+     * Adds the given room and its reservations.
+     *
+     * @param room the room
+     */
+    void add(final HotelRoom room) {
+      int type = room.getRoomType() == null ? -1 : room.getRoomType().ordinal();
+      int floor = room.getFloor();
+      if (type >= 0) {
+        roomsByRoomType[type]++;
+      }
+      roomsByFloor[floor]++;
+      Iterator<Reservation> iterator = room.getReservations();
+      while (iterator.hasNext()) {
+        Reservation reservation = iterator.next();
+        long cents = room.getPriceCents(reservation.getStartDate(), reservation.getEndDate());
+        if (type >= 0) {
+          byRoomType[type] += cents;
+        }
+        byFloor[floor] += cents;
+        total += cents;
+        reservations++;
+        nights += reservation.getEndDay() - reservation.getStartDay();
+        addMonths(room, reservation.getStartDay(), reservation.getEndDay());
+      }
+    }
+
+    /**
+     * Adds the revenue of the nights from startDay up to, but not including, endDay
+     * to the months the nights start in.
+     *
+     * @param room the room
+     * @param startDay the first night, as an epoch day
+     * @param endDay the day after the last night, as an epoch day
+     */
+    private void addMonths(final HotelRoom room, final long startDay, final long endDay) {
+      long day = startDay;
+      while (day < endDay) {
+        LocalDate date = LocalDate.ofEpochDay(day);
+        long nextMonth = date.withDayOfMonth(1).plusMonths(1).toEpochDay();
+        long last = Math.min(endDay, nextMonth);
+        long cents = room.getPriceCents(date, LocalDate.ofEpochDay(last));
+        addMonth(date.getYear() * 12 + date.getMonthValue() - 1, cents);
+        day = last;
+      }
+    }
+
+    /**
+     * Adds the given revenue to the given month, growing byMonth if needed.
+     *
+     * @param month the month, as months since year zero
+     * @param cents the revenue in cents
+     */
+    private void addMonth(final int month, final long cents) {
+      if (byMonth.length == 0) {
+        firstMonth = month;
+        byMonth = new long[1];
+      } else if (month < firstMonth || month >= firstMonth + byMonth.length) {
+        int from = Math.min(month, firstMonth);
+        int to = Math.max(month, firstMonth + byMonth.length - 1);
+        long[] grown = new long[to - from + 1];
+        System.arraycopy(byMonth, 0, grown, firstMonth - from, byMonth.length);
+        firstMonth = from;
+        byMonth = grown;
+      }
+      byMonth[month - firstMonth] += cents;
+    }
+
+    /**
+     * Adds the totals of other to these.
+     *
+     * @param other the totals to merge
+     *
+     * @return these totals
+     */
+    RoomTotals merge(final RoomTotals other) {
+      for (int i = 0; i < byRoomType.length; i++) {
+        roomsByRoomType[i] += other.roomsByRoomType[i];
+        byRoomType[i] += other.byRoomType[i];
+      }
+      for (int i = 0; i < FLOORS; i++) {
+        roomsByFloor[i] += other.roomsByFloor[i];
+        byFloor[i] += other.byFloor[i];
+      }
+      for (int i = 0; i < other.byMonth.length; i++) {
+        addMonth(other.firstMonth + i, other.byMonth[i]);
+      }
+      total += other.total;
+      reservations += other.reservations;
+      nights += other.nights;
+      return this;
+    }
+
+    /**
+     * Returns a report of these totals.
+     *
+     * @param topGuests the guests who have spent the most, most first
+     *
+     * @return the report
+     */
+    HotelReport toReport(final List<HotelReport.GuestSpend> topGuests) {
+      Map<HotelRoomType, Long> roomTypes = new EnumMap<>(HotelRoomType.class);
+      for (HotelRoomType type : HotelRoomType.values()) {
+        if (roomsByRoomType[type.ordinal()] > 0) {
+          roomTypes.put(type, byRoomType[type.ordinal()]);
+        }
+      }
+      Map<Integer, Long> floors = new TreeMap<>();
+      for (int floor = 0; floor < FLOORS; floor++) {
+        if (roomsByFloor[floor] > 0) {
+          floors.put(floor, byFloor[floor]);
+        }
+      }
+      Map<YearMonth, Long> months = new TreeMap<>();
+      for (int i = 0; i < byMonth.length; i++) {
+        if (byMonth[i] != 0) {
+          int month = firstMonth + i;
+          months.put(YearMonth.of(month / 12, month % 12 + 1), byMonth[i]);
+        }
+      }
+      return new HotelReport(roomTypes, floors, months, total, reservations, nights, topGuests);
+    }
+  }
+
+  /**
+   * Sums the revenue and bookings of a range of rooms.
+   */
+  private static final class RoomTask extends RecursiveTask<RoomTotals> {
+    private static final long serialVersionUID = 1L;
+
+    private final transient HotelRoom[] rooms;
+    private final int from;
+    private final int to;
+
+    /**
+     * Constructs a task for the rooms from index from up to, but not including, index to.
+     *
+     * @param rooms the rooms
+     * @param from the first index
+     * @param to the index after the last
+     */
+    RoomTask(final HotelRoom[] rooms, final int from, final int to) {
+      this.rooms = rooms;
+      this.from = from;
+      this.to = to;
+    }
+
+    @Override
+    protected RoomTotals compute() {
+      if (to - from <= ROOMS_PER_TASK) {
+        RoomTotals totals = new RoomTotals();
+        for (int i = from; i < to; i++) {
+          totals.add(rooms[i]);
+        }
+        return totals;
+      }
+      int middle = (from + to) >>> 1;
+      RoomTask left = new RoomTask(rooms, from, middle);
+      left.fork();
+      RoomTotals right = new RoomTask(rooms, middle, to).compute();
+      return left.join().merge(right);
+    }
+  }
+
+  /**
+   * The guests who have spent the most among some of the persons.
+   */
+  private static final class GuestTotals {
+    /**
+     * The top guests, with the one who has spent the least at the head.
+     */
+    private final PriorityQueue<HotelReport.GuestSpend> top =
+        new PriorityQueue<>(Comparator.reverseOrder());
+    private final int limit;
+
+    /**
+     * Constructs empty totals keeping at most limit guests.
+     *
+     * @param limit the number of guests to keep
+     */
+    GuestTotals(final int limit) {
+      this.limit = limit;
+    }
+
+    /**
+     * Adds the given guest, if they are among the top guests.
+     *
+     * @param spend the guest's spend
+     */
+    void add(final HotelReport.GuestSpend spend) {
+      if (top.size() < limit) {
+        top.add(spend);
+      } else if (limit > 0 && spend.compareTo(top.peek()) < 0) {
+        top.poll();
+        top.add(spend);
+      }
+    }
+
+    /**
+     * Adds the top guests of other to these.
+     *
+     * @param other the totals to merge
+     *
+     * @return these totals
+     */
+    GuestTotals merge(final GuestTotals other) {
+      for (HotelReport.GuestSpend spend : other.top) {
+        add(spend);
+      }
+      return this;
+    }
+
+    /**
+     * Returns the top guests, most first.
+     *
+     * @return top guests
+     */
+    List<HotelReport.GuestSpend> toList() {
+      List<HotelReport.GuestSpend> list = new ArrayList<>(top);
+      Collections.sort(list);
+      return list;
+    }
+  }
+
+  /**
+   * Finds the top guests among a range of persons.
+   */
+  private static final class GuestTask extends RecursiveTask<GuestTotals> {
+    private static final long serialVersionUID = 1L;
+
+    private final transient Person[] persons;
+    private final int from;
+    private final int to;
+    private final transient Prices prices;
+    private final int limit;
+
+    /**
+     * Constructs a task for the persons from index from up to, but not including, index to.
+     *
+     * @param persons the persons
+     * @param from the first index
+     * @param to the index after the last
+     * @param prices the room prices
+     * @param limit the number of guests to keep
+     */
+    GuestTask(final Person[] persons, final int from, final int to,
+              final Prices prices, final int limit) {
+      this.persons = persons;
+      this.from = from;
+      this.to = to;
+      this.prices = prices;
+      this.limit = limit;
+    }
+
+    @Override
+    protected GuestTotals compute() {
+      if (to - from <= PERSONS_PER_TASK) {
+        GuestTotals totals = new GuestTotals(limit);
+        for (int i = from; i < to; i++) {
+          long spent = 0;
+          for (Reservation reservation : persons[i].getReservations()) {
+            spent += prices.get(reservation);
+          }
+          totals.add(new HotelReport.GuestSpend(persons[i].getUsername(), spent));
+        }
+        return totals;
+      }
+      int middle = (from + to) >>> 1;
+      GuestTask left = new GuestTask(persons, from, middle, prices, limit);
+      left.fork();
+      GuestTotals right = new GuestTask(persons, middle, to, prices, limit).compute();
+      return left.join().merge(right);
+    }
+  }
+}
@@ -1,21 +1,30 @@
 package gr2116.core;
 
 import java.time.LocalDate;
-import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.EnumSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
- * HotelRoom class. Contains a Collection of amenities, a ReservationCalendar,
- * a roomType, a number and a price.
+ * HotelRoom class. Contains a mask of amenities, a ReservationCalendar,
+ * a roomType, a number and a daily price. What a stay costs also depends on
+ * the RateCalendar of the hotel the room is in, and on the room's price overrides.
  */
 public class HotelRoom {
   /**
-   * A collection of amenities included in the hotel room.
+   * The amenities included in the hotel room, one bit per amenity.
+   * See {@link Amenity#mask()}. Updated with compare-and-set, as filters read it
+   * from other threads.
    */
-  private final Collection<Amenity> amenities = EnumSet.noneOf(Amenity.class);
+  private final AtomicInteger amenities = new AtomicInteger();
+  /**
+   * Collection of HotelRoomListener's listening to this room, e.g. the hotels indexing it.
+   * Reservations may be added from several threads, which all notify the listeners.
+   */
+  private final Collection<HotelRoomListener> listeners = new CopyOnWriteArrayList<>();
   /**
    * A calendar keeping track of when the room is reserved.
    */
@@ -30,25 +39,48 @@ public class HotelRoom {
    */
   private final int number;
   /**
-   * The daily price of the room.
+   * The floor of the room, i.e. the first digit of the room number.
+   */
+  private final int floor;
+  /**
+   * The daily price of the room, in cents. Volatile, as stays are quoted from other threads.
+   */
+  private volatile long priceCents;
+  /**
+   * The seasonal rates of the hotel the room is in,
+   * or null if every night costs the daily price.
    */
-  private double price;
+  private volatile RateCalendar rateCalendar;
+  /**
+   * The nights with a fixed price, ordered by start date and not overlapping.
+   * Replaced whenever it changes, so stays are quoted without locking.
+   */
+  private volatile PriceOverride[] priceOverrides = new PriceOverride[0];
 
   /**
    * Constructs a hotel room, of the given type and with the given room number.
    *
    * @param roomType the type of room to construct
    * @param number the room's number
+   *
+   * @throws IllegalArgumentException if roomType is null, or number is not between 1 and
+   *                                  {@link Reservation#MAX_ROOM_NUMBER}
    */
   public HotelRoom(final HotelRoomType roomType, final int number) {
     if (roomType == null) {
       throw new IllegalArgumentException();
     }
-    if (number <= 0) {
-      throw new IllegalArgumentException("Room number must be greater than zero.");
+    if (number <= 0 || number > Reservation.MAX_ROOM_NUMBER) {
+      throw new IllegalArgumentException(
+          "Room number must be greater than zero and at most " + Reservation.MAX_ROOM_NUMBER + ".");
     }
     this.roomType = roomType;
     this.number = number;
+    int first = number;
+    while (first >= 10) {
+      first /= 10;
+    }
+    this.floor = first;
   }
 
   /**
@@ -75,7 +107,7 @@ public class HotelRoom {
    * @return floor number
    */
   public final int getFloor() {
-    return Integer.parseInt(Integer.toString(number).substring(0, 1));
+    return floor;
   }
 
   /**
@@ -93,12 +125,13 @@ public class HotelRoom {
    * @return price
    */
   public final double getPrice() {
-    return price;
+    return Money.toAmount(priceCents);
   }
   
   /**
    * Returns the cost of staying from the given
    * start date to the given end date.
+   * See {@link #getPriceCents(LocalDate, LocalDate)}.
    *
    * @param startDate the given start date.
    * @param endDate the given end date.
@@ -107,8 +140,144 @@ public class HotelRoom {
    */
   public final double getPrice(final LocalDate startDate,
       final LocalDate endDate) {
+    return Money.toAmount(getPriceCents(startDate, endDate));
+  }
+
+  /**
+   * Returns the room daily price in cents.
+   *
+   * @return price in cents
+   */
+  public final long getPriceCents() {
+    return priceCents;
+  }
+
+  /**
+   * Returns the cost in cents of staying from the given
+   * start date to the given end date.
+   * Nights with a price override cost the overridden price. The other nights cost
+   * the daily price scaled by the hotel's rate calendar, rounded to the nearest cent
+   * for the stay as a whole. The cost is found in time independent of the length
+   * of the stay, from the prefix sums of the rate calendar.
+   *
+   * @param startDate the given start date.
+   * @param endDate the given end date.
+   *
+   * @return price in cents
+   *
+   * @throws ArithmeticException if the price does not fit in a long
+   */
+  public final long getPriceCents(final LocalDate startDate,
+      final LocalDate endDate) {
     verifyChronology(startDate, endDate);
-    return price * (ChronoUnit.DAYS.between(startDate, endDate));
+    long startDay = startDate.toEpochDay();
+    long endDay = endDate.toEpochDay();
+    RateCalendar rates = rateCalendar;
+    PriceOverride[] overrides = priceOverrides;
+    long factors = factorSum(rates, startDay, endDay);
+    long fixedCents = 0;
+    for (int i = firstOverride(overrides, startDay);
+        i < overrides.length && overrides[i].startDay < endDay; i++) {
+      long from = Math.max(startDay, overrides[i].startDay);
+      long to = Math.min(endDay, overrides[i].endDay);
+      factors -= factorSum(rates, from, to);
+      fixedCents = Math.addExact(fixedCents,
+          Math.multiplyExact(overrides[i].priceCents, to - from));
+    }
+    long scaled = Math.multiplyExact(priceCents, factors);
+    return Math.addExact(fixedCents,
+        Math.floorDiv(scaled + RateCalendar.BASE_FACTOR / 2, RateCalendar.BASE_FACTOR));
+  }
+
+  /**
+   * Returns the sum of the factors of the given nights in the given rate calendar.
+   *
+   * @param rates the rate calendar, or null if every night costs the daily price
+   * @param startDay the first night, as an epoch day
+   * @param endDay the day after the last night, as an epoch day
+   *
+   * @return the sum of the factors
+   */
+  private long factorSum(final RateCalendar rates, final long startDay, final long endDay) {
+    if (rates == null) {
+      return RateCalendar.BASE_FACTOR * (endDay - startDay);
+    }
+    return rates.factorSum(roomType, startDay, endDay);
+  }
+
+  /**
+   * Returns the index of the first of the given overrides that ends after the given day.
+   *
+   * @param overrides the overrides, ordered by start date and not overlapping
+   * @param day the epoch day
+   *
+   * @return the index, or the number of overrides if none end after the day
+   */
+  private static int firstOverride(final PriceOverride[] overrides, final long day) {
+    int low = 0;
+    int high = overrides.length;
+    while (low < high) {
+      int middle = (low + high) >>> 1;
+      if (overrides[middle].endDay <= day) {
+        low = middle + 1;
+      } else {
+        high = middle;
+      }
+    }
+    return low;
+  }
+
+  /**
+   * Sets the rate calendar of the hotel the room is in.
+   *
+   * @param rateCalendar the rate calendar, or null if every night costs the daily price
+   */
+  final void setRateCalendar(final RateCalendar rateCalendar) {
+    this.rateCalendar = rateCalendar;
+  }
+
+  /**
+   * Fixes the price of the nights from startDate up to, but not including, endDate,
+   * whatever the daily price and the hotel's rate calendar.
+   *
+   * @param startDate the first night
+   * @param endDate the day after the last night
+   * @param price the price of each night
+   *
+   * @throws IllegalArgumentException if startDate or endDate is null
+   * @throws IllegalArgumentException if startDate is not before endDate or price is negative
+   * @throws IllegalArgumentException if the nights overlap another override
+   */
+  public final synchronized void addPriceOverride(final LocalDate startDate,
+                                                  final LocalDate endDate,
+                                                  final double price) {
+    PriceOverride override = new PriceOverride(startDate, endDate, price);
+    PriceOverride[] overrides = priceOverrides;
+    int index = firstOverride(overrides, override.startDay);
+    if (index < overrides.length && overrides[index].startDay < override.endDay) {
+      throw new IllegalArgumentException("The nights already have a price override.");
+    }
+    PriceOverride[] added = new PriceOverride[overrides.length + 1];
+    System.arraycopy(overrides, 0, added, 0, index);
+    added[index] = override;
+    System.arraycopy(overrides, index, added, index + 1, overrides.length - index);
+    priceOverrides = added;
+  }
+
+  /**
+   * Removes every price override.
+   */
+  public final synchronized void clearPriceOverrides() {
+    priceOverrides = new PriceOverride[0];
+  }
+
+  /**
+   * Returns the price overrides, ordered by start date.
+   *
+   * @return price overrides
+   */
+  public final List<PriceOverride> getPriceOverrides() {
+    return List.of(priceOverrides);
   }
 
   /**
@@ -121,7 +290,7 @@ public class HotelRoom {
   }
   
   /**
-   * Sets the daily price to the given price.
+   * Sets the daily price to the given price, rounded to the nearest cent.
    *
    * @param price the given price.
    *
@@ -131,7 +300,7 @@ public class HotelRoom {
     if (price < 0) {
       throw new IllegalArgumentException("Price must be greater than zero.");
     }
-    this.price = price;
+    this.priceCents = Money.toCents(price);
   }
 
   /**
@@ -145,27 +314,70 @@ public class HotelRoom {
     if (amenity == null) {
       throw new IllegalArgumentException("Amenity cannot be null.");
     }
-    amenities.add(amenity);
+    final int mask = amenity.mask();
+    if ((amenities.getAndUpdate((old) -> old | mask) & mask) == 0) {
+      notifyAmenitiesChanged();
+    }
   }
 
   /**
    * Returns a collection of the names of the room's amenities.
+   * Meant for display and serialization, use {@link #amenityMask()} otherwise.
    *
    * @return Collection of the names of the rooms amenities
    */
   public final Collection<String> getAmenities() {
-    List<String> amen = amenities.stream()
-        .map((a) -> a.name()).toList();
+    List<String> amen = new ArrayList<>(amenityCount());
+    for (Amenity amenity : Amenity.values()) {
+      if (hasAmenity(amenity)) {
+        amen.add(amenity.name());
+      }
+    }
     return amen;
   }
 
+  /**
+   * Returns the mask of the room's amenities.
+   *
+   * @return the amenity mask, see {@link Amenity#mask()}
+   */
+  public final int amenityMask() {
+    return amenities.get();
+  }
+
+  /**
+   * Returns the number of amenities the room includes.
+   *
+   * @return the number of amenities
+   */
+  public final int amenityCount() {
+    return Integer.bitCount(amenities.get());
+  }
+
+  /**
+   * Returns whether or not the room includes all the amenities in the given mask.
+   *
+   * @param mask the amenity mask to check, see {@link Amenity#mask()}
+   *
+   * @return true if the room includes every amenity in the mask, false otherwise.
+   */
+  public final boolean hasAllAmenities(final int mask) {
+    return (amenities.get() & mask) == mask;
+  }
+
   /**
    * Removes the given amenity to the room's collection of amenities.
    *
    * @param amenity the amenity to remove
    */
   public final void removeAmenity(final Amenity amenity) {
-    amenities.remove(amenity);
+    if (amenity == null) {
+      return;
+    }
+    final int mask = amenity.mask();
+    if ((amenities.getAndUpdate((old) -> old & ~mask) & mask) != 0) {
+      notifyAmenitiesChanged();
+    }
   }
 
   /**
@@ -176,7 +388,45 @@ public class HotelRoom {
    * @return true if the room includes the amenity, false otherwise.
    */
   public final boolean hasAmenity(final Amenity amenity) {
-    return amenities.contains(amenity);
+    return amenity != null && (amenities.get() & amenity.mask()) != 0;
+  }
+
+  /**
+   * Adds a listener that is notified when the room's amenities change.
+   *
+   * @param listener the listener to add
+   */
+  final void addListener(final HotelRoomListener listener) {
+    listeners.add(listener);
+  }
+
+  /**
+   * Removes the given listener.
+   *
+   * @param listener the listener to remove
+   */
+  final void removeListener(final HotelRoomListener listener) {
+    listeners.remove(listener);
+  }
+
+  /**
+   * Notifies all listeners that the room's amenities have changed.
+   */
+  private void notifyAmenitiesChanged() {
+    for (HotelRoomListener listener : listeners) {
+      listener.onAmenitiesChanged(this);
+    }
+  }
+
+  /**
+   * Notifies all listeners that a reservation has been added.
+   *
+   * @param reservation the added reservation
+   */
+  private void notifyReservationAdded(final Reservation reservation) {
+    for (HotelRoomListener listener : listeners) {
+      listener.onReservationAdded(this, reservation);
+    }
   }
 
   /**
@@ -205,6 +455,57 @@ public class HotelRoom {
     return calendar.isAvailable(startDate, endDate);
   }
 
+  /**
+   * Returns whether or not the room is available between the given
+   * start day and end day, given as epoch days.
+   * This avoids creating dates when the same interval is checked for many rooms.
+   *
+   * @param startDay the start of the interval, in epoch days
+   * @param endDay the end of the interval, in epoch days
+   *
+   * @return true if the room is available, false otherwise.
+   *
+   * @throws IllegalArgumentException if startDay is not before endDay.
+   */
+  public final boolean isAvailable(final long startDay, final long endDay) {
+    if (startDay >= endDay) {
+      throw new IllegalArgumentException(
+        "The startDate must be before the endDate.");
+    }
+    return calendar.isAvailable(startDay, endDay);
+  }
+
+  /**
+   * Returns the earliest stay of the given number of nights on this room that starts
+   * on or after {@code fromDate} and ends on or before {@code untilDate}.
+   *
+   * @param fromDate the earliest date the stay may start
+   * @param nights the number of nights
+   * @param untilDate the latest date the stay may end
+   *
+   * @return the earliest free stay, or null if the room is not free that long before untilDate
+   *
+   * @throws IllegalArgumentException if fromDate or untilDate is null.
+   * @throws IllegalArgumentException if nights is not positive.
+   */
+  public final AvailabilityWindow findAvailableWindow(final LocalDate fromDate,
+                                                      final int nights,
+                                                      final LocalDate untilDate) {
+    if (fromDate == null || untilDate == null) {
+      throw new IllegalArgumentException("fromDate or untilDate cannot be null.");
+    }
+    if (nights < 1) {
+      throw new IllegalArgumentException("A stay must be at least one night.");
+    }
+    long startDay = calendar.findAvailableDay(
+        fromDate.toEpochDay(), nights, untilDate.toEpochDay());
+    if (startDay == ReservationCalendar.NO_DAY) {
+      return null;
+    }
+    LocalDate startDate = LocalDate.ofEpochDay(startDay);
+    return new AvailabilityWindow(number, startDate, startDate.plusDays(nights));
+  }
+
   /**
    * Adds the given reservation to the room's reservation calendar.
    *
@@ -215,6 +516,21 @@ public class HotelRoom {
    *                                  this rooms number.
    */
   public final void addReservation(final Reservation reservation) {
+    checkReservation(reservation);
+    calendar.addReservation(reservation);
+    notifyReservationAdded(reservation);
+  }
+
+  /**
+   * Checks that the given reservation can be registered on this room.
+   *
+   * @param reservation the reservation to check
+   *
+   * @throws IllegalArgumentException if reservation is null
+   * @throws IllegalArgumentException if the room number of the reservation is different from
+   *                                  this rooms number.
+   */
+  private void checkReservation(final Reservation reservation) {
     if (reservation == null) {
       throw new IllegalArgumentException("Reservation can not be null");
     }
@@ -225,8 +541,75 @@ public class HotelRoom {
         + Integer.toString(reservation.getRoomNumber())
         + " can not be registred on room " + Integer.toString(getNumber()));
     }
+  }
 
-    calendar.addReservation(reservation);
+  /**
+   * Returns the version of the room's reservation calendar,
+   * which changes every time a reservation is added.
+   *
+   * @return the version
+   */
+  public final long getVersion() {
+    return calendar.getVersion();
+  }
+
+  /**
+   * Adds the given reservation to the room's reservation calendar if the calendar
+   * still has the given version, i.e. if the room has not been booked since.
+   *
+   * @param reservation the reservation to add
+   * @param expectedVersion the version the calendar is expected to have
+   *
+   * @return true if the reservation was added, false if the version has changed
+   *
+   * @throws IllegalArgumentException if reservation is null
+   * @throws IllegalArgumentException if the room number of the reservation is different from
+   *                                  the room number of the room
+   * @throws IllegalStateException if the room is not available
+   */
+  public final boolean tryAddReservation(final Reservation reservation,
+                                         final long expectedVersion) {
+    checkReservation(reservation);
+    if (!calendar.tryAddReservation(reservation, expectedVersion)) {
+      return false;
+    }
+    notifyReservationAdded(reservation);
+    return true;
+  }
+
+  /**
+   * Claims the room's reservation calendar if it still has the given version.
+   * See {@link ReservationCalendar#tryClaim(long)}.
+   *
+   * @param expectedVersion the version the calendar is expected to have
+   *
+   * @return true if the calendar was claimed
+   */
+  final boolean tryClaim(final long expectedVersion) {
+    return calendar.tryClaim(expectedVersion);
+  }
+
+  /**
+   * Gives up a claim on the room's reservation calendar.
+   */
+  final void releaseClaim() {
+    calendar.releaseClaim();
+  }
+
+  /**
+   * Adds the given reservation to the claimed reservation calendar and ends the claim.
+   * The caller must have checked that the room is available.
+   *
+   * @param reservation the reservation to add
+   *
+   * @throws IllegalArgumentException if reservation is null
+   * @throws IllegalArgumentException if the room number of the reservation is different from
+   *                                  the room number of the room
+   */
+  final void commitClaimed(final Reservation reservation) {
+    checkReservation(reservation);
+    calendar.commitClaimed(reservation);
+    notifyReservationAdded(reservation);
   }
 
   /**
@@ -278,8 +661,8 @@ public class HotelRoom {
     HotelRoom room = (HotelRoom) o;
     return this.getNumber() == room.getNumber()
         && this.getRoomType() == room.getRoomType()
-        && this.getPrice() == room.getPrice()
-        && this.getAmenities().equals(room.getAmenities());
+        && this.getPriceCents() == room.getPriceCents()
+        && this.amenityMask() == room.amenityMask();
   }
 
   /**
@@ -293,8 +676,88 @@ public class HotelRoom {
     int hash = 13;
     hash = hash * 31 + getNumber();
     hash = hash * 13 + getRoomType().hashCode();
-    hash = hash * 5 + getAmenities().hashCode();
+    hash = hash * 5 + amenityMask();
     hash = hash * 7 + (int) getPrice();
     return hash;
   }
+
+  /**
+   * PriceOverride class. A fixed price for some nights of a room.
+   */
+  public static final class PriceOverride {
+    private final LocalDate startDate;
+    private final LocalDate endDate;
+    private final long priceCents;
+    private final long startDay;
+    private final long endDay;
+
+    /**
+     * Constructs an override of the nights from startDate up to, but not including, endDate.
+     *
+     * @param startDate the first night
+     * @param endDate the day after the last night
+     * @param price the price of each night
+     *
+     * @throws IllegalArgumentException if startDate or endDate is null
+     * @throws IllegalArgumentException if startDate is not before endDate or price is negative
+     */
+    public PriceOverride(final LocalDate startDate, final LocalDate endDate,
+                         final double price) {
+      if (startDate == null || endDate == null) {
+        throw new IllegalArgumentException("Startdate or endDate cannot be null.");
+      }
+      if (!startDate.isBefore(endDate)) {
+        throw new IllegalArgumentException("The startDate must be before the endDate.");
+      }
+      if (price < 0) {
+        throw new IllegalArgumentException("Price must be greater than zero.");
+      }
+      this.startDate = startDate;
+      this.endDate = endDate;
+      this.priceCents = Money.toCents(price);
+      this.startDay = startDate.toEpochDay();
+      this.endDay = endDate.toEpochDay();
+    }
+
+    /**
+     * Returns the first night.
+     *
+     * @return start date
+     */
+    public LocalDate getStartDate() {
+      return startDate;
+    }
+
+    /**
+     * Returns the day after the last night.
+     *
+     * @return end date
+     */
+    public LocalDate getEndDate() {
+      return endDate;
+    }
+
+    /**
+     * Returns the price of each night.
+     *
+     * @return price
+     */
+    public double getPrice() {
+      return Money.toAmount(priceCents);
+    }
+
+    /**
+     * Returns the price of each night in cents.
+     *
+     * @return price in cents
+     */
+    public long getPriceCents() {
+      return priceCents;
+    }
+
+    @Override
+    public String toString() {
+      return startDate + " - " + endDate + " at " + getPrice();
+    }
+  }
 }
@@ -1,6 +1,9 @@
 package gr2116.core;
 
 import java.time.LocalDate;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.Map.Entry;
 import java.util.function.Predicate;
@@ -11,9 +14,12 @@ import java.util.function.Predicate;
 public class HotelRoomFilter implements Predicate<HotelRoom> {
   private final LocalDate startDate;
   private final LocalDate endDate;
+  private final long startDay;
+  private final long endDay;
   private final HotelRoomType roomType;
   private final HashMap<Amenity, Boolean> amenities;
   private final Integer floor;
+  private final Collection<Amenity> requiredAmenities = EnumSet.noneOf(Amenity.class);
 
   /**
    * Constructor for this component.
@@ -32,10 +38,17 @@ public class HotelRoomFilter implements Predicate<HotelRoom> {
       final HashMap<Amenity, Boolean> amenities) {
     this.startDate = startDate;
     this.endDate = endDate;
+    this.startDay = startDate == null ? 0 : startDate.toEpochDay();
+    this.endDay = endDate == null ? 0 : endDate.toEpochDay();
     this.roomType = roomType;
     this.floor = floor;
     if (amenities != null) {
       this.amenities = new HashMap<>(amenities);
+      amenities.forEach((amenity, required) -> {
+        if (required) {
+          requiredAmenities.add(amenity);
+        }
+      });
     } else {
       this.amenities = null;
     }
@@ -86,9 +99,69 @@ public class HotelRoomFilter implements Predicate<HotelRoom> {
     return roomType;
   }
 
-  
+  /**
+   * Returns the floor for this filter.
+   *
+   * @return floor, or null if the filter does not filter on floor
+   */
+  public final Integer getFloor() {
+    return floor;
+  }
+
+  /**
+   * Returns the amenities a room must have to match this filter.
+   *
+   * @return an unmodifiable collection of the required amenities
+   */
+  public final Collection<Amenity> getRequiredAmenities() {
+    return Collections.unmodifiableCollection(requiredAmenities);
+  }
+
+  /**
+   * Returns a filter on the same room type, floor and amenities as this filter,
+   * but without dates, i.e. one that matches rooms regardless of when they are free.
+   *
+   * @return the filter without dates
+   */
+  public final HotelRoomFilter withoutDates() {
+    return new HotelRoomFilter(null, null, roomType, floor, amenities);
+  }
+
+  /**
+   * Compiles this filter into a predicate that matches the same rooms.
+   * Everything that does not depend on the room, like whether the dates are valid,
+   * is computed once here rather than for every room tested, and testing a room with
+   * the compiled predicate does not allocate.
+   * The validity of the dates is decided when the filter is compiled, so the compiled
+   * predicate should be used for a single search.
+   *
+   * @return the compiled predicate
+   */
+  public final Predicate<HotelRoom> compile() {
+    final HotelRoomType type = roomType;
+    final boolean checkFloor = floor != null;
+    final int floorNumber = checkFloor ? floor : 0;
+    final int required = Amenity.maskOf(requiredAmenities);
+    final boolean checkDates = hasValidDates();
+    final long start = startDay;
+    final long end = endDay;
+    return (room) -> {
+      if (type != null && room.getRoomType() != type) {
+        return false;
+      }
+      if (checkFloor && room.getFloor() != floorNumber) {
+        return false;
+      }
+      if (!room.hasAllAmenities(required)) {
+        return false;
+      }
+      return !checkDates || room.isAvailable(start, end);
+    };
+  }
+
   /**
    * Tests if a hotel room matches this filter.
+   * The availability check is done last, as it is the most expensive.
    *
    * @param room the room to be tested.
    *
@@ -96,9 +169,6 @@ public class HotelRoomFilter implements Predicate<HotelRoom> {
    */
   @Override
   public boolean test(HotelRoom room) {
-    if (hasValidDates() && !room.isAvailable(startDate, endDate)) {
-      return false;
-    }
     if (roomType != null && room.getRoomType() != roomType) {
       return false;
     }
@@ -112,6 +182,9 @@ public class HotelRoomFilter implements Predicate<HotelRoom> {
         }
       }
     }
+    if (hasValidDates() && !room.isAvailable(startDay, endDay)) {
+      return false;
+    }
     return true;
   }
 }
@@ -0,0 +1,19 @@
+package gr2116.core;
+
+/**
+ * Interface for listening to changes in a HotelRoom.
+ */
+interface HotelRoomListener {
+
+  void onAmenitiesChanged(HotelRoom room);
+
+  /**
+   * Called after a reservation has been added to the room.
+   *
+   * @param room the room
+   * @param reservation the added reservation
+   */
+  default void onReservationAdded(HotelRoom room, Reservation reservation) {
+  }
+
+}
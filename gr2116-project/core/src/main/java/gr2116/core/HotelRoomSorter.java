@@ -1,49 +1,136 @@
 package gr2116.core;
 
+import java.time.LocalDate;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Comparator;
 import java.util.List;
+import java.util.PriorityQueue;
 
 /**
  * Sorts a collection of Hotelrooms.
+ * The sort key of each room is computed once per sort, and rooms with equal keys
+ * are ordered by room number, so the order is total and stable between sorts.
+ * When stay dates are set, rooms are sorted by the price of the stay, as quoted by
+ * {@link HotelRoom#getPrice(LocalDate, LocalDate)}, instead of their daily price.
  */
 public class HotelRoomSorter {
   private SortProperty sortProperty = SortProperty.ByRoomNumber;
+  private LocalDate startDate;
+  private LocalDate endDate;
+
+  /**
+   * Computes the sort key of a room.
+   */
+  @FunctionalInterface
+  private interface SortKey {
+    /**
+     * Returns the sort key of the given room.
+     *
+     * @param room the room
+     * @param startDate the start date of the stay, or null if there is none
+     * @param endDate the end date of the stay, or null if there is none
+     *
+     * @return the sort key
+     */
+    double apply(HotelRoom room, LocalDate startDate, LocalDate endDate);
+  }
 
   /**
    * Used for selecting what property to sort by when sorting rooms.
+   * Each property sorts on a primitive key, with lower keys first.
+   * Decreasing properties negate the key.
    */
   public enum SortProperty {
-    ByPrice((HotelRoom roomA, HotelRoom roomB) -> {
-      return roomA.getPrice() < roomB.getPrice() ? -1 : 1;
-    }),
-    ByPriceDecreasing((HotelRoom roomA, HotelRoom roomB) -> {
-      return roomA.getPrice() > roomB.getPrice() ? -1 : 1;
-    }),
-    ByRoomNumber((HotelRoom roomA, HotelRoom roomB) -> {
-      return roomA.getNumber() < roomB.getNumber() ? -1 : 1;
-    }),
-    ByRoomNumberDecreasing((HotelRoom roomA, HotelRoom roomB) -> {
-      return roomA.getNumber() > roomB.getNumber() ? -1 : 1;
-    }),
-    ByAmenityCount((HotelRoom roomA, HotelRoom roomB) -> {
-      return roomA.getAmenities().size() < roomB.getAmenities().size() ? -1 : 1;
-    }),
-    ByAmenityCountDecreasing((HotelRoom roomA, HotelRoom roomB) -> {
-      return roomA.getAmenities().size() > roomB.getAmenities().size() ? -1 : 1;
-    });
-
-    private Comparator<HotelRoom> comparator;
-
-    private SortProperty(Comparator<HotelRoom> comparator) {
-      this.comparator = comparator;
+    ByPrice((room, start, end) -> price(room, start, end)),
+    ByPriceDecreasing((room, start, end) -> -price(room, start, end)),
+    ByRoomNumber((room, start, end) -> room.getNumber()),
+    ByRoomNumberDecreasing((room, start, end) -> -room.getNumber()),
+    ByAmenityCount((room, start, end) -> room.amenityCount()),
+    ByAmenityCountDecreasing((room, start, end) -> -room.amenityCount());
+
+    private final SortKey key;
+    private final Comparator<HotelRoom> comparator;
+
+    private SortProperty(SortKey key) {
+      this.key = key;
+      this.comparator = Comparator.<HotelRoom>comparingDouble(this::getKey)
+          .thenComparingInt(HotelRoom::getNumber);
     }
 
+    /**
+     * Returns the sort key of the given room, without stay dates.
+     *
+     * @param room the room
+     *
+     * @return the sort key
+     */
+    public double getKey(HotelRoom room) {
+      return key.apply(room, null, null);
+    }
+
+    /**
+     * Returns the sort key of the given room, for a stay from startDate to endDate.
+     *
+     * @param room the room
+     * @param startDate the start date of the stay, or null if there is none
+     * @param endDate the end date of the stay, or null if there is none
+     *
+     * @return the sort key
+     */
+    public double getKey(HotelRoom room, LocalDate startDate, LocalDate endDate) {
+      return key.apply(room, startDate, endDate);
+    }
+
+    /**
+     * Returns a comparator ordering rooms by this property, without stay dates,
+     * then by room number.
+     *
+     * @return the comparator
+     */
     public Comparator<HotelRoom> getComparator() {
       return comparator;
     }
   }
 
+  /**
+   * Returns the price of a stay in the given room,
+   * or its daily price if there are no stay dates.
+   *
+   * @param room the room
+   * @param startDate the start date of the stay, or null if there is none
+   * @param endDate the end date of the stay, or null if there is none
+   *
+   * @return price
+   */
+  private static double price(HotelRoom room, LocalDate startDate, LocalDate endDate) {
+    if (startDate == null || endDate == null) {
+      return room.getPrice();
+    }
+    return room.getPrice(startDate, endDate);
+  }
+
+  /**
+   * A room together with its precomputed sort keys.
+   */
+  private static final class SortEntry implements Comparable<SortEntry> {
+    private final double key;
+    private final int number;
+    private final HotelRoom room;
+
+    SortEntry(final double key, final HotelRoom room) {
+      this.key = key;
+      this.number = room.getNumber();
+      this.room = room;
+    }
+
+    @Override
+    public int compareTo(final SortEntry other) {
+      int result = Double.compare(key, other.key);
+      return result != 0 ? result : Integer.compare(number, other.number);
+    }
+  }
+
   /**
    * Sorts hotelRooms on this sortProperty's comparator.
    *
@@ -52,7 +139,52 @@ public class HotelRoomSorter {
    * @return the sorted collection
    */
   public List<HotelRoom> sortRooms(Collection<HotelRoom> hotelRooms) {
-    return hotelRooms.stream().sorted(sortProperty.getComparator()).toList();
+    SortEntry[] entries = new SortEntry[hotelRooms.size()];
+    int i = 0;
+    for (HotelRoom room : hotelRooms) {
+      entries[i++] = new SortEntry(sortProperty.getKey(room, startDate, endDate), room);
+    }
+    Arrays.sort(entries);
+    return Arrays.stream(entries).map((entry) -> entry.room).toList();
+  }
+
+  /**
+   * Returns one page of hotelRooms, as if sorted on this sortProperty's comparator.
+   * Only the first {@code offset + limit} rooms are kept while scanning,
+   * in a bounded heap, so the rest of the rooms are never sorted.
+   *
+   * @param hotelRooms the collection to sort
+   * @param offset the number of rooms to skip
+   * @param limit the maximum number of rooms to return
+   *
+   * @return the sorted page
+   *
+   * @throws IllegalArgumentException if offset or limit is negative
+   */
+  public List<HotelRoom> sortRooms(Collection<HotelRoom> hotelRooms, int offset, int limit) {
+    if (offset < 0 || limit < 0) {
+      throw new IllegalArgumentException("Offset and limit cannot be negative.");
+    }
+    int bound = (int) Math.min((long) offset + limit, hotelRooms.size());
+    if (bound == 0 || offset >= bound) {
+      return List.of();
+    }
+    PriorityQueue<SortEntry> heap = new PriorityQueue<>(bound, Comparator.reverseOrder());
+    for (HotelRoom room : hotelRooms) {
+      double key = sortProperty.getKey(room, startDate, endDate);
+      if (heap.size() < bound) {
+        heap.add(new SortEntry(key, room));
+      } else {
+        SortEntry largest = heap.peek();
+        if (key < largest.key || key == largest.key && room.getNumber() < largest.number) {
+          heap.poll();
+          heap.add(new SortEntry(key, room));
+        }
+      }
+    }
+    SortEntry[] entries = heap.toArray(new SortEntry[0]);
+    Arrays.sort(entries);
+    return Arrays.stream(entries, offset, entries.length).map((entry) -> entry.room).toList();
   }
 
   /**
@@ -69,6 +201,26 @@ public class HotelRoomSorter {
     this.sortProperty = sortProperty;
   }
 
+  /**
+   * Sets the dates of the stay to sort by the price of, or clears them if both are null.
+   *
+   * @param startDate the start date of the stay
+   * @param endDate the end date of the stay
+   *
+   * @throws IllegalArgumentException if only one of the dates is null
+   * @throws IllegalArgumentException if startDate is not before endDate
+   */
+  public void setStayDates(LocalDate startDate, LocalDate endDate) {
+    if ((startDate == null) != (endDate == null)) {
+      throw new IllegalArgumentException("Both or none of the dates must be set.");
+    }
+    if (startDate != null && !startDate.isBefore(endDate)) {
+      throw new IllegalArgumentException("startDate must be before endDate.");
+    }
+    this.startDate = startDate;
+    this.endDate = endDate;
+  }
+
   /**
    * Returns the sort property.
    *
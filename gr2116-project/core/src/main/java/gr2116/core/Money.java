@@ -0,0 +1,43 @@
+package gr2116.core;
+
+/**
+ * Money class. Prices and balances are kept as a whole number of cents,
+ * so that adding and subtracting them is exact. This class converts
+ * between cents and the decimal amounts shown to users.
+ */
+public final class Money {
+  /**
+   * The number of cents in one unit of money.
+   */
+  public static final long CENTS_PER_UNIT = 100;
+
+  private Money() {
+  }
+
+  /**
+   * Returns the given amount in cents, rounded to the nearest cent.
+   *
+   * @param amount the amount of money
+   *
+   * @return the amount in cents
+   *
+   * @throws IllegalArgumentException if the amount is not a finite number
+   */
+  public static long toCents(final double amount) {
+    if (!Double.isFinite(amount)) {
+      throw new IllegalArgumentException("Amount must be a finite number.");
+    }
+    return Math.round(amount * CENTS_PER_UNIT);
+  }
+
+  /**
+   * Returns the given number of cents as an amount of money.
+   *
+   * @param cents the number of cents
+   *
+   * @return the amount of money
+   */
+  public static double toAmount(final long cents) {
+    return (double) cents / CENTS_PER_UNIT;
+  }
+}
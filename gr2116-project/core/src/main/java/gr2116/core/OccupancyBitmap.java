@@ -0,0 +1,111 @@
+package gr2116.core;
+
+/**
+ * Occupancy bitmap for a single room. Each bit represents one day, counted in
+ * epoch days from the origin of the window, and is set if the room is occupied
+ * on that day. Days outside the window are not tracked, see {@link #covers(long, long)}.
+ */
+final class OccupancyBitmap {
+  /**
+   * The number of days in the window. Roughly four years.
+   */
+  static final int WINDOW_DAYS = 64 * 23;
+
+  /**
+   * The epoch day of the first bit.
+   */
+  private final long origin;
+  /**
+   * The occupied days, 64 per word.
+   */
+  private final long[] words = new long[WINDOW_DAYS / 64];
+
+  /**
+   * Constructs an empty bitmap whose window starts at the given epoch day.
+   *
+   * @param origin the epoch day of the first day in the window
+   */
+  OccupancyBitmap(final long origin) {
+    this.origin = origin;
+  }
+
+  /**
+   * Returns the epoch day of the first day in the window.
+   *
+   * @return origin
+   */
+  long getOrigin() {
+    return origin;
+  }
+
+  /**
+   * Returns whether or not every day from startDay to endDay (both included)
+   * lies inside the window.
+   *
+   * @param startDay the first epoch day
+   * @param endDay the last epoch day
+   *
+   * @return true if the interval is covered by the window, false otherwise
+   */
+  boolean covers(final long startDay, final long endDay) {
+    return startDay >= origin && endDay < origin + WINDOW_DAYS;
+  }
+
+  /**
+   * Marks every day from startDay to endDay (both included) as occupied.
+   * The part of the interval that lies outside the window is ignored.
+   *
+   * @param startDay the first epoch day
+   * @param endDay the last epoch day
+   */
+  void occupy(final long startDay, final long endDay) {
+    long from = Math.max(startDay, origin) - origin;
+    long to = Math.min(endDay, origin + WINDOW_DAYS - 1) - origin;
+    if (from > to) {
+      return;
+    }
+    int firstWord = (int) (from >>> 6);
+    int lastWord = (int) (to >>> 6);
+    for (int i = firstWord; i <= lastWord; i++) {
+      words[i] |= mask(i, from, to);
+    }
+  }
+
+  /**
+   * Returns whether or not no day from startDay to endDay (both included) is occupied.
+   * The interval must be covered by the window.
+   *
+   * @param startDay the first epoch day
+   * @param endDay the last epoch day
+   *
+   * @return true if no day in the interval is occupied, false otherwise
+   */
+  boolean isFree(final long startDay, final long endDay) {
+    long from = startDay - origin;
+    long to = endDay - origin;
+    int firstWord = (int) (from >>> 6);
+    int lastWord = (int) (to >>> 6);
+    for (int i = firstWord; i <= lastWord; i++) {
+      if ((words[i] & mask(i, from, to)) != 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Returns the bits of the given word that lie between from and to (both included).
+   *
+   * @param word the index of the word
+   * @param from the first bit, relative to the origin
+   * @param to the last bit, relative to the origin
+   *
+   * @return the mask
+   */
+  private static long mask(final int word, final long from, final long to) {
+    long wordStart = (long) word << 6;
+    long low = from > wordStart ? -1L << (from - wordStart) : -1L;
+    long high = to < wordStart + 63 ? -1L >>> (63 - (to - wordStart)) : -1L;
+    return low & high;
+  }
+}
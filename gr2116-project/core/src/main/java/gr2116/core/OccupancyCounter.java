@@ -0,0 +1,172 @@
+package gr2116.core;
+
+/**
+ * Counts occupied rooms per day, in epoch days, for a group of rooms.
+ * Adding a stay and summing the occupied rooms over a range of days both take
+ * logarithmic time, using two Fenwick trees over the days in a window,
+ * which grows to cover every day that has been added.
+ * Thread safe, guarded by the counter itself.
+ */
+final class OccupancyCounter {
+  /**
+   * The number of days in a new window.
+   */
+  private static final int INITIAL_DAYS = 1024;
+
+  /**
+   * The epoch day of the first day in the window.
+   */
+  private long origin;
+  /**
+   * The Fenwick tree of the per-day differences, indexed from one.
+   */
+  private long[] differences;
+  /**
+   * The Fenwick tree of the per-day differences weighted by their index, indexed from one.
+   */
+  private long[] weighted;
+
+  /**
+   * Constructs an empty counter.
+   */
+  OccupancyCounter() {
+    differences = new long[INITIAL_DAYS + 1];
+    weighted = new long[INITIAL_DAYS + 1];
+  }
+
+  /**
+   * Returns the number of days in the window.
+   *
+   * @return capacity
+   */
+  private int capacity() {
+    return differences.length - 1;
+  }
+
+  /**
+   * Adds the given amount to every day from startDay to endDay, both included.
+   *
+   * @param startDay the first epoch day
+   * @param endDay the last epoch day
+   * @param amount the number of rooms to add, negative to remove
+   */
+  synchronized void add(final long startDay, final long endDay, final long amount) {
+    if (startDay > endDay) {
+      return;
+    }
+    cover(startDay, endDay);
+    int start = (int) (startDay - origin) + 1;
+    int end = (int) (endDay - origin) + 1;
+    update(start, amount);
+    update(end + 1, -amount);
+  }
+
+  /**
+   * Returns the total number of occupied rooms over the days from startDay to endDay,
+   * both included, i.e. the number of occupied room-days.
+   *
+   * @param startDay the first epoch day
+   * @param endDay the last epoch day
+   *
+   * @return the number of occupied room-days
+   */
+  synchronized long sum(final long startDay, final long endDay) {
+    if (startDay > endDay) {
+      return 0;
+    }
+    long from = Math.max(startDay, origin);
+    long to = Math.min(endDay, origin + capacity() - 1);
+    if (from > to) {
+      return 0;
+    }
+    return prefix((int) (to - origin) + 1) - prefix((int) (from - origin));
+  }
+
+  /**
+   * Adds the given amount to the difference at the given index.
+   *
+   * @param index the index, from one
+   * @param amount the amount
+   */
+  private void update(final int index, final long amount) {
+    long weightedAmount = amount * (index - 1);
+    for (int i = index; i < differences.length; i += i & -i) {
+      differences[i] += amount;
+      weighted[i] += weightedAmount;
+    }
+  }
+
+  /**
+   * Returns the sum of the days up to and including the given index.
+   *
+   * @param index the index, from one, or zero for the empty sum
+   *
+   * @return the sum
+   */
+  private long prefix(final int index) {
+    long plain = 0;
+    long weightedSum = 0;
+    for (int i = index; i > 0; i -= i & -i) {
+      plain += differences[i];
+      weightedSum += weighted[i];
+    }
+    return plain * index - weightedSum;
+  }
+
+  /**
+   * Grows the window, if needed, so that it covers the days from startDay to endDay.
+   * The window is at least doubled and centered on the days, so that growing is rare.
+   *
+   * @param startDay the first epoch day
+   * @param endDay the last epoch day
+   */
+  private void cover(final long startDay, final long endDay) {
+    long oldEnd = origin + capacity() - 1;
+    if (startDay >= origin && endDay <= oldEnd) {
+      return;
+    }
+    boolean empty = isEmpty();
+    long from = empty ? startDay : Math.min(startDay, origin);
+    long to = empty ? endDay : Math.max(endDay, oldEnd);
+    long needed = to - from + 1;
+    long days = Math.max(capacity(), 1);
+    while (days < 2 * needed) {
+      days *= 2;
+    }
+    if (days > Integer.MAX_VALUE - 1) {
+      throw new IllegalArgumentException("The days are too far apart to be counted.");
+    }
+    long[] values = new long[capacity()];
+    for (int i = 0; i < values.length && !empty; i++) {
+      values[i] = prefix(i + 1) - prefix(i);
+    }
+    long oldOrigin = origin;
+    origin = from - (days - needed) / 2;
+    differences = new long[(int) days + 1];
+    weighted = new long[(int) days + 1];
+    long previous = 0;
+    for (int i = 0; i < values.length; i++) {
+      if (values[i] != previous) {
+        update((int) (oldOrigin + i - origin) + 1, values[i] - previous);
+        previous = values[i];
+      }
+    }
+    if (previous != 0) {
+      update((int) (oldOrigin + values.length - origin) + 1, -previous);
+    }
+  }
+
+  /**
+   * Returns whether no day has an occupied room.
+   *
+   * @return true if the counter is empty
+   */
+  private boolean isEmpty() {
+    for (long difference : differences) {
+      if (difference != 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
@@ -0,0 +1,189 @@
+package gr2116.core;
+
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Index of a hotel's occupied room-nights per room type and per floor.
+ * A reservation occupies the nights from its start date up to, but not including,
+ * its end date, the same nights it is paid for. The index is updated as rooms are
+ * added and removed and as reservations are made, so occupancy over any range of days
+ * is answered in logarithmic time instead of by walking every reservation.
+ * Thread safe. Each counter has its own lock, so a reservation only waits for those
+ * made on rooms of the same type or floor, and never for the whole index. The numbers
+ * of rooms are guarded by the index.
+ */
+final class OccupancyIndex {
+  /**
+   * Occupied rooms per day, by room type.
+   */
+  private final Map<HotelRoomType, OccupancyCounter> byRoomType = new ConcurrentHashMap<>();
+  /**
+   * Occupied rooms per day, by floor.
+   */
+  private final Map<Integer, OccupancyCounter> byFloor = new ConcurrentHashMap<>();
+  /**
+   * The number of rooms, by room type.
+   */
+  private final Map<HotelRoomType, Integer> roomsByRoomType = new EnumMap<>(HotelRoomType.class);
+  /**
+   * The number of rooms, by floor.
+   */
+  private final Map<Integer, Integer> roomsByFloor = new TreeMap<>();
+
+  /**
+   * Adds the given room and the reservations it already has.
+   * The room must not be booked while it is being added.
+   *
+   * @param room the room to add
+   */
+  synchronized void add(final HotelRoom room) {
+    if (room.getRoomType() != null) {
+      roomsByRoomType.merge(room.getRoomType(), 1, Integer::sum);
+    }
+    roomsByFloor.merge(room.getFloor(), 1, Integer::sum);
+    count(room, 1);
+  }
+
+  /**
+   * Removes the given room and its reservations.
+   * The room must not be booked while it is being removed.
+   *
+   * @param room the room to remove
+   */
+  synchronized void remove(final HotelRoom room) {
+    if (room.getRoomType() != null) {
+      roomsByRoomType.merge(room.getRoomType(), -1, Integer::sum);
+      roomsByRoomType.remove(room.getRoomType(), 0);
+    }
+    roomsByFloor.merge(room.getFloor(), -1, Integer::sum);
+    roomsByFloor.remove(room.getFloor(), 0);
+    count(room, -1);
+  }
+
+  /**
+   * Counts a reservation made on the given room.
+   *
+   * @param room the room
+   * @param reservation the reservation made on the room
+   */
+  void addReservation(final HotelRoom room, final Reservation reservation) {
+    count(room, reservation, 1);
+  }
+
+  /**
+   * Adds the given amount for every reservation of the given room.
+   *
+   * @param room the room
+   * @param amount 1 to count the reservations, -1 to uncount them
+   */
+  private void count(final HotelRoom room, final long amount) {
+    Iterator<Reservation> reservations = room.getReservations();
+    while (reservations.hasNext()) {
+      count(room, reservations.next(), amount);
+    }
+  }
+
+  /**
+   * Adds the given amount for the nights of the given reservation.
+   *
+   * @param room the room
+   * @param reservation the reservation
+   * @param amount 1 to count the reservation, -1 to uncount it
+   */
+  private void count(final HotelRoom room, final Reservation reservation, final long amount) {
+    long startDay = reservation.getStartDay();
+    long lastNight = reservation.getEndDay() - 1L;
+    if (room.getRoomType() != null) {
+      byRoomType.computeIfAbsent(room.getRoomType(), (type) -> new OccupancyCounter())
+          .add(startDay, lastNight, amount);
+    }
+    byFloor.computeIfAbsent(room.getFloor(), (floor) -> new OccupancyCounter())
+        .add(startDay, lastNight, amount);
+  }
+
+  /**
+   * Returns the share of room-nights that are occupied, by room type, for the nights
+   * from startDate up to, but not including, endDate. Room types without rooms are left out.
+   *
+   * @param startDate the first night
+   * @param endDate the day after the last night
+   *
+   * @return the occupancy rate of each room type, between 0 and 1
+   */
+  synchronized Map<HotelRoomType, Double> getRatesByRoomType(final LocalDate startDate,
+                                                             final LocalDate endDate) {
+    Map<HotelRoomType, Double> rates = new EnumMap<>(HotelRoomType.class);
+    roomsByRoomType.forEach((type, rooms) ->
+        rates.put(type, rate(byRoomType.get(type), rooms, startDate, endDate)));
+    return rates;
+  }
+
+  /**
+   * Returns the share of room-nights that are occupied, by floor, for the nights
+   * from startDate up to, but not including, endDate. Floors without rooms are left out.
+   *
+   * @param startDate the first night
+   * @param endDate the day after the last night
+   *
+   * @return the occupancy rate of each floor, between 0 and 1, ordered by floor
+   */
+  synchronized Map<Integer, Double> getRatesByFloor(final LocalDate startDate,
+                                                    final LocalDate endDate) {
+    Map<Integer, Double> rates = new TreeMap<>();
+    roomsByFloor.forEach((floor, rooms) ->
+        rates.put(floor, rate(byFloor.get(floor), rooms, startDate, endDate)));
+    return rates;
+  }
+
+  /**
+   * Returns the number of occupied room-nights of the given room type, or of every
+   * room type if it is null, for the nights from startDate up to, but not including, endDate.
+   *
+   * @param roomType the room type, or null for all rooms
+   * @param startDate the first night
+   * @param endDate the day after the last night
+   *
+   * @return the number of occupied room-nights
+   */
+  long getOccupiedNights(final HotelRoomType roomType,
+                         final LocalDate startDate,
+                         final LocalDate endDate) {
+    long startDay = startDate.toEpochDay();
+    long lastNight = endDate.toEpochDay() - 1;
+    if (roomType != null) {
+      OccupancyCounter counter = byRoomType.get(roomType);
+      return counter == null ? 0 : counter.sum(startDay, lastNight);
+    }
+    long nights = 0;
+    for (OccupancyCounter counter : byRoomType.values()) {
+      nights += counter.sum(startDay, lastNight);
+    }
+    return nights;
+  }
+
+  /**
+   * Returns the share of the given rooms' nights that are occupied.
+   *
+   * @param counter the occupied rooms per day, or null if none have been booked
+   * @param rooms the number of rooms
+   * @param startDate the first night
+   * @param endDate the day after the last night
+   *
+   * @return the occupancy rate, between 0 and 1
+   */
+  private static double rate(final OccupancyCounter counter, final int rooms,
+                             final LocalDate startDate, final LocalDate endDate) {
+    long nights = ChronoUnit.DAYS.between(startDate, endDate);
+    if (counter == null || nights <= 0) {
+      return 0;
+    }
+    long occupied = counter.sum(startDate.toEpochDay(), endDate.toEpochDay() - 1);
+    return (double) occupied / ((double) rooms * nights);
+  }
+}
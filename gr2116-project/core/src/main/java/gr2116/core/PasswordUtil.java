@@ -1,40 +1,230 @@
 package gr2116.core;
 
+import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
 import java.security.spec.InvalidKeySpecException;
 import java.security.spec.KeySpec;
 import java.util.Base64;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 import javax.crypto.SecretKeyFactory;
 import javax.crypto.spec.PBEKeySpec;
 
 /**
  * Utility class for hashing Person passwords.
+ * Every hash gets its own random salt, and is stored together with the salt and
+ * the number of iterations as {@code iterations$salt$hash}, so the cost can be
+ * changed without invalidating existing hashes. Hashing is slow on purpose, so
+ * it can be done on a bounded pool of worker threads to keep the caller responsive.
  */
 public class PasswordUtil {
-  private static byte[] salt = new byte[16];
+  /**
+   * The number of PBKDF2 iterations used unless configured otherwise.
+   */
+  public static final int DEFAULT_ITERATIONS = 65536;
+
+  /**
+   * The largest number of iterations a hash may be made or verified with, so that
+   * a corrupted or crafted hash cannot keep a worker busy for long.
+   */
+  public static final int MAX_ITERATIONS = 10 * DEFAULT_ITERATIONS;
+
+  /**
+   * How many hashing jobs may wait for a worker before new ones are rejected.
+   */
+  private static final int QUEUE_CAPACITY = 256;
+
+  private static final String ALGORITHM = "PBKDF2WithHmacSHA1";
+  private static final int SALT_BYTES = 16;
+  private static final int KEY_BITS = 128;
+  private static final String SEPARATOR = "$";
+
+  /**
+   * The salt of hashes made before salts were stored with the hash.
+   */
+  private static final byte[] LEGACY_SALT = new byte[SALT_BYTES];
+
+  private static final SecureRandom RANDOM = new SecureRandom();
+
+  /**
+   * Looking up the factory is expensive, and a factory may not be used
+   * by two threads at once, so each thread keeps its own.
+   */
+  private static final ThreadLocal<SecretKeyFactory> FACTORY = ThreadLocal.withInitial(() -> {
+    try {
+      return SecretKeyFactory.getInstance(ALGORITHM);
+    } catch (NoSuchAlgorithmException e) {
+      return null;
+    }
+  });
+
+  private static final ExecutorService WORKERS = createWorkers();
+
+  private static volatile int iterations = DEFAULT_ITERATIONS;
+
+  /**
+   * Creates the pool of daemon threads that hashes asynchronously,
+   * with one thread per processor.
+   *
+   * @return the pool
+   */
+  private static ExecutorService createWorkers() {
+    int threads = Runtime.getRuntime().availableProcessors();
+    return new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+        new ArrayBlockingQueue<>(QUEUE_CAPACITY), (runnable) -> {
+          Thread thread = new Thread(runnable, "password-hasher");
+          thread.setDaemon(true);
+          return thread;
+        });
+  }
+
+  /**
+   * Returns the number of iterations new hashes are made with.
+   *
+   * @return the number of iterations
+   */
+  public static int getIterations() {
+    return iterations;
+  }
+
+  /**
+   * Sets the number of iterations new hashes are made with.
+   * Existing hashes are still verified with the iterations they were made with.
+   *
+   * @param iterations the number of iterations
+   *
+   * @throws IllegalArgumentException if iterations is not positive, or above
+   *                                  {@link #MAX_ITERATIONS}
+   */
+  public static void setIterations(int iterations) {
+    if (iterations < 1 || iterations > MAX_ITERATIONS) {
+      throw new IllegalArgumentException(
+          "Iterations must be between 1 and " + MAX_ITERATIONS + ".");
+    }
+    PasswordUtil.iterations = iterations;
+  }
 
   /**
-   * Hashes the given password string with PBKDF2WithHmacSHA1.
+   * Hashes the given password string with PBKDF2WithHmacSHA1 and a new random salt.
    *
    * @param password the password to hash
    *
-   * @return the hashed password
+   * @return the hashed password, along with its salt and iterations
    */
   public static String hashPassword(String password) {
-    KeySpec spec = new PBEKeySpec(password.toCharArray(), salt, 65536, 128);
-    SecretKeyFactory f;
+    byte[] salt = new byte[SALT_BYTES];
+    RANDOM.nextBytes(salt);
+    int cost = iterations;
+    byte[] hash = pbkdf2(password, salt, cost);
+    if (hash == null) {
+      return null;
+    }
+    Base64.Encoder enc = Base64.getEncoder();
+    return cost + SEPARATOR + enc.encodeToString(salt) + SEPARATOR + enc.encodeToString(hash);
+  }
+
+  /**
+   * Checks whether the given password matches the given hash.
+   *
+   * @param password the password to check
+   * @param hashed the hash, as returned by {@link #hashPassword(String)}
+   *
+   * @return true if the password matches the hash, false otherwise, or if the hash
+   *         has a number of iterations that is not positive or above {@link #MAX_ITERATIONS}
+   */
+  public static boolean verifyPassword(String password, String hashed) {
+    if (password == null || hashed == null) {
+      return false;
+    }
+    String[] parts = hashed.split("\\" + SEPARATOR);
+    byte[] expected;
+    byte[] actual;
     try {
-      f = SecretKeyFactory.getInstance("PBKDF2WithHmacSHA1");
-    } catch (NoSuchAlgorithmException e) {
+      if (parts.length == 1) {
+        expected = Base64.getDecoder().decode(hashed);
+        actual = pbkdf2(password, LEGACY_SALT, DEFAULT_ITERATIONS);
+      } else if (parts.length == 3) {
+        int cost = Integer.parseInt(parts[0]);
+        if (cost < 1 || cost > MAX_ITERATIONS) {
+          return false;
+        }
+        expected = Base64.getDecoder().decode(parts[2]);
+        actual = pbkdf2(password, Base64.getDecoder().decode(parts[1]), cost);
+      } else {
+        return false;
+      }
+    } catch (IllegalArgumentException e) {
+      return false;
+    }
+    return actual != null && MessageDigest.isEqual(expected, actual);
+  }
+
+  /**
+   * Hashes the given password on a worker thread.
+   *
+   * @param password the password to hash
+   *
+   * @return a future hashed password, which fails with a RejectedExecutionException
+   *         if too many passwords are waiting to be hashed
+   */
+  public static CompletableFuture<String> hashPasswordAsync(String password) {
+    return submit(() -> hashPassword(password));
+  }
+
+  /**
+   * Checks whether the given password matches the given hash on a worker thread.
+   *
+   * @param password the password to check
+   * @param hashed the hash, as returned by {@link #hashPassword(String)}
+   *
+   * @return a future result, which fails with a RejectedExecutionException
+   *         if too many passwords are waiting to be hashed
+   */
+  public static CompletableFuture<Boolean> verifyPasswordAsync(String password, String hashed) {
+    return submit(() -> verifyPassword(password, hashed));
+  }
+
+  /**
+   * Runs the given job on the worker pool.
+   *
+   * @param <T> the type of the result
+   * @param job the job to run
+   *
+   * @return a future result of the job
+   */
+  private static <T> CompletableFuture<T> submit(Supplier<T> job) {
+    try {
+      return CompletableFuture.supplyAsync(job, WORKERS);
+    } catch (RejectedExecutionException e) {
+      return CompletableFuture.failedFuture(e);
+    }
+  }
+
+  /**
+   * Derives a key from the given password.
+   *
+   * @param password the password
+   * @param salt the salt
+   * @param cost the number of iterations
+   *
+   * @return the key, or null if PBKDF2 is not available
+   */
+  private static byte[] pbkdf2(String password, byte[] salt, int cost) {
+    SecretKeyFactory factory = FACTORY.get();
+    if (factory == null) {
       return null;
     }
-    byte[] hash;
+    KeySpec spec = new PBEKeySpec(password.toCharArray(), salt, cost, KEY_BITS);
     try {
-      hash = f.generateSecret(spec).getEncoded();
+      return factory.generateSecret(spec).getEncoded();
     } catch (InvalidKeySpecException e) {
       return null;
     }
-    Base64.Encoder enc = Base64.getEncoder();
-    return enc.encodeToString(hash);
-  } 
+  }
 }
@@ -3,16 +3,32 @@ package gr2116.core;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Person class. A person has a collection of listerners, a collection of
  * reservaitons, a name, an username and a balance.
+ * The balance is kept in cents and updated atomically, and the reservations are
+ * guarded by the person's monitor, so that they can be changed by several threads at once.
  */
 public class Person {
   /**
    * Collection of PersonListener's listening to this Person object.
    */
-  private final Collection<PersonListener> listeners = new HashSet<>();
+  private final Collection<PersonListener> listeners = new CopyOnWriteArraySet<>();
+  /**
+   * Runs coalesced notifications of the listeners,
+   * or null if listeners are notified at once on every change.
+   */
+  private volatile Executor notificationExecutor;
+  /**
+   * Whether a coalesced notification has been handed to the executor and has not started yet.
+   */
+  private final AtomicBoolean notificationPending = new AtomicBoolean();
   /**
    * Collection of Reservation objects that this person has.
    */
@@ -28,9 +44,9 @@ public class Person {
   private final String username;
   private String password;
   /**
-   * The Person objects balance.
+   * The Person objects balance, in cents.
    */
-  private double balance = 0;
+  private final AtomicLong balanceCents = new AtomicLong();
 
   /**
    * Constructs a Person object with a given name.
@@ -142,7 +158,6 @@ public class Person {
    * A valid password
    * - is not null
    * - has length >= 6
-   * - returns a valid hash
    *
    * @param password the password to check
    * @return whether or not the password is valid
@@ -151,13 +166,7 @@ public class Person {
     if (password == null) {
       return false;
     }
-    if (password.length() < 6) {
-      return false;
-    }
-    if (PasswordUtil.hashPassword(password) == null) {
-      return false;
-    }
-    return true;
+    return password.length() >= 6;
   }
 
   /**
@@ -189,6 +198,19 @@ public class Person {
     password = hashed;
   }
 
+  /**
+   * Checks whether the given password is this persons password.
+   * This is slow, see {@link PasswordUtil#verifyPasswordAsync(String, String)}
+   * for checking it without blocking.
+   *
+   * @param password the password to check
+   *
+   * @return true if the password matches, false otherwise or if no password has been set
+   */
+  public boolean checkPassword(String password) {
+    return PasswordUtil.verifyPassword(password, this.password);
+  }
+
   /**
    * Returns the persons hashed password.
    * The password cannot be accessed in clear text.
@@ -205,7 +227,16 @@ public class Person {
    * @return {@code balance} of this person.
    */
   public final double getBalance() {
-    return balance;
+    return Money.toAmount(balanceCents.get());
+  }
+
+  /**
+   * Returns the balance of this Person object in cents.
+   *
+   * @return {@code balance} of this person in cents.
+   */
+  public final long getBalanceCents() {
+    return balanceCents.get();
   }
 
   /**
@@ -219,13 +250,45 @@ public class Person {
     if (balance < 0) {
       throw new IllegalArgumentException("Balance must be positive.");
     }
-    this.balance += balance;
+    addBalanceCents(Money.toCents(balance));
+  }
+
+  /**
+   * Adds the specified number of cents to this Person objects balance and notifies listeners.
+   *
+   * @param cents - the amount in cents to be added.
+   *
+   * @throws IllegalArgumentException if {@code cents} is below 0.
+   * @throws ArithmeticException if the balance would overflow.
+   */
+  public final void addBalanceCents(final long cents) {
+    if (cents < 0) {
+      throw new IllegalArgumentException("Balance must be positive.");
+    }
+    long current;
+    do {
+      current = balanceCents.get();
+    } while (!balanceCents.compareAndSet(current, Math.addExact(current, cents)));
     notifyListeners();
   }
 
+  /**
+   * Sets this Person objects balance to the specified number of cents, as one atomic step,
+   * and notifies listeners if it changed. Used to restore a balance that was recorded
+   * elsewhere, e.g. in a journal or on a server.
+   *
+   * @param cents - the balance in cents, which may be negative.
+   */
+  public final void setBalanceCents(final long cents) {
+    if (balanceCents.getAndSet(cents) != cents) {
+      notifyListeners();
+    }
+  }
+
   /**
    * Subtracts the specified {@code balance} from this Peron objects balance field
-   * and notifies listeners.
+   * and notifies listeners. The balance may become negative, see
+   * {@link #tryDebit(long)} for subtracting only what the person can afford.
    *
    * @param balance - balance (the amount) to be subtracted.
    *
@@ -235,8 +298,38 @@ public class Person {
     if (balance < 0) {
       throw new IllegalArgumentException("Balance must be positive.");
     }
-    this.balance -= balance;
+    long cents = Money.toCents(balance);
+    long current;
+    do {
+      current = balanceCents.get();
+    } while (!balanceCents.compareAndSet(current, Math.subtractExact(current, cents)));
+    notifyListeners();
+  }
+
+  /**
+   * Subtracts the specified number of cents from this Person objects balance if the
+   * balance covers it, as one atomic step, and notifies listeners if it did.
+   *
+   * @param cents - the amount in cents to be subtracted.
+   *
+   * @return {@code true} if the amount was subtracted, {@code false} if the balance
+   *         was too low.
+   *
+   * @throws IllegalArgumentException if {@code cents} is below 0.
+   */
+  public final boolean tryDebit(final long cents) {
+    if (cents < 0) {
+      throw new IllegalArgumentException("Amount must be positive.");
+    }
+    long current;
+    do {
+      current = balanceCents.get();
+      if (current < cents) {
+        return false;
+      }
+    } while (!balanceCents.compareAndSet(current, current - cents));
     notifyListeners();
+    return true;
   }
 
   /**
@@ -251,7 +344,9 @@ public class Person {
     if (reservation == null) {
       throw new IllegalArgumentException();
     }
-    reservations.add(reservation);
+    synchronized (this) {
+      reservations.add(reservation);
+    }
     notifyListeners();
   }
 
@@ -261,7 +356,7 @@ public class Person {
    *
    * @return {@code Collection<Long>} of reservation IDs.
    */
-  public final Collection<String> getReservationIds() {
+  public final synchronized Collection<String> getReservationIds() {
     List<String> ids = reservations.stream()
         .map((r) -> r.getId()).toList();
     return ids;
@@ -274,7 +369,7 @@ public class Person {
    *
    * @return {@code true} if this Person has made the reservation, {@code false} otherwise.
    */
-  public final boolean hasReservation(final Reservation reservation) {
+  public final synchronized boolean hasReservation(final Reservation reservation) {
     return reservations.contains(reservation);
   }
 
@@ -283,7 +378,7 @@ public class Person {
    *
    * @return {@code Collection<Reservation>} of the reservations.
    */
-  public final Collection<Reservation> getReservations() {
+  public final synchronized Collection<Reservation> getReservations() {
     return new HashSet<>(reservations);
   }
 
@@ -306,9 +401,57 @@ public class Person {
   }
 
   /**
-   * Notifies all listeners that is listening to this Person object.
+   * Sets the executor that notifies listeners, or null to notify them at once on every change.
+   * With an executor, changes are coalesced: a change hands one notification to the executor,
+   * and further changes made before it runs are delivered by that same notification.
+   * Listeners therefore see the person as it is when the notification runs, e.g. once per
+   * pulse with {@code Platform::runLater}, and the thread making the change does no
+   * listener work. If the executor rejects a notification, it is delivered at once instead.
+   *
+   * @param executor the executor, or null
+   */
+  public final void setNotificationExecutor(final Executor executor) {
+    this.notificationExecutor = executor;
+  }
+
+  /**
+   * Returns the executor that notifies listeners, or null if they are notified at once.
+   *
+   * @return the executor, or null
+   */
+  public final Executor getNotificationExecutor() {
+    return notificationExecutor;
+  }
+
+  /**
+   * Notifies all listeners that is listening to this Person object,
+   * at once or through the notification executor.
+   * See {@link #setNotificationExecutor(Executor)}.
    */
   public final void notifyListeners() {
+    Executor executor = notificationExecutor;
+    if (executor == null) {
+      deliverNotification();
+      return;
+    }
+    if (listeners.isEmpty() || !notificationPending.compareAndSet(false, true)) {
+      return;
+    }
+    try {
+      executor.execute(() -> {
+        notificationPending.set(false);
+        deliverNotification();
+      });
+    } catch (RejectedExecutionException e) {
+      notificationPending.set(false);
+      deliverNotification();
+    }
+  }
+
+  /**
+   * Calls every listener on the current thread.
+   */
+  private void deliverNotification() {
     for (PersonListener listener : listeners) {
       listener.onPersonChanged(this);
     }
@@ -316,6 +459,8 @@ public class Person {
 
   /**
    * Custom implementation of .equals method.
+   * Two persons are the same user if they have the same username, which never changes,
+   * so comparing persons does not depend on their names or reservations.
    *
    * @param o object to test against
    *
@@ -330,9 +475,7 @@ public class Person {
       return false;
     }
     Person p = (Person) o;
-    return this.getName().equals(p.getName())
-        && this.getUsername().equals(p.getUsername())
-        && this.getReservations().equals(p.getReservations());
+    return this.getUsername().equals(p.getUsername());
   }
 
   /**
@@ -343,10 +486,6 @@ public class Person {
    */
   @Override
   public int hashCode() {
-    int hash = 5;
-    hash = hash * 17 + getName().hashCode();
-    hash = hash * 31 + (getUsername() == null ? 0 : getUsername().hashCode());
-    hash = hash * 5 + getReservations().hashCode();
-    return hash;
+    return getUsername().hashCode();
   }
 }
@@ -0,0 +1,360 @@
+package gr2116.core;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * RateCalendar class. Seasonal rates per room type and a weekend uplift,
+ * which scale the daily price of a room night by night.
+ * A night costs the room's daily price times the percent of the season it is in,
+ * or 100 percent outside of every season, times 100 percent plus the weekend uplift
+ * if it is a Friday or Saturday night.
+ * The factors of every night are prefix-summed when the calendar changes,
+ * so the factors of a stay are summed in constant time no matter how long it is.
+ * Thread safe.
+ */
+public final class RateCalendar {
+  /**
+   * The percent of the daily price a night costs outside of every season.
+   */
+  public static final int BASE_PERCENT = 100;
+  /**
+   * The factor of a night costing exactly the daily price.
+   */
+  static final long BASE_FACTOR = (long) BASE_PERCENT * BASE_PERCENT;
+  /**
+   * The most days from the first night of a season to the last night of another.
+   */
+  static final int MAX_DAYS = 366 * 100;
+
+  /**
+   * The seasons, in the order they were set.
+   */
+  private final List<Season> seasons = new ArrayList<>();
+  private int weekendUplift;
+  /**
+   * The prefix sums of the current seasons and uplift, replaced whenever they change.
+   */
+  private volatile Rates rates = new Rates(List.of(), 0);
+
+  /**
+   * Prices the rooms of the given type at the given percent of their daily price,
+   * for the nights from startDate up to, but not including, endDate.
+   * Where seasons of the same room type overlap, the one set last applies.
+   *
+   * @param roomType the room type
+   * @param startDate the first night of the season
+   * @param endDate the day after the last night of the season
+   * @param percent the percent of the daily price
+   *
+   * @throws IllegalArgumentException if roomType, startDate or endDate is null
+   * @throws IllegalArgumentException if startDate is not before endDate or percent is negative
+   * @throws IllegalArgumentException if the seasons would span too many days
+   */
+  public synchronized void setSeason(final HotelRoomType roomType,
+                                     final LocalDate startDate,
+                                     final LocalDate endDate,
+                                     final int percent) {
+    seasons.add(new Season(roomType, startDate, endDate, percent));
+    try {
+      update();
+    } catch (IllegalArgumentException e) {
+      seasons.remove(seasons.size() - 1);
+      throw e;
+    }
+  }
+
+  /**
+   * Removes every season.
+   */
+  public synchronized void clearSeasons() {
+    seasons.clear();
+    update();
+  }
+
+  /**
+   * Returns the seasons, in the order they were set.
+   *
+   * @return seasons
+   */
+  public synchronized List<Season> getSeasons() {
+    return List.copyOf(seasons);
+  }
+
+  /**
+   * Sets the percent added to the price of Friday and Saturday nights.
+   *
+   * @param percent the uplift in percent, negative for a discount
+   *
+   * @throws IllegalArgumentException if percent is less than -100
+   */
+  public synchronized void setWeekendUplift(final int percent) {
+    if (percent < -BASE_PERCENT) {
+      throw new IllegalArgumentException("Weekend uplift cannot be less than -100 percent.");
+    }
+    weekendUplift = percent;
+    update();
+  }
+
+  /**
+   * Returns the percent added to the price of Friday and Saturday nights.
+   *
+   * @return weekend uplift
+   */
+  public synchronized int getWeekendUplift() {
+    return weekendUplift;
+  }
+
+  /**
+   * Returns whether the calendar has no seasons and no weekend uplift,
+   * i.e. whether every night costs exactly the daily price.
+   *
+   * @return true if the calendar is flat
+   */
+  public synchronized boolean isFlat() {
+    return seasons.isEmpty() && weekendUplift == 0;
+  }
+
+  /**
+   * Replaces the prefix sums after the seasons or the uplift have changed.
+   */
+  private void update() {
+    rates = new Rates(seasons, weekendUplift);
+  }
+
+  /**
+   * Returns the sum of the factors of the nights from startDay up to, but not including,
+   * endDay, for rooms of the given type. A factor is the share of the daily price
+   * a night costs, in units of 1 / {@link #BASE_FACTOR}.
+   *
+   * @param roomType the room type
+   * @param startDay the first night, as an epoch day
+   * @param endDay the day after the last night, as an epoch day
+   *
+   * @return the sum of the factors
+   */
+  long factorSum(final HotelRoomType roomType, final long startDay, final long endDay) {
+    return rates.factorSum(roomType, startDay, endDay);
+  }
+
+  /**
+   * The prefix-summed factors of a fixed set of seasons and weekend uplift.
+   */
+  private static final class Rates {
+    /**
+     * The epoch day of the first night with a season.
+     */
+    private final long origin;
+    /**
+     * The prefix sums of the nightly factors from the origin, by room type.
+     * Room types without seasons are left out.
+     */
+    private final Map<HotelRoomType, long[]> prefixes = new EnumMap<>(HotelRoomType.class);
+    private final int weekendUplift;
+
+    /**
+     * Prefix-sums the factors of the given seasons and weekend uplift.
+     *
+     * @param seasons the seasons, in the order they were set
+     * @param weekendUplift the weekend uplift in percent
+     */
+    Rates(final List<Season> seasons, final int weekendUplift) {
+      this.weekendUplift = weekendUplift;
+      long first = Long.MAX_VALUE;
+      long last = Long.MIN_VALUE;
+      for (Season season : seasons) {
+        first = Math.min(first, season.getStartDate().toEpochDay());
+        last = Math.max(last, season.getEndDate().toEpochDay());
+      }
+      origin = first;
+      if (seasons.isEmpty()) {
+        return;
+      }
+      if (last - first > MAX_DAYS) {
+        throw new IllegalArgumentException("The seasons cannot span more than 100 years.");
+      }
+      int days = (int) (last - first);
+      Map<HotelRoomType, int[]> percents = new EnumMap<>(HotelRoomType.class);
+      for (Season season : seasons) {
+        int[] nights = percents.computeIfAbsent(season.getRoomType(), (type) -> {
+          int[] all = new int[days];
+          Arrays.fill(all, BASE_PERCENT);
+          return all;
+        });
+        int from = (int) (season.getStartDate().toEpochDay() - origin);
+        int to = (int) (season.getEndDate().toEpochDay() - origin);
+        Arrays.fill(nights, from, to, season.getPercent());
+      }
+      percents.forEach((type, nights) -> {
+        long[] prefix = new long[days + 1];
+        for (int i = 0; i < days; i++) {
+          prefix[i + 1] = prefix[i] + nights[i] * weekendPercent(origin + i);
+        }
+        prefixes.put(type, prefix);
+      });
+    }
+
+    /**
+     * Returns the percent of a night's seasonal price it costs, with the weekend uplift.
+     *
+     * @param day the night, as an epoch day
+     *
+     * @return the percent
+     */
+    private long weekendPercent(final long day) {
+      return weekendNights(day, day + 1) == 1 ? BASE_PERCENT + weekendUplift : BASE_PERCENT;
+    }
+
+    /**
+     * Returns the sum of the factors of the nights outside of every season.
+     *
+     * @param startDay the first night, as an epoch day
+     * @param endDay the day after the last night, as an epoch day
+     *
+     * @return the sum of the factors
+     */
+    private long baseFactorSum(final long startDay, final long endDay) {
+      return BASE_FACTOR * (endDay - startDay)
+          + (long) BASE_PERCENT * weekendUplift * weekendNights(startDay, endDay);
+    }
+
+    /**
+     * See {@link RateCalendar#factorSum(HotelRoomType, long, long)}.
+     *
+     * @param roomType the room type
+     * @param startDay the first night, as an epoch day
+     * @param endDay the day after the last night, as an epoch day
+     *
+     * @return the sum of the factors
+     */
+    long factorSum(final HotelRoomType roomType, final long startDay, final long endDay) {
+      if (startDay >= endDay) {
+        return 0;
+      }
+      long sum = baseFactorSum(startDay, endDay);
+      long[] prefix = roomType == null ? null : prefixes.get(roomType);
+      if (prefix == null) {
+        return sum;
+      }
+      long from = Math.max(startDay, origin);
+      long to = Math.min(endDay, origin + prefix.length - 1);
+      if (from < to) {
+        sum += prefix[(int) (to - origin)] - prefix[(int) (from - origin)]
+            - baseFactorSum(from, to);
+      }
+      return sum;
+    }
+  }
+
+  /**
+   * Returns the number of Friday and Saturday nights from startDay
+   * up to, but not including, endDay.
+   *
+   * @param startDay the first night, as an epoch day
+   * @param endDay the day after the last night, as an epoch day
+   *
+   * @return the number of weekend nights
+   */
+  static long weekendNights(final long startDay, final long endDay) {
+    return weekendNightsBefore(endDay) - weekendNightsBefore(startDay);
+  }
+
+  /**
+   * Returns the number of Friday and Saturday nights from 1970-01-01, a Thursday,
+   * up to, but not including, the given day. Negative for days before 1970-01-01.
+   *
+   * @param day the epoch day
+   *
+   * @return the number of weekend nights
+   */
+  private static long weekendNightsBefore(final long day) {
+    long weeks = Math.floorDiv(day, 7);
+    long rest = Math.floorMod(day, 7);
+    return 2 * weeks + Math.min(Math.max(rest - 1, 0), 2);
+  }
+
+  /**
+   * Season class. The percent of the daily price that the rooms of
+   * a room type cost for some nights.
+   */
+  public static final class Season {
+    private final HotelRoomType roomType;
+    private final LocalDate startDate;
+    private final LocalDate endDate;
+    private final int percent;
+
+    /**
+     * Constructs a season for rooms of the given type, from the night of startDate
+     * up to, but not including, the night of endDate.
+     *
+     * @param roomType the room type
+     * @param startDate the first night of the season
+     * @param endDate the day after the last night of the season
+     * @param percent the percent of the daily price
+     *
+     * @throws IllegalArgumentException if roomType, startDate or endDate is null
+     * @throws IllegalArgumentException if startDate is not before endDate or percent is negative
+     */
+    public Season(final HotelRoomType roomType, final LocalDate startDate,
+                  final LocalDate endDate, final int percent) {
+      if (roomType == null || startDate == null || endDate == null) {
+        throw new IllegalArgumentException("Room type and dates cannot be null.");
+      }
+      if (!startDate.isBefore(endDate)) {
+        throw new IllegalArgumentException("startDate must be before endDate.");
+      }
+      if (percent < 0) {
+        throw new IllegalArgumentException("Percent cannot be negative.");
+      }
+      this.roomType = roomType;
+      this.startDate = startDate;
+      this.endDate = endDate;
+      this.percent = percent;
+    }
+
+    /**
+     * Returns the room type.
+     *
+     * @return room type
+     */
+    public HotelRoomType getRoomType() {
+      return roomType;
+    }
+
+    /**
+     * Returns the first night of the season.
+     *
+     * @return start date
+     */
+    public LocalDate getStartDate() {
+      return startDate;
+    }
+
+    /**
+     * Returns the day after the last night of the season.
+     *
+     * @return end date
+     */
+    public LocalDate getEndDate() {
+      return endDate;
+    }
+
+    /**
+     * Returns the percent of the daily price.
+     *
+     * @return percent
+     */
+    public int getPercent() {
+      return percent;
+    }
+
+    @Override
+    public String toString() {
+      return roomType + ": " + startDate + " - " + endDate + " at " + percent + "%";
+    }
+  }
+}
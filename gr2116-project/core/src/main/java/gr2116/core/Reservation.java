@@ -1,23 +1,41 @@
 package gr2116.core;
 
 import java.time.LocalDate;
-import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
 
 /**
  * Reservation class. Implements Iterable.
  * Has an id (pseudorandom when Reservation is generated), a HotelRoom relation,
  * a startDate and an endDate.
+ * The stay can also be viewed as a range of epoch days, which lets callers walk
+ * and compare stays without creating a LocalDate for every night.
+ * The room number, start day and number of nights are packed into a single long,
+ * which is used for equality and hashing. The textual id is only made when asked for.
  */
 public class Reservation implements Iterable<LocalDate> {
+  private static final int NIGHT_BITS = 18;
+  private static final int DAY_BITS = 26;
+  private static final int ROOM_BITS = 20;
+  private static final long NIGHT_MASK = (1L << NIGHT_BITS) - 1;
+  private static final long DAY_MASK = (1L << DAY_BITS) - 1;
+
+  /**
+   * The largest room number a reservation can be made for.
+   */
+  public static final int MAX_ROOM_NUMBER = (1 << ROOM_BITS) - 1;
+
   /**
-   * The reservation's id.
+   * Added to the start day so that days before 1970 are packed as positive numbers.
    */
-  private final String id;
+  private static final int DAY_BIAS = 1 << (DAY_BITS - 1);
+
   /**
-   * The reservation's room.
+   * The reservation's room number, start day and number of nights,
+   * from the most to the least significant bits.
    */
-  private final int roomNumber;
+  private final long packedId;
   /**
    * The reservation's start date.
    */
@@ -38,6 +56,8 @@ public class Reservation implements Iterable<LocalDate> {
    * @throws IllegalArgumentException if startDate or endDate is null
    * @throws IllegalArgumentException if startDate is after endDate
    * @throws IllegalArgumentException if room is null
+   * @throws IllegalArgumentException if the room number, the dates or the length
+   *                                  of the stay are too large to be packed in the id
    */
   public Reservation(final HotelRoom room,
                       final LocalDate startDate,
@@ -51,10 +71,9 @@ public class Reservation implements Iterable<LocalDate> {
     if (room == null) {
       throw new IllegalArgumentException("Rooms cannot be null.");
     }
-    this.roomNumber = room.getNumber();
+    this.packedId = pack(room.getNumber(), startDate.toEpochDay(), endDate.toEpochDay());
     this.startDate = startDate;
     this.endDate = endDate;
-    this.id = generateId();
   }
 
   /**
@@ -63,7 +82,7 @@ public class Reservation implements Iterable<LocalDate> {
    * @return room
    */
   public final int getRoomNumber() {
-    return roomNumber;
+    return (int) (packedId >>> (DAY_BITS + NIGHT_BITS));
   }
 
   /**
@@ -85,39 +104,163 @@ public class Reservation implements Iterable<LocalDate> {
   }
 
   /**
-   * Returns reservation's id.
+   * Returns reservation's start date as an epoch day.
    *
-   * @return id
+   * @return start day
    */
-  public final String getId() {
-    return id;
+  public final int getStartDay() {
+    return (int) ((packedId >>> NIGHT_BITS) & DAY_MASK) - DAY_BIAS;
+  }
+
+  /**
+   * Returns reservation's end date as an epoch day.
+   *
+   * @return end day
+   */
+  public final int getEndDay() {
+    return getStartDay() + (int) (packedId & NIGHT_MASK);
+  }
+
+  /**
+   * Returns whether the given epoch day is part of the reservation.
+   * Both the start day and the end day are included.
+   *
+   * @param day the epoch day
+   *
+   * @return true if the day is between the start day and the end day
+   */
+  public final boolean contains(final long day) {
+    return getStartDay() <= day && day <= getEndDay();
   }
 
   /**
-   * Generates a reservation ID based on the reservations room,
-   * startDate and endDate.
+   * Returns whether this reservation and the given reservation share a day.
+   * Both reservations include their start day and their end day.
+   *
+   * @param other the other reservation
    *
-   * @return {@code long} the id
+   * @return true if the reservations overlap
    */
-  private final String generateId() {
-    StringBuilder sb = new StringBuilder();
+  public final boolean overlaps(final Reservation other) {
+    return getStartDay() <= other.getEndDay() && other.getStartDay() <= getEndDay();
+  }
+
+  /**
+   * Returns a lazy iterator over the epoch days of the reservation,
+   * from the start day up to and including the end day.
+   *
+   * @return iterator over the epoch days
+   */
+  public final PrimitiveIterator.OfInt days() {
+    final int endDay = getEndDay();
+    return new PrimitiveIterator.OfInt() {
+      private int next = getStartDay();
+
+      @Override
+      public boolean hasNext() {
+        return next <= endDay;
+      }
+
+      @Override
+      public int nextInt() {
+        if (!hasNext()) {
+          throw new NoSuchElementException();
+        }
+        return next++;
+      }
+    };
+  }
+
+  /**
+   * Returns the reservation's room number, start day and number of nights packed into
+   * a long. Two reservations are equal if and only if their packed ids are equal.
+   *
+   * @return the packed id
+   */
+  public final long getPackedId() {
+    return packedId;
+  }
+
+  /**
+   * Packs the given room number and stay into a long.
+   *
+   * @param roomNumber the room number
+   * @param startDay the start date, as an epoch day
+   * @param endDay the end date, as an epoch day
+   *
+   * @return the packed id
+   *
+   * @throws IllegalArgumentException if a value is too large to be packed
+   */
+  private static long pack(final int roomNumber, final long startDay, final long endDay) {
+    long nights = endDay - startDay;
+    if (roomNumber < 0 || roomNumber > MAX_ROOM_NUMBER) {
+      throw new IllegalArgumentException("The room number is out of range.");
+    }
+    if (startDay < -DAY_BIAS || startDay >= DAY_BIAS || nights > NIGHT_MASK) {
+      throw new IllegalArgumentException("The dates are out of range.");
+    }
+    return ((long) roomNumber << (DAY_BITS + NIGHT_BITS))
+        | ((startDay + DAY_BIAS) << NIGHT_BITS)
+        | nights;
+  }
+
+  /**
+   * Returns reservation's id: the room number followed by the start date and
+   * the end date as yyyyMMdd. The id is made on every call, so it should only be
+   * used at the edges, e.g. when serializing.
+   *
+   * @return id
+   */
+  public final String getId() {
+    StringBuilder sb = new StringBuilder(20);
     sb.append(getRoomNumber());
-    sb.append(startDate.toString().replace("-", ""));
-    sb.append(endDate.toString().replace("-", ""));
+    appendDate(sb, startDate);
+    appendDate(sb, endDate);
 
     return sb.toString();
   }
 
+  /**
+   * Appends the given date to the builder as yyyyMMdd, like the ISO date without dashes.
+   *
+   * @param sb the builder
+   * @param date the date to append
+   */
+  private static void appendDate(final StringBuilder sb, final LocalDate date) {
+    int year = date.getYear();
+    if (year < 0 || year > 9999) {
+      sb.append(date.toString().replace("-", ""));
+      return;
+    }
+    int yearMonthDay = year * 10000 + date.getMonthValue() * 100 + date.getDayOfMonth();
+    for (int digit = 10000000; digit > yearMonthDay && digit > 1; digit /= 10) {
+      sb.append('0');
+    }
+    sb.append(yearMonthDay);
+  }
+
+  /**
+   * Returns a lazy iterator over the dates of the reservation,
+   * from the start date up to and including the end date.
+   * See {@link #days()} for iterating without creating dates.
+   *
+   * @return iterator over the dates
+   */
   @Override
   public final Iterator<LocalDate> iterator() {
-    ArrayList<LocalDate> dates = new ArrayList<>();
-    LocalDate date = startDate;
-    while (date.isBefore(endDate)) {
-      dates.add(date);
-      date = date.plusDays(1);
-    }
-    dates.add(endDate);
-    return dates.iterator();
+    PrimitiveIterator.OfInt days = days();
+    return new Iterator<LocalDate>() {
+      @Override
+      public boolean hasNext() {
+        return days.hasNext();
+      }
+
+      @Override
+      public LocalDate next() {
+        return LocalDate.ofEpochDay(days.nextInt());
+      }
+    };
   }
 
   @Override
@@ -141,7 +284,7 @@ public class Reservation implements Iterable<LocalDate> {
       return false;
     }
     Reservation res = (Reservation) o;
-    return getId().equals(res.getId());
+    return packedId == res.packedId;
   }
 
   /**
@@ -152,9 +295,6 @@ public class Reservation implements Iterable<LocalDate> {
    */
   @Override
   public int hashCode() {
-    int hash = 7;
-    hash = 31 * hash + getRoomNumber();
-    hash = 31 * hash + (null == getStartDate() ? 0 : getStartDate().hashCode());
-    return hash;
+    return Long.hashCode(packedId);
   }
 }
@@ -2,19 +2,62 @@ package gr2116.core;
 
 import java.time.LocalDate;
 import java.util.Collection;
-import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * ReservationCalendar class. Implements Iterable.
- * Has a Collection of Reservation objects.
+ * Keeps its reservations sorted by start date. Since the reservations in a calendar
+ * never overlap, they are also sorted by end date, which lets availability be
+ * answered with a single lookup instead of a scan.
+ * An occupancy bitmap over a rolling window of days answers the common case of
+ * searching for a stay in the near future with a few word-wide operations.
+ * The calendar carries a version that is bumped by every added reservation, so
+ * a booking can be checked against a snapshot and committed with a compare-and-set,
+ * retrying or giving up if someone else booked the room in the meantime.
+ * Availability can be checked concurrently without locking.
  */
 public class ReservationCalendar implements Iterable<Reservation> {
   /**
-   * The reservation calander's collection of reservations.
+   * How many days before today the occupancy window starts.
    */
-  private Collection<Reservation> reservations = new HashSet<>();
+  private static final int WINDOW_MARGIN = 64;
+
+  /**
+   * The reservation calander's reservations, keyed by start date.
+   */
+  private final NavigableMap<LocalDate, Reservation> reservations =
+      new ConcurrentSkipListMap<>();
+
+  /**
+   * Occupied days in the window around today.
+   */
+  private volatile OccupancyBitmap occupancy = new OccupancyBitmap(currentOrigin());
+
+  /**
+   * Returned by {@link #findAvailableDay(long, long, long)} when there is no free stay.
+   */
+  public static final long NO_DAY = Long.MIN_VALUE;
+
+  /**
+   * Twice the version of the calendar, plus one while a writer holds the calendar.
+   */
+  private final AtomicLong sequence = new AtomicLong();
+
+  /**
+   * Returns the version of the calendar. Since reservations are never removed,
+   * the version is the number of reservations added, so a calendar loaded
+   * from storage has the same version as the one it was saved from.
+   *
+   * @return the version
+   */
+  public final long getVersion() {
+    return sequence.get() >>> 1;
+  }
 
   /**
    * Add given reservation to the reservation calandar.
@@ -28,11 +71,126 @@ public class ReservationCalendar implements Iterable<Reservation> {
     if (reservation == null) {
       throw new IllegalArgumentException("Reservation can not be null.");
     }
-    if (!isAvailable(reservation.getStartDate(), reservation.getEndDate())) {
-      throw new IllegalStateException(
-        "The room is not available at this time.");
+    while (!tryAddReservation(reservation, getVersion())) {
+      Thread.onSpinWait();
     }
-    reservations.add(reservation);
+  }
+
+  /**
+   * Adds the given reservation if the calendar still has the given version,
+   * i.e. if no reservation has been added since the version was read.
+   *
+   * @param reservation the given reservation.
+   * @param expectedVersion the version the calendar is expected to have.
+   *
+   * @return true if the reservation was added, false if the version has changed
+   *
+   * @throws IllegalArgumentException if the reservation is null
+   * @throws IllegalStateException if the room is not available
+   */
+  public final boolean tryAddReservation(final Reservation reservation,
+                                         final long expectedVersion) {
+    if (reservation == null) {
+      throw new IllegalArgumentException("Reservation can not be null.");
+    }
+    if (!tryClaim(expectedVersion)) {
+      return false;
+    }
+    boolean added = false;
+    try {
+      if (!isAvailable(reservation.getStartDay(), reservation.getEndDay())) {
+        throw new IllegalStateException(
+          "The room is not available at this time.");
+      }
+      commitClaimed(reservation);
+      added = true;
+    } finally {
+      if (!added) {
+        releaseClaim();
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Claims the calendar for adding a reservation if it still has the given version.
+   * While claimed, no one else can add a reservation, and the claim must be ended
+   * with either {@link #commitClaimed(Reservation)} or {@link #releaseClaim()}.
+   *
+   * @param expectedVersion the version the calendar is expected to have.
+   *
+   * @return true if the calendar was claimed, false if the version has changed
+   *         or someone else holds the calendar
+   */
+  final boolean tryClaim(final long expectedVersion) {
+    final long expected = expectedVersion << 1;
+    return sequence.compareAndSet(expected, expected + 1);
+  }
+
+  /**
+   * Gives up a claim without adding a reservation, leaving the version unchanged.
+   */
+  final void releaseClaim() {
+    sequence.decrementAndGet();
+  }
+
+  /**
+   * Adds the given reservation to a claimed calendar and ends the claim,
+   * bumping the version. The caller must have checked that the room is available.
+   *
+   * @param reservation the given reservation.
+   */
+  final void commitClaimed(final Reservation reservation) {
+    try {
+      reservations.put(reservation.getStartDate(), reservation);
+      long endDay = reservation.getEndDay();
+      if (endDay >= occupancy.getOrigin() + OccupancyBitmap.WINDOW_DAYS
+          && currentOrigin() > occupancy.getOrigin()) {
+        fillOccupancy();
+      } else {
+        occupancy.occupy(reservation.getStartDay(), endDay);
+      }
+    } finally {
+      sequence.incrementAndGet();
+    }
+  }
+
+  /**
+   * Moves the occupancy window so that it starts shortly before today,
+   * and fills it from the reservations.
+   */
+  public final void rebuildOccupancy() {
+    long claimed = sequence.get() & ~1L;
+    while (!sequence.compareAndSet(claimed, claimed + 1)) {
+      Thread.onSpinWait();
+      claimed = sequence.get() & ~1L;
+    }
+    try {
+      fillOccupancy();
+    } finally {
+      sequence.set(claimed);
+    }
+  }
+
+  /**
+   * Replaces the occupancy bitmap with one starting shortly before today.
+   * The caller must hold the calendar.
+   */
+  private void fillOccupancy() {
+    OccupancyBitmap rebuilt = new OccupancyBitmap(currentOrigin());
+    for (Reservation reservation : reservations.values()) {
+      rebuilt.occupy(reservation.getStartDay(), reservation.getEndDay());
+    }
+    occupancy = rebuilt;
+  }
+
+  /**
+   * Returns the epoch day a new occupancy window should start at.
+   *
+   * @return the origin of a new window
+   */
+  private static long currentOrigin() {
+    return LocalDate.now().toEpochDay() - WINDOW_MARGIN;
   }
 
   /**
@@ -41,7 +199,7 @@ public class ReservationCalendar implements Iterable<Reservation> {
    * @return stream of reservation ids.
    */
   public final Collection<String> getReservationIds() {
-    List<String> ids = reservations.stream()
+    List<String> ids = reservations.values().stream()
         .map((r) -> r.getId()).toList();
     return ids;
   }
@@ -54,17 +212,12 @@ public class ReservationCalendar implements Iterable<Reservation> {
    * @return true if there are no reservations on given date, false otherwise.
    */
   public final boolean isAvailable(final LocalDate date) {
-    return reservations.stream().noneMatch((reservation) -> {
-      LocalDate start = reservation.getStartDate();
-      LocalDate end = reservation.getEndDate();
-      return date.isEqual(start)
-        || date.isEqual(end)
-        || date.isAfter(start) && date.isBefore(end);
-    });
+    return isAvailable(date, date);
   }
 
   /**
    * Returns wether or not the room is available in given time period.
+   * Both the start date and the end date are included in the period.
    *
    * @param startDate given start date.
    * @param endDate given end date.
@@ -73,18 +226,84 @@ public class ReservationCalendar implements Iterable<Reservation> {
    */
   public final boolean isAvailable(final LocalDate startDate,
                                     final LocalDate endDate) {
-    LocalDate date = startDate;
-    while (date.isBefore(endDate) || date.isEqual(endDate)) {
-      if (!isAvailable(date)) {
-        return false;
+    return isAvailable(startDate.toEpochDay(), endDate.toEpochDay());
+  }
+
+  /**
+   * Returns wether or not the room is available in given time period,
+   * where both days are given as epoch days. Both days are included in the period.
+   *
+   * @param startDay given start day.
+   * @param endDay given end day.
+   *
+   * @return true if there are no reservations in given time period, false otherwise.
+   */
+  public final boolean isAvailable(final long startDay, final long endDay) {
+    if (occupancy.covers(startDay, endDay)) {
+      return occupancy.isFree(startDay, endDay);
+    }
+    return isAvailableInTree(startDay, endDay);
+  }
+
+  /**
+   * Returns the earliest day, on or after {@code fromDay}, that a stay of the given
+   * number of nights can start on and still end on or before {@code lastDay}.
+   * The reservations from the one overlapping {@code fromDay} onwards are visited
+   * once, in order, moving the candidate start past every reservation in the way.
+   * All days are epoch days.
+   *
+   * @param fromDay the earliest day the stay may start.
+   * @param nights the length of the stay.
+   * @param lastDay the latest day the stay may end.
+   *
+   * @return the start day of the earliest free stay, or {@link #NO_DAY} if there is none
+   */
+  public final long findAvailableDay(final long fromDay, final long nights, final long lastDay) {
+    long candidate = fromDay;
+    LocalDate first = reservations.floorKey(LocalDate.ofEpochDay(fromDay));
+    Map<LocalDate, Reservation> following =
+        first == null ? reservations : reservations.tailMap(first, true);
+    for (Reservation reservation : following.values()) {
+      if (candidate + nights > lastDay) {
+        return NO_DAY;
+      }
+      if (reservation.getEndDay() < candidate) {
+        continue;
+      }
+      if (candidate + nights < reservation.getStartDay()) {
+        return candidate;
       }
-      date = date.plusDays(1);
+      candidate = reservation.getEndDay() + 1;
     }
-    return true;
+    return candidate + nights <= lastDay ? candidate : NO_DAY;
+  }
+
+  /**
+   * Looks up availability in the sorted reservations, for periods outside
+   * the occupancy window. Only the reservation starting latest on or before
+   * {@code endDay} can overlap the period, so it is the only one that needs to be checked.
+   *
+   * @param startDay given start day.
+   * @param endDay given end day.
+   *
+   * @return true if there are no reservations in given time period, false otherwise.
+   */
+  private boolean isAvailableInTree(final long startDay, final long endDay) {
+    Map.Entry<LocalDate, Reservation> candidate =
+        reservations.floorEntry(LocalDate.ofEpochDay(endDay));
+    if (candidate == null) {
+      return true;
+    }
+    return candidate.getValue().getEndDay() < startDay;
   }
 
+  /**
+   * Returns an iterator over the reservations, ordered by start date.
+   *
+   * @return Iterator with type Reservation
+   */
   @Override
   public final Iterator<Reservation> iterator() {
-    return reservations.iterator();
+    return reservations.values().iterator();
   }
 }
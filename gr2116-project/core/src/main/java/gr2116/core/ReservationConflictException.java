@@ -0,0 +1,18 @@
+package gr2116.core;
+
+/**
+ * Thrown when a reservation is made against a version of a room that is out of date,
+ * i.e. the room has been booked since the version was read.
+ */
+public class ReservationConflictException extends IllegalStateException {
+  private static final long serialVersionUID = 1L;
+
+  /**
+   * Constructs a ReservationConflictException with the given message.
+   *
+   * @param message the detail message
+   */
+  public ReservationConflictException(final String message) {
+    super(message);
+  }
+}
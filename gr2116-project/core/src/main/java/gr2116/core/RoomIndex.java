@@ -0,0 +1,152 @@
+package gr2116.core;
+
+/**
+ * Index of hotel rooms by room number. Uses open addressing with linear probing
+ * over primitive int keys, so a lookup neither boxes the room number nor
+ * allocates.
+ */
+final class RoomIndex {
+  /**
+   * The room numbers, where the slot is in use.
+   */
+  private int[] keys;
+  /**
+   * The rooms, or null where the slot is empty.
+   */
+  private HotelRoom[] rooms;
+  /**
+   * The number of rooms in the index.
+   */
+  private int size;
+
+  /**
+   * Constructs an empty index.
+   */
+  RoomIndex() {
+    keys = new int[16];
+    rooms = new HotelRoom[16];
+  }
+
+  /**
+   * Returns the number of rooms in the index.
+   *
+   * @return size
+   */
+  int size() {
+    return size;
+  }
+
+  /**
+   * Returns the room with the given number.
+   *
+   * @param number the room number
+   *
+   * @return the room, or null if there is no room with the given number
+   */
+  HotelRoom get(final int number) {
+    int mask = keys.length - 1;
+    for (int i = slot(number, mask); rooms[i] != null; i = (i + 1) & mask) {
+      if (keys[i] == number) {
+        return rooms[i];
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Puts the given room in the index under its room number.
+   *
+   * @param number the room number
+   * @param room the room
+   *
+   * @return the room that was replaced, or null if there was none
+   */
+  HotelRoom put(final int number, final HotelRoom room) {
+    int mask = keys.length - 1;
+    int i = slot(number, mask);
+    for (; rooms[i] != null; i = (i + 1) & mask) {
+      if (keys[i] == number) {
+        HotelRoom old = rooms[i];
+        rooms[i] = room;
+        return old;
+      }
+    }
+    keys[i] = number;
+    rooms[i] = room;
+    size++;
+    if (size * 2 > keys.length) {
+      resize(keys.length * 2);
+    }
+    return null;
+  }
+
+  /**
+   * Removes the room with the given number from the index.
+   * The rooms following it in the probe sequence are shifted back,
+   * so that no tombstones are needed.
+   *
+   * @param number the room number
+   *
+   * @return the room that was removed, or null if there was none
+   */
+  HotelRoom remove(final int number) {
+    int mask = keys.length - 1;
+    int i = slot(number, mask);
+    while (rooms[i] != null && keys[i] != number) {
+      i = (i + 1) & mask;
+    }
+    if (rooms[i] == null) {
+      return null;
+    }
+    final HotelRoom old = rooms[i];
+    int hole = i;
+    for (int j = (hole + 1) & mask; rooms[j] != null; j = (j + 1) & mask) {
+      int home = slot(keys[j], mask);
+      // Move the entry at j into the hole, unless its home slot lies cyclically in (hole, j].
+      if (((j - home) & mask) >= ((j - hole) & mask)) {
+        keys[hole] = keys[j];
+        rooms[hole] = rooms[j];
+        hole = j;
+      }
+    }
+    rooms[hole] = null;
+    size--;
+    return old;
+  }
+
+  /**
+   * Moves every room into new tables of the given capacity.
+   *
+   * @param capacity the new capacity, a power of two
+   */
+  private void resize(final int capacity) {
+    int[] oldKeys = keys;
+    HotelRoom[] oldRooms = rooms;
+    keys = new int[capacity];
+    rooms = new HotelRoom[capacity];
+    int mask = capacity - 1;
+    for (int j = 0; j < oldKeys.length; j++) {
+      if (oldRooms[j] != null) {
+        int i = slot(oldKeys[j], mask);
+        while (rooms[i] != null) {
+          i = (i + 1) & mask;
+        }
+        keys[i] = oldKeys[j];
+        rooms[i] = oldRooms[j];
+      }
+    }
+  }
+
+  /**
+   * Returns the home slot of the given room number.
+   *
+   * @param number the room number
+   * @param mask the table length minus one
+   *
+   * @return the home slot
+   */
+  private static int slot(final int number, final int mask) {
+    int h = number * 0x9E3779B9;
+    return (h ^ (h >>> 16)) & mask;
+  }
+}
@@ -0,0 +1,118 @@
+package gr2116.core;
+
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Secondary indexes of hotel rooms by room type, floor and amenity.
+ * Each index maps a value to the postings of rooms having that value,
+ * keyed by room number so that the postings do not depend on the
+ * (mutable) equality of rooms.
+ */
+final class RoomQueryIndex {
+  private final Map<HotelRoomType, Map<Integer, HotelRoom>> byRoomType =
+      new EnumMap<>(HotelRoomType.class);
+  private final Map<Integer, Map<Integer, HotelRoom>> byFloor = new HashMap<>();
+  private final Map<Amenity, Map<Integer, HotelRoom>> byAmenity = new EnumMap<>(Amenity.class);
+
+  /**
+   * Adds the given room to every index.
+   *
+   * @param room the room to add
+   */
+  void add(final HotelRoom room) {
+    if (room.getRoomType() != null) {
+      postings(byRoomType, room.getRoomType()).put(room.getNumber(), room);
+    }
+    postings(byFloor, room.getFloor()).put(room.getNumber(), room);
+    addAmenities(room);
+  }
+
+  /**
+   * Removes the given room from every index.
+   *
+   * @param room the room to remove
+   */
+  void remove(final HotelRoom room) {
+    if (room.getRoomType() != null) {
+      removePosting(byRoomType, room.getRoomType(), room.getNumber());
+    }
+    removePosting(byFloor, room.getFloor(), room.getNumber());
+    removeAmenities(room);
+  }
+
+  /**
+   * Updates the amenity index for the given room, after its amenities have changed.
+   *
+   * @param room the room whose amenities changed
+   */
+  void updateAmenities(final HotelRoom room) {
+    removeAmenities(room);
+    addAmenities(room);
+  }
+
+  /**
+   * Plans the given filter against the indexes. Returns the smallest postings
+   * among those for the filter's room type, floor and required amenities.
+   * Every room matching the filter is in the returned postings, but the
+   * postings may contain rooms that do not match.
+   *
+   * @param filter the filter to plan
+   *
+   * @return the candidate rooms, or null if the filter does not use any index
+   */
+  Collection<HotelRoom> candidates(final HotelRoomFilter filter) {
+    Map<Integer, HotelRoom> cheapest = null;
+    if (filter.getRoomType() != null) {
+      cheapest = smallest(cheapest, postingsOrEmpty(byRoomType, filter.getRoomType()));
+    }
+    if (filter.getFloor() != null) {
+      cheapest = smallest(cheapest, postingsOrEmpty(byFloor, filter.getFloor()));
+    }
+    for (Amenity amenity : filter.getRequiredAmenities()) {
+      cheapest = smallest(cheapest, postingsOrEmpty(byAmenity, amenity));
+    }
+    return cheapest == null ? null : cheapest.values();
+  }
+
+  private void addAmenities(final HotelRoom room) {
+    int mask = room.amenityMask();
+    for (Amenity amenity : Amenity.values()) {
+      if ((mask & amenity.mask()) != 0) {
+        postings(byAmenity, amenity).put(room.getNumber(), room);
+      }
+    }
+  }
+
+  private void removeAmenities(final HotelRoom room) {
+    for (Amenity amenity : Amenity.values()) {
+      removePosting(byAmenity, amenity, room.getNumber());
+    }
+  }
+
+  private static Map<Integer, HotelRoom> smallest(final Map<Integer, HotelRoom> current,
+      final Map<Integer, HotelRoom> other) {
+    return current == null || other.size() < current.size() ? other : current;
+  }
+
+  private static <K> Map<Integer, HotelRoom> postings(final Map<K, Map<Integer, HotelRoom>> index,
+      final K key) {
+    return index.computeIfAbsent(key, (k) -> new LinkedHashMap<>());
+  }
+
+  private static <K> Map<Integer, HotelRoom> postingsOrEmpty(
+      final Map<K, Map<Integer, HotelRoom>> index, final K key) {
+    return index.getOrDefault(key, Map.of());
+  }
+
+  private static <K> void removePosting(final Map<K, Map<Integer, HotelRoom>> index,
+      final K key, final int number) {
+    Map<Integer, HotelRoom> postings = index.get(key);
+    if (postings != null) {
+      postings.remove(number);
+    }
+  }
+}
@@ -2,6 +2,7 @@ package gr2116.core;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
+import java.util.Arrays;
 import org.junit.jupiter.api.Test;
 
 public class AmenityTest {
@@ -12,4 +13,12 @@ public class AmenityTest {
     assertEquals("A washing machine", Amenity.WashingMachine.getName());
     assertEquals("A Dryer with high-speed setting", Amenity.Dryer.getDescription());
   }
+
+  @Test
+  public void testMask() {
+    assertEquals(1, Amenity.KitchenFacilities.mask());
+    assertEquals(0, Amenity.maskOf(Arrays.asList()));
+    assertEquals(Amenity.Fridge.mask() | Amenity.Shower.mask(),
+        Amenity.maskOf(Arrays.asList(Amenity.Fridge, Amenity.Shower, Amenity.Fridge)));
+  }
 }
@@ -0,0 +1,357 @@
+package gr2116.core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.System.Logger;
+import java.lang.System.Logger.Level;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Stress test for making reservations on a Hotel from several threads at once,
+ * with a benchmark comparing bookings under the room locks to optimistic bookings.
+ */
+public class HotelConcurrencyTest {
+  private static final Logger LOG = System.getLogger(HotelConcurrencyTest.class.getName());
+  private static final int THREADS = 8;
+  private static final int BOOKINGS_PER_THREAD = 5000;
+  private static final int ROOMS = 64;
+  private static final double PRICE = 10;
+  private static final double START_BALANCE = 1e9;
+  private static final int GROUP_SIZE = 3;
+
+  private final LocalDate today = LocalDate.now();
+  private Hotel hotel;
+  private List<Person> persons;
+
+  /**
+   * Sets up a hotel with rooms on a few floors and one guest per thread.
+   */
+  @BeforeEach
+  public void setup() {
+    Collection<HotelRoom> rooms = new ArrayList<>();
+    for (int i = 0; i < ROOMS; i++) {
+      HotelRoom room = new HotelRoom(101 + i);
+      room.setPrice(PRICE);
+      rooms.add(room);
+    }
+    persons = new ArrayList<>();
+    for (int i = 0; i < THREADS; i++) {
+      Person person = new Person("guest" + (char) ('a' + i));
+      person.addBalance(START_BALANCE);
+      persons.add(person);
+    }
+    hotel = new Hotel(rooms, persons);
+  }
+
+  /**
+   * Books random stays from every thread, half of them on the same room and
+   * some of them optimistically,
+   * and checks that no room was double-booked and no money went missing.
+   *
+   * @throws Exception if a booking thread fails unexpectedly
+   */
+  @Test
+  public void testConcurrentReservations() throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+    List<Future<Integer>> results = new ArrayList<>();
+    for (int t = 0; t < THREADS; t++) {
+      final Person person = persons.get(t);
+      final Random random = new Random(t);
+      results.add(executor.submit(() -> book(person, random)));
+    }
+    int booked = 0;
+    for (Future<Integer> result : results) {
+      booked += result.get();
+    }
+    executor.shutdown();
+    assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+    assertConsistent(booked);
+  }
+
+  /**
+   * Books random stays on groups of rooms from every thread, all groups including
+   * the same room and listing their rooms in random order, and checks that every
+   * group was booked completely or not at all.
+   *
+   * @throws Exception if a booking thread fails unexpectedly
+   */
+  @Test
+  public void testConcurrentGroupReservations() throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+    List<Future<Integer>> results = new ArrayList<>();
+    for (int t = 0; t < THREADS; t++) {
+      final Person person = persons.get(t);
+      final Random random = new Random(t);
+      results.add(executor.submit(() -> bookGroups(person, random)));
+    }
+    int booked = 0;
+    for (Future<Integer> result : results) {
+      booked += result.get();
+    }
+    executor.shutdown();
+    assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+    assertConsistent(booked);
+    for (Person person : persons) {
+      assertEquals(0, person.getReservations().size() % GROUP_SIZE);
+    }
+  }
+
+  /**
+   * Books random stays from every thread while another thread keeps removing and adding
+   * rooms, and checks that the occupancy index still counts exactly the nights booked
+   * on the rooms in the hotel.
+   *
+   * @throws Exception if a booking thread fails unexpectedly
+   */
+  @Test
+  public void testOccupancyWhileRoomsChange() throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(THREADS + 1);
+    List<Future<Integer>> results = new ArrayList<>();
+    for (int t = 0; t < THREADS; t++) {
+      final Person person = persons.get(t);
+      final Random random = new Random(t);
+      results.add(executor.submit(() -> {
+        for (int i = 0; i < BOOKINGS_PER_THREAD; i++) {
+          LocalDate start = today.plusDays(random.nextInt(3000));
+          try {
+            hotel.makeReservation(person, 101 + random.nextInt(ROOMS), start,
+                start.plusDays(1 + random.nextInt(5)));
+          } catch (IllegalArgumentException | IllegalStateException e) {
+            // The room was taken, or is being added again
+          }
+        }
+        return 0;
+      }));
+    }
+    Future<?> changer = executor.submit(() -> {
+      Random random = new Random();
+      while (!results.stream().allMatch(Future::isDone)) {
+        HotelRoom room = hotel.getRoom(101 + random.nextInt(ROOMS));
+        if (room != null) {
+          hotel.removeRoom(room);
+          hotel.addRoom(room);
+        }
+      }
+    });
+    for (Future<Integer> result : results) {
+      result.get();
+    }
+    changer.get();
+    executor.shutdown();
+    assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+    LocalDate end = today.plusDays(3010);
+    long nights = 0;
+    for (HotelRoom room : hotel) {
+      Iterator<Reservation> it = room.getReservations();
+      while (it.hasNext()) {
+        Reservation reservation = it.next();
+        nights += reservation.getEndDay() - reservation.getStartDay();
+      }
+    }
+    assertEquals(nights, hotel.getOccupiedNights(null, today, end));
+  }
+
+  /**
+   * Checks that no room was double-booked, that every person paid for exactly
+   * their reservations, and that the rooms and persons agree on the reservations.
+   *
+   * @param booked the number of reservations that were made
+   */
+  private void assertConsistent(int booked) {
+    int reservationsInRooms = 0;
+    for (HotelRoom room : hotel) {
+      Reservation previous = null;
+      Iterator<Reservation> it = room.getReservations();
+      while (it.hasNext()) {
+        Reservation reservation = it.next();
+        if (previous != null) {
+          assertTrue(previous.getEndDate().isBefore(reservation.getStartDate()),
+              "Room " + room.getNumber() + " is double-booked");
+        }
+        previous = reservation;
+        reservationsInRooms++;
+      }
+    }
+    int reservationsOfPersons = 0;
+    for (Person person : persons) {
+      double spent = 0;
+      for (Reservation reservation : person.getReservations()) {
+        spent += hotel.getRoom(reservation.getRoomNumber())
+            .getPrice(reservation.getStartDate(), reservation.getEndDate());
+      }
+      assertEquals(START_BALANCE - spent, person.getBalance());
+      reservationsOfPersons += person.getReservations().size();
+    }
+    assertEquals(booked, reservationsInRooms);
+    assertEquals(booked, reservationsOfPersons);
+  }
+
+  /**
+   * Compares the throughput of bookings made under the room locks with optimistic
+   * bookings against the version of the room, with all threads booking the same
+   * room and with the threads spread over all rooms. Optimistic bookings that
+   * lose a race read the version again and retry.
+   *
+   * @throws Exception if a booking thread fails unexpectedly
+   */
+  @Test
+  @Tag("benchmark")
+  public void testContentionBenchmark() throws Exception {
+    for (int round = 0; round < 2; round++) {
+      // The first round only warms up both paths
+      for (boolean hot : new boolean[] {true, false}) {
+        setup();
+        double locking = benchmark(hot, false);
+        setup();
+        double optimistic = benchmark(hot, true);
+        if (round > 0) {
+          LOG.log(Level.INFO, "{0}: locking {1,number,#} bookings/s, "
+              + "optimistic {2,number,#} bookings/s", hot ? "One room" : "All rooms",
+              locking, optimistic);
+        }
+      }
+    }
+  }
+
+  /**
+   * Books random stays from every thread and measures the throughput.
+   *
+   * @param hot whether every thread books the same room
+   * @param optimistic whether to book against the version of the room
+   *                   instead of under the room's lock
+   *
+   * @return the number of booking attempts per second
+   *
+   * @throws Exception if a booking thread fails unexpectedly
+   */
+  private double benchmark(boolean hot, boolean optimistic) throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+    List<Future<?>> results = new ArrayList<>();
+    long startTime = System.nanoTime();
+    for (int t = 0; t < THREADS; t++) {
+      final Person person = persons.get(t);
+      final Random random = new Random(t);
+      results.add(executor.submit(() -> {
+        for (int i = 0; i < BOOKINGS_PER_THREAD; i++) {
+          int roomNumber = hot ? 101 : 101 + random.nextInt(ROOMS);
+          LocalDate start = today.plusDays(random.nextInt(3000));
+          LocalDate end = start.plusDays(1 + random.nextInt(5));
+          try {
+            if (optimistic) {
+              bookOptimistic(person, roomNumber, start, end);
+            } else {
+              hotel.makeReservation(person, roomNumber, start, end);
+            }
+          } catch (IllegalStateException e) {
+            // The room was taken, which is expected under contention
+          }
+        }
+      }));
+    }
+    for (Future<?> result : results) {
+      result.get();
+    }
+    long elapsed = System.nanoTime() - startTime;
+    executor.shutdown();
+    assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+    return THREADS * BOOKINGS_PER_THREAD / (elapsed / 1e9);
+  }
+
+  /**
+   * Books a stay against the version of the room, reading the version again
+   * whenever someone else booked the room first, like a REST client would.
+   *
+   * @param person the person booking
+   * @param roomNumber the room to book
+   * @param start the start date
+   * @param end the end date
+   */
+  private void bookOptimistic(Person person, int roomNumber, LocalDate start, LocalDate end) {
+    HotelRoom room = hotel.getRoom(roomNumber);
+    while (true) {
+      try {
+        hotel.makeReservation(person, roomNumber, start, end, room.getVersion());
+        return;
+      } catch (ReservationConflictException e) {
+        // Booked by someone else since the version was read
+      }
+    }
+  }
+
+  /**
+   * Tries to book random stays for the given person, a quarter of them
+   * against the version of the room instead of under the room's lock.
+   *
+   * @param person the person booking
+   * @param random the source of rooms and dates
+   *
+   * @return the number of successful bookings
+   */
+  private int book(Person person, Random random) {
+    int booked = 0;
+    for (int i = 0; i < BOOKINGS_PER_THREAD; i++) {
+      int roomNumber = random.nextBoolean() ? 101 : 101 + random.nextInt(ROOMS);
+      LocalDate start = today.plusDays(random.nextInt(3000));
+      LocalDate end = start.plusDays(1 + random.nextInt(5));
+      try {
+        if (random.nextInt(4) == 0) {
+          bookOptimistic(person, roomNumber, start, end);
+        } else {
+          hotel.makeReservation(person, roomNumber, start, end);
+        }
+        booked++;
+      } catch (IllegalStateException e) {
+        // The room was taken, which is expected under contention
+      }
+    }
+    return booked;
+  }
+
+  /**
+   * Tries to book random stays on groups of rooms for the given person.
+   * Every group includes room 101, and the rooms are listed in random order.
+   *
+   * @param person the person booking
+   * @param random the source of rooms and dates
+   *
+   * @return the number of reservations made
+   */
+  private int bookGroups(Person person, Random random) {
+    int booked = 0;
+    for (int i = 0; i < BOOKINGS_PER_THREAD / GROUP_SIZE; i++) {
+      List<Integer> roomNumbers = new ArrayList<>();
+      roomNumbers.add(101);
+      while (roomNumbers.size() < GROUP_SIZE) {
+        int roomNumber = 102 + random.nextInt(ROOMS - 1);
+        if (!roomNumbers.contains(roomNumber)) {
+          roomNumbers.add(roomNumber);
+        }
+      }
+      Collections.shuffle(roomNumbers, random);
+      LocalDate start = today.plusDays(random.nextInt(3000));
+      LocalDate end = start.plusDays(1 + random.nextInt(5));
+      try {
+        hotel.makeGroupReservation(person, roomNumbers, start, end);
+        booked += GROUP_SIZE;
+      } catch (IllegalStateException e) {
+        // One of the rooms was taken, which is expected under contention
+      }
+    }
+    return booked;
+  }
+}
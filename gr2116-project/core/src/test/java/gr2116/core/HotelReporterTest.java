@@ -0,0 +1,195 @@
+package gr2116.core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.System.Logger;
+import java.lang.System.Logger.Level;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for HotelReporter, with a benchmark of how reporting on a large
+ * synthetic hotel scales with the number of threads.
+ */
+public class HotelReporterTest {
+  private static final Logger LOG = System.getLogger(HotelReporterTest.class.getName());
+  private static final int ROOMS = 20000;
+  private static final int RESERVATIONS_PER_ROOM = 25;
+  private static final int GUESTS = 5000;
+  private static final int RUNS = 3;
+
+  /**
+   * Checks the figures of a small hotel, including a stay across two months.
+   */
+  @Test
+  public void testCreateReport() {
+    HotelRoom single = new HotelRoom(HotelRoomType.Single, 101);
+    single.setPrice(100);
+    HotelRoom double1 = new HotelRoom(HotelRoomType.Double, 205);
+    double1.setPrice(50);
+    Person alice = new Person("alice");
+    Person bob = new Person("bob");
+    Person carol = new Person("carol");
+    book(alice, single, LocalDate.of(2030, 1, 30), LocalDate.of(2030, 2, 2));
+    book(bob, double1, LocalDate.of(2030, 2, 10), LocalDate.of(2030, 2, 12));
+    Hotel hotel = new Hotel(List.of(single, double1), List.of(alice, bob, carol));
+
+    HotelReport report = HotelReporter.createReport(hotel, 2);
+    assertEquals(Map.of(HotelRoomType.Single, 30000L, HotelRoomType.Double, 10000L),
+        report.getRevenueByRoomType());
+    assertEquals(Map.of(1, 30000L, 2, 10000L), report.getRevenueByFloor());
+    assertEquals(Map.of(YearMonth.of(2030, 1), 20000L, YearMonth.of(2030, 2), 20000L),
+        report.getRevenueByMonth());
+    assertEquals(40000L, report.getTotalRevenueCents());
+    assertEquals(400, report.getTotalRevenue());
+    assertEquals(2, report.getReservationCount());
+    assertEquals(5, report.getNightCount());
+    assertEquals(2.5, report.getAverageLengthOfStay());
+    assertEquals(List.of(new HotelReport.GuestSpend("alice", 30000),
+        new HotelReport.GuestSpend("bob", 10000)), report.getTopGuests());
+
+    assertTrue(HotelReporter.createReport(hotel, 0).getTopGuests().isEmpty());
+    assertEquals(3, HotelReporter.createReport(hotel, 5).getTopGuests().size());
+  }
+
+  @Test
+  public void testEmptyHotel() {
+    HotelReport report = HotelReporter.createReport(new Hotel(), 3);
+    assertTrue(report.getRevenueByRoomType().isEmpty());
+    assertTrue(report.getRevenueByFloor().isEmpty());
+    assertTrue(report.getRevenueByMonth().isEmpty());
+    assertEquals(0, report.getAverageLengthOfStay());
+    assertTrue(report.getTopGuests().isEmpty());
+  }
+
+  @Test
+  public void testInvalidArguments() {
+    assertThrows(IllegalArgumentException.class, () -> HotelReporter.createReport(null, 1));
+    assertThrows(IllegalArgumentException.class,
+        () -> HotelReporter.createReport(new Hotel(), -1));
+    assertThrows(IllegalArgumentException.class,
+        () -> HotelReporter.createReport(new Hotel(), 1, null));
+  }
+
+  /**
+   * Reports on a synthetic hotel on one thread and on several,
+   * and checks that both give the same report.
+   */
+  @Test
+  public void testParallelReport() {
+    Hotel hotel = createSyntheticHotel(500);
+    ForkJoinPool single = new ForkJoinPool(1);
+    ForkJoinPool several = new ForkJoinPool(4);
+    try {
+      HotelReport expected = HotelReporter.createReport(hotel, 10, single);
+      assertEquals(500L * RESERVATIONS_PER_ROOM, expected.getReservationCount());
+      HotelReport report = HotelReporter.createReport(hotel, 10, several);
+      assertEquals(expected.getReservationCount(), report.getReservationCount());
+      assertEquals(expected.getRevenueByMonth(), report.getRevenueByMonth());
+      assertEquals(expected.getRevenueByRoomType(), report.getRevenueByRoomType());
+      assertEquals(expected.getRevenueByFloor(), report.getRevenueByFloor());
+      assertEquals(expected.getTopGuests(), report.getTopGuests());
+    } finally {
+      single.shutdown();
+      several.shutdown();
+    }
+  }
+
+  /**
+   * Reports on a large synthetic hotel on one thread and on every core,
+   * checks that both give the same report and logs the speedup.
+   */
+  @Test
+  @Tag("benchmark")
+  public void testScaling() {
+    Hotel hotel = createSyntheticHotel(ROOMS);
+    final int cores = Runtime.getRuntime().availableProcessors();
+    ForkJoinPool single = new ForkJoinPool(1);
+    ForkJoinPool all = new ForkJoinPool(cores);
+    try {
+      HotelReport expected = HotelReporter.createReport(hotel, 10, single);
+      assertEquals((long) ROOMS * RESERVATIONS_PER_ROOM, expected.getReservationCount());
+      double sequential = time(hotel, single, expected);
+      double parallel = time(hotel, all, expected);
+      LOG.log(Level.INFO, String.format("Reporting on %d reservations: %.0f ms on one thread, "
+          + "%.0f ms on %d threads (%.1fx)", expected.getReservationCount(),
+          sequential, parallel, cores, sequential / parallel));
+    } finally {
+      single.shutdown();
+      all.shutdown();
+    }
+  }
+
+  private static void book(Person person, HotelRoom room, LocalDate start, LocalDate end) {
+    Reservation reservation = new Reservation(room, start, end);
+    room.addReservation(reservation);
+    person.addReservation(reservation);
+  }
+
+  /**
+   * Returns the given number written with the letters a to z, as usernames cannot have digits.
+   */
+  private static String letters(int number) {
+    StringBuilder builder = new StringBuilder();
+    int rest = number;
+    do {
+      builder.append((char) ('a' + rest % 26));
+      rest /= 26;
+    } while (rest > 0);
+    return builder.toString();
+  }
+
+  /**
+   * Returns the fastest of a few runs of a report, in milliseconds,
+   * checking that every run gives the expected report.
+   */
+  private static double time(Hotel hotel, ForkJoinPool pool, HotelReport expected) {
+    double best = Double.MAX_VALUE;
+    for (int i = 0; i < RUNS; i++) {
+      long start = System.nanoTime();
+      HotelReport report = HotelReporter.createReport(hotel, 10, pool);
+      best = Math.min(best, (System.nanoTime() - start) / 1e6);
+      assertEquals(expected.getRevenueByMonth(), report.getRevenueByMonth());
+      assertEquals(expected.getRevenueByRoomType(), report.getRevenueByRoomType());
+      assertEquals(expected.getTopGuests(), report.getTopGuests());
+    }
+    return best;
+  }
+
+  /**
+   * Returns a hotel where every room has back-to-back stays over a few years,
+   * each booked by a random guest.
+   */
+  private static Hotel createSyntheticHotel(int roomCount) {
+    Random random = new Random(42);
+    HotelRoomType[] types = HotelRoomType.values();
+    List<Person> guests = new ArrayList<>();
+    for (int i = 0; i < GUESTS; i++) {
+      guests.add(new Person("guest" + letters(i)));
+    }
+    List<HotelRoom> rooms = new ArrayList<>();
+    LocalDate first = LocalDate.of(2020, 1, 1);
+    for (int i = 0; i < roomCount; i++) {
+      int number = (1 + i % 9) * 100000 + i;
+      HotelRoom room = new HotelRoom(types[i % types.length], number);
+      room.setPrice(50 + random.nextInt(200));
+      LocalDate start = first.plusDays(random.nextInt(30));
+      for (int j = 0; j < RESERVATIONS_PER_ROOM; j++) {
+        LocalDate end = start.plusDays(1 + random.nextInt(14));
+        book(guests.get(random.nextInt(GUESTS)), room, start, end);
+        start = end.plusDays(1 + random.nextInt(30));
+      }
+      rooms.add(room);
+    }
+    return new Hotel(rooms, guests);
+  }
+}
@@ -8,7 +8,9 @@ import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
 import java.time.LocalDate;
+import java.util.EnumSet;
 import java.util.HashMap;
+import java.util.function.Predicate;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -52,17 +54,23 @@ public class HotelRoomFilterTest {
     assertEquals(today, filter.getStartDate());
     assertEquals(tomorrow, filter.getEndDate());
     assertEquals(type, filter.getRoomType());
+    assertEquals(floor, filter.getFloor());
+    assertEquals(EnumSet.of(Amenity.Bathtub, Amenity.Fridge),
+        EnumSet.copyOf(filter.getRequiredAmenities()));
+    amenities.put(Amenity.Fridge, false);
+    filter = new HotelRoomFilter(today, tomorrow, type, floor, amenities);
+    assertEquals(EnumSet.of(Amenity.Bathtub), EnumSet.copyOf(filter.getRequiredAmenities()));
   }
 
   @Test
   public void testPredicate() {
     HotelRoom room = mock(HotelRoom.class);
-    when(room.isAvailable(today, tomorrow)).thenReturn(false);
+    when(room.isAvailable(today.toEpochDay(), tomorrow.toEpochDay())).thenReturn(false);
     filter = new HotelRoomFilter(tomorrow, today, type, floor, amenities);
     assertFalse(filter.test(room));
     filter = new HotelRoomFilter(today, today, type, floor, amenities);
     assertFalse(filter.test(room));
-    when(room.isAvailable(today, tomorrow)).thenReturn(true);
+    when(room.isAvailable(today.toEpochDay(), tomorrow.toEpochDay())).thenReturn(true);
     when(room.getRoomType()).thenReturn(HotelRoomType.Single);
     assertFalse(filter.test(room));
     when(room.getRoomType()).thenReturn(HotelRoomType.Double);
@@ -78,4 +86,45 @@ public class HotelRoomFilterTest {
     filter = new HotelRoomFilter(null, null, null, null, null);
     assertTrue(filter.test(room));
   }
+
+  @Test
+  public void testCompile() {
+    HotelRoom room = mock(HotelRoom.class);
+    when(room.isAvailable(today.toEpochDay(), tomorrow.toEpochDay())).thenReturn(true);
+    when(room.getRoomType()).thenReturn(HotelRoomType.Double);
+    when(room.getFloor()).thenReturn(2);
+    int required = Amenity.Bathtub.mask() | Amenity.Fridge.mask();
+    when(room.hasAllAmenities(required)).thenReturn(true);
+    when(room.hasAllAmenities(0)).thenReturn(true);
+    filter = new HotelRoomFilter(today, tomorrow, type, floor, amenities);
+    Predicate<HotelRoom> compiled = filter.compile();
+    assertTrue(compiled.test(room));
+
+    when(room.isAvailable(today.toEpochDay(), tomorrow.toEpochDay())).thenReturn(false);
+    assertFalse(compiled.test(room));
+    // Invalid dates are not checked, just like in the filter itself
+    assertTrue(new HotelRoomFilter(tomorrow, today, type, floor, amenities).compile().test(room));
+
+    when(room.isAvailable(today.toEpochDay(), tomorrow.toEpochDay())).thenReturn(true);
+    when(room.hasAllAmenities(required)).thenReturn(false);
+    assertFalse(compiled.test(room));
+    when(room.hasAllAmenities(required)).thenReturn(true);
+    when(room.getFloor()).thenReturn(3);
+    assertFalse(compiled.test(room));
+    when(room.getFloor()).thenReturn(2);
+    when(room.getRoomType()).thenReturn(HotelRoomType.Single);
+    assertFalse(compiled.test(room));
+    assertTrue(new HotelRoomFilter(null, null, null, null, null).compile().test(room));
+  }
+
+  @Test
+  public void testWithoutDates() {
+    filter = new HotelRoomFilter(today, tomorrow, type, floor, amenities).withoutDates();
+    assertNull(filter.getStartDate());
+    assertNull(filter.getEndDate());
+    assertEquals(type, filter.getRoomType());
+    assertEquals(floor, filter.getFloor());
+    assertEquals(EnumSet.of(Amenity.Bathtub, Amenity.Fridge), EnumSet.copyOf(
+        filter.getRequiredAmenities()));
+  }
 }
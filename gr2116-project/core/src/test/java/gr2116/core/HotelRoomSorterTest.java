@@ -1,14 +1,17 @@
 package gr2116.core;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
 import gr2116.core.HotelRoomSorter.SortProperty;
+import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
+import java.util.Random;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
@@ -31,20 +34,17 @@ public class HotelRoomSorterTest {
     room0 = mock(HotelRoom.class);
     when(room0.getPrice()).thenReturn(300.0);
     when(room0.getNumber()).thenReturn(101);
-    when(room0.getAmenities()).thenReturn(
-        Arrays.asList(Amenity.Shower.getName(), Amenity.Bathtub.getName()));
+    when(room0.amenityCount()).thenReturn(2);
     hotelRooms.add(room0);
     room1 = mock(HotelRoom.class);
     when(room1.getPrice()).thenReturn(200.0);
     when(room1.getNumber()).thenReturn(102);
-    when(room1.getAmenities()).thenReturn(Arrays.asList(
-        Amenity.Shower.getName(), Amenity.Bathtub.getName(), Amenity.Internet.getName()));
+    when(room1.amenityCount()).thenReturn(3);
     hotelRooms.add(room1);
     room2 = mock(HotelRoom.class);
     when(room2.getPrice()).thenReturn(100.0);
     when(room2.getNumber()).thenReturn(103);
-    when(room2.getAmenities()).thenReturn(
-        Arrays.asList(Amenity.Shower.getName()));
+    when(room2.amenityCount()).thenReturn(1);
     hotelRooms.add(room2);
   }
 
@@ -92,6 +92,23 @@ public class HotelRoomSorterTest {
     assertEquals(sorted.get(2), room2);
   }
 
+  @Test
+  public void testSortByStayPrice() {
+    LocalDate start = LocalDate.of(2030, 6, 3);
+    LocalDate end = start.plusDays(3);
+    when(room0.getPrice(start, end)).thenReturn(150.0);
+    when(room1.getPrice(start, end)).thenReturn(600.0);
+    when(room2.getPrice(start, end)).thenReturn(450.0);
+    hotelRoomSorter.setSortProperty(SortProperty.ByPrice);
+    hotelRoomSorter.setStayDates(start, end);
+    assertEquals(Arrays.asList(room0, room2, room1), hotelRoomSorter.sortRooms(hotelRooms));
+    assertEquals(Arrays.asList(room0), hotelRoomSorter.sortRooms(hotelRooms, 0, 1));
+    hotelRoomSorter.setStayDates(null, null);
+    assertEquals(Arrays.asList(room2, room1, room0), hotelRoomSorter.sortRooms(hotelRooms));
+    assertThrows(IllegalArgumentException.class, () -> hotelRoomSorter.setStayDates(start, null));
+    assertThrows(IllegalArgumentException.class, () -> hotelRoomSorter.setStayDates(end, start));
+  }
+
   @Test
   public void testSortByAmenityCount() {
     hotelRoomSorter.setSortProperty(SortProperty.ByAmenityCount);
@@ -109,4 +126,48 @@ public class HotelRoomSorterTest {
     assertEquals(sorted.get(1), room0);
     assertEquals(sorted.get(2), room2);
   }
+
+  @Test
+  public void testComparatorContract() {
+    for (SortProperty property : SortProperty.values()) {
+      assertEquals(0, property.getComparator().compare(room0, room0));
+      int forward = property.getComparator().compare(room0, room1);
+      int backward = property.getComparator().compare(room1, room0);
+      assertEquals(-Integer.signum(forward), Integer.signum(backward));
+    }
+  }
+
+  @Test
+  public void testTiesOrderedByRoomNumber() {
+    HotelRoom room3 = mock(HotelRoom.class);
+    when(room3.getPrice()).thenReturn(200.0);
+    when(room3.getNumber()).thenReturn(100);
+    hotelRooms.add(room3);
+    hotelRoomSorter.setSortProperty(SortProperty.ByPrice);
+    assertEquals(Arrays.asList(room2, room3, room1, room0), hotelRoomSorter.sortRooms(hotelRooms));
+    hotelRoomSorter.setSortProperty(SortProperty.ByPriceDecreasing);
+    assertEquals(Arrays.asList(room0, room3, room1, room2), hotelRoomSorter.sortRooms(hotelRooms));
+  }
+
+  @Test
+  public void testSortRoomsPaged() {
+    Random random = new Random(7);
+    Collection<HotelRoom> manyRooms = new ArrayList<>();
+    for (int number = 100; number < 1100; number++) {
+      HotelRoom room = new HotelRoom(number);
+      room.setPrice(random.nextInt(50) * 10);
+      manyRooms.add(room);
+    }
+    for (SortProperty property : SortProperty.values()) {
+      hotelRoomSorter.setSortProperty(property);
+      List<HotelRoom> sorted = hotelRoomSorter.sortRooms(manyRooms);
+      assertEquals(sorted.subList(0, 20), hotelRoomSorter.sortRooms(manyRooms, 0, 20));
+      assertEquals(sorted.subList(40, 60), hotelRoomSorter.sortRooms(manyRooms, 40, 20));
+      assertEquals(sorted.subList(990, 1000), hotelRoomSorter.sortRooms(manyRooms, 990, 20));
+      assertEquals(sorted, hotelRoomSorter.sortRooms(manyRooms, 0, Integer.MAX_VALUE));
+    }
+    assertEquals(Arrays.asList(), hotelRoomSorter.sortRooms(manyRooms, 1000, 20));
+    assertEquals(Arrays.asList(), hotelRoomSorter.sortRooms(manyRooms, 0, 0));
+    assertThrows(IllegalArgumentException.class, () -> hotelRoomSorter.sortRooms(manyRooms, -1, 2));
+  }
 }
@@ -9,6 +9,9 @@ import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
@@ -36,6 +39,11 @@ public class HotelRoomTest {
     assertThrows(IllegalArgumentException.class, () -> {
       new HotelRoom(HotelRoomType.Single, -435);
     });
+    assertThrows(IllegalArgumentException.class, () -> {
+      new HotelRoom(HotelRoomType.Single, Reservation.MAX_ROOM_NUMBER + 1);
+    });
+    assertEquals(Reservation.MAX_ROOM_NUMBER,
+        new HotelRoom(HotelRoomType.Single, Reservation.MAX_ROOM_NUMBER).getNumber());
     HotelRoom testRoom = new HotelRoom(HotelRoomType.Quad, 143);
     assertEquals(HotelRoomType.Quad, testRoom.getRoomType());
     assertEquals(143, testRoom.getNumber());
@@ -53,6 +61,9 @@ public class HotelRoomTest {
 
     assertEquals(7, roomDouble.getFloor());
     assertEquals(794, roomDouble.getNumber());
+
+    assertEquals(1, new HotelRoom(1).getFloor());
+    assertEquals(1, new HotelRoom(1203).getFloor());
   }
 
   @Test
@@ -65,6 +76,50 @@ public class HotelRoomTest {
     assertThrows(IllegalArgumentException.class, () -> {
       roomSingle.setPrice(-10);
     });
+    roomSingle.setPrice(0.1);
+    assertEquals(10, roomSingle.getPriceCents());
+    assertEquals(30, roomSingle.getPriceCents(today, today.plusDays(3)));
+    assertEquals(0.3, roomSingle.getPrice(today, today.plusDays(3)));
+  }
+
+  @Test
+  public void testSeasonalPrice() {
+    LocalDate monday = LocalDate.of(2030, 6, 3);
+    roomSingle.setPrice(100);
+    RateCalendar rates = new RateCalendar();
+    rates.setWeekendUplift(50);
+    rates.setSeason(HotelRoomType.Single, monday, monday.plusDays(2), 200);
+    roomSingle.setRateCalendar(rates);
+    // Two nights at 200, two at 100 and two weekend nights at 150.
+    assertEquals(2 * 200 + 2 * 100 + 2 * 150, roomSingle.getPrice(monday, monday.plusDays(6)));
+    assertEquals(100, roomSingle.getPrice(monday.plusDays(2), monday.plusDays(3)));
+    roomSingle.setRateCalendar(null);
+    assertEquals(600, roomSingle.getPrice(monday, monday.plusDays(6)));
+  }
+
+  @Test
+  public void testPriceOverrides() {
+    LocalDate monday = LocalDate.of(2030, 6, 3);
+    roomSingle.setPrice(100);
+    RateCalendar rates = new RateCalendar();
+    rates.setSeason(HotelRoomType.Single, monday, monday.plusDays(7), 200);
+    roomSingle.setRateCalendar(rates);
+    roomSingle.addPriceOverride(monday.plusDays(5), monday.plusDays(9), 10);
+    roomSingle.addPriceOverride(monday.plusDays(1), monday.plusDays(2), 0.5);
+    assertEquals(2, roomSingle.getPriceOverrides().size());
+    assertEquals(monday.plusDays(1), roomSingle.getPriceOverrides().get(0).getStartDate());
+    // Nights 0, 2, 3 and 4 at 200, night 1 at 0.5, nights 5 to 8 at 10 and night 9 at 100.
+    assertEquals(4 * 20000 + 50 + 4 * 1000 + 10000,
+        roomSingle.getPriceCents(monday, monday.plusDays(10)));
+    assertEquals(1000, roomSingle.getPriceCents(monday.plusDays(6), monday.plusDays(7)));
+    assertThrows(IllegalArgumentException.class,
+        () -> roomSingle.addPriceOverride(monday.plusDays(8), monday.plusDays(12), 10));
+    assertThrows(IllegalArgumentException.class,
+        () -> roomSingle.addPriceOverride(monday.plusDays(12), monday.plusDays(12), 10));
+    assertThrows(IllegalArgumentException.class,
+        () -> roomSingle.addPriceOverride(monday.plusDays(12), monday.plusDays(13), -1));
+    roomSingle.clearPriceOverrides();
+    assertEquals(7 * 20000 + 3 * 10000, roomSingle.getPriceCents(monday, monday.plusDays(10)));
   }
 
   @Test
@@ -83,6 +138,25 @@ public class HotelRoomTest {
     assertFalse(roomSingle.hasAmenity(Amenity.Bathtub));
   }
 
+  /**
+   * Adds every amenity from its own thread, so that no update is lost.
+   */
+  @Test
+  public void testConcurrentAmenities() throws InterruptedException {
+    for (int round = 0; round < 100; round++) {
+      HotelRoom room = new HotelRoom(HotelRoomType.Suite, 501);
+      List<Thread> threads = new ArrayList<>();
+      for (Amenity amenity : Amenity.values()) {
+        threads.add(new Thread(() -> room.addAmenity(amenity)));
+      }
+      threads.forEach(Thread::start);
+      for (Thread thread : threads) {
+        thread.join();
+      }
+      assertEquals(Amenity.values().length, room.amenityCount());
+    }
+  }
+
   @Test
   public void testGetAmenities() {
     roomSingle.addAmenity(Amenity.Bathtub);
@@ -91,12 +165,45 @@ public class HotelRoomTest {
     assertTrue(roomSingle.getAmenities().contains("Internet"));
   }
 
+  @Test
+  public void testAmenityMask() {
+    assertEquals(0, roomSingle.amenityMask());
+    assertEquals(0, roomSingle.amenityCount());
+    roomSingle.addAmenity(Amenity.Bathtub);
+    roomSingle.addAmenity(Amenity.Internet);
+    roomSingle.addAmenity(Amenity.Internet);
+    assertEquals(Amenity.Bathtub.mask() | Amenity.Internet.mask(), roomSingle.amenityMask());
+    assertEquals(2, roomSingle.amenityCount());
+    assertTrue(roomSingle.hasAllAmenities(Amenity.Bathtub.mask()));
+    assertTrue(roomSingle.hasAllAmenities(roomSingle.amenityMask()));
+    assertTrue(roomSingle.hasAllAmenities(0));
+    assertFalse(roomSingle.hasAllAmenities(Amenity.Bathtub.mask() | Amenity.Fridge.mask()));
+    roomSingle.removeAmenity(Amenity.Bathtub);
+    assertEquals(Amenity.Internet.mask(), roomSingle.amenityMask());
+    assertEquals(Arrays.asList("Internet"), roomSingle.getAmenities());
+  }
+
   @Test
   public void testIsAvailable() {
     assertTrue(roomSingle.isAvailable(today));
     assertTrue(roomSingle.isAvailable(today, tomorrow));
     assertThrows(IllegalArgumentException.class, () -> roomSingle.isAvailable(tomorrow, today));
   }
+
+  @Test
+  public void testIsAvailableEpochDays() {
+    roomSingle.addReservation(new Reservation(roomSingle, tomorrow, overmorrow));
+    assertFalse(roomSingle.isAvailable(today.toEpochDay(), tomorrow.toEpochDay()));
+    assertTrue(roomSingle.isAvailable(
+        overmorrow.plusDays(1).toEpochDay(), overmorrow.plusDays(3).toEpochDay()));
+    LocalDate farFuture = today.plusYears(10);
+    roomSingle.addReservation(new Reservation(roomSingle, farFuture, farFuture.plusDays(3)));
+    assertFalse(roomSingle.isAvailable(farFuture.toEpochDay(), farFuture.plusDays(1).toEpochDay()));
+    assertTrue(roomSingle.isAvailable(
+        farFuture.plusDays(4).toEpochDay(), farFuture.plusDays(5).toEpochDay()));
+    assertThrows(IllegalArgumentException.class,
+        () -> roomSingle.isAvailable(tomorrow.toEpochDay(), today.toEpochDay()));
+  }
   
   @Test
   public void testAddReservation() {
@@ -152,7 +259,7 @@ public class HotelRoomTest {
     int hash = 13;
     int numHash = roomSingle.getNumber();
     int typeHash = roomSingle.getRoomType().hashCode();
-    int amenHash = roomSingle.getAmenities().hashCode();
+    int amenHash = Amenity.Fridge.mask();
     int priceHash = (int) roomSingle.getPrice();
     hash = hash * 31 + numHash;
     hash = hash * 13 + typeHash;
@@ -1,17 +1,27 @@
 package gr2116.core;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
+import java.time.DayOfWeek;
 import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
@@ -34,6 +44,8 @@ public class HotelTest {
   public void setup() {
     hotel = new Hotel();
     tom = mock(Person.class);
+    when(room1.getReservations()).thenReturn(Collections.emptyIterator());
+    when(room2.getReservations()).thenReturn(Collections.emptyIterator());
   }
 
   @Test
@@ -96,6 +108,21 @@ public class HotelTest {
     assertTrue(hotel.getPersons((p) -> p.getLastName().equals("Sanders")).contains(rick));
   }
 
+  @Test
+  public void testGetPerson() {
+    Person tomas = new Person("tomas");
+    assertNull(hotel.getPerson("tomas"));
+    assertFalse(hotel.hasPerson(tomas));
+    assertFalse(hotel.hasPerson(null));
+    hotel.addPerson(tomas);
+    assertSame(tomas, hotel.getPerson("tomas"));
+    assertTrue(hotel.hasPerson(tomas));
+    assertTrue(hotel.hasPerson(new Person("tomas")));
+    assertFalse(hotel.hasPerson(new Person("rick")));
+    hotel.removePerson(tomas);
+    assertFalse(hotel.hasPerson(tomas));
+  }
+
   @Test
   public void testAddRoom() {
     assertEquals(Arrays.asList(), hotel.getRooms((r) -> true));
@@ -107,6 +134,20 @@ public class HotelTest {
     assertThrows(IllegalArgumentException.class, () -> hotel.addRoom(null));
   }
 
+  @Test
+  public void testGetRoom() {
+    when(room1.getNumber()).thenReturn(101);
+    when(room2.getNumber()).thenReturn(102);
+    hotel.addRoom(room1);
+    hotel.addRoom(room2);
+    assertEquals(room1, hotel.getRoom(101));
+    assertEquals(room2, hotel.getRoom(102));
+    assertNull(hotel.getRoom(103));
+    hotel.removeRoom(room1);
+    assertNull(hotel.getRoom(101));
+    assertEquals(room2, hotel.getRoom(102));
+  }
+
   @Test
   public void testRemoveRoom() {
     hotel.addRoom(room1);
@@ -117,6 +158,7 @@ public class HotelTest {
   @Test
   public void testGetRoomsPredicate() {
     HotelRoom room3 = mock(HotelRoom.class);
+    when(room3.getReservations()).thenReturn(Collections.emptyIterator());
     when(room1.getRoomType()).thenReturn(HotelRoomType.Single);
     when(room2.getRoomType()).thenReturn(HotelRoomType.Double);
     when(room1.getNumber()).thenReturn(101);
@@ -135,6 +177,50 @@ public class HotelTest {
     assertEquals(Arrays.asList(room1), hotel.getRooms((room) -> room.hasAmenity(Amenity.Internet)));
   }
 
+  @Test
+  public void testGetRoomsFilter() {
+    HotelRoom penthouse = new HotelRoom(HotelRoomType.Penthouse, 701);
+    HotelRoom suite = new HotelRoom(HotelRoomType.Suite, 702);
+    HotelRoom lowPenthouse = new HotelRoom(HotelRoomType.Penthouse, 301);
+    penthouse.addAmenity(Amenity.Bathtub);
+    hotel.addRoom(penthouse);
+    hotel.addRoom(suite);
+    hotel.addRoom(lowPenthouse);
+    HashMap<Amenity, Boolean> bathtub = new HashMap<>();
+    bathtub.put(Amenity.Bathtub, true);
+    bathtub.put(Amenity.Fridge, false);
+
+    HotelRoomFilter filter = new HotelRoomFilter(null, null, HotelRoomType.Penthouse, 7, bathtub);
+    assertEquals(Arrays.asList(penthouse), hotel.getRooms(filter));
+    filter = new HotelRoomFilter(null, null, HotelRoomType.Penthouse, null, null);
+    assertEquals(2, hotel.getRooms(filter).size());
+    filter = new HotelRoomFilter(null, null, null, 7, null);
+    assertEquals(Arrays.asList(penthouse, suite), hotel.getRooms(filter));
+
+    // The amenity index must follow changes to rooms already in the hotel
+    filter = new HotelRoomFilter(null, null, null, null, bathtub);
+    suite.addAmenity(Amenity.Bathtub);
+    assertEquals(Arrays.asList(penthouse, suite), hotel.getRooms(filter));
+    penthouse.removeAmenity(Amenity.Bathtub);
+    assertEquals(Arrays.asList(suite), hotel.getRooms(filter));
+
+    // Replaced and removed rooms must leave the indexes
+    HotelRoom newSuite = new HotelRoom(HotelRoomType.Double, 702);
+    hotel.addRoom(newSuite);
+    assertEquals(Arrays.asList(), hotel.getRooms(filter));
+    suite.addAmenity(Amenity.Fridge);
+    hotel.removeRoom(lowPenthouse);
+    filter = new HotelRoomFilter(null, null, HotelRoomType.Penthouse, null, null);
+    assertEquals(Arrays.asList(penthouse), hotel.getRooms(filter));
+
+    // Dates are only checked for the candidates
+    LocalDate start = today.plusDays(1);
+    LocalDate end = today.plusDays(3);
+    penthouse.addReservation(new Reservation(penthouse, start, end));
+    filter = new HotelRoomFilter(start, end, HotelRoomType.Penthouse, null, null);
+    assertEquals(Arrays.asList(), hotel.getRooms(filter));
+  }
+
   @Test
   public void testMakeReservation() {
     HotelRoom room = mock(HotelRoom.class);
@@ -145,10 +231,14 @@ public class HotelTest {
     when(room.getPrice(start, end)).thenReturn(100.0);
     when(room.getPrice()).thenReturn(100.0);
     when(room.getNumber()).thenReturn(999);
+    when(room.tryAddReservation(any(), anyLong())).thenReturn(true);
+    when(room.getPriceCents(start, end)).thenReturn(10000L);
+    when(room.getReservations()).thenReturn(Collections.emptyIterator());
     hotel.addRoom(room);
     hotel.addPerson(tom);
 
     when(tom.getBalance()).thenReturn(1000.0);
+    when(tom.tryDebit(10000L)).thenReturn(true);
     double balanceBefore = tom.getBalance();
     hotel.makeReservation(tom, 999, start, end);
     when(tom.getBalance()).thenReturn(900.0);
@@ -161,6 +251,23 @@ public class HotelTest {
     );
   }
 
+  @Test
+  public void testSeasonalPricing() {
+    LocalDate monday = LocalDate.now().plusWeeks(1).with(DayOfWeek.MONDAY);
+    HotelRoom suite = new HotelRoom(HotelRoomType.Suite, 801);
+    suite.setPrice(100);
+    Person anna = new Person("anna");
+    anna.addBalance(10000);
+    Hotel seasonal = new Hotel(List.of(suite), List.of(anna));
+    seasonal.getRateCalendar().setSeason(HotelRoomType.Suite, monday, monday.plusDays(3), 300);
+    seasonal.getRateCalendar().setWeekendUplift(10);
+    assertEquals(3 * 300 + 2 * 100 + 2 * 110, suite.getPrice(monday, monday.plusDays(7)));
+    seasonal.makeReservation(anna, 801, monday, monday.plusDays(7));
+    assertEquals(10000 - 1320, anna.getBalance());
+    seasonal.removeRoom(suite);
+    assertEquals(700, suite.getPrice(monday, monday.plusDays(7)));
+  }
+
   @Test
   public void testBadMakeReservationParameters() {
     when(tom.getBalance()).thenReturn(20000.0);
@@ -186,8 +293,8 @@ public class HotelTest {
     assertThrows(IllegalArgumentException.class, () -> {
       hotel.makeReservation(tom, 101, today, overmorrow);
     });
-    hotel.addRoom(room1);
     when(room1.getNumber()).thenReturn(101);
+    hotel.addRoom(room1);
     when(room1.isAvailable(today, overmorrow)).thenReturn(false);
     assertThrows(IllegalStateException.class, () -> {
       hotel.makeReservation(tom, 101, today, overmorrow);
@@ -200,6 +307,8 @@ public class HotelTest {
     when(deluxeRoom.isAvailable(today, overmorrow)).thenReturn(true);
     when(deluxeRoom.getPrice(today, overmorrow)).thenReturn(900.0);
     when(deluxeRoom.getNumber()).thenReturn(105);
+    when(deluxeRoom.tryAddReservation(any(), anyLong())).thenReturn(true);
+    when(deluxeRoom.getReservations()).thenReturn(Collections.emptyIterator());
     hotel.addRoom(deluxeRoom);
     // need to create an instance of Person here to test consistency
     Person rick = new Person("rick");
@@ -213,6 +322,179 @@ public class HotelTest {
     assertEquals(deluxeRoom.getNumber(), reservations.get(0).getRoomNumber());
   }
 
+  /**
+   * A reservation that cannot be made does not charge the person.
+   */
+  @Test
+  public void testReservationOutOfRange() {
+    HotelRoom farRoom = mock(HotelRoom.class);
+    when(farRoom.isAvailable(today, overmorrow)).thenReturn(true);
+    when(farRoom.getPriceCents(today, overmorrow)).thenReturn(20000L);
+    when(farRoom.getNumber()).thenReturn(Reservation.MAX_ROOM_NUMBER + 1);
+    when(farRoom.tryAddReservation(any(), anyLong())).thenReturn(true);
+    when(farRoom.getReservations()).thenReturn(Collections.emptyIterator());
+    hotel.addRoom(farRoom);
+    Person rick = new Person("rick");
+    rick.addBalance(1000);
+    hotel.addPerson(rick);
+
+    assertThrows(IllegalArgumentException.class, () ->
+        hotel.makeReservation(rick, Reservation.MAX_ROOM_NUMBER + 1, today, overmorrow));
+    assertEquals(1000, rick.getBalance());
+    assertEquals(0, rick.getReservations().size());
+  }
+
+  @Test
+  public void testMakeReservationVersioned() {
+    HotelRoom room = new HotelRoom(101);
+    hotel.addRoom(room);
+    Person rick = new Person("rick");
+    rick.addBalance(10000);
+    hotel.addPerson(rick);
+
+    long version = room.getVersion();
+    LocalDate later = overmorrow.plusDays(1);
+    hotel.makeReservation(rick, 101, today, today.plusDays(1), version);
+    assertNotEquals(version, room.getVersion());
+    assertThrows(ReservationConflictException.class, () ->
+        hotel.makeReservation(rick, 101, overmorrow, later, version));
+    assertTrue(room.isAvailable(overmorrow, later));
+    hotel.makeReservation(rick, 101, overmorrow, later, room.getVersion());
+    assertEquals(2, rick.getReservations().size());
+  }
+
+  @Test
+  public void testOccupancy() {
+    HotelRoom single = new HotelRoom(101);
+    HotelRoom otherSingle = new HotelRoom(201);
+    HotelRoom suite = new HotelRoom(HotelRoomType.Suite, 202);
+    single.addReservation(new Reservation(single, today, today.plusDays(4)));
+    hotel.addRoom(single);
+    hotel.addRoom(otherSingle);
+    hotel.addRoom(suite);
+    Person rick = new Person("rick");
+    rick.addBalance(1000);
+    hotel.addPerson(rick);
+    hotel.makeReservation(rick, 202, today.plusDays(2), today.plusDays(4));
+    hotel.makeGroupReservation(rick, Arrays.asList(101, 201), today.plusDays(5), today.plusDays(6));
+    otherSingle.addReservation(new Reservation(otherSingle, today.plusDays(8), today.plusDays(9)));
+    LocalDate end = today.plusDays(10);
+
+    // Single: 4 + 1 + 1 + 1 of 20 nights, Suite: 2 of 10 nights
+    assertEquals(7, hotel.getOccupiedNights(HotelRoomType.Single, today, end));
+    assertEquals(9, hotel.getOccupiedNights(null, today, end));
+    assertEquals(0, hotel.getOccupiedNights(HotelRoomType.Penthouse, today, end));
+    Map<HotelRoomType, Double> byRoomType = hotel.getOccupancyByRoomType(today, end);
+    assertEquals(2, byRoomType.size());
+    assertEquals(0.35, byRoomType.get(HotelRoomType.Single), 1e-9);
+    assertEquals(0.2, byRoomType.get(HotelRoomType.Suite), 1e-9);
+    // The end date of a reservation is not a night of it
+    assertEquals(0.0, hotel.getOccupancyByRoomType(today.plusDays(4), today.plusDays(5))
+        .get(HotelRoomType.Single));
+
+    Map<Integer, Double> byFloor = hotel.getOccupancyByFloor(today, end);
+    assertEquals(Arrays.asList(1, 2), new ArrayList<>(byFloor.keySet()));
+    assertEquals(0.5, byFloor.get(1), 1e-9);
+    assertEquals(0.2, byFloor.get(2), 1e-9);
+
+    hotel.removeRoom(single);
+    assertEquals(2, hotel.getOccupiedNights(HotelRoomType.Single, today, end));
+    assertEquals(Arrays.asList(2), new ArrayList<>(hotel.getOccupancyByFloor(today, end).keySet()));
+    assertThrows(IllegalArgumentException.class, () ->
+        hotel.getOccupancyByFloor(end, today));
+  }
+
+  @Test
+  public void testFindAvailableWindows() {
+    HotelRoom single = new HotelRoom(101);
+    HotelRoom suite = new HotelRoom(HotelRoomType.Suite, 102);
+    HotelRoom otherSuite = new HotelRoom(HotelRoomType.Suite, 103);
+    hotel.addRoom(single);
+    hotel.addRoom(otherSuite);
+    hotel.addRoom(suite);
+    suite.addReservation(new Reservation(suite, today, today.plusDays(3)));
+    otherSuite.addReservation(new Reservation(otherSuite, today.plusDays(2), today.plusDays(4)));
+    otherSuite.addReservation(new Reservation(otherSuite, today.plusDays(7), today.plusDays(8)));
+    HotelRoomFilter suites = new HotelRoomFilter(null, null, HotelRoomType.Suite, null, null);
+    LocalDate later = today.plusYears(1);
+
+    // Room 102 is free from day 4, room 103 only from day 9 for five nights
+    assertEquals(Arrays.asList(new AvailabilityWindow(102, today.plusDays(4), today.plusDays(9))),
+        hotel.findAvailableWindows(suites, 5, today, later, 1));
+    assertEquals(Arrays.asList(
+        new AvailabilityWindow(102, today.plusDays(4), today.plusDays(9)),
+        new AvailabilityWindow(103, today.plusDays(9), today.plusDays(14))),
+        hotel.findAvailableWindows(suites, 5, today, later, 5));
+    // Both suites are free from day 9, ties are broken by room number
+    assertEquals(Arrays.asList(
+        new AvailabilityWindow(102, today.plusDays(9), today.plusDays(11)),
+        new AvailabilityWindow(103, today.plusDays(9), today.plusDays(11))),
+        hotel.findAvailableWindows(suites, 2, today.plusDays(9), later, 2));
+    assertEquals(Arrays.asList(new AvailabilityWindow(101, today, today.plusDays(5))),
+        hotel.findAvailableWindows((r) -> true, 5, today, later, 1));
+    assertEquals(0, hotel.findAvailableWindows(suites, 5, today, today.plusDays(8), 1).size());
+
+    assertThrows(IllegalArgumentException.class, () ->
+        hotel.findAvailableWindows(suites, 0, today, later, 1));
+    assertThrows(IllegalArgumentException.class, () ->
+        hotel.findAvailableWindows(suites, 1, today, later, 0));
+    assertThrows(IllegalArgumentException.class, () ->
+        hotel.findAvailableWindows(null, 1, today, later, 1));
+  }
+
+  @Test
+  public void testMakeGroupReservation() {
+    HotelRoom single = new HotelRoom(101);
+    HotelRoom suite = new HotelRoom(HotelRoomType.Suite, 102);
+    HotelRoom penthouse = new HotelRoom(HotelRoomType.Penthouse, 701);
+    single.setPrice(100);
+    suite.setPrice(200);
+    penthouse.setPrice(1000);
+    hotel.addRoom(single);
+    hotel.addRoom(suite);
+    hotel.addRoom(penthouse);
+    Person rick = new Person("rick");
+    rick.addBalance(1000);
+    hotel.addPerson(rick);
+    LocalDate later = overmorrow.plusDays(1);
+
+    assertThrows(IllegalArgumentException.class, () ->
+        hotel.makeGroupReservation(rick, Arrays.asList(), today, overmorrow));
+    assertThrows(IllegalArgumentException.class, () ->
+        hotel.makeGroupReservation(rick, Arrays.asList(101, 101), today, overmorrow));
+    assertThrows(IllegalArgumentException.class, () ->
+        hotel.makeGroupReservation(rick, Arrays.asList(101, 999), today, overmorrow));
+    assertThrows(IllegalArgumentException.class, () ->
+        hotel.makeGroupReservation(new Person("tomas"), Arrays.asList(101), today, overmorrow));
+
+    // The person can afford each room, but not all of them together
+    assertThrows(IllegalStateException.class, () ->
+        hotel.makeGroupReservation(rick, Arrays.asList(701, 101), today, today.plusDays(1)));
+    assertEquals(1000, rick.getBalance());
+    assertTrue(single.isAvailable(today, today.plusDays(1)));
+    assertTrue(penthouse.isAvailable(today, today.plusDays(1)));
+
+    List<Reservation> made =
+        hotel.makeGroupReservation(rick, Arrays.asList(102, 101), today, overmorrow);
+    assertEquals(2, made.size());
+    assertEquals(101, made.get(0).getRoomNumber());
+    assertEquals(102, made.get(1).getRoomNumber());
+    assertTrue(rick.getReservations().containsAll(made));
+    assertTrue(single.getReservationIds().contains(made.get(0).getId()));
+    assertEquals(400, rick.getBalance());
+    assertEquals(2, rick.getReservations().size());
+    assertFalse(single.isAvailable(today, overmorrow));
+    assertFalse(suite.isAvailable(today, overmorrow));
+
+    // One of the rooms is taken, so neither is booked
+    long version = single.getVersion();
+    assertThrows(IllegalStateException.class, () ->
+        hotel.makeGroupReservation(rick, Arrays.asList(101, 701), overmorrow, later));
+    assertEquals(400, rick.getBalance());
+    assertEquals(version, single.getVersion());
+    assertTrue(penthouse.isAvailable(overmorrow, later));
+  }
+
   @Test
   public void testIterator() {
     hotel.addRoom(room1);
@@ -0,0 +1,28 @@
+package gr2116.core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test class for Money.
+ */
+public class MoneyTest {
+  @Test
+  public void testToCents() {
+    assertEquals(0, Money.toCents(0));
+    assertEquals(1050, Money.toCents(10.5));
+    assertEquals(30, Money.toCents(0.1 + 0.2));
+    assertEquals(-1, Money.toCents(-0.01));
+    assertThrows(IllegalArgumentException.class, () -> Money.toCents(Double.NaN));
+    assertThrows(IllegalArgumentException.class,
+        () -> Money.toCents(Double.POSITIVE_INFINITY));
+  }
+
+  @Test
+  public void testToAmount() {
+    assertEquals(10.5, Money.toAmount(1050));
+    assertEquals(0.3, Money.toAmount(Money.toCents(0.1) + Money.toCents(0.2)));
+  }
+}
@@ -0,0 +1,53 @@
+package gr2116.core;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test class for OccupancyBitmap.
+ */
+public class OccupancyBitmapTest {
+  private final long origin = 19000;
+  private final OccupancyBitmap bitmap = new OccupancyBitmap(origin);
+
+  @Test
+  public void testCovers() {
+    assertTrue(bitmap.covers(origin, origin));
+    assertTrue(bitmap.covers(origin, origin + OccupancyBitmap.WINDOW_DAYS - 1));
+    assertFalse(bitmap.covers(origin - 1, origin + 10));
+    assertFalse(bitmap.covers(origin, origin + OccupancyBitmap.WINDOW_DAYS));
+  }
+
+  @Test
+  public void testOccupyWithinWord() {
+    bitmap.occupy(origin + 3, origin + 5);
+    assertTrue(bitmap.isFree(origin, origin + 2));
+    assertFalse(bitmap.isFree(origin, origin + 3));
+    assertFalse(bitmap.isFree(origin + 4, origin + 4));
+    assertFalse(bitmap.isFree(origin + 5, origin + 9));
+    assertTrue(bitmap.isFree(origin + 6, origin + 9));
+  }
+
+  @Test
+  public void testOccupyAcrossWords() {
+    bitmap.occupy(origin + 60, origin + 200);
+    assertTrue(bitmap.isFree(origin, origin + 59));
+    assertFalse(bitmap.isFree(origin + 63, origin + 64));
+    assertFalse(bitmap.isFree(origin + 128, origin + 128));
+    assertFalse(bitmap.isFree(origin + 150, origin + 300));
+    assertTrue(bitmap.isFree(origin + 201, origin + 300));
+  }
+
+  @Test
+  public void testOccupyOutsideWindow() {
+    bitmap.occupy(origin - 10, origin + 1);
+    assertFalse(bitmap.isFree(origin, origin));
+    assertTrue(bitmap.isFree(origin + 2, origin + 2));
+    long last = origin + OccupancyBitmap.WINDOW_DAYS - 1;
+    bitmap.occupy(last, last + 100);
+    assertFalse(bitmap.isFree(last, last));
+    assertTrue(bitmap.isFree(last - 1, last - 1));
+  }
+}
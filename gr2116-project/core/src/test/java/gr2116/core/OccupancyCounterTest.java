@@ -0,0 +1,68 @@
+package gr2116.core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.time.LocalDate;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test class for OccupancyCounter.
+ */
+public class OccupancyCounterTest {
+  private final long today = LocalDate.now().toEpochDay();
+
+  @Test
+  public void testAddAndSum() {
+    OccupancyCounter counter = new OccupancyCounter();
+    assertEquals(0, counter.sum(today - 100, today + 100));
+    counter.add(today, today + 2, 1);
+    counter.add(today + 1, today + 4, 2);
+    assertEquals(1, counter.sum(today, today));
+    assertEquals(3, counter.sum(today + 1, today + 1));
+    assertEquals(2, counter.sum(today + 3, today + 3));
+    assertEquals(3 + 8, counter.sum(today - 10, today + 10));
+    assertEquals(3 + 3 + 2, counter.sum(today + 1, today + 3));
+    assertEquals(0, counter.sum(today + 3, today + 1));
+    counter.add(today + 1, today + 4, -2);
+    assertEquals(3, counter.sum(today - 10, today + 10));
+  }
+
+  @Test
+  public void testGrow() {
+    OccupancyCounter counter = new OccupancyCounter();
+    counter.add(today, today + 1, 1);
+    // Far apart days force the window to grow, in both directions
+    counter.add(today + 5000, today + 5009, 1);
+    counter.add(today - 3000, today - 2999, 3);
+    assertEquals(2, counter.sum(today, today + 1));
+    assertEquals(10, counter.sum(today + 5000, today + 6000));
+    assertEquals(6, counter.sum(today - 4000, today - 1));
+    assertEquals(18, counter.sum(today - 4000, today + 6000));
+  }
+
+  @Test
+  public void testAgainstDays() {
+    Random random = new Random(42);
+    int days = 4000;
+    long[] occupied = new long[days];
+    OccupancyCounter counter = new OccupancyCounter();
+    for (int i = 0; i < 500; i++) {
+      int start = random.nextInt(days);
+      int end = Math.min(days - 1, start + random.nextInt(20));
+      counter.add(today + start, today + end, 1);
+      for (int day = start; day <= end; day++) {
+        occupied[day]++;
+      }
+    }
+    for (int i = 0; i < 200; i++) {
+      int start = random.nextInt(days);
+      int end = Math.min(days - 1, start + random.nextInt(500));
+      long expected = 0;
+      for (int day = start; day <= end; day++) {
+        expected += occupied[day];
+      }
+      assertEquals(expected, counter.sum(today + start, today + end));
+    }
+  }
+}
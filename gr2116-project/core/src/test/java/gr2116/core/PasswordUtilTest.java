@@ -1,15 +1,27 @@
 package gr2116.core;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.lang.System.Logger;
+import java.lang.System.Logger.Level;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import org.junit.jupiter.api.Tag;
 import org.junit.jupiter.api.Test;
 
 /**
  * Test class for PasswordUtil.
  */
 public class PasswordUtilTest {
-  
+  private static final Logger LOG = System.getLogger(PasswordUtilTest.class.getName());
+
   @Test
   public void passwordHashTest() {
     String password = "password123";
@@ -18,7 +30,97 @@ public class PasswordUtilTest {
     String hashed1 = PasswordUtil.hashPassword(password1);
     assertNotEquals(password, hashed);
     assertNotEquals(hashed, hashed1);
-    assertEquals(hashed, PasswordUtil.hashPassword(password));
+    // Every hash gets its own salt
+    assertNotEquals(hashed, PasswordUtil.hashPassword(password));
     assertEquals(password.getClass(), hashed.getClass());
+    assertTrue(PasswordUtil.verifyPassword(password, hashed));
+    assertTrue(PasswordUtil.verifyPassword(password1, hashed1));
+    assertFalse(PasswordUtil.verifyPassword(password1, hashed));
+    assertFalse(PasswordUtil.verifyPassword(password, null));
+    assertFalse(PasswordUtil.verifyPassword(password, "not a hash"));
+    assertFalse(PasswordUtil.verifyPassword(password, "x$y$z"));
+  }
+
+  @Test
+  public void testLegacyHash() {
+    // Hash of "password123" made with an all-zero salt, before salts were stored
+    assertTrue(PasswordUtil.verifyPassword("password123", "Fh12by2PAKNaxKHYW9wnVA=="));
+    assertFalse(PasswordUtil.verifyPassword("password1234", "Fh12by2PAKNaxKHYW9wnVA=="));
+  }
+
+  @Test
+  public void testIterations() {
+    assertThrows(IllegalArgumentException.class, () -> PasswordUtil.setIterations(0));
+    assertThrows(IllegalArgumentException.class,
+        () -> PasswordUtil.setIterations(PasswordUtil.MAX_ITERATIONS + 1));
+    String hashed = PasswordUtil.hashPassword("password123");
+    assertTrue(hashed.startsWith(PasswordUtil.getIterations() + "$"));
+    PasswordUtil.setIterations(1000);
+    try {
+      String cheap = PasswordUtil.hashPassword("password123");
+      assertTrue(cheap.startsWith("1000$"));
+      assertTrue(PasswordUtil.verifyPassword("password123", cheap));
+      assertTrue(PasswordUtil.verifyPassword("password123", hashed));
+    } finally {
+      PasswordUtil.setIterations(PasswordUtil.DEFAULT_ITERATIONS);
+    }
+  }
+
+  /**
+   * Hashes with a number of iterations that is not positive or too large are rejected
+   * without hashing, as they can only come from a corrupted or crafted hash.
+   */
+  @Test
+  public void testInvalidIterations() {
+    String hashed = PasswordUtil.hashPassword("password123");
+    String saltAndHash = hashed.substring(hashed.indexOf('$'));
+    assertTrue(PasswordUtil.verifyPassword("password123",
+        PasswordUtil.getIterations() + saltAndHash));
+    assertFalse(PasswordUtil.verifyPassword("password123", "0" + saltAndHash));
+    assertFalse(PasswordUtil.verifyPassword("password123", "-5" + saltAndHash));
+    assertFalse(PasswordUtil.verifyPassword("password123",
+        (PasswordUtil.MAX_ITERATIONS + 1) + saltAndHash));
+    // Hashing with that many iterations would take minutes
+    assertTimeoutPreemptively(Duration.ofSeconds(10), () -> assertFalse(
+        PasswordUtil.verifyPassword("password123", Integer.MAX_VALUE + saltAndHash)));
+  }
+
+  @Test
+  public void testAsync() throws Exception {
+    CompletableFuture<String> hashed = PasswordUtil.hashPasswordAsync("password123");
+    assertTrue(PasswordUtil.verifyPasswordAsync("password123", hashed.get()).get());
+    assertFalse(PasswordUtil.verifyPasswordAsync("password1234", hashed.get()).get());
+  }
+
+  /**
+   * Measures how many passwords can be hashed per second, on the caller's thread
+   * and on the worker pool, and per core.
+   *
+   * @throws Exception if hashing fails
+   */
+  @Test
+  @Tag("benchmark")
+  public void testHashThroughput() throws Exception {
+    final int cores = Runtime.getRuntime().availableProcessors();
+    final int count = 4 * cores;
+    PasswordUtil.hashPassword("warmup");
+    long start = System.nanoTime();
+    for (int i = 0; i < count; i++) {
+      PasswordUtil.hashPassword("password" + i);
+    }
+    double sequential = count / ((System.nanoTime() - start) / 1e9);
+
+    start = System.nanoTime();
+    List<CompletableFuture<String>> futures = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      futures.add(PasswordUtil.hashPasswordAsync("password" + i));
+    }
+    for (CompletableFuture<String> future : futures) {
+      assertTrue(future.get().startsWith(PasswordUtil.getIterations() + "$"));
+    }
+    double pooled = count / ((System.nanoTime() - start) / 1e9);
+    LOG.log(Level.INFO, String.format("Hashing with %d iterations: %.1f hashes/s on one thread, "
+        + "%.1f hashes/s on %d workers (%.1f hashes/s per core)",
+        PasswordUtil.getIterations(), sequential, pooled, cores, pooled / cores));
   }
 }
@@ -7,7 +7,12 @@ import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
+import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -77,6 +82,54 @@ public class PersonTest {
     });
   }
 
+  @Test
+  public void testTryDebit() {
+    tom.addBalance(0.3);
+    assertEquals(30, tom.getBalanceCents());
+    assertTrue(tom.tryDebit(10));
+    assertTrue(tom.tryDebit(20));
+    assertFalse(tom.tryDebit(1));
+    assertEquals(0, tom.getBalanceCents());
+    assertEquals(0, tom.getBalance());
+    assertThrows(IllegalArgumentException.class, () -> {
+      tom.tryDebit(-1);
+    });
+  }
+
+  @Test
+  public void testSetBalanceCents() {
+    tom.addBalance(100);
+    tom.setBalanceCents(1234);
+    assertEquals(1234, tom.getBalanceCents());
+    tom.setBalanceCents(-5);
+    assertEquals(-5, tom.getBalanceCents());
+    assertEquals(-0.05, tom.getBalance());
+  }
+
+  @Test
+  public void testConcurrentBalance() throws InterruptedException {
+    tom.addBalanceCents(5000);
+    AtomicInteger debits = new AtomicInteger();
+    Thread[] threads = new Thread[4];
+    for (int i = 0; i < threads.length; i++) {
+      threads[i] = new Thread(() -> {
+        for (int j = 0; j < 10000; j++) {
+          tom.addBalanceCents(1);
+          if (tom.tryDebit(2)) {
+            debits.incrementAndGet();
+          }
+        }
+      });
+      threads[i].start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    // Every top-up is kept, and the balance never goes below zero
+    assertTrue(tom.getBalanceCents() >= 0);
+    assertEquals(5000 + 40000 - 2 * debits.get(), tom.getBalanceCents());
+  }
+
   @Test
   public void testPassword() {
     tom.setHashedPassword("niefsshlk45bhod/");
@@ -91,7 +144,9 @@ public class PersonTest {
       person.setPassword("jaja");
     });
     person.setPassword("jacoco");
-    assertEquals(PasswordUtil.hashPassword("jacoco"), person.getHashedPassword());
+    assertTrue(PasswordUtil.verifyPassword("jacoco", person.getHashedPassword()));
+    assertTrue(person.checkPassword("jacoco"));
+    assertFalse(person.checkPassword("jacocoo"));
   }
 
   @Test
@@ -102,6 +157,38 @@ public class PersonTest {
     tom.removeListener(pl);
   }
 
+  @Test
+  public void testCoalescedNotification() {
+    List<Runnable> ticks = new ArrayList<>();
+    AtomicInteger notified = new AtomicInteger();
+    tom.setNotificationExecutor(ticks::add);
+    assertEquals(0, ticks.size());
+    tom.addListener((person) -> notified.incrementAndGet());
+    tom.addBalance(10);
+    tom.tryDebit(500);
+    tom.addReservation(new Reservation(new HotelRoom(101),
+        LocalDate.of(2030, 1, 1), LocalDate.of(2030, 1, 2)));
+    // Three changes, one notification handed to the executor and none delivered yet.
+    assertEquals(1, ticks.size());
+    assertEquals(0, notified.get());
+    ticks.remove(0).run();
+    assertEquals(1, notified.get());
+    // A change after the notification ran gets a new one.
+    tom.addBalance(1);
+    assertEquals(1, ticks.size());
+    ticks.remove(0).run();
+    assertEquals(2, notified.get());
+
+    tom.setNotificationExecutor((task) -> {
+      throw new RejectedExecutionException();
+    });
+    tom.addBalance(1);
+    assertEquals(3, notified.get());
+    tom.setNotificationExecutor(null);
+    tom.addBalance(1);
+    assertEquals(4, notified.get());
+  }
+
   @Test
   public void testReservation() {
     Reservation res = mock(Reservation.class);
@@ -123,30 +210,20 @@ public class PersonTest {
     Person person = new Person("tom");
     tom.setFirstName("Thomas");
     tom.setLastName("Watford");
-    assertFalse(tom.equals(person));
-    person.setFirstName("Thomas");
-    person.setLastName("Hallow");
-    assertFalse(tom.equals(person));
-    person.setLastName("Watford");
     assertTrue(tom.equals(person));
     Reservation res = mock(Reservation.class);
     tom.addReservation(res);
-    assertFalse(tom.equals(person));
-    person.addReservation(res);
     assertTrue(tom.equals(person));
+    assertFalse(tom.equals(new Person("thomas")));
   }
 
   @Test
   public void testHash() {
+    int hash = tom.hashCode();
+    assertEquals(tom.getUsername().hashCode(), hash);
     tom.setFirstName("Thomas");
-    tom.setFirstName("Watford");
-    int nameHash = tom.getName().hashCode();
-    int userHash = tom.getUsername().hashCode();
-    int resHash = tom.getReservations().hashCode();
-    int hash = 5;
-    hash = hash * 17 + nameHash;
-    hash = hash * 31 + userHash;
-    hash = hash * 5 + resHash;
+    tom.setLastName("Watford");
+    tom.addReservation(mock(Reservation.class));
     assertEquals(hash, tom.hashCode());
   }
 }
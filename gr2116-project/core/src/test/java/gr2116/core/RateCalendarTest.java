@@ -0,0 +1,115 @@
+package gr2116.core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests RateCalendar.
+ */
+public class RateCalendarTest {
+  /**
+   * A Monday.
+   */
+  private final LocalDate monday = LocalDate.of(2030, 6, 3);
+
+  @Test
+  public void testWeekendNights() {
+    long day = monday.toEpochDay();
+    assertEquals(0, RateCalendar.weekendNights(day, day + 4));
+    assertEquals(1, RateCalendar.weekendNights(day, day + 5));
+    assertEquals(2, RateCalendar.weekendNights(day, day + 6));
+    assertEquals(2, RateCalendar.weekendNights(day, day + 7));
+    assertEquals(20, RateCalendar.weekendNights(day - 70, day));
+    LocalDate old = LocalDate.of(1969, 12, 26);
+    assertEquals(old.getDayOfWeek() == DayOfWeek.FRIDAY ? 1 : 0,
+        RateCalendar.weekendNights(old.toEpochDay(), old.toEpochDay() + 1));
+  }
+
+  @Test
+  public void testFlat() {
+    RateCalendar rates = new RateCalendar();
+    assertTrue(rates.isFlat());
+    long day = monday.toEpochDay();
+    assertEquals(7 * RateCalendar.BASE_FACTOR,
+        rates.factorSum(HotelRoomType.Single, day, day + 7));
+    assertEquals(0, rates.factorSum(HotelRoomType.Single, day, day));
+  }
+
+  @Test
+  public void testWeekendUplift() {
+    RateCalendar rates = new RateCalendar();
+    rates.setWeekendUplift(50);
+    assertFalse(rates.isFlat());
+    long day = monday.toEpochDay();
+    // Five weekday nights and two weekend nights at 150 percent.
+    assertEquals(5 * 10000 + 2 * 15000, rates.factorSum(HotelRoomType.Suite, day, day + 7));
+    assertThrows(IllegalArgumentException.class, () -> rates.setWeekendUplift(-101));
+  }
+
+  @Test
+  public void testSeasons() {
+    RateCalendar rates = new RateCalendar();
+    rates.setSeason(HotelRoomType.Double, monday, monday.plusDays(10), 200);
+    rates.setSeason(HotelRoomType.Double, monday.plusDays(2), monday.plusDays(4), 50);
+    long day = monday.toEpochDay();
+    // Before, during and after the season.
+    assertEquals(3 * 10000 + 2 * 20000,
+        rates.factorSum(HotelRoomType.Double, day - 3, day + 2));
+    // The later season overrides the earlier one.
+    assertEquals(2 * 20000 + 2 * 5000 + 6 * 20000 + 2 * 10000,
+        rates.factorSum(HotelRoomType.Double, day, day + 12));
+    // Other room types are not affected.
+    assertEquals(12 * 10000, rates.factorSum(HotelRoomType.Single, day, day + 12));
+    assertEquals(2, rates.getSeasons().size());
+
+    rates.clearSeasons();
+    assertTrue(rates.isFlat());
+    assertEquals(12 * 10000, rates.factorSum(HotelRoomType.Double, day, day + 12));
+  }
+
+  /**
+   * Compares the prefix sums to summing the factors night by night.
+   */
+  @Test
+  public void testAgainstNights() {
+    Random random = new Random(3);
+    RateCalendar rates = new RateCalendar();
+    rates.setWeekendUplift(25);
+    for (int i = 0; i < 20; i++) {
+      LocalDate start = monday.plusDays(random.nextInt(300));
+      rates.setSeason(HotelRoomType.Quad, start, start.plusDays(1 + random.nextInt(60)),
+          random.nextInt(300));
+    }
+    long first = monday.toEpochDay() - 30;
+    for (int i = 0; i < 200; i++) {
+      long startDay = first + random.nextInt(400);
+      long endDay = startDay + random.nextInt(50);
+      long expected = 0;
+      for (long day = startDay; day < endDay; day++) {
+        expected += rates.factorSum(HotelRoomType.Quad, day, day + 1);
+      }
+      assertEquals(expected, rates.factorSum(HotelRoomType.Quad, startDay, endDay));
+    }
+  }
+
+  @Test
+  public void testInvalidSeasons() {
+    RateCalendar rates = new RateCalendar();
+    assertThrows(IllegalArgumentException.class,
+        () -> rates.setSeason(null, monday, monday.plusDays(1), 100));
+    assertThrows(IllegalArgumentException.class,
+        () -> rates.setSeason(HotelRoomType.Single, monday, monday, 100));
+    assertThrows(IllegalArgumentException.class,
+        () -> rates.setSeason(HotelRoomType.Single, monday, monday.plusDays(1), -1));
+    assertThrows(IllegalArgumentException.class,
+        () -> rates.setSeason(HotelRoomType.Single, monday, monday.plusYears(200), 100));
+    assertTrue(rates.getSeasons().isEmpty());
+  }
+}
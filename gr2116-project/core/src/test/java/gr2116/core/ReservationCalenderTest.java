@@ -1,5 +1,6 @@
 package gr2116.core;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
@@ -8,6 +9,7 @@ import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Iterator;
 import org.junit.jupiter.api.Test;
 
 /**
@@ -39,6 +41,63 @@ public class ReservationCalenderTest {
                 () -> calendar.addReservation(reservation));
   }
 
+  @Test
+  public void testTryAddReservation() {
+    long version = calendar.getVersion();
+    assertTrue(calendar.tryAddReservation(reservation, version));
+    assertEquals(version + 1, calendar.getVersion());
+    Reservation later = new Reservation(new HotelRoom(HotelRoomType.Single, 1),
+        today.plusDays(5), today.plusDays(6));
+    assertFalse(calendar.tryAddReservation(later, version));
+    assertTrue(calendar.isAvailable(later.getStartDate(), later.getEndDate()));
+    assertThrows(IllegalStateException.class,
+                () -> calendar.tryAddReservation(reservation, version + 1));
+    assertEquals(version + 1, calendar.getVersion());
+    calendar.rebuildOccupancy();
+    assertTrue(calendar.tryAddReservation(later, version + 1));
+    assertTrue(checkReservations(calendar, Arrays.asList(reservation, later)));
+  }
+
+  @Test
+  public void testClaim() {
+    long version = calendar.getVersion();
+    assertFalse(calendar.tryClaim(version + 1));
+    assertTrue(calendar.tryClaim(version));
+    // Nobody else can add a reservation while the calendar is claimed
+    assertFalse(calendar.tryClaim(version));
+    assertFalse(calendar.tryAddReservation(reservation, version));
+    calendar.releaseClaim();
+    assertEquals(version, calendar.getVersion());
+    assertTrue(calendar.isAvailable(today));
+
+    assertTrue(calendar.tryClaim(version));
+    calendar.commitClaimed(reservation);
+    assertEquals(version + 1, calendar.getVersion());
+    assertFalse(calendar.isAvailable(today));
+    assertTrue(calendar.tryClaim(version + 1));
+    calendar.releaseClaim();
+  }
+
+  @Test
+  public void testFindAvailableDay() {
+    HotelRoom room = new HotelRoom(HotelRoomType.Single, 1);
+    long day = today.toEpochDay();
+    assertEquals(day, calendar.findAvailableDay(day, 3, day + 10));
+    // Booked on days 0-1, 4-6 and 9-10
+    calendar.addReservation(reservation);
+    calendar.addReservation(new Reservation(room, today.plusDays(4), today.plusDays(6)));
+    calendar.addReservation(new Reservation(room, today.plusDays(9), today.plusDays(10)));
+
+    assertEquals(day + 2, calendar.findAvailableDay(day, 1, day + 100));
+    assertEquals(day + 7, calendar.findAvailableDay(day + 3, 1, day + 100));
+    assertEquals(day + 11, calendar.findAvailableDay(day, 2, day + 100));
+    assertEquals(day + 7, calendar.findAvailableDay(day + 5, 1, day + 100));
+    assertEquals(day + 3, calendar.findAvailableDay(day + 3, 0, day + 100));
+    assertEquals(day - 5, calendar.findAvailableDay(day - 5, 3, day + 100));
+    assertEquals(ReservationCalendar.NO_DAY, calendar.findAvailableDay(day, 2, day + 12));
+    assertEquals(day + 11, calendar.findAvailableDay(day, 2, day + 13));
+  }
+
   @Test
   public void testIsAvailable() {
     assertTrue(calendar.isAvailable(today));
@@ -67,4 +126,31 @@ public class ReservationCalenderTest {
     calendar.addReservation(reservation);
     assertTrue(calendar.getReservationIds().contains(reservation.getId()));
   }
+
+  @Test
+  public void testIsAvailableManyReservations() {
+    HotelRoom room = new HotelRoom(HotelRoomType.Single, 1);
+    Reservation late = new Reservation(room, today.plusDays(20), today.plusDays(25));
+    Reservation early = new Reservation(room, today.plusDays(2), today.plusDays(5));
+    Reservation middle = new Reservation(room, today.plusDays(10), today.plusDays(12));
+    calendar.addReservation(late);
+    calendar.addReservation(early);
+    calendar.addReservation(middle);
+
+    assertTrue(calendar.isAvailable(today.plusDays(6), today.plusDays(9)));
+    assertTrue(calendar.isAvailable(today.plusDays(13), today.plusDays(19)));
+    assertFalse(calendar.isAvailable(today.plusDays(6), today.plusDays(10)));
+    assertFalse(calendar.isAvailable(today.plusDays(12), today.plusDays(19)));
+    assertFalse(calendar.isAvailable(today, today.plusDays(30)));
+    assertFalse(calendar.isAvailable(today.plusDays(11)));
+    assertTrue(calendar.isAvailable(today.plusDays(26)));
+    assertThrows(IllegalStateException.class, () -> calendar.addReservation(
+        new Reservation(room, today.plusDays(4), today.plusDays(8))));
+
+    Iterator<Reservation> it = calendar.iterator();
+    assertEquals(early, it.next());
+    assertEquals(middle, it.next());
+    assertEquals(late, it.next());
+    assertFalse(it.hasNext());
+  }
 }
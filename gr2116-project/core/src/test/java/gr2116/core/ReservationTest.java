@@ -10,6 +10,8 @@ import static org.mockito.Mockito.when;
 
 import java.time.LocalDate;
 import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -87,6 +89,48 @@ public class ReservationTest {
     assertFalse(it.hasNext());
   }
 
+  @Test
+  public void testDays() {
+    int start = (int) startDate.toEpochDay();
+    assertEquals(start, res.getStartDay());
+    assertEquals(start + 4, res.getEndDay());
+    PrimitiveIterator.OfInt days = res.days();
+    for (int day = start; day <= start + 4; day++) {
+      assertTrue(days.hasNext());
+      assertEquals(day, days.nextInt());
+    }
+    assertFalse(days.hasNext());
+    assertThrows(NoSuchElementException.class, () -> days.nextInt());
+  }
+
+  @Test
+  public void testContainsAndOverlaps() {
+    int start = res.getStartDay();
+    assertFalse(res.contains(start - 1));
+    assertTrue(res.contains(start));
+    assertTrue(res.contains(start + 4));
+    assertFalse(res.contains(start + 5));
+
+    Reservation before = new Reservation(room, startDate.minusDays(3), startDate.minusDays(1));
+    Reservation touching = new Reservation(room, endDate, endDate.plusDays(2));
+    Reservation inside = new Reservation(room, startDate.plusDays(1), startDate.plusDays(2));
+    assertFalse(res.overlaps(before));
+    assertFalse(before.overlaps(res));
+    assertTrue(res.overlaps(touching));
+    assertTrue(touching.overlaps(res));
+    assertTrue(res.overlaps(inside));
+    assertTrue(inside.overlaps(res));
+  }
+
+  @Test
+  public void testIdPadding() {
+    Reservation early = new Reservation(room, LocalDate.of(33, 1, 2), LocalDate.of(33, 10, 11));
+    assertEquals("1010033010200331011", early.getId());
+    assertEquals(101, early.getRoomNumber());
+    assertEquals(LocalDate.of(33, 1, 2).toEpochDay(), early.getStartDay());
+    assertEquals(LocalDate.of(33, 10, 11).toEpochDay(), early.getEndDay());
+  }
+
   @Test
   public void testEquals() {
     assertTrue(res.equals(res));
@@ -97,13 +141,31 @@ public class ReservationTest {
     assertTrue(res.equals(res2));
   }
 
+  @Test
+  public void testPackedId() {
+    assertEquals(101, res.getRoomNumber());
+    assertEquals(startDate.toEpochDay(), res.getStartDay());
+    assertEquals(endDate.toEpochDay(), res.getEndDay());
+    when(room2.getNumber()).thenReturn(101);
+    assertEquals(res.getPackedId(), new Reservation(room2, startDate, endDate).getPackedId());
+    assertNotEquals(res.getPackedId(),
+        new Reservation(room2, startDate, endDate.plusDays(1)).getPackedId());
+    when(room2.getNumber()).thenReturn(102);
+    assertNotEquals(res.getPackedId(), new Reservation(room2, startDate, endDate).getPackedId());
+
+    when(room2.getNumber()).thenReturn(1 << 20);
+    assertThrows(IllegalArgumentException.class, () ->
+        new Reservation(room2, startDate, endDate));
+    assertThrows(IllegalArgumentException.class, () ->
+        new Reservation(room, startDate, startDate.plusYears(1000)));
+    assertThrows(IllegalArgumentException.class, () ->
+        new Reservation(room, LocalDate.of(100000, 1, 1), LocalDate.of(100000, 1, 2)));
+  }
+
   @Test
   public void testHash() {
-    int hash = 7;
-    int roomNumHash = Integer.valueOf(101).hashCode();
-    int startHash = startDate.hashCode();
-    hash = hash * 31 + roomNumHash;
-    hash = hash * 31 + startHash;
-    assertEquals(hash, res.hashCode());
+    assertEquals(Long.hashCode(res.getPackedId()), res.hashCode());
+    when(room2.getNumber()).thenReturn(101);
+    assertEquals(res.hashCode(), new Reservation(room2, startDate, endDate).hashCode());
   }
 }
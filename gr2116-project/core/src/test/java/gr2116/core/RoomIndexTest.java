@@ -0,0 +1,50 @@
+package gr2116.core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test class for RoomIndex.
+ */
+public class RoomIndexTest {
+  private final RoomIndex index = new RoomIndex();
+
+  @Test
+  public void testPutGetRemove() {
+    HotelRoom room = new HotelRoom(101);
+    HotelRoom replacement = new HotelRoom(101);
+    assertNull(index.get(101));
+    assertNull(index.put(101, room));
+    assertEquals(room, index.get(101));
+    assertEquals(room, index.put(101, replacement));
+    assertEquals(1, index.size());
+    assertEquals(replacement, index.remove(101));
+    assertNull(index.remove(101));
+    assertNull(index.get(101));
+    assertEquals(0, index.size());
+  }
+
+  @Test
+  public void testMatchesHashMap() {
+    Map<Integer, HotelRoom> expected = new HashMap<>();
+    Random random = new Random(42);
+    for (int i = 0; i < 20000; i++) {
+      int number = random.nextInt(2000) + 1;
+      if (random.nextInt(3) == 0) {
+        assertEquals(expected.remove(number), index.remove(number));
+      } else {
+        HotelRoom room = new HotelRoom(number);
+        assertEquals(expected.put(number, room), index.put(number, room));
+      }
+    }
+    assertEquals(expected.size(), index.size());
+    for (int number = 1; number <= 2000; number++) {
+      assertEquals(expected.get(number), index.get(number));
+    }
+  }
+}
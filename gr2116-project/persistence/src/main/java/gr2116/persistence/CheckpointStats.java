@@ -0,0 +1,144 @@
+package gr2116.persistence;
+
+import java.time.Duration;
+
+/**
+ * Counts how often a hotel has been saved by HotelPersistence, how long it took and
+ * how many bytes were written. Each save makes a new CheckpointStats object,
+ * see {@link HotelPersistence#getCheckpointStats()}.
+ */
+public final class CheckpointStats {
+  private final long checkpoints;
+  private final long failures;
+  private final Duration lastDuration;
+  private final Duration totalDuration;
+  private final long lastBytesWritten;
+  private final long totalBytesWritten;
+  private final long lastJournalBytes;
+  private final long totalJournalBytes;
+
+  /**
+   * Creates statistics with no saves.
+   */
+  CheckpointStats() {
+    this(0, 0, Duration.ZERO, Duration.ZERO, 0, 0, 0, 0);
+  }
+
+  private CheckpointStats(long checkpoints, long failures,
+      Duration lastDuration, Duration totalDuration,
+      long lastBytesWritten, long totalBytesWritten,
+      long lastJournalBytes, long totalJournalBytes) {
+    this.checkpoints = checkpoints;
+    this.failures = failures;
+    this.lastDuration = lastDuration;
+    this.totalDuration = totalDuration;
+    this.lastBytesWritten = lastBytesWritten;
+    this.totalBytesWritten = totalBytesWritten;
+    this.lastJournalBytes = lastJournalBytes;
+    this.totalJournalBytes = totalJournalBytes;
+  }
+
+  /**
+   * Returns these statistics with one more save.
+   *
+   * @param duration how long the save took
+   * @param bytesWritten the size of the saved hotel in bytes
+   * @param journalBytes the number of bytes of changes removed from the journal
+   *
+   * @return the new statistics
+   */
+  CheckpointStats add(Duration duration, long bytesWritten, long journalBytes) {
+    return new CheckpointStats(checkpoints + 1, failures,
+        duration, totalDuration.plus(duration),
+        bytesWritten, totalBytesWritten + bytesWritten,
+        journalBytes, totalJournalBytes + journalBytes);
+  }
+
+  /**
+   * Returns these statistics with one more failed save.
+   *
+   * @return the new statistics
+   */
+  CheckpointStats addFailure() {
+    return new CheckpointStats(checkpoints, failures + 1, lastDuration, totalDuration,
+        lastBytesWritten, totalBytesWritten, lastJournalBytes, totalJournalBytes);
+  }
+
+  /**
+   * Returns the number of times the hotel has been saved.
+   *
+   * @return the number of saves
+   */
+  public long getCheckpoints() {
+    return checkpoints;
+  }
+
+  /**
+   * Returns the number of times saving the hotel failed.
+   *
+   * @return the number of failed saves
+   */
+  public long getFailures() {
+    return failures;
+  }
+
+  /**
+   * Returns how long the last save took.
+   *
+   * @return the duration of the last save, zero if there has been none
+   */
+  public Duration getLastDuration() {
+    return lastDuration;
+  }
+
+  /**
+   * Returns how long all the saves took together.
+   *
+   * @return the total duration
+   */
+  public Duration getTotalDuration() {
+    return totalDuration;
+  }
+
+  /**
+   * Returns the size of the last saved hotel.
+   *
+   * @return the number of bytes written by the last save
+   */
+  public long getLastBytesWritten() {
+    return lastBytesWritten;
+  }
+
+  /**
+   * Returns the number of bytes written by all the saves together.
+   *
+   * @return the total number of bytes written
+   */
+  public long getTotalBytesWritten() {
+    return totalBytesWritten;
+  }
+
+  /**
+   * Returns the number of bytes of changes the last save removed from the journal.
+   *
+   * @return the number of bytes removed from the journal
+   */
+  public long getLastJournalBytes() {
+    return lastJournalBytes;
+  }
+
+  /**
+   * Returns the number of bytes of changes all the saves removed from the journal together.
+   *
+   * @return the total number of bytes removed from the journal
+   */
+  public long getTotalJournalBytes() {
+    return totalJournalBytes;
+  }
+
+  @Override
+  public String toString() {
+    return checkpoints + " checkpoints (" + failures + " failed), last took "
+        + lastDuration.toMillis() + " ms and wrote " + lastBytesWritten + " bytes";
+  }
+}
@@ -0,0 +1,583 @@
+package gr2116.persistence;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import gr2116.core.Hotel;
+import gr2116.core.HotelRoom;
+import gr2116.core.Person;
+import gr2116.core.Reservation;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.function.Consumer;
+
+/**
+ * <p>
+ * Append-only journal of the changes made to a Hotel since it was last saved. Each change
+ * is written as one line of json, so recording a change costs the same however large the
+ * hotel is, instead of rewriting the whole saved hotel.
+ * </p>
+ * <p>
+ * A change is on disk when the method recording it returns. Changes recorded at the
+ * same time by different threads share one flush to disk, so concurrent writers do not
+ * wait for one flush each. Replaying a change on a hotel that already has it does
+ * nothing, so the journal may overlap the saved hotel it is replayed on.
+ * </p>
+ * <p>
+ * When the hotel is saved, the changes recorded so far are sealed in a separate file,
+ * and new changes go to an empty journal while the hotel is written. Once the saved hotel
+ * is on disk, the sealed changes replace the changes kept with the previously saved
+ * hotel, so that the previous hotel can still be loaded with every change,
+ * see {@link HotelPersistence#saveHotel}.
+ * </p>
+ */
+public class HotelJournal implements Closeable {
+  private final Path path;
+  private final Path sealedPath;
+  private final Path previousPath;
+  private final ObjectMapper mapper;
+  private final Object syncLock = new Object();
+
+  // Guarded by this
+  private FileChannel channel;
+  private long appended;
+  private volatile long size;
+  private long readLength;
+
+  // Guarded by syncLock
+  private long synced;
+
+  private volatile long checkpointBytes = Long.MAX_VALUE;
+  private volatile Runnable checkpointTrigger;
+
+  // The last sequence number written by the thread's writeAll, which syncs once at the end
+  private final ThreadLocal<long[]> batch = new ThreadLocal<>();
+
+  /**
+   * Something that records a change in a journal, e.g.
+   * {@code (journal) -> journal.addPerson(person)}.
+   */
+  public interface Entry {
+    /**
+     * Records the change in the given journal.
+     *
+     * @param journal the journal
+     *
+     * @throws IOException if the change could not be recorded
+     */
+    void writeTo(HotelJournal journal) throws IOException;
+  }
+
+  /**
+   * Creates a journal stored in the given file. The file is created when the
+   * first change is recorded.
+   *
+   * @param path the file to store the journal in
+   * @param mapper the object mapper used to write and read the changes,
+   *               registered with a HotelModule
+   */
+  HotelJournal(Path path, ObjectMapper mapper) {
+    this.path = path;
+    this.sealedPath = path.resolveSibling(path.getFileName() + ".sealed");
+    this.previousPath = path.resolveSibling(path.getFileName() + ".previous");
+    this.mapper = mapper;
+  }
+
+  /**
+   * Returns the file the journal is stored in.
+   *
+   * @return the path of the file
+   */
+  public Path getPath() {
+    return path;
+  }
+
+  /**
+   * Returns the number of bytes of changes recorded since the journal was last sealed.
+   *
+   * @return the size of the journal in bytes
+   */
+  public long getSize() {
+    return size;
+  }
+
+  /**
+   * Returns whether there are no changes that are not in the saved hotel, i.e.
+   * whether the journal is empty and no sealed changes are waiting to be deleted.
+   *
+   * @return true if there are no changes
+   */
+  public boolean isEmpty() {
+    return size == 0 && !Files.exists(sealedPath);
+  }
+
+  /**
+   * Sets what to run when a change makes the journal reach the given size, e.g.
+   * scheduling the hotel to be saved. It is run by the thread recording the change,
+   * after the change is on disk, and is run again by later changes until the
+   * journal is sealed.
+   *
+   * @param bytes the size in bytes
+   * @param trigger what to run, or null to run nothing
+   */
+  void setCheckpointTrigger(long bytes, Runnable trigger) {
+    this.checkpointBytes = bytes;
+    this.checkpointTrigger = trigger;
+  }
+
+  /**
+   * Records that the given person was added to the hotel, or replaced the person
+   * with the same username.
+   *
+   * @param person the person
+   *
+   * @throws IllegalArgumentException if person is null
+   * @throws IOException if the change could not be recorded
+   */
+  public void addPerson(Person person) throws IOException {
+    if (person == null) {
+      throw new IllegalArgumentException("Person is null.");
+    }
+    commit("addPerson", (record) -> record.set("person", mapper.valueToTree(person)));
+  }
+
+  /**
+   * Records that the given person was removed from the hotel.
+   *
+   * @param person the person
+   *
+   * @throws IllegalArgumentException if person is null
+   * @throws IOException if the change could not be recorded
+   */
+  public void removePerson(Person person) throws IOException {
+    if (person == null) {
+      throw new IllegalArgumentException("Person is null.");
+    }
+    commit("removePerson", (record) -> record.put("username", person.getUsername()));
+  }
+
+  /**
+   * Records that the given room was added to the hotel, or replaced the room
+   * with the same number.
+   *
+   * @param room the room
+   *
+   * @throws IllegalArgumentException if room is null
+   * @throws IOException if the change could not be recorded
+   */
+  public void addRoom(HotelRoom room) throws IOException {
+    if (room == null) {
+      throw new IllegalArgumentException("Room is null.");
+    }
+    commit("addRoom", (record) -> record.set("room", mapper.valueToTree(room)));
+  }
+
+  /**
+   * Records that the given room was removed from the hotel.
+   *
+   * @param room the room
+   *
+   * @throws IllegalArgumentException if room is null
+   * @throws IOException if the change could not be recorded
+   */
+  public void removeRoom(HotelRoom room) throws IOException {
+    if (room == null) {
+      throw new IllegalArgumentException("Room is null.");
+    }
+    commit("removeRoom", (record) -> record.put("number", room.getNumber()));
+  }
+
+  /**
+   * Records that the given person made the given reservations, and the balance the
+   * person has afterwards.
+   *
+   * @param person the person who made the reservations
+   * @param reservations the reservations
+   *
+   * @throws IllegalArgumentException if person or reservations is null
+   * @throws IOException if the change could not be recorded
+   */
+  public void addReservations(Person person, Collection<Reservation> reservations)
+      throws IOException {
+    if (person == null || reservations == null) {
+      throw new IllegalArgumentException("Person and reservations cannot be null.");
+    }
+    commit("addReservations", (record) -> {
+      record.put("username", person.getUsername());
+      record.put("balance", person.getBalanceCents());
+      ArrayNode array = record.putArray("reservations");
+      for (Reservation reservation : reservations) {
+        array.add(mapper.<JsonNode>valueToTree(reservation));
+      }
+    });
+  }
+
+  /**
+   * Records the balance of the given person, after it has changed.
+   *
+   * @param person the person
+   *
+   * @throws IllegalArgumentException if person is null
+   * @throws IOException if the change could not be recorded
+   */
+  public void setBalance(Person person) throws IOException {
+    if (person == null) {
+      throw new IllegalArgumentException("Person is null.");
+    }
+    commit("setBalance", (record) -> {
+      record.put("username", person.getUsername());
+      record.put("balance", person.getBalanceCents());
+    });
+  }
+
+  /**
+   * Writes a change to the end of the journal, and returns once it is on disk.
+   * The change is read from the hotel while no other change is being written,
+   * so a change written later never carries older values than one written before it.
+   *
+   * @param operation the kind of change
+   * @param writer adds the values of the change to the record
+   *
+   * @throws IOException if the change could not be written
+   */
+  private void commit(String operation, Consumer<ObjectNode> writer) throws IOException {
+    long sequence;
+    synchronized (this) {
+      ObjectNode record = mapper.createObjectNode();
+      record.put("op", operation);
+      writer.accept(record);
+      byte[] line = mapper.writeValueAsBytes(record);
+      ByteBuffer buffer = ByteBuffer.allocate(line.length + 1).put(line).put((byte) '\n');
+      buffer.flip();
+      FileChannel channel = getChannel();
+      while (buffer.hasRemaining()) {
+        channel.write(buffer);
+      }
+      size += line.length + 1;
+      sequence = ++appended;
+    }
+    long[] batched = batch.get();
+    if (batched != null) {
+      batched[0] = sequence;
+      return;
+    }
+    sync(sequence);
+    checkSize();
+  }
+
+  /**
+   * Records the given changes in order, and returns once all of them are on disk,
+   * with one flush to disk for all of them instead of one each. A change that cannot
+   * be recorded does not stop the changes after it from being recorded.
+   *
+   * @param entries the changes to record
+   *
+   * @throws IllegalArgumentException if entries is null
+   * @throws IOException if any of the changes could not be recorded
+   */
+  public void writeAll(Collection<Entry> entries) throws IOException {
+    if (entries == null) {
+      throw new IllegalArgumentException("Entries cannot be null.");
+    }
+    IOException failure = null;
+    long[] batched = {0};
+    batch.set(batched);
+    try {
+      for (Entry entry : entries) {
+        try {
+          entry.writeTo(this);
+        } catch (IOException e) {
+          failure = failure == null ? e : failure;
+        } catch (RuntimeException e) {
+          failure = failure == null ? new IOException(e) : failure;
+        }
+      }
+    } finally {
+      batch.remove();
+    }
+    if (batched[0] > 0) {
+      sync(batched[0]);
+      checkSize();
+    }
+    if (failure != null) {
+      throw failure;
+    }
+  }
+
+  /**
+   * Runs the checkpoint trigger if the journal has reached its size.
+   */
+  private void checkSize() {
+    Runnable trigger = checkpointTrigger;
+    if (trigger != null && size >= checkpointBytes) {
+      trigger.run();
+    }
+  }
+
+  /**
+   * Returns once the change with the given sequence number is on disk. The thread that
+   * flushes the file flushes every change written so far, so the threads waiting
+   * behind it usually find their changes already on disk.
+   *
+   * @param sequence the sequence number of the change
+   *
+   * @throws IOException if the file could not be flushed
+   */
+  private void sync(long sequence) throws IOException {
+    synchronized (syncLock) {
+      if (synced >= sequence) {
+        return;
+      }
+      long target;
+      FileChannel channel;
+      synchronized (this) {
+        target = appended;
+        channel = getChannel();
+      }
+      channel.force(false);
+      synced = target;
+    }
+  }
+
+  /**
+   * Returns the channel changes are written to, opening it if needed.
+   * Must be called while holding this journal's lock.
+   *
+   * @return the channel
+   *
+   * @throws IOException if the file could not be opened
+   */
+  private FileChannel getChannel() throws IOException {
+    if (channel == null) {
+      channel = FileChannel.open(path, StandardOpenOption.CREATE,
+          StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+      size = channel.size();
+    }
+    return channel;
+  }
+
+  /**
+   * Moves the changes recorded so far to the sealed file, and starts an empty journal
+   * for the changes recorded after. If changes sealed earlier have not been deleted,
+   * e.g. because saving the hotel failed, these changes are added after them.
+   * The journal is only locked while the file is moved, not while the hotel is saved.
+   *
+   * @return the number of bytes of changes sealed
+   *
+   * @throws IOException if the changes could not be sealed
+   */
+  long seal() throws IOException {
+    synchronized (syncLock) {
+      synchronized (this) {
+        FileChannel channel = getChannel();
+        channel.force(false);
+        synced = appended;
+        final long sealed = size;
+        if (Files.exists(sealedPath)) {
+          try (FileChannel source = FileChannel.open(path, StandardOpenOption.READ);
+              FileChannel target = FileChannel.open(sealedPath,
+                  StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            long position = 0;
+            while (position < sealed) {
+              position += source.transferTo(position, sealed - position, target);
+            }
+            target.force(false);
+          }
+          channel.truncate(0);
+          channel.force(false);
+          size = 0;
+        } else {
+          close();
+          Files.move(path, sealedPath, StandardCopyOption.ATOMIC_MOVE);
+          getChannel();
+        }
+        return sealed;
+      }
+    }
+  }
+
+  /**
+   * Keeps the sealed changes as the changes made since the previously saved hotel,
+   * once the hotel they were made to is saved. These replace the changes kept before.
+   *
+   * @throws IOException if the sealed changes could not be moved
+   */
+  synchronized void retireSealed() throws IOException {
+    if (Files.exists(sealedPath)) {
+      Files.move(sealedPath, previousPath,
+          StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+  }
+
+  /**
+   * Applies the changes made between the previously saved hotel and the last saved hotel
+   * to the given hotel, which should be the previously saved hotel. Should be followed by
+   * {@link #replay(Hotel)}, to apply the changes made since.
+   *
+   * @param hotel the previously saved hotel
+   *
+   * @return the number of changes applied
+   *
+   * @throws IOException if the changes could not be read
+   */
+  synchronized int replayPrevious(Hotel hotel) throws IOException {
+    if (!Files.exists(previousPath)) {
+      return 0;
+    }
+    return replay(previousPath, hotel);
+  }
+
+  /**
+   * Applies the changes in the journal to the given hotel, which should be the hotel
+   * saved when the journal was last sealed. Sealed changes that were not deleted are
+   * applied first. A last change that was not completely written, e.g. because
+   * the program stopped, is removed from the journal.
+   * Changes that cannot be applied are skipped.
+   *
+   * @param hotel the hotel to apply the changes to
+   *
+   * @return the number of changes applied
+   *
+   * @throws IOException if the journal could not be read
+   */
+  public synchronized int replay(Hotel hotel) throws IOException {
+    int count = 0;
+    if (Files.exists(sealedPath)) {
+      count += replay(sealedPath, hotel);
+    }
+    if (Files.exists(path)) {
+      count += replay(path, hotel);
+      if (readLength < Files.size(path)) {
+        getChannel().truncate(readLength);
+        size = readLength;
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Applies the changes in the given file to the given hotel, and sets readLength
+   * to the number of bytes of complete changes.
+   *
+   * @param file the file
+   * @param hotel the hotel to apply the changes to
+   *
+   * @return the number of changes applied
+   *
+   * @throws IOException if the file could not be read
+   */
+  private int replay(Path file, Hotel hotel) throws IOException {
+    int count = 0;
+    long length = 0;
+    try (InputStream input = new BufferedInputStream(Files.newInputStream(file))) {
+      ByteArrayOutputStream line = new ByteArrayOutputStream();
+      int next;
+      while ((next = input.read()) != -1) {
+        if (next != '\n') {
+          line.write(next);
+          continue;
+        }
+        length += line.size() + 1;
+        try {
+          apply(mapper.readTree(line.toByteArray()), hotel);
+          count++;
+        } catch (IOException | RuntimeException e) {
+          System.err.println("Skipped a change in " + file + ": " + e);
+        }
+        line.reset();
+      }
+    }
+    readLength = length;
+    return count;
+  }
+
+  /**
+   * Applies one change to the given hotel.
+   *
+   * @param record the change
+   * @param hotel the hotel
+   *
+   * @throws IOException if the values of the change could not be read
+   * @throws IllegalArgumentException if the change is not formatted as expected
+   */
+  private void apply(JsonNode record, Hotel hotel) throws IOException {
+    String operation = record.path("op").asText();
+    switch (operation) {
+      case "addPerson":
+        hotel.addPerson(mapper.treeToValue(record.get("person"), Person.class));
+        break;
+      case "removePerson":
+        Person removed = hotel.getPerson(record.path("username").asText());
+        if (removed != null) {
+          hotel.removePerson(removed);
+        }
+        break;
+      case "addRoom":
+        hotel.addRoom(mapper.treeToValue(record.get("room"), HotelRoom.class));
+        break;
+      case "removeRoom":
+        HotelRoom room = hotel.getRoom(record.path("number").asInt());
+        if (room != null) {
+          hotel.removeRoom(room);
+        }
+        break;
+      case "addReservations":
+        Person person = getPerson(record, hotel);
+        for (JsonNode node : record.path("reservations")) {
+          Reservation reservation = mapper.treeToValue(node, Reservation.class);
+          HotelRoom reserved = hotel.getRoom(reservation.getRoomNumber());
+          // The room already has the reservation if the hotel was saved after it was made
+          if (reserved != null
+              && reserved.isAvailable(reservation.getStartDate(), reservation.getEndDate())) {
+            reserved.addReservation(reservation);
+          }
+          person.addReservation(reservation);
+        }
+        person.setBalanceCents(record.path("balance").asLong());
+        break;
+      case "setBalance":
+        getPerson(record, hotel).setBalanceCents(record.path("balance").asLong());
+        break;
+      default:
+        throw new IllegalArgumentException("Unknown change: " + operation);
+    }
+  }
+
+  /**
+   * Returns the person with the username of the given change.
+   *
+   * @throws IllegalArgumentException if the hotel has no such person
+   */
+  private static Person getPerson(JsonNode record, Hotel hotel) {
+    Person person = hotel.getPerson(record.path("username").asText());
+    if (person == null) {
+      throw new IllegalArgumentException("No person has the username of the change.");
+    }
+    return person;
+  }
+
+  /**
+   * Closes the file of the journal. The file is opened again if another
+   * change is recorded.
+   *
+   * @throws IOException if the file could not be closed
+   */
+  @Override
+  public synchronized void close() throws IOException {
+    if (channel != null) {
+      channel.close();
+      channel = null;
+    }
+  }
+}
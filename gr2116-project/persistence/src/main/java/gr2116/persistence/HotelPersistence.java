@@ -1,24 +1,71 @@
 package gr2116.persistence;
 
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import gr2116.core.Hotel;
 import gr2116.persistence.internal.HotelModule;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
 import java.io.File;
 import java.io.FileReader;
-import java.io.FileWriter;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.Reader;
-import java.io.Writer;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * HotelPersistence class. Responsible for saving/reading.
+ * Changes made after a hotel is saved can be recorded in its journal, see
+ * {@link #getJournal()}, and are applied again when the hotel is loaded.
+ * The hotel can be saved in the background when the journal grows, see
+ * {@link #startCheckpointing(Hotel, long, Duration)}, and changes can be recorded in
+ * the background, see {@link #getSaver()}. These are stopped by {@link #close()}.
  */
-public class HotelPersistence {
+public class HotelPersistence implements Closeable {
+  /**
+   * The size of the journal that makes the hotel be saved, if not given.
+   */
+  public static final long DEFAULT_CHECKPOINT_BYTES = 1 << 20;
+
+  /**
+   * The longest time between saves of a changed hotel, if not given.
+   */
+  public static final Duration DEFAULT_CHECKPOINT_INTERVAL = Duration.ofMinutes(5);
+
+  private static final int WRITE_BUFFER_SIZE = 1 << 16;
+
+  private static final ExecutorService SAVER = Executors.newSingleThreadExecutor((runnable) -> {
+    Thread thread = new Thread(runnable, "hotel-save");
+    thread.setDaemon(true);
+    return thread;
+  });
+
   private ObjectMapper mapper;
   private String dataFolder;
   private String prefix;
+  private HotelJournal journal;
+  private HotelSaver saver;
+
+  private final Object checkpointLock = new Object();
+  private final AtomicBoolean checkpointPending = new AtomicBoolean();
+  private volatile CheckpointStats checkpointStats = new CheckpointStats();
+  private ScheduledExecutorService checkpointExecutor;
 
   /**
    * Constructor, creates an object mapper with our custom HotelModule.
@@ -78,43 +125,108 @@ public class HotelPersistence {
     return mapper.readValue(reader, Hotel.class);
   }
 
+  /**
+   * Helper method that reads a Hotel object from the given file.
+   *
+   * @param file the file to read
+   *
+   * @return Hotel object, or null if the file does not exist
+   *
+   * @throws IOException if the file could not be read, or is not a hotel
+   */
+  private final Hotel readHotel(File file) throws IOException {
+    if (!file.exists()) {
+      return null;
+    }
+    try (Reader reader = new FileReader(file, StandardCharsets.UTF_8)) {
+      Hotel hotel = readHotel(reader);
+      if (hotel == null) {
+        throw new IOException(file + " is not a hotel.");
+      }
+      return hotel;
+    }
+  }
+
   /**
    * Helper method that used ObjectMapper to write a Hotel object to json with
-   * pretty print.
+   * pretty print. The stream is left open.
    *
    * @param hotel the Hotel to be written
-   * @param writer the I/O stream to be used.
+   * @param output the I/O stream to be used.
    *
    * @throws IOException if something went wrong with I/O
    */
-  private final void writeHotel(Hotel hotel, Writer writer) throws IOException {
-    mapper.writerWithDefaultPrettyPrinter().writeValue(writer, hotel);
+  private final void writeHotel(Hotel hotel, OutputStream output) throws IOException {
+    mapper.writerWithDefaultPrettyPrinter()
+        .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+        .writeValue(output, hotel);
   }
 
   /**
-   * Loads from file a Hotel object with the given prefix. If it does not find the file, i.e
-   * there is an IOException it returns a Hotel-object with x randomly generated rooms. 
+   * Loads from file a Hotel object with the given prefix, and applies the changes recorded
+   * in its journal since it was saved. If the file is missing or cannot be read, e.g.
+   * because it was damaged, the previously saved hotel is loaded instead, with the
+   * changes made since. If there is neither file, it returns a Hotel-object with
+   * x randomly generated rooms, and saves it so that later changes are
+   * recorded against it.
    *
    * @return Hotel object
    *
-   * @throws IOException if something went wrong with I/O
+   * @throws IOException if there is a saved hotel, but it could not be read
    */
   public final Hotel loadHotel() throws IOException {
     if (prefix == null) {
       throw new IllegalArgumentException("Prefix is null.");
     }
-    try (Reader reader = new FileReader(
-        Paths.get(dataFolder, prefix + "Hotel.json").toFile(),
-        StandardCharsets.UTF_8)) {
-      return readHotel(reader);
+    File file = Paths.get(dataFolder, prefix + "Hotel.json").toFile();
+    File backup = Paths.get(dataFolder, prefix + "Hotel.json.bak").toFile();
+    HotelJournal journal = getJournal();
+    Hotel hotel = null;
+    IOException failure = null;
+    try {
+      hotel = readHotel(file);
     } catch (IOException e) {
+      failure = e;
+    }
+    if (hotel == null && backup.exists()) {
+      System.err.println("Could not load " + file + ", loading the previous save " + backup);
+      try {
+        Hotel previous = readHotel(backup);
+        journal.replayPrevious(previous);
+        hotel = previous;
+      } catch (IOException e) {
+        if (failure == null) {
+          failure = e;
+        }
+      }
+    }
+    if (hotel == null) {
+      if (failure != null) {
+        throw failure;
+      }
       System.err.println("Could not find " + dataFolder + "/" + prefix + "Hotel.json");
-      return new Hotel(RoomGenerator.generateRooms(30)); // Generate 30 rooms, can be changed
+      hotel = new Hotel(RoomGenerator.generateRooms(30)); // Generate 30 rooms, can be changed
+      saveHotel(hotel);
+      return hotel;
     }
+    journal.replay(hotel);
+    return hotel;
   }
 
   /**
-   * Saves a Hotel object to file with the given prefix.
+   * <p>
+   * Saves a Hotel object to file with the given prefix, and removes the changes it has
+   * from its journal. Changes can be recorded while the hotel is written, and are kept
+   * in the journal. Only one save runs at a time.
+   * </p>
+   * <p>
+   * The changes recorded so far are sealed, and the hotel is written through a buffer
+   * to a temporary file, which is forced to disk. The saved hotel is then linked, or
+   * copied, to the previous save, and the temporary file is renamed over it, so that the
+   * saved hotel is always there and never partly written. Last, the sealed changes
+   * replace those kept with the previous save. If the program stops at any point, either
+   * the saved hotel or the previous save can be loaded with every change recorded.
+   * </p>
    *
    * @param hotel the Hotel to be saved
    *
@@ -127,15 +239,269 @@ public class HotelPersistence {
     if (hotel == null) {
       throw new IllegalArgumentException("Hotel is null.");
     }
-    try (Writer writer = new FileWriter(
-        Paths.get(dataFolder, prefix + "Hotel.json").toFile(),
-        StandardCharsets.UTF_8)) {
-      writeHotel(hotel, writer);
+    checkpoint(hotel, getJournal());
+  }
+
+  /**
+   * Saves the given hotel and removes the changes it has from the given journal,
+   * see {@link #saveHotel(Hotel)}, and counts the save in the statistics.
+   *
+   * @param hotel the hotel to save
+   * @param journal the journal of the hotel
+   *
+   * @throws IOException if something went wrong with I/O
+   */
+  private void checkpoint(Hotel hotel, HotelJournal journal) throws IOException {
+    synchronized (checkpointLock) {
+      try {
+        final long start = System.nanoTime();
+        final long journalBytes = journal.seal();
+        Path folder = Paths.get(dataFolder);
+        Path target = folder.resolve(prefix + "Hotel.json");
+        Path temporary = Files.createTempFile(folder, prefix + "Hotel", ".tmp");
+        long bytesWritten;
+        try {
+          try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+            OutputStream output = new BufferedOutputStream(
+                Channels.newOutputStream(channel), WRITE_BUFFER_SIZE);
+            writeHotel(hotel, output);
+            output.flush();
+            channel.force(true);
+            bytesWritten = channel.size();
+          }
+          if (Files.exists(target)) {
+            keepPrevious(target, folder.resolve(prefix + "Hotel.json.bak"));
+          }
+          replaceSaved(temporary, target);
+        } finally {
+          Files.deleteIfExists(temporary);
+        }
+        // The renames must be on disk before the sealed changes are moved
+        syncDirectory(folder);
+        journal.retireSealed();
+        checkpointStats = checkpointStats.add(
+            Duration.ofNanos(System.nanoTime() - start), bytesWritten, journalBytes);
+      } catch (IOException | RuntimeException e) {
+        checkpointStats = checkpointStats.addFailure();
+        throw e;
+      }
     }
   }
 
   /**
-   * Sets the data filename prefix.
+   * Makes the given backup the same as the saved hotel, without ever leaving the saved
+   * hotel missing. The saved hotel is hard linked to a new name, or copied where links
+   * are not supported, and that name is renamed to the backup in one step.
+   *
+   * @param saved the saved hotel
+   * @param backup the previous save
+   *
+   * @throws IOException if something went wrong with I/O
+   */
+  private static void keepPrevious(Path saved, Path backup) throws IOException {
+    Path link = backup.resolveSibling(backup.getFileName() + ".tmp");
+    Files.deleteIfExists(link);
+    try {
+      Files.createLink(link, saved);
+    } catch (UnsupportedOperationException | IOException e) {
+      Files.copy(saved, link);
+      try (FileChannel channel = FileChannel.open(link, StandardOpenOption.WRITE)) {
+        channel.force(true);
+      }
+    }
+    Files.move(link, backup, StandardCopyOption.ATOMIC_MOVE,
+        StandardCopyOption.REPLACE_EXISTING);
+    // Renaming a link onto another link to the same file leaves both in place
+    Files.deleteIfExists(link);
+  }
+
+  /**
+   * Renames the given file to the saved hotel in one step, replacing the saved hotel.
+   * Readers see either the old or the new saved hotel, never neither.
+   *
+   * @param source the file the hotel was written to
+   * @param target the saved hotel
+   *
+   * @throws IOException if something went wrong with I/O
+   */
+  void replaceSaved(Path source, Path target) throws IOException {
+    Files.move(source, target, StandardCopyOption.ATOMIC_MOVE,
+        StandardCopyOption.REPLACE_EXISTING);
+  }
+
+  /**
+   * Forces the renaming of files in the given folder to disk, where the
+   * platform allows it. Otherwise, it is left to the operating system.
+   *
+   * @param folder the folder
+   */
+  private static void syncDirectory(Path folder) {
+    try (FileChannel channel = FileChannel.open(folder, StandardOpenOption.READ)) {
+      channel.force(true);
+    } catch (IOException e) {
+      // Folders cannot be opened on some platforms, e.g. Windows
+    }
+  }
+
+  /**
+   * Saves a Hotel object like {@link #saveHotel(Hotel)}, on a background thread.
+   * Changes can still be recorded in the journal while it is saved.
+   *
+   * @param hotel the Hotel to be saved
+   *
+   * @return a future completed when the hotel is saved, or completed exceptionally
+   *         with an UncheckedIOException if something went wrong with I/O
+   *
+   * @throws IllegalArgumentException if the prefix or the hotel is null
+   */
+  public final CompletableFuture<Void> saveHotelAsync(Hotel hotel) {
+    if (prefix == null) {
+      throw new IllegalArgumentException("Prefix is null.");
+    }
+    if (hotel == null) {
+      throw new IllegalArgumentException("Hotel is null.");
+    }
+    HotelJournal journal = getJournal();
+    return CompletableFuture.runAsync(() -> {
+      try {
+        checkpoint(hotel, journal);
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }, SAVER);
+  }
+
+  /**
+   * Returns how often the hotel has been saved, how long it took and how much was written.
+   *
+   * @return the statistics of the saves so far
+   */
+  public final CheckpointStats getCheckpointStats() {
+    return checkpointStats;
+  }
+
+  /**
+   * Starts saving the given hotel in the background, with the default size of the
+   * journal and time between saves.
+   * See {@link #startCheckpointing(Hotel, long, Duration)}.
+   *
+   * @param hotel the hotel to save
+   */
+  public final void startCheckpointing(Hotel hotel) {
+    startCheckpointing(hotel, DEFAULT_CHECKPOINT_BYTES, DEFAULT_CHECKPOINT_INTERVAL);
+  }
+
+  /**
+   * Starts saving the given hotel in the background, on one daemon thread, when
+   * a change makes the journal reach the given size, and when the given time has passed
+   * since the last check if any change has been recorded. Recording changes is not
+   * blocked while the hotel is saved. Stops any checkpointing started before.
+   *
+   * @param hotel the hotel to save, which should be the hotel the journal has changes to
+   * @param journalBytes the size of the journal in bytes that makes the hotel be saved
+   * @param interval the time between checks for changes
+   *
+   * @throws IllegalArgumentException if hotel or interval is null, or journalBytes or
+   *                                  interval is not positive
+   */
+  public final synchronized void startCheckpointing(Hotel hotel, long journalBytes,
+      Duration interval) {
+    if (hotel == null || interval == null) {
+      throw new IllegalArgumentException("Hotel and interval cannot be null.");
+    }
+    if (journalBytes <= 0 || interval.isNegative() || interval.isZero()) {
+      throw new IllegalArgumentException("Journal size and interval must be positive.");
+    }
+    stopCheckpointing();
+    final ScheduledExecutorService executor =
+        Executors.newSingleThreadScheduledExecutor((runnable) -> {
+          Thread thread = new Thread(runnable, "hotel-checkpoint");
+          thread.setDaemon(true);
+          return thread;
+        });
+    final HotelJournal journal = getJournal();
+    Runnable checkpoint = () -> {
+      checkpointPending.set(false);
+      if (journal.isEmpty()) {
+        return;
+      }
+      try {
+        checkpoint(hotel, journal);
+      } catch (IOException | RuntimeException e) {
+        System.err.println("Couldn't checkpoint Hotel: " + e);
+      }
+    };
+    journal.setCheckpointTrigger(journalBytes, () -> {
+      if (checkpointPending.compareAndSet(false, true)) {
+        try {
+          executor.execute(checkpoint);
+        } catch (RejectedExecutionException e) {
+          checkpointPending.set(false);
+        }
+      }
+    });
+    long nanos = interval.toNanos();
+    executor.scheduleWithFixedDelay(checkpoint, nanos, nanos, TimeUnit.NANOSECONDS);
+    checkpointExecutor = executor;
+  }
+
+  /**
+   * Stops saving the hotel in the background, and waits for a save that has
+   * started to finish. Does nothing if checkpointing has not been started.
+   * The save is not interrupted, as that would close the files it writes to.
+   */
+  public final synchronized void stopCheckpointing() {
+    if (checkpointExecutor == null) {
+      return;
+    }
+    if (journal != null) {
+      journal.setCheckpointTrigger(Long.MAX_VALUE, null);
+    }
+    checkpointExecutor.shutdown();
+    try {
+      checkpointExecutor.awaitTermination(1, TimeUnit.MINUTES);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    checkpointExecutor = null;
+    checkpointPending.set(false);
+  }
+
+  /**
+   * Returns the journal of the hotel with the given prefix, where changes made after
+   * the hotel was saved can be recorded without saving the whole hotel again.
+   * Saving the hotel empties the journal.
+   *
+   * @return the journal
+   *
+   * @throws IllegalArgumentException if the prefix is null
+   */
+  public final synchronized HotelJournal getJournal() {
+    if (prefix == null) {
+      throw new IllegalArgumentException("Prefix is null.");
+    }
+    if (journal == null) {
+      journal = new HotelJournal(Paths.get(dataFolder, prefix + "Journal.jsonl"), mapper);
+    }
+    return journal;
+  }
+
+  /**
+   * Returns the saver that records changes in the journal in the background,
+   * so that making a change does not wait for the disk.
+   *
+   * @return the saver
+   */
+  public final synchronized HotelSaver getSaver() {
+    if (saver == null) {
+      saver = new HotelSaver(this);
+    }
+    return saver;
+  }
+
+  /**
+   * Sets the data filename prefix. Stops checkpointing, if it was started, and
+   * records the changes waiting in the saver in the journal of the old prefix.
    *
    * @param prefix The prefix the be set, eg. "data" or "test"
    */
@@ -143,10 +509,66 @@ public class HotelPersistence {
     if (!prefix.matches("^([a-z]){3,10}([A-Z]{1}[a-z]{1,8})*$")) {
       throw new IllegalArgumentException("prefix is not valid");
     }
-    this.prefix = prefix;
+    HotelSaver currentSaver;
+    synchronized (this) {
+      currentSaver = saver;
+    }
+    // Not while holding this, as the saver needs getJournal() to write
+    if (currentSaver != null) {
+      try {
+        currentSaver.flush();
+      } catch (IOException e) {
+        System.err.println("Could not save changes before changing prefix: " + e);
+      }
+    }
+    synchronized (this) {
+      stopCheckpointing();
+      if (journal != null) {
+        try {
+          journal.close();
+        } catch (IOException e) {
+          System.err.println("Could not close " + journal.getPath() + ": " + e);
+        }
+        journal = null;
+      }
+      this.prefix = prefix;
+    }
   }
 
   public String getPrefix() {
     return prefix;
   }
+
+  /**
+   * Records the changes waiting in the saver in the journal, and stops the saver,
+   * checkpointing and the journal. Should be called before the program stops.
+   * The HotelPersistence can still be used afterwards, with a new saver and journal.
+   *
+   * @throws IOException if a change could not be recorded, or the journal closed
+   */
+  @Override
+  public void close() throws IOException {
+    HotelSaver currentSaver;
+    synchronized (this) {
+      currentSaver = saver;
+      saver = null;
+    }
+    try {
+      // Not while holding this, as the saver needs getJournal() to write
+      if (currentSaver != null) {
+        currentSaver.close();
+      }
+    } finally {
+      synchronized (this) {
+        stopCheckpointing();
+        if (journal != null) {
+          try {
+            journal.close();
+          } finally {
+            journal = null;
+          }
+        }
+      }
+    }
+  }
 }
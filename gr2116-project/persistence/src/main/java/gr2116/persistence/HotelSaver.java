@@ -0,0 +1,229 @@
+package gr2116.persistence;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>
+ * Records changes to a hotel in the journal of a HotelPersistence in the background,
+ * so that the thread making a change does not wait for it to be written to disk.
+ * </p>
+ * <p>
+ * A change marks the hotel as changed, and the changes made until a short delay has
+ * passed are written together, with one flush to disk. If many changes are waiting,
+ * they are written without waiting for the delay. Changes that are not written yet are
+ * lost if the program is killed, so {@link #flush()} should be called before stopping,
+ * and is called when the program shuts down normally.
+ * </p>
+ */
+public class HotelSaver implements Closeable {
+  /**
+   * The time from a change until it is written, if not given.
+   */
+  public static final Duration DEFAULT_DELAY = Duration.ofMillis(50);
+
+  /**
+   * The number of waiting changes that are written without waiting, if not given.
+   */
+  public static final int DEFAULT_MAX_PENDING = 256;
+
+  private final HotelPersistence hotelPersistence;
+  private final long delayNanos;
+  private final int maxPending;
+  private final ScheduledExecutorService executor;
+  private final Thread shutdownHook;
+
+  // Guarded by this
+  private List<HotelJournal.Entry> pending = new ArrayList<>();
+  private boolean scheduled;
+  private long saved;
+  private long written;
+  private long batches;
+  private IOException failure;
+
+  /**
+   * Creates a saver for the given HotelPersistence, with the default delay and
+   * number of waiting changes.
+   *
+   * @param hotelPersistence the HotelPersistence whose journal to record changes in
+   */
+  public HotelSaver(HotelPersistence hotelPersistence) {
+    this(hotelPersistence, DEFAULT_DELAY, DEFAULT_MAX_PENDING);
+  }
+
+  /**
+   * Creates a saver for the given HotelPersistence.
+   *
+   * @param hotelPersistence the HotelPersistence whose journal to record changes in
+   * @param delay the time from a change until it is written
+   * @param maxPending the number of waiting changes that are written without waiting
+   *
+   * @throws IllegalArgumentException if hotelPersistence or delay is null,
+   *                                  delay is negative or maxPending is not positive
+   */
+  public HotelSaver(HotelPersistence hotelPersistence, Duration delay, int maxPending) {
+    if (hotelPersistence == null || delay == null) {
+      throw new IllegalArgumentException("HotelPersistence and delay cannot be null.");
+    }
+    if (delay.isNegative() || maxPending <= 0) {
+      throw new IllegalArgumentException(
+          "Delay cannot be negative, and the number of changes must be positive.");
+    }
+    this.hotelPersistence = hotelPersistence;
+    this.delayNanos = delay.toNanos();
+    this.maxPending = maxPending;
+    this.executor = Executors.newSingleThreadScheduledExecutor((runnable) -> {
+      Thread thread = new Thread(runnable, "hotel-saver");
+      thread.setDaemon(true);
+      return thread;
+    });
+    this.shutdownHook = new Thread(() -> {
+      try {
+        flush();
+      } catch (IOException e) {
+        System.err.println("Couldn't save Hotel on shutdown: " + e);
+      }
+    }, "hotel-saver-shutdown");
+    Runtime.getRuntime().addShutdownHook(shutdownHook);
+  }
+
+  /**
+   * Marks the hotel as changed, and records the change in the journal later,
+   * on a background thread.
+   *
+   * @param entry records the change, e.g. {@code (journal) -> journal.addPerson(person)}
+   *
+   * @throws IllegalArgumentException if entry is null
+   * @throws IllegalStateException if the saver is closed
+   */
+  public synchronized void save(HotelJournal.Entry entry) {
+    if (entry == null) {
+      throw new IllegalArgumentException("Entry cannot be null.");
+    }
+    if (executor.isShutdown()) {
+      throw new IllegalStateException("The saver is closed.");
+    }
+    pending.add(entry);
+    saved++;
+    if (pending.size() >= maxPending) {
+      executor.execute(this::write);
+    } else if (!scheduled) {
+      scheduled = true;
+      executor.schedule(this::write, delayNanos, TimeUnit.NANOSECONDS);
+    }
+  }
+
+  /**
+   * Writes the waiting changes to the journal, as one batch.
+   * Runs on the background thread.
+   */
+  private void write() {
+    List<HotelJournal.Entry> entries;
+    long target;
+    synchronized (this) {
+      scheduled = false;
+      entries = pending;
+      target = saved;
+      pending = new ArrayList<>();
+    }
+    IOException error = null;
+    if (!entries.isEmpty()) {
+      try {
+        hotelPersistence.getJournal().writeAll(entries);
+      } catch (IOException | RuntimeException e) {
+        System.err.println("Couldn't auto-save Hotel: " + e);
+        error = e instanceof IOException ? (IOException) e : new IOException(e);
+      }
+    }
+    synchronized (this) {
+      if (!entries.isEmpty()) {
+        batches++;
+      }
+      if (error != null && failure == null) {
+        failure = error;
+      }
+      written = Math.max(written, target);
+      notifyAll();
+    }
+  }
+
+  /**
+   * Writes the changes made so far, and waits until they are on disk.
+   *
+   * @throws IOException if a change could not be recorded since the last flush
+   */
+  public void flush() throws IOException {
+    synchronized (this) {
+      long target = saved;
+      if (written < target) {
+        try {
+          executor.execute(this::write);
+        } catch (RejectedExecutionException e) {
+          // Closed, the last write has been run already
+          return;
+        }
+      }
+      boolean interrupted = false;
+      while (written < target) {
+        try {
+          wait();
+        } catch (InterruptedException e) {
+          interrupted = true;
+        }
+      }
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+      IOException error = failure;
+      failure = null;
+      if (error != null) {
+        throw error;
+      }
+    }
+  }
+
+  /**
+   * Returns the number of changes that are waiting to be written.
+   *
+   * @return the number of waiting changes
+   */
+  public synchronized long getPending() {
+    return saved - written;
+  }
+
+  /**
+   * Returns the number of batches of changes written so far. Each batch was
+   * flushed to disk once.
+   *
+   * @return the number of batches
+   */
+  public synchronized long getBatches() {
+    return batches;
+  }
+
+  /**
+   * Writes the changes made so far, and stops the background thread.
+   *
+   * @throws IOException if a change could not be recorded since the last flush
+   */
+  @Override
+  public void close() throws IOException {
+    try {
+      flush();
+    } finally {
+      executor.shutdown();
+      try {
+        Runtime.getRuntime().removeShutdownHook(shutdownHook);
+      } catch (IllegalStateException e) {
+        // Already shutting down
+      }
+    }
+  }
+}
@@ -0,0 +1,30 @@
+package gr2116.persistence.internal;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import gr2116.core.AvailabilityWindow;
+import java.io.IOException;
+
+/**
+ * Serializer for AvailabilityWindow class.
+ */
+public class AvailabilityWindowSerializer extends JsonSerializer<AvailabilityWindow> {
+
+  /*
+   * Serializer for AvailabilityWindow object with the following
+   * format: { "room": ... , "startDate": "...", "endDate": "..." }
+   */
+  @Override
+  public void serialize(AvailabilityWindow window, JsonGenerator gen,
+      SerializerProvider serializers) throws IOException {
+    if (window == null) {
+      throw new IllegalArgumentException("AvailabilityWindow is null.");
+    }
+    gen.writeStartObject();
+    gen.writeNumberField("room", window.getRoomNumber());
+    gen.writeStringField("startDate", window.getStartDate().toString());
+    gen.writeStringField("endDate", window.getEndDate().toString());
+    gen.writeEndObject();
+  }
+}
@@ -2,21 +2,21 @@ package gr2116.persistence.internal;
 
 import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.core.TreeNode;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.DeserializationContext;
 import com.fasterxml.jackson.databind.JsonDeserializer;
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.node.ArrayNode;
-import com.fasterxml.jackson.databind.node.ObjectNode;
 import gr2116.core.Hotel;
 import gr2116.core.HotelRoom;
+import gr2116.core.HotelRoomType;
 import gr2116.core.Person;
+import gr2116.core.RateCalendar;
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.Collection;
+import java.time.LocalDate;
 
 /**
  * Deserializes Hotel from json.
+ * The rooms and persons are added to the hotel as they are read from the parser's tokens,
+ * so no tree of the whole file is built while loading.
  */
 public class HotelDeserializer extends JsonDeserializer<Hotel> {
   private final PersonDeserializer personDeserializer = new PersonDeserializer();
@@ -24,42 +24,122 @@ public class HotelDeserializer extends JsonDeserializer<Hotel> {
 
   /*
    * Deseralizes a Hotel object with the following
-   * format: { "rooms": [ ... ], "persons": [ ... ] }.
+   * format: { "rooms": [ ... ], "persons": [ ... ] }, and optional
+   * "rates": { "weekendUplift": ..., "seasons": [ { "type": "...", "startDate": "...",
+   * "endDate": "...", "percent": ... }, ... ] }.
    */
   @Override
   public Hotel deserialize(JsonParser p, DeserializationContext ctxt)
       throws IOException, JsonProcessingException {
-    TreeNode treeNode = p.getCodec().readTree(p);
-    return deserialize((JsonNode) treeNode);
+    return deserialize(p);
   }
-  
+
+  /**
+   * Reads a Hotel object from the tokens of the given parser.
+   * Rooms and persons that are not formatted as expected are left out.
+   *
+   * @param p The parser, at the token starting the serialized Hotel object.
+   * @return The Hotel object, or null if it is not an object
+   *
+   * @throws IOException if the tokens cannot be read
+   */
+  private Hotel deserialize(JsonParser p) throws IOException {
+    if (!p.isExpectedStartObjectToken()) {
+      p.skipChildren();
+      return null;
+    }
+    Hotel hotel = new Hotel();
+    while (p.nextToken() == JsonToken.FIELD_NAME) {
+      String field = p.currentName();
+      JsonToken token = p.nextToken();
+      if (field.equals("rooms") && token == JsonToken.START_ARRAY) {
+        while (p.nextToken() != JsonToken.END_ARRAY) {
+          HotelRoom room = roomDeserializer.deserialize(p);
+          if (room != null) {
+            hotel.addRoom(room);
+          }
+        }
+      } else if (field.equals("persons") && token == JsonToken.START_ARRAY) {
+        while (p.nextToken() != JsonToken.END_ARRAY) {
+          Person person = personDeserializer.deserialize(p);
+          if (person != null) {
+            hotel.addPerson(person);
+          }
+        }
+      } else if (field.equals("rates") && token == JsonToken.START_OBJECT) {
+        deserializeRates(p, hotel.getRateCalendar());
+      }
+      p.skipChildren();
+    }
+    return hotel;
+  }
+
   /**
-   * Deserializes a Hotel object.
+   * Sets up the given rate calendar from a serialized one.
+   * Seasons that are not formatted as expected are skipped.
+   *
+   * @param p The parser, at the start of an object formatted as a serialized rate calendar.
+   * @param rates The rate calendar to set up
    *
-   * @param jsonNode The JSON node which should be formatted as a serialized Hotel object.
-   * @return The Hotel object
+   * @throws IOException if the tokens cannot be read
    */
-  private Hotel deserialize(JsonNode jsonNode) {
-    if (jsonNode instanceof ObjectNode) {
-      Collection<HotelRoom> rooms = new ArrayList<>();
-      Collection<Person> persons = new ArrayList<>();
-      JsonNode roomNodes = jsonNode.get("rooms");
-      if (roomNodes instanceof ArrayNode) {
-        for (JsonNode roomNode : (ArrayNode) roomNodes) {
-          HotelRoom room = roomDeserializer.deserialize(roomNode);
-          rooms.add(room);
+  private void deserializeRates(JsonParser p, RateCalendar rates) throws IOException {
+    while (p.nextToken() == JsonToken.FIELD_NAME) {
+      String field = p.currentName();
+      JsonToken token = p.nextToken();
+      if (field.equals("weekendUplift") && token.isNumeric()) {
+        rates.setWeekendUplift(p.getIntValue());
+      } else if (field.equals("seasons") && token == JsonToken.START_ARRAY) {
+        while (p.nextToken() != JsonToken.END_ARRAY) {
+          deserializeSeason(p, rates);
         }
       }
-      JsonNode personNodes = jsonNode.get("persons");
-      if (personNodes instanceof ArrayNode) {
-        for (JsonNode personNode : (ArrayNode) personNodes) {
-          Person person = personDeserializer.deserialize(personNode);
-          persons.add(person);
+      p.skipChildren();
+    }
+  }
+
+  /**
+   * Adds a serialized season to the given rate calendar, unless it is not formatted as expected.
+   *
+   * @param p The parser, at the token starting the serialized season.
+   * @param rates The rate calendar to add the season to
+   *
+   * @throws IOException if the tokens cannot be read
+   */
+  private void deserializeSeason(JsonParser p, RateCalendar rates) throws IOException {
+    if (!p.isExpectedStartObjectToken()) {
+      p.skipChildren();
+      return;
+    }
+    String type = null;
+    String startText = null;
+    String endText = null;
+    Integer percent = null;
+    while (p.nextToken() == JsonToken.FIELD_NAME) {
+      String field = p.currentName();
+      JsonToken token = p.nextToken();
+      if (token == JsonToken.VALUE_STRING) {
+        switch (field) {
+          case "type":
+            type = p.getText();
+            break;
+          case "startDate":
+            startText = p.getText();
+            break;
+          case "endDate":
+            endText = p.getText();
+            break;
+          default:
+            break;
         }
+      } else if (field.equals("percent") && token.isNumeric()) {
+        percent = p.getIntValue();
       }
-      Hotel hotel = new Hotel(rooms, persons);
-      return hotel;
+      p.skipChildren();
+    }
+    if (type != null && startText != null && endText != null && percent != null) {
+      rates.setSeason(HotelRoomType.valueOf(type),
+          LocalDate.parse(startText), LocalDate.parse(endText), percent);
     }
-    return null;
   }
 }
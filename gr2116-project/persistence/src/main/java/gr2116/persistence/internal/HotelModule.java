@@ -2,6 +2,7 @@ package gr2116.persistence.internal;
 
 import com.fasterxml.jackson.core.Version;
 import com.fasterxml.jackson.databind.module.SimpleModule;
+import gr2116.core.AvailabilityWindow;
 import gr2116.core.Hotel;
 import gr2116.core.HotelRoom;
 import gr2116.core.Person;
@@ -35,5 +36,8 @@ public class HotelModule extends SimpleModule {
     // HotelRoom
     addSerializer(HotelRoom.class, new RoomSerializer());
     addDeserializer(HotelRoom.class, new RoomDeserializer());
+
+    // AvailabilityWindow
+    addSerializer(AvailabilityWindow.class, new AvailabilityWindowSerializer());
   }
 }
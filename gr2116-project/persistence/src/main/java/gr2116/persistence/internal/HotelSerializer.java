@@ -6,6 +6,7 @@ import com.fasterxml.jackson.databind.SerializerProvider;
 import gr2116.core.Hotel;
 import gr2116.core.HotelRoom;
 import gr2116.core.Person;
+import gr2116.core.RateCalendar;
 import java.io.IOException;
 
 /**
@@ -15,7 +16,9 @@ public class HotelSerializer extends JsonSerializer<Hotel> {
 
   /*
    * Serializes a Hotel object to the following
-   * format: { "rooms": [ ... ], "persons": [ ... ] }
+   * format: { "rooms": [ ... ], "persons": [ ... ] }, with
+   * "rates": { "weekendUplift": ..., "seasons": [ { "type": "...", "startDate": "...",
+   * "endDate": "...", "percent": ... }, ... ] } last if the rate calendar is not flat.
    */
   @Override
   public void serialize(Hotel hotel, JsonGenerator gen,
@@ -34,6 +37,22 @@ public class HotelSerializer extends JsonSerializer<Hotel> {
       gen.writeObject(person);
     }
     gen.writeEndArray();
+    RateCalendar rates = hotel.getRateCalendar();
+    if (!rates.isFlat()) {
+      gen.writeObjectFieldStart("rates");
+      gen.writeNumberField("weekendUplift", rates.getWeekendUplift());
+      gen.writeArrayFieldStart("seasons");
+      for (RateCalendar.Season season : rates.getSeasons()) {
+        gen.writeStartObject();
+        gen.writeStringField("type", season.getRoomType().name());
+        gen.writeStringField("startDate", season.getStartDate().toString());
+        gen.writeStringField("endDate", season.getEndDate().toString());
+        gen.writeNumberField("percent", season.getPercent());
+        gen.writeEndObject();
+      }
+      gen.writeEndArray();
+      gen.writeEndObject();
+    }
     gen.writeEndObject();
   }
 
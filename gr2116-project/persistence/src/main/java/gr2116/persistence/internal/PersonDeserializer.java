@@ -2,17 +2,14 @@ package gr2116.persistence.internal;
 
 import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.core.TreeNode;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.DeserializationContext;
 import com.fasterxml.jackson.databind.JsonDeserializer;
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.node.ArrayNode;
-import com.fasterxml.jackson.databind.node.NumericNode;
-import com.fasterxml.jackson.databind.node.ObjectNode;
-import com.fasterxml.jackson.databind.node.TextNode;
 import gr2116.core.Person;
 import gr2116.core.Reservation;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Deserializer for Person class.
@@ -29,56 +26,95 @@ public class PersonDeserializer extends JsonDeserializer<Person> {
   @Override
   public Person deserialize(JsonParser p, DeserializationContext ctxt)
       throws IOException, JsonProcessingException {
-    TreeNode treeNode = p.getCodec().readTree(p);
-    return deserialize((JsonNode) treeNode);
+    return deserialize(p);
   }
 
   /**
-   * Custom implementation that takes a jsonNode as arugment.
+   * Reads a person from the tokens of the given parser, without building a tree.
+   * The parser must be at the token starting the value, and is left at the token ending it.
    *
-   * @param jsonNode jsonNode to be processed
+   * @param p the parser
    *
    * @return Person if everything checks out, null otherwise.
+   *
+   * @throws IOException if the tokens cannot be read
    */
-  protected Person deserialize(JsonNode jsonNode) {
-    if (jsonNode instanceof ObjectNode) {
-      Person person;
-      JsonNode usernameNode = jsonNode.get("username");
-      if (!(usernameNode instanceof TextNode)) {
-        return null;
-      }
-      person = new Person(usernameNode.asText());
-      JsonNode passwordNode = jsonNode.get("password");
-      if (passwordNode instanceof TextNode) {
-        person.setHashedPassword(passwordNode.asText());
-      }
-      JsonNode firstNameNode = jsonNode.get("firstName");
-      if (firstNameNode instanceof TextNode) {
-        person.setFirstName(firstNameNode.asText());
-      }
-      JsonNode lastNameNode = jsonNode.get("lastName");
-      if (lastNameNode instanceof TextNode) {
-        person.setLastName(lastNameNode.asText());
-      }
-      JsonNode balanceNode = jsonNode.get("balance");
-      if (balanceNode instanceof NumericNode) {
-        person.addBalance(balanceNode.asDouble());
-      } else {
-        return null;
+  protected Person deserialize(JsonParser p) throws IOException {
+    if (!p.isExpectedStartObjectToken()) {
+      p.skipChildren();
+      return null;
+    }
+    String username = null;
+    String password = null;
+    String firstName = null;
+    String lastName = null;
+    Double balance = null;
+    List<Reservation> reservations = null;
+    while (p.nextToken() == JsonToken.FIELD_NAME) {
+      String field = p.currentName();
+      JsonToken token = p.nextToken();
+      switch (field) {
+        case "username":
+          username = token == JsonToken.VALUE_STRING ? p.getText() : null;
+          break;
+        case "password":
+          password = token == JsonToken.VALUE_STRING ? p.getText() : null;
+          break;
+        case "firstName":
+          firstName = token == JsonToken.VALUE_STRING ? p.getText() : null;
+          break;
+        case "lastName":
+          lastName = token == JsonToken.VALUE_STRING ? p.getText() : null;
+          break;
+        case "balance":
+          balance = token.isNumeric() ? p.getDoubleValue() : null;
+          break;
+        case "reservations":
+          reservations = token == JsonToken.START_ARRAY ? readReservations(p) : null;
+          break;
+        default:
+          break;
       }
-      JsonNode reservationNode = jsonNode.get("reservations");
-      if (reservationNode instanceof ArrayNode) {
-        for (JsonNode reservation : (ArrayNode) reservationNode) {
-          Reservation res = reservationDeserializer.deserialize(reservation);
-          if (!(res == null)) {
-            person.addReservation(res);
-          }
-        }
-      } else {
-        return null;
+      p.skipChildren();
+    }
+    if (username == null || balance == null || reservations == null) {
+      return null;
+    }
+    Person person = new Person(username);
+    if (password != null) {
+      person.setHashedPassword(password);
+    }
+    if (firstName != null) {
+      person.setFirstName(firstName);
+    }
+    if (lastName != null) {
+      person.setLastName(lastName);
+    }
+    person.addBalance(balance);
+    for (Reservation reservation : reservations) {
+      person.addReservation(reservation);
+    }
+    return person;
+  }
+
+  /**
+   * Reads an array of reservations, leaving out those not formatted as expected.
+   * The parser must be at the start of the array, and is left at its end.
+   *
+   * @param p the parser
+   *
+   * @return the reservations
+   *
+   * @throws IOException if the tokens cannot be read
+   */
+  private List<Reservation> readReservations(JsonParser p) throws IOException {
+    List<Reservation> reservations = new ArrayList<>();
+    while (p.nextToken() != JsonToken.END_ARRAY) {
+      Reservation reservation = reservationDeserializer.deserialize(p);
+      if (reservation != null) {
+        reservations.add(reservation);
       }
-      return person;
     }
-    return null;
+    return reservations;
   }
 }
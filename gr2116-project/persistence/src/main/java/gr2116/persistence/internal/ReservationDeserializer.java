@@ -2,13 +2,9 @@ package gr2116.persistence.internal;
 
 import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.core.TreeNode;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.DeserializationContext;
 import com.fasterxml.jackson.databind.JsonDeserializer;
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.node.NumericNode;
-import com.fasterxml.jackson.databind.node.ObjectNode;
-import com.fasterxml.jackson.databind.node.TextNode;
 import gr2116.core.HotelRoom;
 import gr2116.core.Reservation;
 import java.io.IOException;
@@ -27,46 +23,67 @@ public class ReservationDeserializer extends JsonDeserializer<Reservation> {
   @Override
   public Reservation deserialize(JsonParser p, DeserializationContext ctxt)
       throws IOException, JsonProcessingException {
-    TreeNode treeNode = p.getCodec().readTree(p);
-    return deserialize((JsonNode) treeNode);
+    return deserialize(p);
   }
 
   /**
-   * Custom implentation of jackson deserialize that take a JsonNode obejct as
-   * argument.
+   * Reads a reservation from the tokens of the given parser, without building a tree.
+   * The parser must be at the token starting the value, and is left at the token ending it.
    *
-   * @param jsonNode the JsonNode to be processed.
+   * @param p the parser
    *
    * @return Reservation if everything checks out, null otherwise.
+   *
+   * @throws IOException if the tokens cannot be read
    */
-  protected Reservation deserialize(JsonNode jsonNode) {
-    if (jsonNode instanceof ObjectNode) {
-      JsonNode roomNode = jsonNode.get("room");
-      if (!(roomNode instanceof NumericNode)) {
-        return null;
-      }
-      JsonNode startNode = jsonNode.get("startDate");
-      if (!(startNode instanceof TextNode)) {
-        return null;
-      }
-      JsonNode endNode = jsonNode.get("endDate");
-      if (!(endNode instanceof TextNode)) {
-        return null;
-      }
-      try {
-        LocalDate.parse(startNode.asText());
-        LocalDate.parse(endNode.asText());
-      } catch (Exception e) {
-        return null;
-      }
-      Reservation reservation = new Reservation(
-          new HotelRoom(roomNode.asInt()), LocalDate.parse(startNode.asText()),
-          LocalDate.parse(endNode.asText())
-      );
-      JsonNode idNode = jsonNode.get("id");
-      if (reservation.getId().equals(idNode.asText())) {
-        return reservation;
+  protected Reservation deserialize(JsonParser p) throws IOException {
+    if (!p.isExpectedStartObjectToken()) {
+      p.skipChildren();
+      return null;
+    }
+    Integer room = null;
+    String startText = null;
+    String endText = null;
+    String id = null;
+    boolean valid = true;
+    while (p.nextToken() == JsonToken.FIELD_NAME) {
+      String field = p.currentName();
+      JsonToken token = p.nextToken();
+      switch (field) {
+        case "room":
+          valid &= token.isNumeric();
+          room = token.isNumeric() ? p.getIntValue() : null;
+          break;
+        case "startDate":
+          valid &= token == JsonToken.VALUE_STRING;
+          startText = p.getValueAsString();
+          break;
+        case "endDate":
+          valid &= token == JsonToken.VALUE_STRING;
+          endText = p.getValueAsString();
+          break;
+        case "id":
+          id = p.getValueAsString();
+          break;
+        default:
+          break;
       }
+      p.skipChildren();
+    }
+    if (!valid || room == null || startText == null || endText == null) {
+      return null;
+    }
+    LocalDate startDate;
+    LocalDate endDate;
+    try {
+      startDate = LocalDate.parse(startText);
+      endDate = LocalDate.parse(endText);
+    } catch (Exception e) {
+      return null;
+    }
+    Reservation reservation = new Reservation(new HotelRoom(room), startDate, endDate);
+    if (reservation.getId().equals(id)) {
+      return reservation;
     }
     return null;
   }
@@ -2,19 +2,17 @@ package gr2116.persistence.internal;
 
 import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.core.TreeNode;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.DeserializationContext;
 import com.fasterxml.jackson.databind.JsonDeserializer;
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.node.ArrayNode;
-import com.fasterxml.jackson.databind.node.NumericNode;
-import com.fasterxml.jackson.databind.node.ObjectNode;
-import com.fasterxml.jackson.databind.node.TextNode;
 import gr2116.core.Amenity;
 import gr2116.core.HotelRoom;
 import gr2116.core.HotelRoomType;
 import gr2116.core.Reservation;
 import java.io.IOException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Deserializer for HotelRoom class.
@@ -26,60 +24,159 @@ public class RoomDeserializer extends JsonDeserializer<HotelRoom> {
   /*
    * Deserializes a HotelRoom object with the following
    * format: { "number": ... , "type": "...", "amenities": [ ... ], "price": ... ,
-   * "reservations": [ ... ] }
+   * "reservations": [ ... ] }, and an optional "priceOverrides": [ { "startDate": "...",
+   * "endDate": "...", "price": ... }, ... ]
    */
   @Override
   public HotelRoom deserialize(JsonParser p, DeserializationContext ctxt)
       throws IOException, JsonProcessingException {
-    TreeNode treeNode = p.getCodec().readTree(p);
-    return deserialize((JsonNode) treeNode);
+    return deserialize(p);
   }
 
   /**
-   * Custom implementation of jackson deserialize that takes a JsonNode object as
-   * argument.
+   * Reads a room from the tokens of the given parser, without building a tree.
+   * The parser must be at the token starting the value, and is left at the token ending it.
    *
-   * @param jsonNode the JsonNode to be processed
+   * @param p the parser
    *
    * @return HotelRoom if everything checks out, null otherwise
+   *
+   * @throws IOException if the tokens cannot be read
    */
-  protected HotelRoom deserialize(JsonNode jsonNode) {
-    if (jsonNode instanceof ObjectNode) {
-      HotelRoom room;
-      JsonNode numberNode = jsonNode.get("number");
-      if (!(numberNode instanceof NumericNode) || numberNode.asInt() <= 0) {
-        return null;
+  protected HotelRoom deserialize(JsonParser p) throws IOException {
+    if (!p.isExpectedStartObjectToken()) {
+      p.skipChildren();
+      return null;
+    }
+    Integer number = null;
+    String type = null;
+    List<Amenity> amenities = null;
+    Double price = null;
+    List<HotelRoom.PriceOverride> overrides = List.of();
+    List<Reservation> reservations = null;
+    while (p.nextToken() == JsonToken.FIELD_NAME) {
+      String field = p.currentName();
+      JsonToken token = p.nextToken();
+      switch (field) {
+        case "number":
+          number = token.isNumeric() && p.getIntValue() > 0 ? p.getIntValue() : null;
+          break;
+        case "type":
+          type = token == JsonToken.VALUE_STRING ? p.getText() : null;
+          break;
+        case "amenities":
+          amenities = token == JsonToken.START_ARRAY ? readAmenities(p) : null;
+          break;
+        case "price":
+          price = token.isNumeric() && p.getDoubleValue() >= 0 ? p.getDoubleValue() : null;
+          break;
+        case "priceOverrides":
+          overrides = token == JsonToken.START_ARRAY ? readPriceOverrides(p) : null;
+          break;
+        case "reservations":
+          reservations = token == JsonToken.START_ARRAY ? readReservations(p) : null;
+          break;
+        default:
+          break;
       }
-      JsonNode typeNode = jsonNode.get("type");
-      if (!(typeNode instanceof TextNode)) {
-        return null;
+      p.skipChildren();
+    }
+    if (number == null || type == null || amenities == null
+        || price == null || overrides == null || reservations == null) {
+      return null;
+    }
+    HotelRoom room = new HotelRoom(HotelRoomType.valueOf(type), number);
+    for (Amenity amenity : amenities) {
+      room.addAmenity(amenity);
+    }
+    room.setPrice(price);
+    for (HotelRoom.PriceOverride override : overrides) {
+      room.addPriceOverride(override.getStartDate(), override.getEndDate(), override.getPrice());
+    }
+    for (Reservation reservation : reservations) {
+      room.addReservation(reservation);
+    }
+    return room;
+  }
+
+  /**
+   * Reads an array of amenity names. The parser must be at the start of the array,
+   * and is left at its end.
+   *
+   * @param p the parser
+   *
+   * @return the amenities
+   *
+   * @throws IOException if the tokens cannot be read
+   */
+  private List<Amenity> readAmenities(JsonParser p) throws IOException {
+    List<Amenity> amenities = new ArrayList<>();
+    while (p.nextToken() != JsonToken.END_ARRAY) {
+      amenities.add(Amenity.valueOf(p.getValueAsString()));
+      p.skipChildren();
+    }
+    return amenities;
+  }
+
+  /**
+   * Reads an array of reservations. The parser must be at the start of the array,
+   * and is left at its end.
+   *
+   * @param p the parser
+   *
+   * @return the reservations
+   *
+   * @throws IOException if the tokens cannot be read
+   */
+  private List<Reservation> readReservations(JsonParser p) throws IOException {
+    List<Reservation> reservations = new ArrayList<>();
+    while (p.nextToken() != JsonToken.END_ARRAY) {
+      reservations.add(reservationDeserializer.deserialize(p));
+    }
+    return reservations;
+  }
+
+  /**
+   * Reads an array of price overrides. The parser must be at the start of the array,
+   * and is left at its end, even if an override is not formatted as expected.
+   *
+   * @param p the parser
+   *
+   * @return the price overrides, or null if one is not formatted as expected
+   *
+   * @throws IOException if the tokens cannot be read
+   */
+  private List<HotelRoom.PriceOverride> readPriceOverrides(JsonParser p) throws IOException {
+    List<HotelRoom.PriceOverride> overrides = new ArrayList<>();
+    boolean valid = true;
+    while (p.nextToken() != JsonToken.END_ARRAY) {
+      if (!p.isExpectedStartObjectToken()) {
+        valid = false;
+        p.skipChildren();
+        continue;
       }
-      room = new HotelRoom(HotelRoomType.valueOf(typeNode.asText()), numberNode.asInt());
-      JsonNode amenityNode = jsonNode.get("amenities");
-      if (amenityNode instanceof ArrayNode) {
-        for (JsonNode amenity : (ArrayNode) amenityNode) {
-          room.addAmenity(Amenity.valueOf(amenity.asText()));
+      String startText = null;
+      String endText = null;
+      Double price = null;
+      while (p.nextToken() == JsonToken.FIELD_NAME) {
+        String field = p.currentName();
+        JsonToken token = p.nextToken();
+        if (field.equals("startDate") && token == JsonToken.VALUE_STRING) {
+          startText = p.getText();
+        } else if (field.equals("endDate") && token == JsonToken.VALUE_STRING) {
+          endText = p.getText();
+        } else if (field.equals("price") && token.isNumeric()) {
+          price = p.getDoubleValue();
         }
-      } else {
-        return null;
-      }
-      JsonNode priceNode = jsonNode.get("price");
-      if (priceNode instanceof NumericNode && priceNode.asDouble() >= 0) {
-        room.setPrice(priceNode.asDouble());
-      } else {
-        return null;
+        p.skipChildren();
       }
-      JsonNode reservationNode = jsonNode.get("reservations");
-      if (reservationNode instanceof ArrayNode) {
-        for (JsonNode res : (ArrayNode) reservationNode) {
-          Reservation reservation = reservationDeserializer.deserialize(res);
-          room.addReservation(reservation);
-        }
+      if (startText == null || endText == null || price == null) {
+        valid = false;
       } else {
-        return null;
+        overrides.add(new HotelRoom.PriceOverride(
+            LocalDate.parse(startText), LocalDate.parse(endText), price));
       }
-      return room;
     }
-    return null;
+    return valid ? overrides : null;
   }
 }
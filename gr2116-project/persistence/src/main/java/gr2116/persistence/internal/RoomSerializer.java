@@ -16,7 +16,8 @@ public class RoomSerializer extends JsonSerializer<HotelRoom> {
   /*
    * Serializes a HotelRoom object with the following 
    * format: { "number": ... , "type": "...", "amenities": [ ... ], "price": ... ,
-   * "reservations": [ ... ] }
+   * "reservations": [ ... ] }, with "priceOverrides": [ { "startDate": "...",
+   * "endDate": "...", "price": ... }, ... ] after "price" if the room has any.
    */
 
   @Override
@@ -34,6 +35,17 @@ public class RoomSerializer extends JsonSerializer<HotelRoom> {
     }
     gen.writeEndArray();
     gen.writeNumberField("price", room.getPrice());
+    if (!room.getPriceOverrides().isEmpty()) {
+      gen.writeArrayFieldStart("priceOverrides");
+      for (HotelRoom.PriceOverride override : room.getPriceOverrides()) {
+        gen.writeStartObject();
+        gen.writeStringField("startDate", override.getStartDate().toString());
+        gen.writeStringField("endDate", override.getEndDate().toString());
+        gen.writeNumberField("price", override.getPrice());
+        gen.writeEndObject();
+      }
+      gen.writeEndArray();
+    }
     gen.writeArrayFieldStart("reservations");
     Iterator<Reservation> it = room.getReservations();
     while (it.hasNext()) {
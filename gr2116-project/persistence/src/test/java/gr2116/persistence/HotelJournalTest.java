@@ -0,0 +1,227 @@
+package gr2116.persistence;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import gr2116.core.Amenity;
+import gr2116.core.Hotel;
+import gr2116.core.HotelRoom;
+import gr2116.core.HotelRoomType;
+import gr2116.core.Person;
+import gr2116.core.Reservation;
+import java.io.IOException;
+import java.lang.System.Logger;
+import java.lang.System.Logger.Level;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests HotelJournal, by recording changes and loading the hotel again.
+ */
+public class HotelJournalTest {
+  private static final Logger LOG = System.getLogger(HotelJournalTest.class.getName());
+  private HotelPersistence hotelPersistence;
+  private HotelJournal journal;
+  private Hotel hotel;
+  private HotelRoom room;
+  private Person person;
+
+  /**
+   * Saves a hotel with one room and one person, which empties its journal.
+   */
+  @BeforeEach
+  public void setup() throws IOException {
+    hotelPersistence = new HotelPersistence("journalTest");
+    journal = hotelPersistence.getJournal();
+    room = new HotelRoom(HotelRoomType.Double, 101);
+    room.setPrice(10);
+    room.addAmenity(Amenity.Internet);
+    person = new Person("henry");
+    person.addBalance(100);
+    hotel = new Hotel();
+    hotel.addRoom(room);
+    hotel.addPerson(person);
+    hotelPersistence.saveHotel(hotel);
+  }
+
+  @AfterEach
+  public void tearDown() throws IOException {
+    journal.close();
+  }
+
+  @Test
+  public void testReplay() throws IOException {
+    assertEquals(0, Files.size(journal.getPath()));
+    Person kyle = new Person("kyle");
+    kyle.addBalance(50);
+    hotel.addPerson(kyle);
+    journal.addPerson(kyle);
+    HotelRoom suite = new HotelRoom(HotelRoomType.Suite, 714);
+    suite.setPrice(30);
+    hotel.addRoom(suite);
+    journal.addRoom(suite);
+    LocalDate start = LocalDate.of(2121, 6, 4);
+    hotel.makeReservation(person, 101, start, start.plusDays(2));
+    journal.addReservations(person, List.of(new Reservation(room, start, start.plusDays(2))));
+    kyle.addBalance(25);
+    journal.setBalance(kyle);
+    hotel.removeRoom(suite);
+    journal.removeRoom(suite);
+
+    Hotel loaded = hotelPersistence.loadHotel();
+    assertEquals(hotel.getRooms(), loaded.getRooms());
+    assertEquals(hotel.getPersons(), loaded.getPersons());
+    assertEquals(80, loaded.getPerson("henry").getBalance());
+    assertEquals(75, loaded.getPerson("kyle").getBalance());
+    assertFalse(loaded.getRoom(101).isAvailable(start, start.plusDays(2)));
+    assertNull(loaded.getRoom(714));
+
+    // Changes the hotel already has are not applied twice
+    assertEquals(5, journal.replay(loaded));
+    assertEquals(80, loaded.getPerson("henry").getBalance());
+    assertEquals(1, loaded.getPerson("henry").getReservations().size());
+
+    hotel.removePerson(kyle);
+    journal.removePerson(kyle);
+    assertNull(hotelPersistence.loadHotel().getPerson("kyle"));
+  }
+
+  @Test
+  public void testSaveEmptiesJournal() throws IOException {
+    person.addBalance(10);
+    journal.setBalance(person);
+    assertTrue(Files.size(journal.getPath()) > 0);
+    hotelPersistence.saveHotel(hotel);
+    assertEquals(0, Files.size(journal.getPath()));
+    assertEquals(110, hotelPersistence.loadHotel().getPerson("henry").getBalance());
+  }
+
+  @Test
+  public void testTornChange() throws IOException {
+    person.addBalance(10);
+    journal.setBalance(person);
+    long length = Files.size(journal.getPath());
+    journal.close();
+    // A change that was only partly written when the program stopped
+    Files.write(journal.getPath(), "{\"op\":\"setBal".getBytes(StandardCharsets.UTF_8),
+        StandardOpenOption.APPEND);
+
+    assertEquals(110, hotelPersistence.loadHotel().getPerson("henry").getBalance());
+    assertEquals(length, Files.size(journal.getPath()));
+    person.addBalance(5);
+    journal.setBalance(person);
+    assertEquals(115, hotelPersistence.loadHotel().getPerson("henry").getBalance());
+  }
+
+  /**
+   * Changes sealed by a save that did not finish are applied before the journal,
+   * and kept before the next sealed changes.
+   */
+  @Test
+  public void testUnfinishedSave() throws IOException {
+    person.addBalance(10);
+    journal.setBalance(person);
+    assertTrue(journal.seal() > 0);
+    assertEquals(0, journal.getSize());
+    assertFalse(journal.isEmpty());
+    person.addBalance(5);
+    journal.setBalance(person);
+    assertEquals(115, hotelPersistence.loadHotel().getPerson("henry").getBalance());
+
+    journal.seal();
+    person.addBalance(1);
+    journal.setBalance(person);
+    assertEquals(116, hotelPersistence.loadHotel().getPerson("henry").getBalance());
+
+    hotelPersistence.saveHotel(hotel);
+    assertTrue(journal.isEmpty());
+    assertEquals(116, hotelPersistence.loadHotel().getPerson("henry").getBalance());
+  }
+
+  @Test
+  public void testSkipsInvalidChange() throws IOException {
+    journal.close();
+    Files.write(journal.getPath(), "{\"op\":\"setBalance\",\"username\":\"nobody\"}\n"
+        .getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+    person.addBalance(10);
+    journal.setBalance(person);
+    Hotel loaded = hotelPersistence.loadHotel();
+    assertNotNull(loaded.getPerson("henry"));
+    assertEquals(110, loaded.getPerson("henry").getBalance());
+  }
+
+  @Test
+  public void testConcurrentWriters() throws Exception {
+    final int threads = 4;
+    final int changes = 50;
+    List<Thread> writers = new ArrayList<>();
+    List<Exception> failures = new ArrayList<>();
+    for (int t = 0; t < threads; t++) {
+      final String name = "writer" + (char) ('a' + t);
+      writers.add(new Thread(() -> {
+        try {
+          for (int i = 0; i < changes; i++) {
+            Person guest = new Person(name + (char) ('a' + i % 26) + (char) ('a' + i / 26));
+            hotel.addPerson(guest);
+            journal.addPerson(guest);
+          }
+        } catch (IOException e) {
+          synchronized (failures) {
+            failures.add(e);
+          }
+        }
+      }));
+    }
+    writers.forEach(Thread::start);
+    for (Thread writer : writers) {
+      writer.join();
+    }
+    assertTrue(failures.isEmpty());
+    assertEquals(1 + threads * changes, hotelPersistence.loadHotel().getPersons().size());
+  }
+
+  /**
+   * Compares recording a change in the journal with saving the whole hotel, for a
+   * small and a large hotel, and logs the average time of each.
+   */
+  @Test
+  @Tag("benchmark")
+  public void testWriteLatency() throws IOException {
+    final int writes = 20;
+    for (int rooms : new int[] {10, 5000}) {
+      for (int number = 1; number <= rooms; number++) {
+        HotelRoom extra = new HotelRoom(HotelRoomType.Single, 1000 + number);
+        extra.setPrice(20);
+        hotel.addRoom(extra);
+      }
+      hotelPersistence.saveHotel(hotel);
+      long start = System.nanoTime();
+      for (int i = 0; i < writes; i++) {
+        person.addBalance(1);
+        journal.setBalance(person);
+      }
+      final double journalMillis = (System.nanoTime() - start) / 1e6 / writes;
+      start = System.nanoTime();
+      for (int i = 0; i < writes; i++) {
+        person.addBalance(1);
+        hotelPersistence.saveHotel(hotel);
+      }
+      final double saveMillis = (System.nanoTime() - start) / 1e6 / writes;
+      LOG.log(Level.INFO, String.format("Recording a change in a hotel with %d rooms: "
+          + "%.2f ms in the journal, %.2f ms saving the hotel",
+          hotel.getRooms().size(), journalMillis, saveMillis));
+    }
+    assertEquals(hotel.getPersons(), hotelPersistence.loadHotel().getPersons());
+  }
+}
@@ -5,6 +5,7 @@ import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.fail;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import gr2116.core.Amenity;
 import gr2116.core.Hotel;
@@ -12,15 +13,19 @@ import gr2116.core.HotelRoom;
 import gr2116.core.HotelRoomType;
 import gr2116.core.Person;
 import gr2116.core.Reservation;
+import java.lang.System.Logger;
+import java.lang.System.Logger.Level;
 import java.time.LocalDate;
 import java.util.Arrays;
 import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
 import org.junit.jupiter.api.Test;
 
 /**
  * Tests HotelModule class.
  */
 public class HotelModuleTest {
+  private static final Logger LOG = System.getLogger(HotelModuleTest.class.getName());
   private ObjectMapper mapper;
   private Hotel hotel;
   private HotelRoom room;
@@ -120,4 +125,116 @@ public class HotelModuleTest {
       fail(e.getMessage());
     }
   }
+
+  @Test
+  public void testRatesAndOverrides() {
+    LocalDate monday = LocalDate.of(2030, 6, 3);
+    hotel.getRateCalendar().setWeekendUplift(20);
+    hotel.getRateCalendar().setSeason(HotelRoomType.Double, monday, monday.plusDays(3), 150);
+    room.addPriceOverride(monday.plusDays(10), monday.plusDays(12), 5);
+    try {
+      String json = mapper.writeValueAsString(hotel);
+      Hotel hotel2 = mapper.readValue(json, Hotel.class);
+      HotelRoom room2 = hotel2.getRoom(101);
+      assertEquals(20, hotel2.getRateCalendar().getWeekendUplift());
+      assertEquals(1, hotel2.getRateCalendar().getSeasons().size());
+      assertEquals(1, room2.getPriceOverrides().size());
+      assertEquals(room.getPriceCents(monday, monday.plusDays(14)),
+          room2.getPriceCents(monday, monday.plusDays(14)));
+    } catch (Exception e) {
+      fail(e.getMessage());
+    }
+  }
+
+  /**
+   * Loads a synthetic hotel with the streaming deserializers and by first reading
+   * the whole file into a tree, as the deserializers used to, and checks that both
+   * give the same hotel.
+   */
+  @Test
+  public void testStreamingLoad() throws Exception {
+    String json = mapper.writeValueAsString(createSyntheticHotel(200, 10, 100));
+    Hotel streamed = mapper.readValue(json, Hotel.class);
+    Hotel fromTree = mapper.treeToValue(mapper.readTree(json), Hotel.class);
+    assertEquals(json, mapper.writeValueAsString(streamed));
+    assertEquals(streamed.getRooms(), fromTree.getRooms());
+    assertEquals(streamed.getPersons(), fromTree.getPersons());
+  }
+
+  /**
+   * Loads a large synthetic hotel with the streaming deserializers and through a tree,
+   * and logs the time of each and the heap held by the tree.
+   */
+  @Test
+  @Tag("benchmark")
+  public void testStreamingLoadBenchmark() throws Exception {
+    String json = mapper.writeValueAsString(createSyntheticHotel(5000, 10, 2000));
+    double streamedMillis = Double.MAX_VALUE;
+    double treeMillis = Double.MAX_VALUE;
+    for (int i = 0; i < 5; i++) {
+      long start = System.nanoTime();
+      mapper.readValue(json, Hotel.class);
+      streamedMillis = Math.min(streamedMillis, (System.nanoTime() - start) / 1e6);
+      start = System.nanoTime();
+      mapper.treeToValue(mapper.readTree(json), Hotel.class);
+      treeMillis = Math.min(treeMillis, (System.nanoTime() - start) / 1e6);
+    }
+    final long before = usedMemory();
+    JsonNode tree = mapper.readTree(json);
+    final long treeBytes = usedMemory() - before;
+    assertNotNull(tree);
+    LOG.log(Level.INFO, String.format("Loading %d characters: %.0f ms streamed, %.0f ms "
+        + "through a tree that holds about %d MB more heap while loading",
+        json.length(), streamedMillis, treeMillis, treeBytes >> 20));
+  }
+
+  private static Hotel createSyntheticHotel(int rooms, int reservationsPerRoom, int persons) {
+    Hotel hotel = new Hotel();
+    Person[] guests = new Person[persons];
+    for (int i = 0; i < persons; i++) {
+      guests[i] = new Person(letters(i));
+      guests[i].setFirstName("Guest");
+      guests[i].addBalance(1000);
+      hotel.addPerson(guests[i]);
+    }
+    LocalDate first = LocalDate.of(2030, 1, 1);
+    int booked = 0;
+    for (int number = 1; number <= rooms; number++) {
+      HotelRoom hotelRoom = new HotelRoom(HotelRoomType.values()[number % 4], number);
+      hotelRoom.setPrice(50 + number % 100);
+      hotelRoom.addAmenity(Amenity.values()[number % Amenity.values().length]);
+      for (int i = 0; i < reservationsPerRoom; i++) {
+        LocalDate start = first.plusWeeks(i);
+        Reservation reservation = new Reservation(hotelRoom, start, start.plusDays(1 + i % 6));
+        hotelRoom.addReservation(reservation);
+        guests[booked++ % persons].addReservation(reservation);
+      }
+      hotel.addRoom(hotelRoom);
+    }
+    return hotel;
+  }
+
+  /**
+   * Returns the given number written with the letters a to z, as usernames cannot have digits.
+   */
+  private static String letters(int number) {
+    StringBuilder builder = new StringBuilder();
+    int rest = number;
+    do {
+      builder.append((char) ('a' + rest % 26));
+      rest /= 26;
+    } while (rest > 0);
+    return builder.toString();
+  }
+
+  /**
+   * Returns the heap in use after asking for a garbage collection.
+   */
+  private static long usedMemory() {
+    Runtime runtime = Runtime.getRuntime();
+    for (int i = 0; i < 3; i++) {
+      System.gc();
+    }
+    return runtime.totalMemory() - runtime.freeMemory();
+  }
 }
@@ -1,6 +1,7 @@
 package gr2116.persistence;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
@@ -11,16 +12,26 @@ import gr2116.core.HotelRoom;
 import gr2116.core.HotelRoomType;
 import gr2116.core.Person;
 import java.io.IOException;
+import java.lang.System.Logger;
+import java.lang.System.Logger.Level;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Stream;
 import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
 import org.junit.jupiter.api.Test;
 
 /**
  * Tests HotelPersistence, both serializing and deserializing.
  */
 public class HotelPersistenceTest {
+  private static final Logger LOG = System.getLogger(HotelPersistenceTest.class.getName());
   private HotelPersistence hotelPersistence;
   private HotelPersistence hotelPersistenceNull;
 
@@ -128,4 +139,232 @@ public class HotelPersistenceTest {
       fail(e.getMessage());
     }
   }
+
+  @Test
+  public void testCheckpointStats() throws IOException {
+    HotelPersistence hotelPersistence = new HotelPersistence("checkpointTest");
+    Hotel hotel = new Hotel(RoomGenerator.generateRooms(10));
+    final long checkpoints = hotelPersistence.getCheckpointStats().getCheckpoints();
+    hotelPersistence.saveHotel(hotel);
+    Person person = new Person("henry");
+    hotel.addPerson(person);
+    hotelPersistence.getJournal().addPerson(person);
+    final long journalBytes = hotelPersistence.getJournal().getSize();
+    hotelPersistence.saveHotel(hotel);
+
+    CheckpointStats stats = hotelPersistence.getCheckpointStats();
+    assertEquals(checkpoints + 2, stats.getCheckpoints());
+    assertEquals(0, stats.getFailures());
+    assertEquals(journalBytes, stats.getLastJournalBytes());
+    assertEquals(Files.size(hotelPersistence.getJournal().getPath().resolveSibling(
+        "checkpointTestHotel.json")), stats.getLastBytesWritten());
+    assertTrue(stats.getTotalBytesWritten() > stats.getLastBytesWritten());
+    assertFalse(stats.getLastDuration().isNegative());
+    assertTrue(hotelPersistence.getJournal().isEmpty());
+  }
+
+  @Test
+  public void testCheckpointTriggers() throws Exception {
+    HotelPersistence hotelPersistence = new HotelPersistence("checkpointTest");
+    Hotel hotel = new Hotel(RoomGenerator.generateRooms(10));
+    hotelPersistence.saveHotel(hotel);
+    HotelJournal journal = hotelPersistence.getJournal();
+    assertThrows(IllegalArgumentException.class,
+        () -> hotelPersistence.startCheckpointing(hotel, 0, Duration.ofHours(1)));
+    assertThrows(IllegalArgumentException.class,
+        () -> hotelPersistence.startCheckpointing(null));
+    try {
+      // By the size of the journal
+      hotelPersistence.startCheckpointing(hotel, 500, Duration.ofHours(1));
+      long checkpoints = hotelPersistence.getCheckpointStats().getCheckpoints();
+      Person person = new Person("henry");
+      hotel.addPerson(person);
+      journal.addPerson(person);
+      assertEquals(checkpoints, hotelPersistence.getCheckpointStats().getCheckpoints());
+      while (journal.getSize() < 500) {
+        person.addBalance(1);
+        journal.setBalance(person);
+      }
+      final long afterSize = checkpoints;
+      assertTrue(waitFor(() -> hotelPersistence.getCheckpointStats().getCheckpoints()
+          > afterSize));
+
+      // By time
+      hotelPersistence.startCheckpointing(hotel, 1 << 20, Duration.ofMillis(50));
+      checkpoints = hotelPersistence.getCheckpointStats().getCheckpoints();
+      person.addBalance(1);
+      journal.setBalance(person);
+      final long afterTime = checkpoints;
+      assertTrue(waitFor(() -> hotelPersistence.getCheckpointStats().getCheckpoints()
+          > afterTime && journal.isEmpty()));
+    } finally {
+      hotelPersistence.stopCheckpointing();
+    }
+    assertEquals(hotel.getPersons(), hotelPersistence.loadHotel().getPersons());
+  }
+
+  /**
+   * Records changes while a hotel is being saved, and checks that every change is kept.
+   */
+  @Test
+  public void testCheckpointDoesNotBlockWriters() throws Exception {
+    HotelPersistence hotelPersistence = new HotelPersistence("checkpointTest");
+    Hotel hotel = new Hotel(RoomGenerator.generateRooms(500));
+    Person person = new Person("henry");
+    recordDuringSave(hotelPersistence, hotel, person);
+    assertEquals(person.getBalance(),
+        hotelPersistence.loadHotel().getPerson("henry").getBalance());
+  }
+
+  /**
+   * Records changes while a large hotel is being saved, and logs how long recording
+   * a change took compared to the save.
+   */
+  @Test
+  @Tag("benchmark")
+  public void testCheckpointWriterLatency() throws Exception {
+    HotelPersistence hotelPersistence = new HotelPersistence("checkpointTest");
+    Hotel hotel = new Hotel(RoomGenerator.generateRooms(5000));
+    long[] result = recordDuringSave(hotelPersistence, hotel, new Person("henry"));
+    LOG.log(Level.INFO, String.format("Recorded %d changes while saving %d rooms in %.0f ms, "
+        + "the slowest in %.1f ms", result[0], hotel.getRooms().size(),
+        result[1] / 1e6, result[2] / 1e6));
+  }
+
+  /**
+   * Saves the given hotel, then saves it again on another thread while recording
+   * changes to the balance of the given person until the save is done.
+   *
+   * @return the number of changes, the time the save took and the time the slowest
+   *         change took, in nanoseconds
+   */
+  private static long[] recordDuringSave(HotelPersistence hotelPersistence, Hotel hotel,
+      Person person) throws Exception {
+    hotelPersistence.saveHotel(hotel);
+    HotelJournal journal = hotelPersistence.getJournal();
+    hotel.addPerson(person);
+    journal.addPerson(person);
+
+    Thread saver = new Thread(() -> {
+      try {
+        hotelPersistence.saveHotel(hotel);
+      } catch (IOException e) {
+        fail(e.getMessage());
+      }
+    });
+    long saveStart = System.nanoTime();
+    saver.start();
+    long slowest = 0;
+    long changes = 0;
+    while (saver.isAlive()) {
+      long start = System.nanoTime();
+      person.addBalance(1);
+      journal.setBalance(person);
+      slowest = Math.max(slowest, System.nanoTime() - start);
+      changes++;
+    }
+    saver.join();
+    return new long[] {changes, System.nanoTime() - saveStart, slowest};
+  }
+
+  /**
+   * Damages the saved hotel, and checks that the previous save is loaded
+   * with every change recorded since it.
+   */
+  @Test
+  public void testPreviousSave() throws IOException {
+    HotelPersistence hotelPersistence = new HotelPersistence("atomicTest");
+    Hotel hotel = new Hotel(RoomGenerator.generateRooms(10));
+    Person person = new Person("henry");
+    hotel.addPerson(person);
+    hotelPersistence.saveHotel(hotel);
+    HotelJournal journal = hotelPersistence.getJournal();
+    person.addBalance(10);
+    journal.setBalance(person);
+    hotelPersistence.saveHotel(hotel);
+    person.addBalance(5);
+    journal.setBalance(person);
+
+    Path file = journal.getPath().resolveSibling("atomicTestHotel.json");
+    Path backup = journal.getPath().resolveSibling("atomicTestHotel.json.bak");
+    assertTrue(Files.exists(backup));
+    String saved = Files.readString(file);
+    Files.writeString(file, saved.substring(0, saved.length() / 2));
+    assertEquals(15, hotelPersistence.loadHotel().getPerson("henry").getBalance());
+
+    // A save that stopped after keeping the previous save, but before replacing it
+    Files.delete(file);
+    Hotel loaded = hotelPersistence.loadHotel();
+    assertEquals(15, loaded.getPerson("henry").getBalance());
+    assertEquals(hotel.getRooms(), loaded.getRooms());
+
+    // Without the previous save, the damaged hotel is not replaced by generated rooms
+    Files.writeString(file, "{\"rooms\": [");
+    Files.delete(backup);
+    assertThrows(IOException.class, () -> hotelPersistence.loadHotel());
+    assertEquals("{\"rooms\": [", Files.readString(file));
+    hotelPersistence.saveHotel(hotel);
+  }
+
+  /**
+   * Fails a save when the new hotel is about to replace the saved one, and checks
+   * that the saved hotel is still there and is loaded with every change.
+   */
+  @Test
+  public void testFailedReplace() throws IOException {
+    HotelPersistence failing = new HotelPersistence("atomicTest") {
+      @Override
+      void replaceSaved(Path source, Path target) throws IOException {
+        throw new IOException("The program stopped");
+      }
+    };
+    HotelPersistence hotelPersistence = new HotelPersistence("atomicTest");
+    Hotel hotel = new Hotel(RoomGenerator.generateRooms(10));
+    Person person = new Person("henry");
+    hotel.addPerson(person);
+    hotelPersistence.saveHotel(hotel);
+    hotelPersistence.getJournal().close();
+    HotelJournal journal = failing.getJournal();
+    Path file = journal.getPath().resolveSibling("atomicTestHotel.json");
+    final String saved = Files.readString(file);
+    person.addBalance(10);
+    journal.setBalance(person);
+
+    final long failures = failing.getCheckpointStats().getFailures();
+    assertThrows(IOException.class, () -> failing.saveHotel(hotel));
+    assertEquals(failures + 1, failing.getCheckpointStats().getFailures());
+    assertEquals(saved, Files.readString(file));
+    assertEquals(10, failing.loadHotel().getPerson("henry").getBalance());
+    journal.close();
+  }
+
+  @Test
+  public void testSaveHotelAsync() throws Exception {
+    HotelPersistence hotelPersistence = new HotelPersistence("atomicTest");
+    Hotel hotel = new Hotel(RoomGenerator.generateRooms(10));
+    final long checkpoints = hotelPersistence.getCheckpointStats().getCheckpoints();
+    hotelPersistence.saveHotelAsync(hotel).get(10, TimeUnit.SECONDS);
+    assertEquals(checkpoints + 1, hotelPersistence.getCheckpointStats().getCheckpoints());
+    assertEquals(hotel.getRooms(), hotelPersistence.loadHotel().getRooms());
+    assertThrows(IllegalArgumentException.class, () -> hotelPersistence.saveHotelAsync(null));
+
+    // No temporary files are left behind
+    try (Stream<Path> files = Files.list(hotelPersistence.getJournal().getPath().getParent())) {
+      assertFalse(files.anyMatch((path) -> path.getFileName().toString().endsWith(".tmp")));
+    }
+  }
+
+  /**
+   * Waits up to ten seconds for the condition to be true.
+   */
+  private static boolean waitFor(BooleanSupplier condition) throws InterruptedException {
+    long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+    while (!condition.getAsBoolean()) {
+      if (System.nanoTime() > deadline) {
+        return false;
+      }
+      Thread.sleep(10);
+    }
+    return true;
+  }
 }
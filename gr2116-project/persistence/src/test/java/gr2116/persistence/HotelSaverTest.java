@@ -0,0 +1,167 @@
+package gr2116.persistence;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import gr2116.core.Hotel;
+import gr2116.core.Person;
+import java.io.IOException;
+import java.lang.System.Logger;
+import java.lang.System.Logger.Level;
+import java.time.Duration;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests HotelSaver, by making many changes and loading the hotel again.
+ */
+public class HotelSaverTest {
+  private static final Logger LOG = System.getLogger(HotelSaverTest.class.getName());
+
+  private HotelPersistence hotelPersistence;
+  private HotelSaver saver;
+  private Hotel hotel;
+  private Person person;
+
+  /**
+   * Saves a hotel with one person, which empties its journal.
+   */
+  @BeforeEach
+  public void setup() throws IOException {
+    hotelPersistence = new HotelPersistence("saverTest");
+    person = new Person("henry");
+    hotel = new Hotel();
+    hotel.addPerson(person);
+    hotelPersistence.saveHotel(hotel);
+  }
+
+  @AfterEach
+  public void tearDown() throws IOException {
+    if (saver != null) {
+      saver.close();
+    }
+    hotelPersistence.getJournal().close();
+  }
+
+  @Test
+  public void testConstructor() {
+    assertThrows(IllegalArgumentException.class,
+        () -> new HotelSaver(null));
+    assertThrows(IllegalArgumentException.class,
+        () -> new HotelSaver(hotelPersistence, Duration.ofMillis(-1), 1));
+    assertThrows(IllegalArgumentException.class,
+        () -> new HotelSaver(hotelPersistence, Duration.ZERO, 0));
+  }
+
+  /**
+   * Changes made within the delay are written together.
+   */
+  @Test
+  public void testCoalesces() throws IOException {
+    saver = new HotelSaver(hotelPersistence, Duration.ofSeconds(10), 1000);
+    for (int i = 0; i < 100; i++) {
+      person.addBalance(1);
+      saver.save((journal) -> journal.setBalance(person));
+    }
+    assertEquals(100, saver.getPending());
+    assertEquals(0, saver.getBatches());
+    saver.flush();
+    assertEquals(0, saver.getPending());
+    assertEquals(1, saver.getBatches());
+    assertEquals(100, hotelPersistence.loadHotel().getPerson("henry").getBalance());
+  }
+
+  /**
+   * Many waiting changes are written without waiting for the delay.
+   */
+  @Test
+  public void testMaxPending() throws Exception {
+    saver = new HotelSaver(hotelPersistence, Duration.ofSeconds(10), 10);
+    for (int i = 0; i < 10; i++) {
+      Person guest = new Person("guest" + (char) ('a' + i));
+      hotel.addPerson(guest);
+      saver.save((journal) -> journal.addPerson(guest));
+    }
+    long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+    while (saver.getPending() > 0 && System.nanoTime() < deadline) {
+      Thread.sleep(5);
+    }
+    assertEquals(0, saver.getPending());
+    assertEquals(hotel.getPersons(), hotelPersistence.loadHotel().getPersons());
+  }
+
+  @Test
+  public void testFailure() throws IOException {
+    saver = new HotelSaver(hotelPersistence, Duration.ZERO, 1);
+    saver.save((journal) -> {
+      throw new IOException("Disk is full");
+    });
+    person.addBalance(5);
+    saver.save((journal) -> journal.setBalance(person));
+    assertThrows(IOException.class, () -> saver.flush());
+    // The failure is only reported once, and later changes are still written
+    saver.flush();
+    assertEquals(5, hotelPersistence.loadHotel().getPerson("henry").getBalance());
+  }
+
+  @Test
+  public void testClose() throws IOException {
+    saver = new HotelSaver(hotelPersistence, Duration.ofSeconds(10), 1000);
+    person.addBalance(7);
+    saver.save((journal) -> journal.setBalance(person));
+    saver.close();
+    assertEquals(7, hotelPersistence.loadHotel().getPerson("henry").getBalance());
+    assertThrows(IllegalStateException.class,
+        () -> saver.save((journal) -> journal.setBalance(person)));
+  }
+
+  /**
+   * Closing the HotelPersistence writes the waiting changes and closes its saver.
+   */
+  @Test
+  public void testPersistenceClose() throws IOException {
+    HotelSaver closed = hotelPersistence.getSaver();
+    person.addBalance(3);
+    closed.save((journal) -> journal.setBalance(person));
+    hotelPersistence.close();
+    assertThrows(IllegalStateException.class,
+        () -> closed.save((journal) -> journal.setBalance(person)));
+    assertEquals(3, hotelPersistence.loadHotel().getPerson("henry").getBalance());
+    saver = hotelPersistence.getSaver();
+    assertNotSame(closed, saver);
+  }
+
+  /**
+   * Compares the time a change takes for the caller in the background and directly
+   * in the journal, and logs the average time of each.
+   */
+  @Test
+  @Tag("benchmark")
+  public void testSaveLatency() throws IOException {
+    final int writes = 200;
+    saver = new HotelSaver(hotelPersistence);
+    HotelJournal journal = hotelPersistence.getJournal();
+    long start = System.nanoTime();
+    for (int i = 0; i < writes; i++) {
+      person.addBalance(1);
+      journal.setBalance(person);
+    }
+    final double journalMillis = (System.nanoTime() - start) / 1e6 / writes;
+    start = System.nanoTime();
+    for (int i = 0; i < writes; i++) {
+      person.addBalance(1);
+      saver.save((entry) -> entry.setBalance(person));
+    }
+    final double saverMillis = (System.nanoTime() - start) / 1e6 / writes;
+    saver.flush();
+    LOG.log(Level.INFO, String.format("Recording a change: %.3f ms in the journal, "
+        + "%.3f ms in the background, in %d batches", journalMillis, saverMillis,
+        saver.getBatches()));
+    assertTrue(saver.getBatches() < writes);
+    assertEquals(2 * writes, hotelPersistence.loadHotel().getPerson("henry").getBalance());
+  }
+}
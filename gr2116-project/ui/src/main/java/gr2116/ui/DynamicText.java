@@ -11,6 +11,7 @@ public enum DynamicText {
   TimeOrderError(
     "You must choose an end date which is after the start date to make a reservation."),
   NotEnoughMoneyError("You don't have enough money to make this reservation."),
+  NoAvailableStayError("No room matching the filter is free for that long within a year."),
   NonNumericCardNumberError("Card number must contain numbers only."),
   WrongLengthCardNumberError("Card numbers must be exactly 16 characters long."),
   InvalidCardIdentifierError("Invalid card issuer - Only Visa and Mastercard are supported."),
@@ -26,7 +27,8 @@ public enum DynamicText {
   InvalidPassword("The password is invalid."),
   UsernameTaken("The username is taken."),
   UsernameHasNoMatches("The username does not match an existing user."),
-  WrongPassword("Incorrect password.");
+  WrongPassword("Incorrect password."),
+  PasswordError("The password could not be processed right now. Please try again.");
 
   private final String message;
 
@@ -1,17 +1,22 @@
 package gr2116.ui.access;
 
+import gr2116.core.AvailabilityWindow;
 import gr2116.core.Hotel;
 import gr2116.core.HotelRoom;
 import gr2116.core.HotelRoomFilter;
 import gr2116.core.Person;
+import gr2116.core.Reservation;
+import gr2116.persistence.HotelJournal;
 import gr2116.persistence.HotelPersistence;
 import java.io.IOException;
 import java.time.LocalDate;
 import java.util.Collection;
+import java.util.List;
 
 /**
  * An implementation of HotelAccess which uses accesses a Hotel directly,
- * and stores data locally using HotelPersistence.
+ * and stores data locally using HotelPersistence. Each change is recorded
+ * in the journal of the hotel, instead of saving the whole hotel.
  */
 public class DirectHotelAccess implements HotelAccess {
   private final HotelPersistence hotelPersistence;
@@ -36,7 +41,7 @@ public class DirectHotelAccess implements HotelAccess {
   @Override
   public void addPerson(Person person) {
     hotel.addPerson(person);
-    saveHotel();
+    saveHotel((journal) -> journal.addPerson(person));
   }
 
   /**
@@ -60,7 +65,20 @@ public class DirectHotelAccess implements HotelAccess {
   }
 
   /**
-   * Tries to load a hotel, using HotelPersistence.
+   * Returns the earliest stays of the given length on the rooms that pass the filter.
+   * See {@link Hotel#findAvailableWindows}.
+   *
+   * @return the earliest stays, ordered by start date
+   */
+  @Override
+  public List<AvailabilityWindow> findAvailableWindows(HotelRoomFilter hotelRoomFilter,
+      int nights, LocalDate fromDate, LocalDate untilDate, int limit) {
+    return hotel.findAvailableWindows(hotelRoomFilter, nights, fromDate, untilDate, limit);
+  }
+
+  /**
+   * Tries to load a hotel, using HotelPersistence, and starts saving it in the
+   * background as changes are recorded in its journal.
    * Prints a stack trace if unsuccessful.
    * Is called automatically in the constructor.
    * Should be called if prefix is changed.
@@ -69,28 +87,29 @@ public class DirectHotelAccess implements HotelAccess {
   public void loadHotel() {
     try {
       hotel = hotelPersistence.loadHotel();
+      hotelPersistence.startCheckpointing(hotel);
     } catch (IOException e) {
       e.printStackTrace();
     }
   }
 
   /**
-   * Saves the hotel to file.
+   * Records a change to the hotel in its journal, in the background.
    * Is called automatically after every change.
+   *
+   * @param entry records the change
    */
-  private void saveHotel() {
-    try {
-      hotelPersistence.saveHotel(hotel);
-    } catch (IOException e) {
-      e.printStackTrace();
-    }
+  private void saveHotel(HotelJournal.Entry entry) {
+    hotelPersistence.getSaver().save(entry);
   }
 
   @Override
   public void makeReservation(Person person, int hotelRoomNumber,
       LocalDate startDate, LocalDate endDate) {
     hotel.makeReservation(person, hotelRoomNumber, startDate, endDate);
-    saveHotel();
+    Reservation reservation =
+        new Reservation(hotel.getRoom(hotelRoomNumber), startDate, endDate);
+    saveHotel((journal) -> journal.addReservations(person, List.of(reservation)));
   }
 
   /**
@@ -102,7 +121,7 @@ public class DirectHotelAccess implements HotelAccess {
   @Override
   public void addBalance(Person person, double amount) {
     person.addBalance(amount);
-    saveHotel();
+    saveHotel((journal) -> journal.setBalance(person));
   }
 
   /**
@@ -114,4 +133,18 @@ public class DirectHotelAccess implements HotelAccess {
   public void setPrefix(String prefix) {
     hotelPersistence.setPrefix(prefix);
   }
+
+  /**
+   * Saves the changes that are waiting to be recorded, and stops saving in the
+   * background. Should be called when the app stops.
+   * Prints a stack trace if unsuccessful.
+   */
+  @Override
+  public void close() {
+    try {
+      hotelPersistence.close();
+    } catch (IOException e) {
+      e.printStackTrace();
+    }
+  }
 }
@@ -1,10 +1,12 @@
 package gr2116.ui.access;
 
+import gr2116.core.AvailabilityWindow;
 import gr2116.core.HotelRoom;
 import gr2116.core.HotelRoomFilter;
 import gr2116.core.Person;
 import java.time.LocalDate;
 import java.util.Collection;
+import java.util.List;
 
 /**
  * Interface to access a Hotel.
@@ -19,6 +21,9 @@ public interface HotelAccess {
 
   Collection<HotelRoom> getRooms(HotelRoomFilter hotelRoomFilter);
 
+  List<AvailabilityWindow> findAvailableWindows(HotelRoomFilter hotelRoomFilter, int nights,
+      LocalDate fromDate, LocalDate untilDate, int limit);
+
   void loadHotel();
 
   void makeReservation(Person person, int hotelRoomNumber, LocalDate startDate, LocalDate endDate);
@@ -26,4 +31,6 @@ public interface HotelAccess {
   void addBalance(Person person, double amount);
 
   void setPrefix(String prefix);
+
+  void close();
 }
@@ -1,10 +1,13 @@
 package gr2116.ui.access;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import gr2116.core.AvailabilityWindow;
 import gr2116.core.Hotel;
 import gr2116.core.HotelRoom;
 import gr2116.core.HotelRoomFilter;
 import gr2116.core.Person;
+import gr2116.core.Reservation;
+import gr2116.core.ReservationConflictException;
 import gr2116.persistence.HotelPersistence;
 import java.io.IOException;
 import java.net.URI;
@@ -16,12 +19,15 @@ import java.net.http.HttpResponse;
 import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
 import java.util.Collection;
+import java.util.List;
 
 
 /**
  * RemoteHotelAccess class that gets the access the Hotel with HTTP-requests.
  */
 public class RemoteHotelAccess implements HotelAccess {
+  private static final int HTTP_OK = 200;
+  private static final int HTTP_CONFLICT = 409;
   private final URI endpointBaseUri;
   private ObjectMapper mapper;
   private Hotel hotel;
@@ -179,6 +185,17 @@ public class RemoteHotelAccess implements HotelAccess {
     return getHotel().getRooms(hotelRoomFilter);
   }
 
+  /**
+   * Returns the earliest stays of the given length on the rooms that pass the filter.
+   * Like getRooms(), this method updates this.hotel first, and then searches it.
+   */
+  @Override
+  public List<AvailabilityWindow> findAvailableWindows(HotelRoomFilter hotelRoomFilter,
+      int nights, LocalDate fromDate, LocalDate untilDate, int limit) {
+    updateHotel();
+    return getHotel().findAvailableWindows(hotelRoomFilter, nights, fromDate, untilDate, limit);
+  }
+
   /**
    * Loads the hotel.
    */
@@ -200,64 +217,94 @@ public class RemoteHotelAccess implements HotelAccess {
   }
 
   /**
-   * Sends a PUT-request to the rest server with the given HotelRoom. The method translates the
-   * HotelRoom to json via the objectmapper and then sends the request. The method that handles
-   * PUT-requests in RoomResource returns a boolean value, if that fails it will return null
-   * and we can then check if this is null in this method. If this method returns null we know our
-   * database has been altered, and if it returns false we know it has failed.
-   * Each time a HotelRoom is changed, the entire record of this person in the database is updated.
+   * Helper method that returns a URI for making a reservation on the room with the given number,
+   * e.g. http://localhost:8080/rest/hotel/rooms/411/reservation?username=john&startDate=...
    *
-   * @param room the room to be PUT
-   *
-   * @return true if the room in the database was overwritten or added, and false if an error
-   *          occured
+   * @param number the roomNumber of the room to be reserved
+   * @param username the username of the person making the reservation
+   * @param startDate the startDate of the reservation
+   * @param endDate the endDate of the reservation
+   * @param version the version of the room that was seen
    *
-   * @throws RunTimeException if something goes wrong with the response. Most likely since the 
-   *                          rest server is offline
+   * @return a URI for the reservation
    */
-  private boolean putRoom(HotelRoom room) {
-    try {
-      String json = mapper.writeValueAsString(room);
-      HttpRequest request = HttpRequest.newBuilder(roomUri(room.getNumber()))
-          .header("Accept", "application/json")
-          .header("Content-Type", "application/json")
-          .PUT(BodyPublishers.ofString(json))
-          .build();
-      final HttpResponse<String> response =
-          HttpClient.newBuilder().build().send(request, HttpResponse.BodyHandlers.ofString());
-      Boolean added = mapper.readValue(response.body(), Boolean.class);
-      if (added != null) {
-        return true;
-      }
-      return false;
-    } catch (IOException | InterruptedException e) {
-      e.printStackTrace();
-      throw new RuntimeException(
-          "Error reading from the REST API.\nPerhaps the server is offline?");
-    }
+  private URI reservationUri(Integer number, String username,
+      LocalDate startDate, LocalDate endDate, long version) {
+    return URI.create(roomUri(number) + "/reservation"
+        + "?username=" + uriParam(username)
+        + "&startDate=" + uriParam(startDate.toString())
+        + "&endDate=" + uriParam(endDate.toString())
+        + "&version=" + version);
   }
 
   /**
    * Makes a reservation with the given person, hotelRoomNumber, startDate and endDate.
-   * Again, this method first updates the hotel to ensure that a room is not double-booked.
-   * Then, it makes the reservation in the hotel object. If any validation fails here, the
-   * reservation will not be made. If nothing goes wrong, it puts the person and room to the
-   * database.
+   * The method sends a POST-request to the rest server along with the version of the room
+   * this client last saw, so the server can reject the reservation right away if the room
+   * has been booked by someone else since. If the server accepts the reservation, this.hotel
+   * is updated from the server, and the given person gets the balance and reservations the
+   * server has for them. The reservation is not made again locally, as a stale local copy
+   * could reject a reservation the server has already made and charged.
    *
    * @param person the person to make the reservation
    * @param hotelRoomNumber the roomNumber of the room that should be reserved
    * @param startDate the startDate of the reservation
    * @param endDate the endDate of the reservation
+   *
+   * @throws ReservationConflictException if the room has been booked since it was last seen
+   * @throws IllegalStateException if the server rejects the reservation for another reason
+   * @throws RunTimeException if something goes wrong with the response. Most likely since the 
+   *                          rest server is offline
    */
   @Override
   public void makeReservation(Person person, int hotelRoomNumber,
       LocalDate startDate, LocalDate endDate) {
+    HotelRoom room = getHotel().getRoom(hotelRoomNumber);
+    if (room == null) {
+      throw new IllegalArgumentException(
+        "The specified room number is not the number of a room in the hotel.");
+    }
+    HttpRequest request = HttpRequest.newBuilder(reservationUri(hotelRoomNumber,
+            person.getUsername(), startDate, endDate, room.getVersion()))
+        .header("Accept", "application/json")
+        .POST(BodyPublishers.noBody())
+        .build();
+    final HttpResponse<String> response;
+    try {
+      response =
+          HttpClient.newBuilder().build().send(request, HttpResponse.BodyHandlers.ofString());
+    } catch (IOException | InterruptedException e) {
+      e.printStackTrace();
+      throw new RuntimeException(
+          "Error reading from the REST API.\nPerhaps the server is offline?");
+    }
+    if (response.statusCode() == HTTP_CONFLICT) {
+      throw new ReservationConflictException(response.body());
+    }
+    if (response.statusCode() != HTTP_OK) {
+      throw new IllegalStateException(response.body());
+    }
     updateHotel();
-    getHotel().makeReservation(person, hotelRoomNumber, startDate, endDate);
-    putPerson(person);
+    updatePerson(person);
+  }
 
-    // Find list of rooms with matching IDs (which should only be one) and put first
-    putRoom(getHotel().getRooms((r) -> r.getNumber() == hotelRoomNumber).iterator().next());
+  /**
+   * Helper method that gives the given person the balance and reservations that the person
+   * with the same username has in this.hotel, e.g. after this.hotel is updated from the server.
+   *
+   * @param person the person to update
+   */
+  private void updatePerson(Person person) {
+    Person updated = getHotel().getPerson(person.getUsername());
+    if (updated == null) {
+      return;
+    }
+    for (Reservation reservation : updated.getReservations()) {
+      if (!person.hasReservation(reservation)) {
+        person.addReservation(reservation);
+      }
+    }
+    person.setBalanceCents(updated.getBalanceCents());
   }
 
   /**
@@ -277,4 +324,13 @@ public class RemoteHotelAccess implements HotelAccess {
   public void setPrefix(String prefix) {
     
   }
+
+  /**
+   * This does not need to be implemented in RemoteHotelAccess,
+   * as the server saves the changes.
+   */
+  @Override
+  public void close() {
+
+  }
 }
@@ -1,5 +1,6 @@
 package gr2116.ui.app;
 
+import gr2116.ui.controller.AppController;
 import javafx.application.Application;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Parent;
@@ -12,19 +13,33 @@ import javafx.stage.Stage;
  */
 public class App extends Application {
 
+  private AppController appController;
+
   /**
    * Start the app, load FXML and show scene.
    */
   @Override
   public final void start(final Stage stage) throws Exception {
     System.out.println("Running LocalApp.");
-    Parent parent = FXMLLoader.load(
+    FXMLLoader loader = new FXMLLoader(
         getClass().getClassLoader().getResource("App.fxml"));
+    Parent parent = loader.load();
+    appController = loader.getController();
     stage.setScene(new Scene(parent));
     stage.getIcons().add(new Image(getClass().getClassLoader().getResourceAsStream("icon.png")));
     stage.show();
   }
 
+  /**
+   * Stop the app, and save the changes that are waiting to be saved.
+   */
+  @Override
+  public final void stop() {
+    if (appController != null) {
+      appController.close();
+    }
+  }
+
   /**
    * Main method to launch app.
    *
@@ -1,5 +1,6 @@
 package gr2116.ui.controller;
 
+import gr2116.core.PasswordUtil;
 import gr2116.core.Person;
 import gr2116.ui.DynamicText;
 import gr2116.ui.access.DirectHotelAccess;
@@ -7,6 +8,7 @@ import gr2116.ui.access.HotelAccess;
 import gr2116.ui.access.RemoteHotelAccess;
 import gr2116.ui.front.FrontPageController;
 import gr2116.ui.main.MainPageController;
+import gr2116.ui.message.LoginAttempt;
 import gr2116.ui.message.Message;
 import gr2116.ui.message.MessageListener;
 import gr2116.ui.money.MoneyPageController;
@@ -15,6 +17,7 @@ import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.ArrayList;
 import java.util.Collection;
+import javafx.application.Platform;
 import javafx.fxml.FXML;
 import javafx.scene.control.SplitPane;
 import javafx.scene.layout.StackPane;
@@ -100,8 +103,9 @@ public class AppController implements MessageListener {
    * Receives messages from various parts of the program,
    * and acts accordingly.
    * Implemented messages are:
-   * - Message.SignUp, with Person as data
-   * - Message.Login, with Person as data
+   * - Message.SignUp, with Person as data, which also logs the person in
+   * - Message.Login, with LoginAttempt as data. The password is checked on
+   *   a worker thread, and the login finishes on the JavaFX thread afterwards
    * - Message.SignOut
    * - Message.ShowMoneyPage
    * - Message.ShowMainPage
@@ -120,20 +124,21 @@ public class AppController implements MessageListener {
       final Message message, final Object data) {
     if (message == Message.SignUp && data instanceof Person) {
       Person dataPerson = (Person) data;
-      Person person = hotelAccess.getPersons().stream().filter(
-            (Person p) -> p.getUsername().equals(dataPerson.getUsername())
-          ).findAny().orElse(null);
-      if (person != null) {
+      if (findPerson(dataPerson.getUsername()) != null) {
         frontPageViewController.setSignUpPanelViewErrorLabel(
             DynamicText.UsernameTaken.getMessage());
         return;
       }
+      if (dataPerson.getHashedPassword() == null) {
+        throw new IllegalArgumentException(
+          "Tried to sign up a person without a password!");
+      }
       hotelAccess.addPerson(dataPerson);
-    } else if (message == Message.Login && data instanceof Person) {
-      Person dataPerson = (Person) data;
-      Person person = hotelAccess.getPersons().stream().filter(
-            (Person p) -> p.getUsername().equals(dataPerson.getUsername())
-          ).findAny().orElse(null);
+      currentPerson = dataPerson;
+      moveToMainPage();
+    } else if (message == Message.Login && data instanceof LoginAttempt) {
+      LoginAttempt attempt = (LoginAttempt) data;
+      Person person = findPerson(attempt.getUsername());
       if (person == null) {
         frontPageViewController.setLoginPanelViewErrorLabel(
             DynamicText.UsernameHasNoMatches.getMessage());
@@ -143,12 +148,19 @@ public class AppController implements MessageListener {
         throw new IllegalArgumentException(
           "Tried to sign up a person without a password!");
       }
-      if (!person.getHashedPassword().equals(dataPerson.getHashedPassword())) {
-        frontPageViewController.setLoginPanelViewErrorLabel(DynamicText.WrongPassword.getMessage());
-        return;
-      }
-      currentPerson = person;
-      moveToMainPage();
+      PasswordUtil.verifyPasswordAsync(attempt.getPassword(), person.getHashedPassword())
+          .whenComplete((matches, e) -> Platform.runLater(() -> {
+            if (e != null) {
+              frontPageViewController.setLoginPanelViewErrorLabel(
+                  DynamicText.PasswordError.getMessage());
+            } else if (!matches) {
+              frontPageViewController.setLoginPanelViewErrorLabel(
+                  DynamicText.WrongPassword.getMessage());
+            } else {
+              currentPerson = person;
+              moveToMainPage();
+            }
+          }));
     } else if (message == Message.SignOut) {
       currentPerson = null;
       moveToFrontPage();
@@ -171,6 +183,19 @@ public class AppController implements MessageListener {
     }
   }
 
+  /**
+   * Returns the person of the hotel with the given username.
+   *
+   * @param username the username
+   *
+   * @return the person, or null if no person has the username
+   */
+  private Person findPerson(String username) {
+    return hotelAccess.getPersons().stream().filter(
+          (Person p) -> p.getUsername().equals(username)
+        ).findAny().orElse(null);
+  }
+
   /**
    * Sets the data filename prefix.
    *
@@ -243,4 +268,14 @@ public class AppController implements MessageListener {
   public void load() {
     hotelAccess.loadHotel();
   }
+
+  /**
+   * Saves the changes that are waiting to be saved, and stops saving.
+   * Is called when the app stops.
+   */
+  public void close() {
+    if (hotelAccess != null) {
+      hotelAccess.close();
+    }
+  }
 }
@@ -1,6 +1,7 @@
 package gr2116.ui.front;
 
 import gr2116.core.Person;
+import gr2116.ui.message.LoginAttempt;
 import gr2116.ui.message.Message;
 import gr2116.ui.message.MessageListener;
 import java.util.Collection;
@@ -110,7 +111,7 @@ public class FrontPageController implements MessageListener {
    * and acts accordingly.
    * Implemented messages are:
    * - Message.SignUp, with Person as data
-   * - Message.Login, with Person as data
+   * - Message.Login, with LoginAttempt as data
    * - Message.Cancel
 
    *  @param from the object the message is from
@@ -124,13 +125,12 @@ public class FrontPageController implements MessageListener {
       showDefaultPanel();
     } else if (from instanceof LoginPanelController
         && message == Message.Login
-        && data instanceof Person) {
+        && data instanceof LoginAttempt) {
       notifyListeners(Message.Login, data);
     } else if (from instanceof SignUpPanelController
         && message == Message.SignUp
         && data instanceof Person) {
       notifyListeners(Message.SignUp, data);
-      notifyListeners(Message.Login, data);
     }
   }
 }
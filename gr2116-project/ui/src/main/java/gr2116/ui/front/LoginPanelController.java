@@ -2,6 +2,7 @@ package gr2116.ui.front;
 
 import gr2116.core.Person;
 import gr2116.ui.DynamicText;
+import gr2116.ui.message.LoginAttempt;
 import gr2116.ui.message.Message;
 import gr2116.ui.message.MessageListener;
 import java.util.Collection;
@@ -48,10 +49,7 @@ public class LoginPanelController {
       return;
     }
 
-    Person person = new Person(username);
-    person.setPassword(password);
-
-    notifyListeners(Message.Login, person);
+    notifyListeners(Message.Login, new LoginAttempt(username, password));
   }
 
   @FXML
@@ -1,11 +1,13 @@
 package gr2116.ui.front;
 
+import gr2116.core.PasswordUtil;
 import gr2116.core.Person;
 import gr2116.ui.DynamicText;
 import gr2116.ui.message.Message;
 import gr2116.ui.message.MessageListener;
 import java.util.Collection;
 import java.util.HashSet;
+import javafx.application.Platform;
 import javafx.fxml.FXML;
 import javafx.scene.control.Label;
 import javafx.scene.control.TextField;
@@ -66,9 +68,16 @@ public class SignUpPanelController {
     Person person = new Person(username);
     person.setFirstName(firstName);
     person.setLastName(lastName);
-    person.setPassword(password);
 
-    notifyListeners(Message.SignUp, person);
+    // Hashing is slow, so it is done off the JavaFX thread
+    PasswordUtil.hashPasswordAsync(password).whenComplete((hashed, e) -> Platform.runLater(() -> {
+      if (e != null || hashed == null) {
+        setErrorLabel(DynamicText.PasswordError.getMessage());
+        return;
+      }
+      person.setHashedPassword(hashed);
+      notifyListeners(Message.SignUp, person);
+    }));
   }
 
   @FXML
@@ -54,6 +54,9 @@ public class FilterPanelController {
   @FXML
   private Button clearFilterButton;
 
+  @FXML
+  private Button findEarliestButton;
+
   /**
    * Constructor for FilterPanel.
    */
@@ -146,6 +149,31 @@ public class FilterPanelController {
     notifyListeners();
   }
 
+  /**
+   * OnAction for findEarliestButton.
+   * Asks listeners to find the earliest stay on a room matching the filter,
+   * as long as the stay between the selected dates, or one night if none are selected.
+   */
+  @FXML
+  private void findEarliestButtonOnAction() {
+    HotelRoomFilter filter = createFilter();
+    for (MessageListener listener : listeners) {
+      listener.receiveMessage(this, Message.FindEarliest, filter);
+    }
+  }
+
+  /**
+   * Selects the given dates and notifies listeners about the change.
+   *
+   * @param startDate the start date to select
+   * @param endDate the end date to select
+   */
+  public final void setDates(final LocalDate startDate, final LocalDate endDate) {
+    startDatePicker.setValue(startDate);
+    endDatePicker.setValue(endDate);
+    notifyListeners();
+  }
+
   /**
    * Amenity check box, to select an amenity.
    */
@@ -200,13 +228,21 @@ public class FilterPanelController {
    */
   public final void notifyListeners() {
     for (MessageListener listener : listeners) {
-      HotelRoomFilter filter = new HotelRoomFilter(
-          startDatePicker.getValue(),
-          endDatePicker.getValue(),
-          roomTypeChoiceBox.getValue(),
-          floorSpinner.isDisable() ? null : floorSpinner.getValue(),
-          amenities);
-      listener.receiveMessage(this, Message.Filter, filter);
+      listener.receiveMessage(this, Message.Filter, createFilter());
     }
   }
+
+  /**
+   * Creates a filter from the selected dates, room type, floor and amenities.
+   *
+   * @return the filter
+   */
+  private HotelRoomFilter createFilter() {
+    return new HotelRoomFilter(
+        startDatePicker.getValue(),
+        endDatePicker.getValue(),
+        roomTypeChoiceBox.getValue(),
+        floorSpinner.isDisable() ? null : floorSpinner.getValue(),
+        amenities);
+  }
 }
@@ -1,17 +1,21 @@
 package gr2116.ui.main;
 
+import gr2116.core.AvailabilityWindow;
 import gr2116.core.HotelRoom;
 import gr2116.core.HotelRoomFilter;
 import gr2116.core.HotelRoomSorter;
 import gr2116.core.HotelRoomSorter.SortProperty;
 import gr2116.core.Person;
+import gr2116.core.ReservationConflictException;
 import gr2116.ui.DynamicText;
 import gr2116.ui.access.HotelAccess;
 import gr2116.ui.message.Message;
 import gr2116.ui.message.MessageListener;
 import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
 import java.util.Collection;
 import java.util.HashSet;
+import java.util.List;
 import javafx.fxml.FXML;
 import javafx.scene.control.Label;
 import javafx.scene.layout.Region;
@@ -117,6 +121,12 @@ public class MainPageController implements MessageListener {
         errorLabel.setText(DynamicText.BeforeNowError.getMessage());
       }
     }
+    // Rooms are sorted by the price of the chosen stay, the same price the label shows.
+    if (hotelRoomFilter.hasValidDates()) {
+      hotelRoomSorter.setStayDates(hotelRoomFilter.getStartDate(), hotelRoomFilter.getEndDate());
+    } else {
+      hotelRoomSorter.setStayDates(null, null);
+    }
     Collection<HotelRoom> filteredRooms
         = hotelRoomSorter.sortRooms(hotelAccess.getRooms(hotelRoomFilter));
     
@@ -138,6 +148,10 @@ public class MainPageController implements MessageListener {
                 hotelRoomFilter.getEndDate()
             );
             buildRoomList();
+          } catch (ReservationConflictException e) {
+            buildRoomList();
+            errorLabel.setText("Unfortunately the room (#" + hotelRoom.getNumber()
+                + ") was just booked by someone else.");
           } catch (IllegalStateException e) {
             buildRoomList();
             errorLabel.setText("Unfortunately the room (#" + hotelRoom.getNumber()
@@ -156,6 +170,33 @@ public class MainPageController implements MessageListener {
     }
   }
 
+  /**
+   * Finds the earliest stay on a room matching the given filter's room type, floor and
+   * amenities, starting at the filter's start date or today, and as long as the stay between
+   * the filter's dates, or one night if they are not valid. Selects the dates of the stay
+   * in the filter panel, which rebuilds the room list.
+   *
+   * @param filter the filter to find a stay for
+   */
+  private void findEarliestStay(HotelRoomFilter filter) {
+    LocalDate today = LocalDate.now();
+    LocalDate startDate = filter.getStartDate();
+    LocalDate endDate = filter.getEndDate();
+    LocalDate fromDate = startDate == null || startDate.isBefore(today) ? today : startDate;
+    int nights = 1;
+    if (startDate != null && endDate != null && startDate.isBefore(endDate)) {
+      nights = (int) ChronoUnit.DAYS.between(startDate, endDate);
+    }
+    List<AvailabilityWindow> windows = hotelAccess.findAvailableWindows(
+        filter.withoutDates(), nights, fromDate, fromDate.plusYears(1), 1);
+    if (windows.isEmpty()) {
+      errorLabel.setText(DynamicText.NoAvailableStayError.getMessage());
+    } else {
+      AvailabilityWindow window = windows.get(0);
+      filterPanelViewController.setDates(window.getStartDate(), window.getEndDate());
+    }
+  }
+
   /**
    * Sets the sort property to sort by price.
    * Switches between increasing and decreasing if property is already price.
@@ -200,7 +241,7 @@ public class MainPageController implements MessageListener {
 
   /**
    * Receive notification (as a listener) and act accordingly.
-   * Includes notification to log out, and filtering.
+   * Includes notification to log out, filtering and finding the earliest stay.
    */
   @Override
   public final void receiveMessage(
@@ -211,6 +252,9 @@ public class MainPageController implements MessageListener {
       this.hotelRoomFilter = (HotelRoomFilter) data;
       buildRoomList();
     }
+    if (message == Message.FindEarliest && data instanceof HotelRoomFilter) {
+      findEarliestStay((HotelRoomFilter) data);
+    }
     if (message == Message.SignOut) {
       notifyListeners(Message.SignOut, null);
     }
@@ -7,6 +7,7 @@ import gr2116.ui.message.Message;
 import gr2116.ui.message.MessageListener;
 import java.util.Collection;
 import java.util.HashSet;
+import javafx.application.Platform;
 import javafx.fxml.FXML;
 import javafx.scene.control.Button;
 import javafx.scene.control.Label;
@@ -49,6 +50,8 @@ public class UserPanelController implements PersonListener {
       throw new IllegalArgumentException("Error initializing UserPanel: person is null.");
     }
     this.person = person;
+    // Changes are coalesced and shown once per pulse, on the JavaFX thread.
+    person.setNotificationExecutor(Platform::runLater);
     person.addListener(this);
     updatePanel();
   }
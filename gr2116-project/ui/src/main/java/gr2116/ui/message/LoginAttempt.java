@@ -0,0 +1,30 @@
+package gr2116.ui.message;
+
+/**
+ * The data sent along with Message.Login: the username and the password
+ * the user typed in. The password is checked against the stored hash
+ * by the receiver, since every hash has its own salt.
+ */
+public final class LoginAttempt {
+  private final String username;
+  private final String password;
+
+  /**
+   * Constructs a login attempt.
+   *
+   * @param username the username
+   * @param password the password, in clear text
+   */
+  public LoginAttempt(String username, String password) {
+    this.username = username;
+    this.password = password;
+  }
+
+  public String getUsername() {
+    return username;
+  }
+
+  public String getPassword() {
+    return password;
+  }
+}
@@ -5,10 +5,11 @@ package gr2116.ui.message;
  * These are used in MessageListener.
  */
 public enum Message {
-  Login,          // Log in a Person and move to MainPage, set current Person
-  SignUp,         // Sign up a Person, does not log in
+  Login,          // Check a LoginAttempt, then move to MainPage and set current Person
+  SignUp,         // Sign up a Person and log in
   SignOut,        // Sign out and move to LoginPage
   Filter,         // Update HotelRoomFilter
+  FindEarliest,   // Find the earliest stay on a room matching a HotelRoomFilter
   ShowMainPage,   // Move to MainPage
   ShowMoneyPage,  // Move to MoneyPage
   Reconnect,      // Try to reconnect
@@ -2,15 +2,19 @@ package gr2116.ui;
 
 import gr2116.ui.controller.AppController;
 import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Parent;
 import javafx.scene.Scene;
+import javafx.scene.control.Labeled;
 import javafx.stage.Stage;
 import org.junit.jupiter.api.Test;
 import org.testfx.api.FxAssert;
 import org.testfx.framework.junit5.ApplicationTest;
 import org.testfx.framework.junit5.Start;
 import org.testfx.matcher.control.LabeledMatchers;
+import org.testfx.util.WaitForAsyncUtils;
 
 /**
  * FXML Application, the booking system application.
@@ -35,8 +39,23 @@ public class FrontPageTest extends ApplicationTest {
     appController.load();
   }
   
+  /**
+   * Waits until the first node matching the query shows the given text,
+   * since passwords are hashed and checked on a worker thread.
+   *
+   * @param query the node query
+   * @param text the text to wait for
+   *
+   * @throws TimeoutException if the text is not shown in time
+   */
+  private void waitForText(String query, String text) throws TimeoutException {
+    WaitForAsyncUtils.waitFor(10, TimeUnit.SECONDS, () -> lookup(query).tryQuery()
+        .map((node) -> node instanceof Labeled labeled && text.equals(labeled.getText()))
+        .orElse(false));
+  }
+
   @Test
-  public void signUpTest() {
+  public void signUpTest() throws TimeoutException {
     FxAssert.verifyThat("#startSignUpButton", LabeledMatchers.hasText("Sign up"));
     clickOn("#startSignUpButton");
     FxAssert.verifyThat("#signUpButton", LabeledMatchers.hasText("Sign up"));
@@ -57,12 +76,13 @@ public class FrontPageTest extends ApplicationTest {
         LabeledMatchers.hasText(DynamicText.InvalidPassword.getMessage()));
     clickOn("#passwordTextField").write("password123");
     clickOn("#signUpButton");
+    waitForText("#nameLabel", "Jonathan Spark");
     FxAssert.verifyThat("#nameLabel",
         LabeledMatchers.hasText("Jonathan Spark"));
   }
 
   @Test
-  public void loginTest() {
+  public void loginTest() throws TimeoutException {
     FxAssert.verifyThat("#startLoginButton", LabeledMatchers.hasText("Login"));
     clickOn("#startLoginButton");
     FxAssert.verifyThat("#loginButton", LabeledMatchers.hasText("Login"));
@@ -79,10 +99,12 @@ public class FrontPageTest extends ApplicationTest {
         LabeledMatchers.hasText(DynamicText.UsernameHasNoMatches.getMessage()));
     clickOn("#usernameTextField").eraseText(6).write("tom"); 
     clickOn("#loginButton");
+    waitForText("#errorLabel", DynamicText.WrongPassword.getMessage());
     FxAssert.verifyThat("#errorLabel",
         LabeledMatchers.hasText(DynamicText.WrongPassword.getMessage()));
     clickOn("#passwordTextField").eraseText(1);
     clickOn("#loginButton");
+    waitForText("#nameLabel", "Tom Hanks");
     FxAssert.verifyThat("#nameLabel",
         LabeledMatchers.hasText("Tom Hanks"));
   }
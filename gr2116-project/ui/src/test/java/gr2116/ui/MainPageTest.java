@@ -2,16 +2,20 @@ package gr2116.ui;
 
 import gr2116.core.Person;
 import gr2116.ui.controller.AppController;
+import gr2116.ui.message.LoginAttempt;
 import gr2116.ui.message.Message;
 import java.io.IOException;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.time.format.FormatStyle;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Parent;
 import javafx.scene.Scene;
 import javafx.scene.control.DatePicker;
 import javafx.stage.Stage;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.MethodOrderer.OrderAnnotation;
 import org.junit.jupiter.api.Order;
 import org.junit.jupiter.api.Test;
@@ -21,6 +25,7 @@ import org.testfx.framework.junit5.ApplicationTest;
 import org.testfx.framework.junit5.Start;
 import org.testfx.matcher.base.NodeMatchers;
 import org.testfx.matcher.control.LabeledMatchers;
+import org.testfx.util.WaitForAsyncUtils;
 
 /**
  * Tests the main page of the application.
@@ -56,12 +61,25 @@ public class MainPageTest extends ApplicationTest {
     // The sign up will only be executed on the first test.
     // For the next tests, Richard is already signed up.
     appController.receiveMessage(this, Message.SignUp, person);
-    appController.receiveMessage(this, Message.Login, person);
+    appController.receiveMessage(this, Message.Login,
+        new LoginAttempt("RichardWilkens", "password123"));
     
     stage.setScene(new Scene(parent));
     stage.show();
   }
 
+  /**
+   * Waits for the login, since the password is checked on a worker thread.
+   *
+   * @throws TimeoutException if the main page is not shown in time
+   */
+  @BeforeEach
+  public void waitForLogin() throws TimeoutException {
+    WaitForAsyncUtils.waitFor(10, TimeUnit.SECONDS,
+        () -> lookup("#usernameLabel").tryQuery().isPresent());
+    WaitForAsyncUtils.waitForFxEvents();
+  }
+
   @Test
   @Order(1)
   public void checkUserPane() {